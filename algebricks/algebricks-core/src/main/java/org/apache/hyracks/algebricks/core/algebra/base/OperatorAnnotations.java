@@ -24,4 +24,8 @@ public interface OperatorAnnotations {
     // Integer
     public static final String MAX_NUMBER_FRAMES = "MAX_NUMBER_FRAMES"; // -->
     // Integer
+    public static final String TOP_K_GROUP_BY = "TOP_K_GROUP_BY"; // -->
+    // Pair<LimitOperator, OrderOperator>
+    public static final String GROUP_BY_COMBINER = "GROUP_BY_COMBINER"; // -->
+    // Boolean
 }
@@ -17,6 +17,7 @@ package org.apache.hyracks.algebricks.core.algebra.base;
 public enum PhysicalOperatorTag {
     AGGREGATE,
     ASSIGN,
+    BAND_JOIN,
     BROADCAST_EXCHANGE,
     BTREE_SEARCH,
     BULKLOAD,
@@ -55,6 +56,7 @@ public enum PhysicalOperatorTag {
     SINK,
     SINK_WRITE,
     SORT_GROUP_BY,
+    SORT_MERGE_JOIN,
     SORT_MERGE_EXCHANGE,
     SPLIT,
     STABLE_SORT,
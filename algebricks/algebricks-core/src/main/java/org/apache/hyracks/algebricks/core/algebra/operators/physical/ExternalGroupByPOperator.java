@@ -31,6 +31,7 @@ import org.apache.hyracks.algebricks.core.algebra.base.ILogicalPlan;
 import org.apache.hyracks.algebricks.core.algebra.base.IOptimizationContext;
 import org.apache.hyracks.algebricks.core.algebra.base.LogicalExpressionTag;
 import org.apache.hyracks.algebricks.core.algebra.base.LogicalVariable;
+import org.apache.hyracks.algebricks.core.algebra.base.OperatorAnnotations;
 import org.apache.hyracks.algebricks.core.algebra.base.PhysicalOperatorTag;
 import org.apache.hyracks.algebricks.core.algebra.expressions.AggregateFunctionCallExpression;
 import org.apache.hyracks.algebricks.core.algebra.expressions.IExpressionRuntimeProvider;
@@ -42,6 +43,10 @@ import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractLogi
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.AggregateOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.GroupByOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.IOperatorSchema;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.LimitOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator.IOrder;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator.IOrder.OrderKind;
 import org.apache.hyracks.algebricks.core.algebra.properties.ILocalStructuralProperty;
 import org.apache.hyracks.algebricks.core.algebra.properties.IPartitioningRequirementsCoordinator;
 import org.apache.hyracks.algebricks.core.algebra.properties.IPhysicalPropertiesVector;
@@ -53,28 +58,50 @@ import org.apache.hyracks.algebricks.core.jobgen.impl.JobGenContext;
 import org.apache.hyracks.algebricks.core.jobgen.impl.JobGenHelper;
 import org.apache.hyracks.algebricks.core.jobgen.impl.OperatorSchemaImpl;
 import org.apache.hyracks.algebricks.runtime.base.ICopySerializableAggregateFunctionFactory;
+import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluator;
 import org.apache.hyracks.algebricks.runtime.operators.aggreg.SerializableAggregatorDescriptorFactory;
+import org.apache.hyracks.api.dataflow.IOperatorDescriptor;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.primitive.VoidPointable;
 import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
 import org.apache.hyracks.dataflow.std.group.HashSpillableTableFactory;
 import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import org.apache.hyracks.dataflow.std.group.external.ExternalGroupOperatorDescriptor;
+import org.apache.hyracks.dataflow.std.group.external.ExternalHashGroupOperatorDescriptor;
 
 public class ExternalGroupByPOperator extends AbstractPhysicalOperator {
 
     private int tableSize = 0;
     private int frameLimit = 0;
+    private double minLocalReductionRatio = 0;
+    private boolean hashSpilling = false;
     private List<LogicalVariable> columnSet = new ArrayList<LogicalVariable>();
 
     public ExternalGroupByPOperator(List<Pair<LogicalVariable, Mutable<ILogicalExpression>>> gbyList, int frameLimit,
             int tableSize) {
+        this(gbyList, frameLimit, tableSize, 0, false);
+    }
+
+    /**
+     * @param minLocalReductionRatio
+     *            a local group-by passes its input through while it removes less than this fraction of the tuples
+     * @param hashSpilling
+     *            spill hash partitions instead of sorted runs, if there are hash function families for the keys
+     */
+    public ExternalGroupByPOperator(List<Pair<LogicalVariable, Mutable<ILogicalExpression>>> gbyList, int frameLimit,
+            int tableSize, double minLocalReductionRatio, boolean hashSpilling) {
         this.tableSize = tableSize;
         this.frameLimit = frameLimit;
+        this.minLocalReductionRatio = minLocalReductionRatio;
+        this.hashSpilling = hashSpilling;
         computeColumnSet(gbyList);
     }
 
@@ -248,15 +275,110 @@ public class ExternalGroupByPOperator extends AbstractPhysicalOperator {
         ITuplePartitionComputerFactory tpcf = new FieldHashPartitionComputerFactory(keys, hashFunctionFactories);
         INormalizedKeyComputerFactory normalizedKeyFactory = JobGenHelper.variablesToAscNormalizedKeyComputerFactory(
                 gbyCols, aggOpInputEnv, context);
-        ExternalGroupOperatorDescriptor gbyOpDesc = new ExternalGroupOperatorDescriptor(spec, keyAndDecFields,
-                frameLimit, comparatorFactories, normalizedKeyFactory, aggregatorFactory, mergeFactory,
-                recordDescriptor, new HashSpillableTableFactory(tpcf, tableSize), false);
+        // only a combiner may output a group more than once, since its output is grouped again
+        double minReductionRatio = isCombiner(gby) ? minLocalReductionRatio : 0;
+        IBinaryHashFunctionFamily[] hashFunctionFamilies = null;
+        if (hashSpilling && frameLimit >= 4 && context.getBinaryHashFunctionFamilyProvider() != null) {
+            hashFunctionFamilies = JobGenHelper.variablesToBinaryHashFunctionFamilies(gbyCols, aggOpInputEnv, context);
+            for (IBinaryHashFunctionFamily family : hashFunctionFamilies) {
+                if (family == null) {
+                    hashFunctionFamilies = null;
+                    break;
+                }
+            }
+        }
+        IOperatorDescriptor gbyOpDesc;
+        // the groups kept for the top-k take a quarter of the frames, which are taken out of the merge
+        int topKFrameLimit = frameLimit / 4;
+        int topK = isCombiner(gby) || topKFrameLimit < 2 ? 0 : getTopK(gby, inputSchemas, context);
+        int[] rankFields = null;
+        IBinaryComparatorFactory[] rankComparatorFactories = null;
+        if (topK > 0) {
+            OrderOperator order = getTopKAnnotation(gby).second;
+            rankFields = new int[order.getOrderExpressions().size()];
+            rankComparatorFactories = new IBinaryComparatorFactory[rankFields.length];
+            i = 0;
+            for (Pair<IOrder, Mutable<ILogicalExpression>> p : order.getOrderExpressions()) {
+                LogicalVariable var = ((VariableReferenceExpression) p.second.getValue()).getVariableReference();
+                rankFields[i] = opSchema.findVariable(var);
+                if (rankFields[i] < 0) {
+                    topK = 0;
+                    break;
+                }
+                rankComparatorFactories[i++] = context.getBinaryComparatorFactoryProvider().getBinaryComparatorFactory(
+                        outputEnv.getVarType(var), p.first.getKind() == OrderKind.ASC);
+            }
+        }
+        if (hashFunctionFamilies != null) {
+            ExternalHashGroupOperatorDescriptor hashGbyOpDesc = new ExternalHashGroupOperatorDescriptor(spec,
+                    keyAndDecFields, frameLimit, tableSize, comparatorFactories, hashFunctionFactories,
+                    hashFunctionFamilies, aggregatorFactory, mergeFactory, recordDescriptor, minReductionRatio);
+            if (topK > 0) {
+                hashGbyOpDesc.setTopK(topK, rankFields, rankComparatorFactories, topKFrameLimit);
+            }
+            gbyOpDesc = hashGbyOpDesc;
+        } else {
+            ExternalGroupOperatorDescriptor sortGbyOpDesc = new ExternalGroupOperatorDescriptor(spec,
+                    keyAndDecFields, frameLimit, comparatorFactories, normalizedKeyFactory, aggregatorFactory,
+                    mergeFactory, recordDescriptor, new HashSpillableTableFactory(tpcf, tableSize), false,
+                    minReductionRatio);
+            if (topK > 0) {
+                sortGbyOpDesc.setTopK(topK, rankFields, rankComparatorFactories, topKFrameLimit);
+            }
+            gbyOpDesc = sortGbyOpDesc;
+        }
 
         contributeOpDesc(builder, gby, gbyOpDesc);
         ILogicalOperator src = op.getInputs().get(0).getValue();
         builder.contributeGraphEdge(src, 0, op, 0);
     }
 
+    private static boolean isCombiner(GroupByOperator gby) {
+        return Boolean.TRUE.equals(gby.getAnnotations().get(OperatorAnnotations.GROUP_BY_COMBINER));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Pair<LimitOperator, OrderOperator> getTopKAnnotation(GroupByOperator gby) {
+        return (Pair<LimitOperator, OrderOperator>) gby.getAnnotations().get(OperatorAnnotations.TOP_K_GROUP_BY);
+    }
+
+    /**
+     * @return the number of groups the limit above the group-by can output, counting the skipped ones, or 0 if the
+     *         group-by is not annotated or the limit is not known before the job runs
+     */
+    private static int getTopK(GroupByOperator gby, IOperatorSchema[] inputSchemas, JobGenContext context)
+            throws AlgebricksException {
+        Pair<LimitOperator, OrderOperator> annotation = getTopKAnnotation(gby);
+        if (annotation == null) {
+            return 0;
+        }
+        LimitOperator limit = annotation.first;
+        long topK = evaluateConstant(limit.getMaxObjects().getValue(), limit, inputSchemas, context);
+        ILogicalExpression offsetExpr = limit.getOffset().getValue();
+        if (offsetExpr != null) {
+            topK += evaluateConstant(offsetExpr, limit, inputSchemas, context);
+        }
+        return topK <= 0 || topK >= Integer.MAX_VALUE ? 0 : (int) topK;
+    }
+
+    private static int evaluateConstant(ILogicalExpression expr, ILogicalOperator op, IOperatorSchema[] inputSchemas,
+            JobGenContext context) throws AlgebricksException {
+        if (expr.getExpressionTag() != LogicalExpressionTag.CONSTANT) {
+            return 0;
+        }
+        IScalarEvaluator eval = context.getExpressionRuntimeProvider()
+                .createEvaluatorFactory(expr, context.getTypeEnvironment(op), inputSchemas, context)
+                .createScalarEvaluator(null);
+        IPointable p = VoidPointable.FACTORY.createPointable();
+        eval.evaluate(null, p);
+        try {
+            return context.getBinaryIntegerInspectorFactory().createBinaryIntegerInspector(null)
+                    .getIntegerValue(p.getByteArray(), p.getStartOffset(), p.getLength());
+        } catch (HyracksDataException e) {
+            throw new AlgebricksException(e);
+        }
+    }
+
     @Override
     public Pair<int[], int[]> getInputOutputDependencyLabels(ILogicalOperator op) {
         int[] inputDependencyLabels = new int[] { 0 };
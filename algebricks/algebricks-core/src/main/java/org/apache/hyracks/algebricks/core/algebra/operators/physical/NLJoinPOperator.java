@@ -14,16 +14,27 @@
  */
 package org.apache.hyracks.algebricks.core.algebra.operators.physical;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.lang3.mutable.Mutable;
+
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
 import org.apache.hyracks.algebricks.common.exceptions.NotImplementedException;
 import org.apache.hyracks.algebricks.core.algebra.base.IHyracksJobBuilder;
+import org.apache.hyracks.algebricks.core.algebra.base.ILogicalExpression;
 import org.apache.hyracks.algebricks.core.algebra.base.ILogicalOperator;
 import org.apache.hyracks.algebricks.core.algebra.base.IOptimizationContext;
+import org.apache.hyracks.algebricks.core.algebra.base.LogicalExpressionTag;
+import org.apache.hyracks.algebricks.core.algebra.base.LogicalVariable;
 import org.apache.hyracks.algebricks.core.algebra.base.PhysicalOperatorTag;
+import org.apache.hyracks.algebricks.core.algebra.expressions.AbstractFunctionCallExpression;
 import org.apache.hyracks.algebricks.core.algebra.expressions.IExpressionRuntimeProvider;
+import org.apache.hyracks.algebricks.core.algebra.expressions.IVariableTypeEnvironment;
+import org.apache.hyracks.algebricks.core.algebra.expressions.VariableReferenceExpression;
+import org.apache.hyracks.algebricks.core.algebra.functions.AlgebricksBuiltinFunctions;
+import org.apache.hyracks.algebricks.core.algebra.functions.AlgebricksBuiltinFunctions.ComparisonKind;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator.JoinKind;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractLogicalOperator;
@@ -44,6 +55,7 @@ import org.apache.hyracks.algebricks.runtime.base.IScalarEvaluatorFactory;
 import org.apache.hyracks.api.comm.IFrameTupleAccessor;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.IOperatorDescriptor;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import org.apache.hyracks.api.dataflow.value.INullWriterFactory;
 import org.apache.hyracks.api.dataflow.value.ITuplePairComparator;
 import org.apache.hyracks.api.dataflow.value.ITuplePairComparatorFactory;
@@ -54,6 +66,8 @@ import org.apache.hyracks.data.std.api.IPointable;
 import org.apache.hyracks.data.std.primitive.VoidPointable;
 import org.apache.hyracks.dataflow.common.data.accessors.FrameTupleReference;
 import org.apache.hyracks.dataflow.common.data.accessors.IFrameTupleReference;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndex.Condition;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndexFactory;
 import org.apache.hyracks.dataflow.std.join.NestedLoopJoinOperatorDescriptor;
 
 /**
@@ -132,13 +146,15 @@ public class NLJoinPOperator extends AbstractJoinPOperator {
                 context.getTypeEnvironment(op), conditionInputSchemas, context);
         ITuplePairComparatorFactory comparatorFactory = new TuplePairEvaluatorFactory(cond,
                 context.getBinaryBooleanInspectorFactory());
+        NestedLoopJoinBlockIndexFactory blockIndexFactory = createBlockIndexFactory(join.getCondition().getValue(),
+                inputSchemas, context.getTypeEnvironment(op), context);
         IOperatorDescriptorRegistry spec = builder.getJobSpec();
         IOperatorDescriptor opDesc = null;
 
         switch (kind) {
             case INNER: {
-                opDesc = new NestedLoopJoinOperatorDescriptor(spec, comparatorFactory, recDescriptor, memSize, false,
-                        null);
+                opDesc = new NestedLoopJoinOperatorDescriptor(spec, comparatorFactory, recDescriptor, memSize, null,
+                        false, null, blockIndexFactory);
                 break;
             }
             case LEFT_OUTER: {
@@ -146,8 +162,8 @@ public class NLJoinPOperator extends AbstractJoinPOperator {
                 for (int j = 0; j < nullWriterFactories.length; j++) {
                     nullWriterFactories[j] = context.getNullWriterFactory();
                 }
-                opDesc = new NestedLoopJoinOperatorDescriptor(spec, comparatorFactory, recDescriptor, memSize, true,
-                        nullWriterFactories);
+                opDesc = new NestedLoopJoinOperatorDescriptor(spec, comparatorFactory, recDescriptor, memSize, null,
+                        true, nullWriterFactories, blockIndexFactory);
                 break;
             }
             default: {
@@ -162,6 +178,83 @@ public class NLJoinPOperator extends AbstractJoinPOperator {
         builder.contributeGraphEdge(src2, 0, op, 1);
     }
 
+    /**
+     * Looks for a comparison between a variable of each input among the conjuncts of the condition, an equality
+     * first, to index the blocks of the left input on.
+     *
+     * @return the factory of the block index, or null if the condition has no such comparison
+     */
+    private static NestedLoopJoinBlockIndexFactory createBlockIndexFactory(ILogicalExpression condition,
+            IOperatorSchema[] inputSchemas, IVariableTypeEnvironment env, JobGenContext context)
+            throws AlgebricksException {
+        List<ILogicalExpression> conjuncts = new ArrayList<ILogicalExpression>();
+        if (condition.getExpressionTag() == LogicalExpressionTag.FUNCTION_CALL
+                && ((AbstractFunctionCallExpression) condition).getFunctionIdentifier().equals(
+                        AlgebricksBuiltinFunctions.AND)) {
+            for (Mutable<ILogicalExpression> arg : ((AbstractFunctionCallExpression) condition).getArguments()) {
+                conjuncts.add(arg.getValue());
+            }
+        } else {
+            conjuncts.add(condition);
+        }
+        NestedLoopJoinBlockIndexFactory blockIndexFactory = null;
+        for (ILogicalExpression conjunct : conjuncts) {
+            if (conjunct.getExpressionTag() != LogicalExpressionTag.FUNCTION_CALL) {
+                continue;
+            }
+            AbstractFunctionCallExpression fexp = (AbstractFunctionCallExpression) conjunct;
+            ComparisonKind ck = AlgebricksBuiltinFunctions.getComparisonType(fexp.getFunctionIdentifier());
+            if (ck == null || ck == ComparisonKind.NEQ) {
+                continue;
+            }
+            ILogicalExpression arg0 = fexp.getArguments().get(0).getValue();
+            ILogicalExpression arg1 = fexp.getArguments().get(1).getValue();
+            if (arg0.getExpressionTag() != LogicalExpressionTag.VARIABLE
+                    || arg1.getExpressionTag() != LogicalExpressionTag.VARIABLE) {
+                continue;
+            }
+            LogicalVariable var0 = ((VariableReferenceExpression) arg0).getVariableReference();
+            LogicalVariable var1 = ((VariableReferenceExpression) arg1).getVariableReference();
+            boolean reversed;
+            if (inputSchemas[0].findVariable(var0) >= 0 && inputSchemas[1].findVariable(var1) >= 0) {
+                reversed = false;
+            } else if (inputSchemas[0].findVariable(var1) >= 0 && inputSchemas[1].findVariable(var0) >= 0) {
+                reversed = true;
+            } else {
+                continue;
+            }
+            LogicalVariable outerVar = reversed ? var1 : var0;
+            LogicalVariable innerVar = reversed ? var0 : var1;
+            Object type = env.getVarType(outerVar);
+            if (type == null || !type.equals(env.getVarType(innerVar))) {
+                continue;
+            }
+            IBinaryComparatorFactory comparatorFactory = context.getBinaryComparatorFactoryProvider()
+                    .getBinaryComparatorFactory(type, true);
+            blockIndexFactory = new NestedLoopJoinBlockIndexFactory(inputSchemas[0].findVariable(outerVar),
+                    inputSchemas[1].findVariable(innerVar), comparatorFactory, toBlockIndexCondition(ck, reversed));
+            if (ck == ComparisonKind.EQ) {
+                break;
+            }
+        }
+        return blockIndexFactory;
+    }
+
+    private static Condition toBlockIndexCondition(ComparisonKind ck, boolean reversed) {
+        switch (ck) {
+            case LT:
+                return reversed ? Condition.GT : Condition.LT;
+            case LE:
+                return reversed ? Condition.GE : Condition.LE;
+            case GT:
+                return reversed ? Condition.LT : Condition.GT;
+            case GE:
+                return reversed ? Condition.LE : Condition.GE;
+            default:
+                return Condition.EQ;
+        }
+    }
+
     public static class TuplePairEvaluatorFactory implements ITuplePairComparatorFactory {
 
         private static final long serialVersionUID = 1L;
@@ -33,6 +33,7 @@ import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
+import org.apache.hyracks.dataflow.common.data.normalizers.MultiFieldNormalizedKeyComputerFactory;
 import org.apache.hyracks.dataflow.std.sort.ExternalSortOperatorDescriptor;
 
 /**
@@ -69,7 +70,7 @@ public class StableSortPOperator extends AbstractStableSortPOperator {
         IBinaryComparatorFactory[] comps = new IBinaryComparatorFactory[n];
 
         INormalizedKeyComputerFactoryProvider nkcfProvider = context.getNormalizedKeyComputerFactoryProvider();
-        INormalizedKeyComputerFactory nkcf = null;
+        INormalizedKeyComputerFactory[] nkcfs = new INormalizedKeyComputerFactory[n];
 
         IVariableTypeEnvironment env = context.getTypeEnvironment(op);
         int i = 0;
@@ -78,14 +79,16 @@ public class StableSortPOperator extends AbstractStableSortPOperator {
             sortFields[i] = opSchema.findVariable(var);
             Object type = env.getVarType(var);
             OrderKind order = oc.getOrder();
-            if (i == 0 && nkcfProvider != null && type != null) {
-                nkcf = nkcfProvider.getNormalizedKeyComputerFactory(type, order == OrderKind.ASC);
+            if (nkcfProvider != null && type != null) {
+                nkcfs[i] = nkcfProvider.getNormalizedKeyComputerFactory(type, order == OrderKind.ASC);
             }
             IBinaryComparatorFactoryProvider bcfp = context.getBinaryComparatorFactoryProvider();
             comps[i] = bcfp.getBinaryComparatorFactory(type, oc.getOrder() == OrderKind.ASC);
             i++;
         }
 
+        INormalizedKeyComputerFactory nkcf = n > 1 && nkcfs[0] != null && nkcfs[1] != null
+                ? new MultiFieldNormalizedKeyComputerFactory(nkcfs) : nkcfs[0];
         ExternalSortOperatorDescriptor sortOpDesc = new ExternalSortOperatorDescriptor(spec, maxNumberOfFrames,
                 sortFields, nkcf, comps, recDescriptor);
         contributeOpDesc(builder, (AbstractLogicalOperator) op, sortOpDesc);
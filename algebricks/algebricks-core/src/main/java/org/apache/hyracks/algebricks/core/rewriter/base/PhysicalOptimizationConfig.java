@@ -24,8 +24,12 @@ public class PhysicalOptimizationConfig {
     private static final String MAX_FRAMES_EXTERNAL_GROUP_BY = "MAX_FRAMES_EXTERNAL_GROUP_BY";
     private static final String MAX_FRAMES_LEFT_INPUT_HYBRID_HASH = "MAX_FRAMES_LEFT_INPUT_HYBRID_HASH";
     private static final String MAX_FRAMES_HYBRID_HASH = "MAX_FRAMES_HYBRID_HASH";
+    private static final String MAX_FRAMES_SORT_MERGE_JOIN = "MAX_FRAMES_SORT_MERGE_JOIN";
+    private static final String MAX_FRAMES_BAND_JOIN = "MAX_FRAMES_BAND_JOIN";
     private static final String FUDGE_FACTOR = "FUDGE_FACTOR";
     private static final String MAX_RECORDS_PER_FRAME = "MAX_RECORDS_PER_FRAME";
+    private static final String MIN_REDUCTION_RATIO_LOCAL_GROUP_BY = "MIN_REDUCTION_RATIO_LOCAL_GROUP_BY";
+    private static final String HASH_SPILLING_EXTERNAL_GROUP_BY = "HASH_SPILLING_EXTERNAL_GROUP_BY";
     
     private static final String DEFAULT_HASH_GROUP_TABLE_SIZE = "DEFAULT_HASH_GROUP_TABLE_SIZE";
     private static final String DEFAULT_EXTERNAL_GROUP_TABLE_SIZE = "DEFAULT_EXTERNAL_GROUP_TABLE_SIZE";
@@ -87,6 +91,24 @@ public class PhysicalOptimizationConfig {
         setInt(MAX_FRAMES_HYBRID_HASH, frameLimit);
     }
 
+    public int getMaxFramesSortMergeJoin() {
+        int frameSize = getFrameSize();
+        return getInt(MAX_FRAMES_SORT_MERGE_JOIN, (int) (4L * MB / frameSize));
+    }
+
+    public void setMaxFramesSortMergeJoin(int frameLimit) {
+        setInt(MAX_FRAMES_SORT_MERGE_JOIN, frameLimit);
+    }
+
+    public int getMaxFramesBandJoin() {
+        int frameSize = getFrameSize();
+        return getInt(MAX_FRAMES_BAND_JOIN, (int) (8L * MB / frameSize));
+    }
+
+    public void setMaxFramesBandJoin(int frameLimit) {
+        setInt(MAX_FRAMES_BAND_JOIN, frameLimit);
+    }
+
     public int getMaxFramesExternalGroupBy() {
         int frameSize = getFrameSize();
         return getInt(MAX_FRAMES_EXTERNAL_GROUP_BY, (int) (((long) 256 * MB) / frameSize));
@@ -96,6 +118,30 @@ public class PhysicalOptimizationConfig {
         setInt(MAX_FRAMES_EXTERNAL_GROUP_BY, frameLimit);
     }
     
+    /**
+     * A local external group-by passes its input through while it removes less than this fraction of the tuples, 0
+     * to always aggregate.
+     */
+    public double getMinReductionRatioLocalGroupBy() {
+        return getDouble(MIN_REDUCTION_RATIO_LOCAL_GROUP_BY, 0.2);
+    }
+
+    public void setMinReductionRatioLocalGroupBy(double ratio) {
+        setDouble(MIN_REDUCTION_RATIO_LOCAL_GROUP_BY, ratio);
+    }
+
+    /**
+     * An external group-by spills hash partitions and aggregates them again, instead of spilling sorted runs and
+     * merging them.
+     */
+    public boolean getHashSpillingExternalGroupBy() {
+        return getBoolean(HASH_SPILLING_EXTERNAL_GROUP_BY, false);
+    }
+
+    public void setHashSpillingExternalGroupBy(boolean hashSpilling) {
+        setBoolean(HASH_SPILLING_EXTERNAL_GROUP_BY, hashSpilling);
+    }
+
     public int getMaxFramesExternalSort() {
         int frameSize = getFrameSize();
         return getInt(MAX_FRAMES_EXTERNAL_SORT, (int) (((long) 32 * MB) / frameSize));
@@ -141,6 +187,18 @@ public class PhysicalOptimizationConfig {
             return Integer.parseInt(value);
     }
     
+    private void setBoolean(String property, boolean value) {
+        properties.setProperty(property, Boolean.toString(value));
+    }
+
+    private boolean getBoolean(String property, boolean defaultValue) {
+        String value = properties.getProperty(property);
+        if (value == null)
+            return defaultValue;
+        else
+            return Boolean.parseBoolean(value);
+    }
+
     private void setDouble(String property, double value) {
         properties.setProperty(property, Double.toString(value));
     }
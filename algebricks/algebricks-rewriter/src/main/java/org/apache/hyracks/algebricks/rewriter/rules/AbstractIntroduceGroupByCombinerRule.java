@@ -83,6 +83,7 @@ public abstract class AbstractIntroduceGroupByCombinerRule extends AbstractIntro
             }
         }
         newGbyOp.setExecutionMode(ExecutionMode.LOCAL);
+        newGbyOp.getAnnotations().put(OperatorAnnotations.GROUP_BY_COMBINER, Boolean.TRUE);
         Object v = gbyOp.getAnnotations().get(OperatorAnnotations.USE_HASH_GROUP_BY);
         newGbyOp.getAnnotations().put(OperatorAnnotations.USE_HASH_GROUP_BY, v);
 
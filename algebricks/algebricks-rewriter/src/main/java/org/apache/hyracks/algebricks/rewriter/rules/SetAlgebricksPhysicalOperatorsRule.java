@@ -45,6 +45,7 @@ import org.apache.hyracks.algebricks.core.algebra.operators.logical.IndexInsertD
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.InnerJoinOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.InsertDeleteOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.LeftOuterJoinOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.LimitOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator.IOrder;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.TokenizeOperator;
@@ -160,7 +161,9 @@ public class SetAlgebricksPhysicalOperatorsRule implements IAlgebraicRewriteRule
                                     ExternalGroupByPOperator externalGby = new ExternalGroupByPOperator(
                                             gby.getGroupByList(),
                                             physicalOptimizationConfig.getMaxFramesExternalGroupBy(),
-                                            physicalOptimizationConfig.getExternalGroupByTableSize());
+                                            physicalOptimizationConfig.getExternalGroupByTableSize(),
+                                            physicalOptimizationConfig.getMinReductionRatioLocalGroupBy(),
+                                            physicalOptimizationConfig.getHashSpillingExternalGroupBy());
                                     op.setPhysicalOperator(externalGby);
                                     break;
                                 }
@@ -194,6 +197,7 @@ public class SetAlgebricksPhysicalOperatorsRule implements IAlgebraicRewriteRule
                 }
                 case LIMIT: {
                     op.setPhysicalOperator(new StreamLimitPOperator());
+                    annotateTopKGroupBy((LimitOperator) op);
                     break;
                 }
                 case NESTEDTUPLESOURCE: {
@@ -353,6 +357,44 @@ public class SetAlgebricksPhysicalOperatorsRule implements IAlgebraicRewriteRule
         }
     }
 
+    /**
+     * Lets a group-by below an order and a limit output only the groups that can be among the limited ones, although
+     * it still aggregates all of them. The order and the limit stay, since every partition keeps its own first groups.
+     */
+    private static void annotateTopKGroupBy(LimitOperator limit) {
+        ILogicalOperator op1 = limit.getInputs().get(0).getValue();
+        if (op1.getOperatorTag() != LogicalOperatorTag.ORDER) {
+            return;
+        }
+        OrderOperator order = (OrderOperator) op1;
+        ILogicalOperator op2 = order.getInputs().get(0).getValue();
+        if (op2.getOperatorTag() != LogicalOperatorTag.GROUP) {
+            return;
+        }
+        GroupByOperator gby = (GroupByOperator) op2;
+        if (gby.getAnnotations().get(OperatorAnnotations.USE_HASH_GROUP_BY) != Boolean.TRUE
+                && gby.getAnnotations().get(OperatorAnnotations.USE_EXTERNAL_GROUP_BY) != Boolean.TRUE) {
+            return;
+        }
+        if (limit.getMaxObjects().getValue().getExpressionTag() != LogicalExpressionTag.CONSTANT) {
+            return;
+        }
+        ILogicalExpression offset = limit.getOffset().getValue();
+        if (offset != null && offset.getExpressionTag() != LogicalExpressionTag.CONSTANT) {
+            return;
+        }
+        for (Pair<IOrder, Mutable<ILogicalExpression>> p : order.getOrderExpressions()) {
+            if (p.first.getKind() != IOrder.OrderKind.ASC && p.first.getKind() != IOrder.OrderKind.DESC) {
+                return;
+            }
+            if (p.second.getValue().getExpressionTag() != LogicalExpressionTag.VARIABLE) {
+                return;
+            }
+        }
+        gby.getAnnotations().put(OperatorAnnotations.TOP_K_GROUP_BY,
+                new Pair<LimitOperator, OrderOperator>(limit, order));
+    }
+
     private static void getKeys(List<Mutable<ILogicalExpression>> keyExpressions, List<LogicalVariable> keys) {
         for (Mutable<ILogicalExpression> kExpr : keyExpressions) {
             ILogicalExpression e = kExpr.getValue();
@@ -22,6 +22,7 @@ import java.util.List;
 import org.apache.commons.lang3.mutable.Mutable;
 
 import org.apache.hyracks.algebricks.common.exceptions.AlgebricksException;
+import org.apache.hyracks.algebricks.common.utils.Pair;
 import org.apache.hyracks.algebricks.core.algebra.base.ILogicalExpression;
 import org.apache.hyracks.algebricks.core.algebra.base.ILogicalOperator;
 import org.apache.hyracks.algebricks.core.algebra.base.IOptimizationContext;
@@ -31,17 +32,29 @@ import org.apache.hyracks.algebricks.core.algebra.expressions.AbstractFunctionCa
 import org.apache.hyracks.algebricks.core.algebra.expressions.BroadcastExpressionAnnotation;
 import org.apache.hyracks.algebricks.core.algebra.expressions.BroadcastExpressionAnnotation.BroadcastSide;
 import org.apache.hyracks.algebricks.core.algebra.expressions.IExpressionAnnotation;
+import org.apache.hyracks.algebricks.core.algebra.expressions.IVariableTypeEnvironment;
 import org.apache.hyracks.algebricks.core.algebra.expressions.VariableReferenceExpression;
 import org.apache.hyracks.algebricks.core.algebra.functions.AlgebricksBuiltinFunctions;
 import org.apache.hyracks.algebricks.core.algebra.functions.AlgebricksBuiltinFunctions.ComparisonKind;
 import org.apache.hyracks.algebricks.core.algebra.functions.FunctionIdentifier;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractBinaryJoinOperator.JoinKind;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.AbstractLogicalOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator.IOrder;
+import org.apache.hyracks.algebricks.core.algebra.operators.logical.OrderOperator.IOrder.OrderKind;
 import org.apache.hyracks.algebricks.core.algebra.operators.logical.visitors.LogicalPropertiesVisitor;
 import org.apache.hyracks.algebricks.core.algebra.operators.physical.AbstractJoinPOperator.JoinPartitioningType;
+import org.apache.hyracks.algebricks.core.algebra.operators.physical.BandJoinPOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.physical.HybridHashJoinPOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.physical.InMemoryHashJoinPOperator;
 import org.apache.hyracks.algebricks.core.algebra.operators.physical.NLJoinPOperator;
+import org.apache.hyracks.algebricks.core.algebra.operators.physical.SortMergeJoinPOperator;
+import org.apache.hyracks.algebricks.core.algebra.properties.ILocalStructuralProperty;
+import org.apache.hyracks.algebricks.core.algebra.properties.ILocalStructuralProperty.PropertyType;
 import org.apache.hyracks.algebricks.core.algebra.properties.ILogicalPropertiesVector;
+import org.apache.hyracks.algebricks.core.algebra.properties.LocalOrderProperty;
+import org.apache.hyracks.algebricks.core.algebra.properties.OrderColumn;
 import org.apache.hyracks.algebricks.core.config.AlgebricksConfig;
 
 public class JoinUtils {
@@ -55,7 +68,9 @@ public class JoinUtils {
         if (isHashJoinCondition(op.getCondition().getValue(), varsLeft, varsRight, sideLeft, sideRight)) {
             BroadcastSide side = getBroadcastJoinSide(op.getCondition().getValue(), varsLeft, varsRight);
             if (side == null) {
-                setHashJoinOp(op, JoinPartitioningType.PAIRWISE, sideLeft, sideRight, context);
+                if (!setSortMergeJoinOpIfInputsAreSorted(op, sideLeft, sideRight, context)) {
+                    setHashJoinOp(op, JoinPartitioningType.PAIRWISE, sideLeft, sideRight, context);
+                }
             } else {
                 switch (side) {
                     case RIGHT:
@@ -73,7 +88,7 @@ public class JoinUtils {
                         setHashJoinOp(op, JoinPartitioningType.PAIRWISE, sideLeft, sideRight, context);
                 }
             }
-        } else {
+        } else if (!setBandJoinOpIfBandCondition(op, varsLeft, varsRight, context)) {
             setNLJoinOp(op, context);
         }
     }
@@ -100,6 +115,171 @@ public class JoinUtils {
         // 1024 * 512));
     }
 
+    /**
+     * Picks a merge join if both inputs are already sorted in ascending order of the join keys, e.g. by an order-by or
+     * by a B-tree scan, in which case neither input needs to be hashed. The key pairs are reordered to follow the order
+     * of the inputs.
+     */
+    private static boolean setSortMergeJoinOpIfInputsAreSorted(AbstractBinaryJoinOperator op,
+            List<LogicalVariable> sideLeft, List<LogicalVariable> sideRight, IOptimizationContext context) {
+        List<OrderColumn> orderLeft = getOrderColumns((AbstractLogicalOperator) op.getInputs().get(0).getValue());
+        List<OrderColumn> orderRight = getOrderColumns((AbstractLogicalOperator) op.getInputs().get(1).getValue());
+        if (orderLeft == null || orderRight == null || orderLeft.size() < sideLeft.size()
+                || orderRight.size() < sideRight.size()) {
+            return false;
+        }
+        List<LogicalVariable> keysLeft = new ArrayList<LogicalVariable>();
+        List<LogicalVariable> keysRight = new ArrayList<LogicalVariable>();
+        for (int i = 0; i < sideLeft.size(); i++) {
+            OrderColumn ocLeft = orderLeft.get(i);
+            OrderColumn ocRight = orderRight.get(i);
+            int j = sideLeft.indexOf(ocLeft.getColumn());
+            if (j < 0 || ocLeft.getOrder() != OrderKind.ASC || ocRight.getOrder() != OrderKind.ASC
+                    || !sideRight.get(j).equals(ocRight.getColumn())) {
+                return false;
+            }
+            keysLeft.add(ocLeft.getColumn());
+            keysRight.add(ocRight.getColumn());
+        }
+        op.setPhysicalOperator(new SortMergeJoinPOperator(op.getJoinKind(), JoinPartitioningType.PAIRWISE, keysLeft,
+                keysRight, context.getPhysicalOptimizationConfig().getMaxFramesSortMergeJoin()));
+        return true;
+    }
+
+    /**
+     * Picks a band join if the condition is {@code low <= point AND point <= high}, with the point coming from one
+     * input and both ends of the interval from the other, all of the same type. The inputs of an inner join are
+     * swapped if the point comes from the right one, since the band join streams the points.
+     */
+    private static boolean setBandJoinOpIfBandCondition(AbstractBinaryJoinOperator op, List<LogicalVariable> varsLeft,
+            List<LogicalVariable> varsRight, IOptimizationContext context) throws AlgebricksException {
+        ILogicalExpression e = op.getCondition().getValue();
+        if (e.getExpressionTag() != LogicalExpressionTag.FUNCTION_CALL) {
+            return false;
+        }
+        AbstractFunctionCallExpression fexp = (AbstractFunctionCallExpression) e;
+        if (!fexp.getFunctionIdentifier().equals(AlgebricksBuiltinFunctions.AND) || fexp.getArguments().size() != 2) {
+            return false;
+        }
+        LogicalVariable[] bounds0 = getLessOrEqualOperands(fexp.getArguments().get(0).getValue());
+        LogicalVariable[] bounds1 = getLessOrEqualOperands(fexp.getArguments().get(1).getValue());
+        if (bounds0 == null || bounds1 == null) {
+            return false;
+        }
+        LogicalVariable low;
+        LogicalVariable point;
+        LogicalVariable high;
+        if (bounds0[1].equals(bounds1[0])) {
+            low = bounds0[0];
+            point = bounds0[1];
+            high = bounds1[1];
+        } else if (bounds1[1].equals(bounds0[0])) {
+            low = bounds1[0];
+            point = bounds1[1];
+            high = bounds0[1];
+        } else {
+            return false;
+        }
+        boolean pointOnLeft;
+        if (varsLeft.contains(point) && varsRight.contains(low) && varsRight.contains(high)) {
+            pointOnLeft = true;
+        } else if (varsRight.contains(point) && varsLeft.contains(low) && varsLeft.contains(high)) {
+            pointOnLeft = false;
+        } else {
+            return false;
+        }
+        if (!pointOnLeft && op.getJoinKind() != JoinKind.INNER) {
+            return false;
+        }
+        Mutable<ILogicalOperator> opRef0 = op.getInputs().get(0);
+        Mutable<ILogicalOperator> opRef1 = op.getInputs().get(1);
+        IVariableTypeEnvironment pointEnv = context.getOutputTypeEnvironment(pointOnLeft ? opRef0.getValue() : opRef1
+                .getValue());
+        IVariableTypeEnvironment intervalEnv = context.getOutputTypeEnvironment(pointOnLeft ? opRef1.getValue()
+                : opRef0.getValue());
+        if (pointEnv == null || intervalEnv == null) {
+            return false;
+        }
+        Object pointType = pointEnv.getVarType(point);
+        if (pointType == null || !pointType.equals(intervalEnv.getVarType(low))
+                || !pointType.equals(intervalEnv.getVarType(high))) {
+            return false;
+        }
+        if (!pointOnLeft) {
+            ILogicalOperator tmp = opRef0.getValue();
+            opRef0.setValue(opRef1.getValue());
+            opRef1.setValue(tmp);
+        }
+        op.setPhysicalOperator(new BandJoinPOperator(op.getJoinKind(), point, low, high, context
+                .getPhysicalOptimizationConfig().getMaxFramesBandJoin()));
+        return true;
+    }
+
+    /**
+     * @return the variables compared by a {@code <=} or a {@code >=} comparison, the smaller one first, or null if the
+     *         expression is not such a comparison of two variables
+     */
+    private static LogicalVariable[] getLessOrEqualOperands(ILogicalExpression e) {
+        if (e.getExpressionTag() != LogicalExpressionTag.FUNCTION_CALL) {
+            return null;
+        }
+        AbstractFunctionCallExpression fexp = (AbstractFunctionCallExpression) e;
+        ComparisonKind ck = AlgebricksBuiltinFunctions.getComparisonType(fexp.getFunctionIdentifier());
+        if (ck != ComparisonKind.LE && ck != ComparisonKind.GE) {
+            return null;
+        }
+        ILogicalExpression arg0 = fexp.getArguments().get(0).getValue();
+        ILogicalExpression arg1 = fexp.getArguments().get(1).getValue();
+        if (arg0.getExpressionTag() != LogicalExpressionTag.VARIABLE
+                || arg1.getExpressionTag() != LogicalExpressionTag.VARIABLE) {
+            return null;
+        }
+        LogicalVariable var0 = ((VariableReferenceExpression) arg0).getVariableReference();
+        LogicalVariable var1 = ((VariableReferenceExpression) arg1).getVariableReference();
+        return ck == ComparisonKind.LE ? new LogicalVariable[] { var0, var1 } : new LogicalVariable[] { var1, var0 };
+    }
+
+    /**
+     * @return the columns the output of the operator is sorted on, as delivered by its physical operator if it has one
+     *         already, or as found below the operators that keep the order of their input otherwise; null if the
+     *         order is unknown
+     */
+    private static List<OrderColumn> getOrderColumns(AbstractLogicalOperator op) {
+        if (op.getPhysicalOperator() != null && op.getDeliveredPhysicalProperties() != null) {
+            List<ILocalStructuralProperty> localProps = op.getDeliveredPhysicalProperties().getLocalProperties();
+            if (localProps != null) {
+                for (ILocalStructuralProperty lsp : localProps) {
+                    if (lsp.getPropertyType() == PropertyType.LOCAL_ORDER_PROPERTY) {
+                        return ((LocalOrderProperty) lsp).getOrderColumns();
+                    }
+                }
+            }
+            return null;
+        }
+        switch (op.getOperatorTag()) {
+            case ORDER: {
+                List<OrderColumn> orderColumns = new ArrayList<OrderColumn>();
+                for (Pair<IOrder, Mutable<ILogicalExpression>> p : ((OrderOperator) op).getOrderExpressions()) {
+                    ILogicalExpression e = p.second.getValue();
+                    if (e.getExpressionTag() != LogicalExpressionTag.VARIABLE) {
+                        break;
+                    }
+                    orderColumns.add(new OrderColumn(((VariableReferenceExpression) e).getVariableReference(), p.first
+                            .getKind()));
+                }
+                return orderColumns;
+            }
+            case ASSIGN:
+            case PROJECT:
+            case SELECT: {
+                return getOrderColumns((AbstractLogicalOperator) op.getInputs().get(0).getValue());
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+
     private static void hybridToInMemHashJoin(AbstractBinaryJoinOperator op, IOptimizationContext context)
             throws AlgebricksException {
         ILogicalOperator opBuild = op.getInputs().get(1).getValue();
@@ -38,7 +38,9 @@ public abstract class AbstractOneInputOneOutputOneFieldFramePushRuntime
     }
 
     protected final void initAccessAppendFieldRef(IHyracksTaskContext ctx) throws HyracksDataException {
-        frame = new VSizeFrame(ctx);
+        if (frame == null) {
+            frame = new VSizeFrame(ctx);
+        }
         appender = new FrameFixedFieldTupleAppender(inputRecordDesc.getFieldCount());
         appender.reset(frame, true);
         tAccess = new FrameTupleAccessor(inputRecordDesc);
@@ -35,7 +35,10 @@ public abstract class AbstractOneInputOneOutputOneFramePushRuntime extends Abstr
     protected FrameTupleReference tRef;
 
     protected final void initAccessAppend(IHyracksTaskContext ctx) throws HyracksDataException {
-        frame = new VSizeFrame(ctx);
+        // nested pipelines are opened once per outer tuple, the frame is charged to the task and kept across opens.
+        if (frame == null) {
+            frame = new VSizeFrame(ctx);
+        }
         appender = new FrameTupleAppender(frame);
         tAccess = new FrameTupleAccessor(inputRecordDesc);
     }
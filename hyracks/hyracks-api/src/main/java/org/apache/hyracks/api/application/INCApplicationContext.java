@@ -14,6 +14,8 @@
  */
 package org.apache.hyracks.api.application;
 
+import java.util.concurrent.Executor;
+
 import org.apache.hyracks.api.context.IHyracksRootContext;
 import org.apache.hyracks.api.lifecycle.ILifeCycleComponentManager;
 import org.apache.hyracks.api.resources.memory.IMemoryManager;
@@ -67,6 +69,28 @@ public interface INCApplicationContext extends IApplicationContext {
      */
     public IMemoryManager getMemoryManager();
 
+    /**
+     * Get the executor of the Node Controller. It is shared by all the jobs running on the node, so work submitted
+     * to it must not be cancelled by shutting it down.
+     * 
+     * @return the Node Controller executor
+     */
+    public Executor getExecutor();
+
+    /**
+     * Get the name of the page replacement strategy that buffer caches created by the application should use.
+     * 
+     * @return the configured page replacement strategy name
+     */
+    public String getBufferCachePageReplacementStrategy();
+
+    /**
+     * Tell whether buffer caches created by the application should pin cached pages without taking the bucket lock.
+     * 
+     * @return true if optimistic buffer cache lookups are configured
+     */
+    public boolean isBufferCacheOptimisticLookup();
+
     /**
      * Set the handler for state dumps.
      * 
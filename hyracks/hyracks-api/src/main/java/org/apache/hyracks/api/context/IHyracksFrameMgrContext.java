@@ -36,4 +36,12 @@ public interface IHyracksFrameMgrContext {
      * @param bytes
      */
     void deallocateFrames(int bytes);
+
+    /**
+     * Returns a frame that the caller does not reference any more, so that it can be handed out again by a later
+     * allocation. Also returns the frame's memory like {@link #deallocateFrames(int)}.
+     *
+     * @param frame
+     */
+    void deallocateFrame(ByteBuffer frame);
 }
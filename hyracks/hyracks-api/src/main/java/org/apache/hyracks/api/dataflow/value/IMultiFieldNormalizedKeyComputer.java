@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.api.dataflow.value;
+
+/**
+ * A normalized key computer that produces a prefix of several normalized key ints over the leading sort fields: one
+ * int per field, except that the last field of the prefix can take the remaining ints if its computer is an
+ * {@link IMultiWordNormalizedKeyComputer}. Prefixes are compared int by int as unsigned values. The single-field
+ * {@link #normalize(byte[], int, int)} keeps returning the normalized key of the first field.
+ */
+public interface IMultiFieldNormalizedKeyComputer extends INormalizedKeyComputer {
+    /**
+     * @return the number of ints in the normalized key prefix
+     */
+    public int getNormalizedKeyLength();
+
+    /**
+     * @return the number of leading sort fields whose order is fully decided by the prefix. If the prefixes of two
+     *         tuples are equal, comparison has to resume at this field. Each of these fields takes one int.
+     */
+    public int getDecisiveFieldCount();
+
+    /**
+     * @param index
+     *            the position of an int in the prefix, smaller than {@link #getNormalizedKeyLength()}
+     * @return the position in the sort key of the field the int is computed from
+     */
+    public int getKeyField(int index);
+
+    /**
+     * Computes an int of the prefix from the field returned by {@link #getKeyField(int)}.
+     *
+     * @param index
+     *            the position of the int in the prefix, smaller than {@link #getNormalizedKeyLength()}
+     */
+    public int normalize(int index, byte[] bytes, int start, int length);
+}
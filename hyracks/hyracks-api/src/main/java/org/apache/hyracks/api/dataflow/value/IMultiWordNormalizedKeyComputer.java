@@ -0,0 +1,28 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.api.dataflow.value;
+
+/**
+ * A normalized key computer for variable-length values whose normalized key can extend over several ints. Word 0 is
+ * the normalized key returned by {@link #normalize(byte[], int, int)} and every following word continues the value,
+ * so that the words of two values, compared in order as unsigned ints, order them like the binary comparator
+ * wherever they differ.
+ */
+public interface IMultiWordNormalizedKeyComputer extends INormalizedKeyComputer {
+    /**
+     * Computes the given word of the normalized key.
+     */
+    public int normalize(int word, byte[] bytes, int start, int length);
+}
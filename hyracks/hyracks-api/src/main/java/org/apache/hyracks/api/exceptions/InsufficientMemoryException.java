@@ -0,0 +1,27 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.api.exceptions;
+
+/**
+ * Thrown when a frame cannot be allocated because the memory budget of the task, its job or the node is exhausted.
+ * Operators that can spill catch it and continue with the memory they already hold.
+ */
+public class InsufficientMemoryException extends HyracksDataException {
+    private static final long serialVersionUID = 1L;
+
+    public InsufficientMemoryException(String message) {
+        super(message);
+    }
+}
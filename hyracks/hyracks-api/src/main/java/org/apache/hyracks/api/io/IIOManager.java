@@ -18,6 +18,7 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.Executor;
 
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 
 public interface IIOManager {
@@ -45,6 +46,27 @@ public interface IIOManager {
 
     public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data);
 
+    /**
+     * Creates a reader that reads the given range of the file sequentially in chunks of chunkSize bytes and keeps up
+     * to {@link #getReadAheadDepth()} chunks ahead of the consumer in flight. The chunks are frames of the given frame
+     * manager and are returned to it when the reader is closed.
+     * 
+     * @param frameManager
+     *            the frame manager the read-ahead chunks are charged to
+     * @param fHandle
+     *            the file to read
+     * @param offset
+     *            the start of the range
+     * @param length
+     *            the length of the range; reading stops earlier at the end of the file
+     * @param chunkSize
+     *            the size of every read issued to the device, a multiple of the frame size of the frame manager
+     */
+    public ISequentialFileReader createSequentialReader(IHyracksFrameMgrContext frameManager, IFileHandle fHandle,
+            long offset, long length, int chunkSize) throws HyracksDataException;
+
+    public int getReadAheadDepth();
+
     public void close(IFileHandle fHandle) throws HyracksDataException;
 
     public void sync(IFileHandle fileHandle, boolean metadata) throws HyracksDataException;
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.api.io;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * Reads a range of a file front to back. Implementations keep reads for the data after the current position in
+ * flight, so that the consumer does not wait for the disk on every call.
+ */
+public interface ISequentialFileReader {
+    /**
+     * Fills the remaining space of the buffer with the next bytes of the range.
+     * 
+     * @param data
+     *            the buffer to fill
+     * @return the number of bytes read, which is smaller than the remaining space of the buffer only at the end of
+     *         the range, or -1 if the end of the range has already been reached
+     * @throws HyracksDataException
+     */
+    public int read(ByteBuffer data) throws HyracksDataException;
+
+    /**
+     * Waits for the outstanding reads and releases the read-ahead buffers. Does not close the file handle.
+     * 
+     * @throws HyracksDataException
+     */
+    public void close() throws HyracksDataException;
+}
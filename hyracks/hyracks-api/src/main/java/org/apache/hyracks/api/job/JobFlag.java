@@ -15,5 +15,9 @@
 package org.apache.hyracks.api.job;
 
 public enum JobFlag {
-    PROFILE_RUNTIME
+    PROFILE_RUNTIME,
+    /**
+     * Compresses the frames sent over the network and written to materialized partitions.
+     */
+    COMPRESS_FRAMES
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.comm.channels;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * Compresses frames with a fast LZ77 block codec in the spirit of LZ4 (literal runs and back references of at least 4
+ * bytes within the last 64KB, found through a hash table of the last positions of 4-byte sequences), written in plain
+ * Java.
+ * <p>
+ * Every chunk of at most one frame is turned into a record made of a header, the stored length and the raw length as
+ * two ints, and the stored bytes. The stored bytes are the raw ones when compression does not make them smaller. A
+ * sender that needs the records to stay aligned on buffer boundaries pads them to a multiple of
+ * {@link #getBlockSize(int)}.
+ * <p>
+ * An instance keeps the hash table between calls, so it must not be shared between threads.
+ */
+public class FrameCompressor {
+    public static final int HEADER_SIZE = 8;
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MF_LIMIT = 12;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int RUN_MASK = 15;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    private byte[] rawBytes;
+
+    /**
+     * @return the size of the blocks records are padded to, for frames of frameSize bytes
+     */
+    public static int getBlockSize(int frameSize) {
+        return Math.max(HEADER_SIZE, frameSize / 8);
+    }
+
+    /**
+     * @return the length of a record padded to a multiple of blockSize
+     */
+    public static int getPaddedLength(int recordLength, int blockSize) {
+        return (recordLength + blockSize - 1) / blockSize * blockSize;
+    }
+
+    /**
+     * @return the largest record, padded to a multiple of blockSize, of a chunk of rawLength bytes
+     */
+    public static int getMaxRecordLength(int rawLength, int blockSize) {
+        return getPaddedLength(HEADER_SIZE + rawLength, blockSize);
+    }
+
+    /**
+     * @return the length of the record starting at offset, without its padding
+     */
+    public static int getRecordLength(byte[] record, int offset) {
+        return HEADER_SIZE + getInt(record, offset);
+    }
+
+    public static int getRecordLength(ByteBuffer record) {
+        return HEADER_SIZE + record.getInt(record.position());
+    }
+
+    /**
+     * Writes the record of the length bytes of src from offset into record, which must be able to hold
+     * {@link #getMaxRecordLength(int, int)} bytes for a blockSize of 1.
+     *
+     * @return the length of the record, without padding
+     */
+    public int compress(ByteBuffer src, int offset, int length, byte[] record) {
+        byte[] srcBytes;
+        int srcOffset;
+        if (src.hasArray()) {
+            srcBytes = src.array();
+            srcOffset = src.arrayOffset() + offset;
+        } else {
+            if (rawBytes == null || rawBytes.length < length) {
+                rawBytes = new byte[length];
+            }
+            ByteBuffer dup = src.duplicate();
+            dup.clear();
+            dup.position(offset);
+            dup.get(rawBytes, 0, length);
+            srcBytes = rawBytes;
+            srcOffset = 0;
+        }
+        int storedLength = compress(srcBytes, srcOffset, length, record, HEADER_SIZE, HEADER_SIZE + length);
+        if (storedLength < 0) {
+            System.arraycopy(srcBytes, srcOffset, record, HEADER_SIZE, length);
+            storedLength = length;
+        }
+        putInt(record, 0, storedLength);
+        putInt(record, 4, length);
+        return HEADER_SIZE + storedLength;
+    }
+
+    /**
+     * Writes the raw bytes of the record starting at offset into dest, from its position.
+     *
+     * @return the number of raw bytes
+     */
+    public int decompress(byte[] record, int offset, ByteBuffer dest) throws HyracksDataException {
+        int storedLength = getInt(record, offset);
+        int rawLength = getInt(record, offset + 4);
+        if (rawLength > dest.remaining() || storedLength > rawLength || storedLength < 0) {
+            throw new HyracksDataException("Corrupted frame record: stored length " + storedLength
+                    + ", raw length " + rawLength);
+        }
+        int destOffset = dest.arrayOffset() + dest.position();
+        if (storedLength == rawLength) {
+            System.arraycopy(record, offset + HEADER_SIZE, dest.array(), destOffset, rawLength);
+        } else {
+            decompress(record, offset + HEADER_SIZE, storedLength, dest.array(), destOffset, rawLength);
+        }
+        dest.position(dest.position() + rawLength);
+        return rawLength;
+    }
+
+    /**
+     * @return the compressed length, or -1 if it would reach destLimit
+     */
+    private int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLimit) {
+        int srcEnd = srcOffset + srcLength;
+        int matchLimit = srcEnd - LAST_LITERALS;
+        int mfLimit = srcEnd - MF_LIMIT;
+        int anchor = srcOffset;
+        int sp = srcOffset;
+        int dp = destOffset;
+        Arrays.fill(hashTable, -1);
+        while (sp < mfLimit) {
+            int sequence = getInt(src, sp);
+            int h = hash(sequence);
+            int ref = hashTable[h];
+            hashTable[h] = sp;
+            if (ref < 0 || sp - ref > MAX_DISTANCE || getInt(src, ref) != sequence) {
+                ++sp;
+                continue;
+            }
+            while (sp > anchor && ref > srcOffset && src[sp - 1] == src[ref - 1]) {
+                --sp;
+                --ref;
+            }
+            int matchLength = MIN_MATCH;
+            while (sp + matchLength < matchLimit && src[sp + matchLength] == src[ref + matchLength]) {
+                ++matchLength;
+            }
+            int literalLength = sp - anchor;
+            // token, literal run, offset and match run
+            int sequenceLength = 1 + literalLength / 255 + 1 + literalLength + 2 + (matchLength - MIN_MATCH) / 255 + 1;
+            if (dp + sequenceLength >= destLimit) {
+                return -1;
+            }
+            int tokenPos = dp++;
+            dp = writeRunLength(literalLength, dest, dp);
+            System.arraycopy(src, anchor, dest, dp, literalLength);
+            dp += literalLength;
+            dest[dp++] = (byte) (sp - ref);
+            dest[dp++] = (byte) ((sp - ref) >>> 8);
+            dp = writeRunLength(matchLength - MIN_MATCH, dest, dp);
+            dest[tokenPos] = (byte) ((Math.min(literalLength, RUN_MASK) << 4) | Math.min(matchLength - MIN_MATCH,
+                    RUN_MASK));
+            sp += matchLength;
+            anchor = sp;
+        }
+        int literalLength = srcEnd - anchor;
+        if (dp + 1 + literalLength / 255 + 1 + literalLength >= destLimit) {
+            return -1;
+        }
+        int tokenPos = dp++;
+        dp = writeRunLength(literalLength, dest, dp);
+        System.arraycopy(src, anchor, dest, dp, literalLength);
+        dp += literalLength;
+        dest[tokenPos] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        return dp - destOffset;
+    }
+
+    private static void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset,
+            int destLength) throws HyracksDataException {
+        int srcEnd = srcOffset + srcLength;
+        int destEnd = destOffset + destLength;
+        int sp = srcOffset;
+        int dp = destOffset;
+        try {
+            while (true) {
+                int token = src[sp++] & 0xff;
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xff;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (dp + literalLength > destEnd) {
+                    throw new HyracksDataException("Corrupted frame record: too many literals");
+                }
+                System.arraycopy(src, sp, dest, dp, literalLength);
+                sp += literalLength;
+                dp += literalLength;
+                if (sp >= srcEnd) {
+                    break;
+                }
+                int distance = (src[sp] & 0xff) | ((src[sp + 1] & 0xff) << 8);
+                sp += 2;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = dp - distance;
+                if (distance == 0 || ref < destOffset || dp + matchLength > destEnd) {
+                    throw new HyracksDataException("Corrupted frame record: bad back reference");
+                }
+                // the match may overlap the bytes it produces, so it is copied byte by byte
+                for (int i = 0; i < matchLength; ++i) {
+                    dest[dp + i] = dest[ref + i];
+                }
+                dp += matchLength;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new HyracksDataException("Corrupted frame record: truncated");
+        }
+        if (dp != destEnd) {
+            throw new HyracksDataException("Corrupted frame record: " + (dp - destOffset) + " raw bytes instead of "
+                    + destLength);
+        }
+    }
+
+    private static int writeRunLength(int length, byte[] dest, int dp) {
+        if (length >= RUN_MASK) {
+            int rest = length - RUN_MASK;
+            while (rest >= 255) {
+                dest[dp++] = (byte) 255;
+                rest -= 255;
+            }
+            dest[dp++] = (byte) rest;
+        }
+        return dp;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -17,6 +17,10 @@ package org.apache.hyracks.comm.channels;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,6 +29,8 @@ import org.apache.hyracks.api.channels.IInputChannel;
 import org.apache.hyracks.api.channels.IInputChannelMonitor;
 import org.apache.hyracks.api.context.IHyracksCommonContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.profiling.counters.ICounter;
+import org.apache.hyracks.api.job.profiling.counters.ICounterContext;
 import org.apache.hyracks.api.partitions.PartitionId;
 import org.apache.hyracks.net.buffers.IBufferAcceptor;
 import org.apache.hyracks.net.buffers.ICloseableBufferAcceptor;
@@ -33,7 +39,9 @@ import org.apache.hyracks.net.protocols.muxdemux.ChannelControlBlock;
 public class NetworkInputChannel implements IInputChannel {
     private static final Logger LOGGER = Logger.getLogger(NetworkInputChannel.class.getName());
 
-    static final int INITIAL_MESSAGE_SIZE = 20;
+    static final int INITIAL_MESSAGE_SIZE = 24;
+
+    private static final int INITIAL_CREDIT_WINDOW = 2;
 
     private final IChannelConnectionFactory netManager;
 
@@ -51,13 +59,57 @@ public class NetworkInputChannel implements IInputChannel {
 
     private Object attachment;
 
+    private final boolean compressed;
+
+    private final ICounterContext counterContext;
+
+    private FrameCompressor compressor;
+
+    private int frameSize;
+
+    private int blockSize;
+
+    private byte[] record;
+
+    /**
+     * the blocks of the record being received
+     */
+    private List<ByteBuffer> recordBlocks;
+
+    private int recordBlockCount;
+
+    /**
+     * the blocks of the records of the frames given to the consumer, which go back to the network layer when the
+     * consumer recycles the frames, so that a slow consumer still holds back its producer
+     */
+    private Map<ByteBuffer, List<ByteBuffer>> frameBlocks;
+
+    private Queue<ByteBuffer> emptyFrames;
+
+    private ICounter rawBytesCounter;
+
+    private ICounter compressedBytesCounter;
+
     public NetworkInputChannel(IChannelConnectionFactory netManager, SocketAddress remoteAddress,
             PartitionId partitionId, int nBuffers) {
+        this(netManager, remoteAddress, partitionId, nBuffers, false, null);
+    }
+
+    /**
+     * @param compressed
+     *            whether to ask the sender for {@link FrameCompressor} records
+     * @param counterContext
+     *            if not null, counts the raw and the received bytes of a compressed channel for the connector
+     */
+    public NetworkInputChannel(IChannelConnectionFactory netManager, SocketAddress remoteAddress,
+            PartitionId partitionId, int nBuffers, boolean compressed, ICounterContext counterContext) {
         this.netManager = netManager;
         this.remoteAddress = remoteAddress;
         this.partitionId = partitionId;
         fullQueue = new ArrayDeque<ByteBuffer>(nBuffers);
         this.nBuffers = nBuffers;
+        this.compressed = compressed;
+        this.counterContext = counterContext;
     }
 
     @Override
@@ -83,7 +135,19 @@ public class NetworkInputChannel implements IInputChannel {
     @Override
     public void recycleBuffer(ByteBuffer buffer) {
         buffer.clear();
-        ccb.getReadInterface().getEmptyBufferAcceptor().accept(buffer);
+        if (!compressed) {
+            ccb.getReadInterface().getEmptyBufferAcceptor().accept(buffer);
+            return;
+        }
+        List<ByteBuffer> blocks;
+        synchronized (this) {
+            blocks = frameBlocks.remove(buffer);
+            emptyFrames.add(buffer);
+        }
+        for (ByteBuffer block : blocks) {
+            block.clear();
+            ccb.getReadInterface().getEmptyBufferAcceptor().accept(block);
+        }
     }
 
     @Override
@@ -95,12 +159,35 @@ public class NetworkInputChannel implements IInputChannel {
         }
         ccb.getReadInterface().setFullBufferAcceptor(new ReadFullBufferAcceptor());
         ccb.getWriteInterface().setEmptyBufferAcceptor(new WriteEmptyBufferAcceptor());
-        ccb.getReadInterface().setBufferFactory(new ReadBufferFactory(nBuffers, ctx), nBuffers, ctx.getInitialFrameSize());
+        if (compressed) {
+            frameSize = ctx.getInitialFrameSize();
+            blockSize = FrameCompressor.getBlockSize(frameSize);
+            compressor = new FrameCompressor();
+            record = new byte[FrameCompressor.getMaxRecordLength(frameSize, blockSize)];
+            recordBlocks = new ArrayList<ByteBuffer>();
+            frameBlocks = new IdentityHashMap<ByteBuffer, List<ByteBuffer>>();
+            emptyFrames = new ArrayDeque<ByteBuffer>(nBuffers);
+            if (counterContext != null) {
+                String prefix = partitionId.getConnectorDescriptorId() + ".receiver."
+                        + partitionId.getReceiverIndex();
+                rawBytesCounter = counterContext.getCounter(prefix + ".rawBytes", true);
+                compressedBytesCounter = counterContext.getCounter(prefix + ".compressedBytes", true);
+            }
+            // at least the blocks of one record, and no more than the read buffer budget of the connection allows
+            int nRecordBlocks = FrameCompressor.getMaxRecordLength(frameSize, blockSize) / blockSize;
+            ccb.getReadInterface().setBufferFactory(new ReadBufferFactory(Integer.MAX_VALUE, blockSize),
+                    nRecordBlocks, Integer.MAX_VALUE, blockSize);
+        } else {
+            // the window may grow beyond nBuffers, up to the read buffer budget of the connection
+            ccb.getReadInterface().setBufferFactory(new ReadBufferFactory(Integer.MAX_VALUE, ctx),
+                    Math.min(nBuffers, INITIAL_CREDIT_WINDOW), Integer.MAX_VALUE, ctx.getInitialFrameSize());
+        }
         ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_MESSAGE_SIZE);
         writeBuffer.putLong(partitionId.getJobId().getId());
         writeBuffer.putInt(partitionId.getConnectorDescriptorId().getId());
         writeBuffer.putInt(partitionId.getSenderIndex());
         writeBuffer.putInt(partitionId.getReceiverIndex());
+        writeBuffer.putInt(compressed ? 1 : 0);
         writeBuffer.flip();
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Sending partition request: " + partitionId + " on channel: " + ccb);
@@ -117,10 +204,55 @@ public class NetworkInputChannel implements IInputChannel {
     private class ReadFullBufferAcceptor implements ICloseableBufferAcceptor {
         @Override
         public void accept(ByteBuffer buffer) {
+            if (compressed) {
+                acceptBlock(buffer);
+                return;
+            }
             fullQueue.add(buffer);
             monitor.notifyDataAvailability(NetworkInputChannel.this, 1);
         }
 
+        /**
+         * Collects the blocks of a record, and gives the consumer its decompressed frame once they are all there.
+         */
+        private void acceptBlock(ByteBuffer block) {
+            synchronized (NetworkInputChannel.this) {
+                if (recordBlocks.isEmpty()) {
+                    int recordLength = FrameCompressor.getRecordLength(block);
+                    recordBlockCount = FrameCompressor.getPaddedLength(recordLength, blockSize) / blockSize;
+                }
+                recordBlocks.add(block);
+                if (recordBlocks.size() < recordBlockCount) {
+                    return;
+                }
+                int pos = 0;
+                for (ByteBuffer b : recordBlocks) {
+                    System.arraycopy(b.array(), b.arrayOffset(), record, pos, b.limit());
+                    pos += b.limit();
+                }
+                ByteBuffer frame = emptyFrames.poll();
+                if (frame == null) {
+                    frame = ByteBuffer.allocate(frameSize);
+                }
+                try {
+                    compressor.decompress(record, 0, frame);
+                } catch (HyracksDataException e) {
+                    LOGGER.log(Level.WARNING, "Failed to decompress a frame of " + partitionId, e);
+                    monitor.notifyFailure(NetworkInputChannel.this);
+                    return;
+                }
+                if (rawBytesCounter != null) {
+                    rawBytesCounter.update(frame.position());
+                    compressedBytesCounter.update(pos);
+                }
+                frame.flip();
+                frameBlocks.put(frame, recordBlocks);
+                recordBlocks = new ArrayList<ByteBuffer>();
+                fullQueue.add(frame);
+            }
+            monitor.notifyDataAvailability(NetworkInputChannel.this, 1);
+        }
+
         @Override
         public void close() {
             monitor.notifyEndOfStream(NetworkInputChannel.this);
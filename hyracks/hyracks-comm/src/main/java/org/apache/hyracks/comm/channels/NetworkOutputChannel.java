@@ -36,6 +36,10 @@ public class NetworkOutputChannel implements IFrameWriter {
 
     private int allocateCounter = 0;
 
+    private FrameCompressor compressor;
+
+    private byte[] record;
+
     public NetworkOutputChannel(ChannelControlBlock ccb, int nBuffers) {
         this.ccb = ccb;
         this.nBuffers = nBuffers;
@@ -47,35 +51,28 @@ public class NetworkOutputChannel implements IFrameWriter {
         this.frameSize = frameSize;
     }
 
+    /**
+     * Sends every chunk of a frame as a {@link FrameCompressor} record padded to the block size, so that the
+     * receiving {@link NetworkInputChannel}, which reads blocks, always gets whole records.
+     */
+    public void setCompressed(boolean compressed) {
+        compressor = compressed ? new FrameCompressor() : null;
+    }
+
     @Override
     public void open() throws HyracksDataException {
     }
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (compressor != null) {
+            nextCompressedFrame(buffer);
+            return;
+        }
         ByteBuffer destBuffer = null;
         int startPos = 0;
         do {
-            synchronized (this) {
-                while (true) {
-                    if (aborted) {
-                        throw new HyracksDataException("Connection has been aborted");
-                    }
-                    destBuffer = emptyStack.poll();
-                    if (destBuffer == null && allocateCounter < nBuffers) {
-                        destBuffer = ByteBuffer.allocateDirect(frameSize);
-                        allocateCounter++;
-                    }
-                    if (destBuffer != null) {
-                        break;
-                    }
-                    try {
-                        wait();
-                    } catch (InterruptedException e) {
-                        throw new HyracksDataException(e);
-                    }
-                }
-            }
+            destBuffer = getEmptyBuffer();
             buffer.position(startPos);
             startPos = Math.min(startPos + destBuffer.capacity(), buffer.capacity());
             buffer.limit(startPos);
@@ -86,6 +83,51 @@ public class NetworkOutputChannel implements IFrameWriter {
         } while (startPos < buffer.capacity());
     }
 
+    private void nextCompressedFrame(ByteBuffer buffer) throws HyracksDataException {
+        int blockSize = FrameCompressor.getBlockSize(frameSize);
+        if (record == null) {
+            record = new byte[FrameCompressor.getMaxRecordLength(frameSize, blockSize)];
+        }
+        for (int chunkStart = 0; chunkStart < buffer.capacity(); chunkStart += frameSize) {
+            int recordLength = compressor.compress(buffer, chunkStart,
+                    Math.min(frameSize, buffer.capacity() - chunkStart), record);
+            int paddedLength = FrameCompressor.getPaddedLength(recordLength, blockSize);
+            int startPos = 0;
+            while (startPos < paddedLength) {
+                ByteBuffer destBuffer = getEmptyBuffer();
+                int length = Math.min(destBuffer.capacity(), paddedLength - startPos);
+                destBuffer.clear();
+                destBuffer.put(record, startPos, length);
+                destBuffer.flip();
+                startPos += length;
+                ccb.getWriteInterface().getFullBufferAcceptor().accept(destBuffer);
+            }
+        }
+    }
+
+    private ByteBuffer getEmptyBuffer() throws HyracksDataException {
+        synchronized (this) {
+            while (true) {
+                if (aborted) {
+                    throw new HyracksDataException("Connection has been aborted");
+                }
+                ByteBuffer destBuffer = emptyStack.poll();
+                if (destBuffer == null && allocateCounter < nBuffers) {
+                    destBuffer = ByteBuffer.allocateDirect(frameSize);
+                    allocateCounter++;
+                }
+                if (destBuffer != null) {
+                    return destBuffer;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new HyracksDataException(e);
+                }
+            }
+        }
+    }
+
     @Override
     public void fail() throws HyracksDataException {
         ccb.getWriteInterface().getFullBufferAcceptor().error(1);
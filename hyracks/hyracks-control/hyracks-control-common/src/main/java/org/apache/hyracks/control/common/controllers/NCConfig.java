@@ -73,15 +73,41 @@ public class NCConfig implements Serializable {
     @Option(name = "-iodevices", usage = "Comma separated list of IO Device mount points (default: One device in default temp folder)", required = false)
     public String ioDevices = System.getProperty("java.io.tmpdir");
 
+    @Option(name = "-io-read-ahead-depth", usage = "Number of chunks read ahead by sequential file readers (default: 2)")
+    public int ioReadAheadDepth = 2;
+
+    @Option(name = "-io-queue-depth", usage = "Number of asynchronous read batches in flight per IO device (default: 4)")
+    public int ioQueueDepth = 4;
+
     @Option(name = "-net-thread-count", usage = "Number of threads to use for Network I/O (default: 1)")
     public int nNetThreads = 1;
 
     @Option(name = "-net-buffer-count", usage = "Number of network buffers per input/output channel (default:1)", required = false)
     public int nNetBuffers = 1;
 
+    @Option(name = "-net-read-buffer-budget", usage = "Maximum number of bytes of read buffers the input channels of one network connection may grow to together (default: 16777216)", required = false)
+    public long netReadBufferBudget = 16L * 1024 * 1024;
+
     @Option(name = "-max-memory", usage = "Maximum memory usable at this Node Controller in bytes (default: -1 auto)")
     public int maxMemory = -1;
 
+    @Option(name = "-max-job-memory", usage = "Maximum memory usable by a single job at this Node Controller in bytes (default: -1 same as the node)")
+    public long maxJobMemory = -1;
+
+    @Option(name = "-enforce-frame-memory", usage = "Charge every frame allocated by a task to the memory budgets of the task, the job and the node, and fail allocations beyond them (default: true)")
+    public boolean enforceFrameMemory = true;
+
+    @Option(name = "-no-enforce-frame-memory", usage = "Do not charge frames to the memory budgets, frame allocations then only fail when the heap is exhausted")
+    public void setNoEnforceFrameMemory(boolean noEnforceFrameMemory) {
+        enforceFrameMemory = !noEnforceFrameMemory;
+    }
+
+    @Option(name = "-memory-admission-timeout", usage = "Time in milliseconds a frame allocation waits for memory to be returned before it fails (default: 1000)")
+    public long memoryAdmissionTimeout = 1000;
+
+    @Option(name = "-frame-pool-size", usage = "Maximum number of bytes of released frames kept for reuse (default: 67108864)")
+    public long framePoolSize = 64L * 1024 * 1024;
+
     @Option(name = "-result-time-to-live", usage = "Limits the amount of time results for asynchronous jobs should be retained by the system in milliseconds. (default: 24 hours)")
     public long resultTTL = 86400000;
 
@@ -91,6 +117,12 @@ public class NCConfig implements Serializable {
     @Option(name = "-result-manager-memory", usage = "Memory usable for result caching at this Node Controller in bytes (default: -1 auto)")
     public int resultManagerMemory = -1;
 
+    @Option(name = "-buffer-cache-page-replacement-strategy", usage = "Page replacement strategy of buffer caches created by applications at this Node Controller: clock, 2q or clock-pro (default: clock)")
+    public String bufferCachePageReplacementStrategy = "clock";
+
+    @Option(name = "-buffer-cache-optimistic-lookup", usage = "Pin cached pages of buffer caches created by applications at this Node Controller without taking the bucket lock (default: false)")
+    public boolean bufferCacheOptimisticLookup = false;
+
     @Option(name = "-app-nc-main-class", usage = "Application NC Main Class")
     public String appNCMainClass;
 
@@ -131,18 +163,38 @@ public class NCConfig implements Serializable {
         cList.add(String.valueOf(resultPublicPort));
         cList.add("-iodevices");
         cList.add(ioDevices);
+        cList.add("-io-read-ahead-depth");
+        cList.add(String.valueOf(ioReadAheadDepth));
+        cList.add("-io-queue-depth");
+        cList.add(String.valueOf(ioQueueDepth));
         cList.add("-net-thread-count");
         cList.add(String.valueOf(nNetThreads));
         cList.add("-net-buffer-count");
         cList.add(String.valueOf(nNetBuffers));
+        cList.add("-net-read-buffer-budget");
+        cList.add(String.valueOf(netReadBufferBudget));
         cList.add("-max-memory");
         cList.add(String.valueOf(maxMemory));
+        cList.add("-max-job-memory");
+        cList.add(String.valueOf(maxJobMemory));
+        if (!enforceFrameMemory) {
+            cList.add("-no-enforce-frame-memory");
+        }
+        cList.add("-memory-admission-timeout");
+        cList.add(String.valueOf(memoryAdmissionTimeout));
+        cList.add("-frame-pool-size");
+        cList.add(String.valueOf(framePoolSize));
         cList.add("-result-time-to-live");
         cList.add(String.valueOf(resultTTL));
         cList.add("-result-sweep-threshold");
         cList.add(String.valueOf(resultSweepThreshold));
         cList.add("-result-manager-memory");
         cList.add(String.valueOf(resultManagerMemory));
+        cList.add("-buffer-cache-page-replacement-strategy");
+        cList.add(bufferCachePageReplacementStrategy);
+        if (bufferCacheOptimisticLookup) {
+            cList.add("-buffer-cache-optimistic-lookup");
+        }
 
         if (appNCMainClass != null) {
             cList.add("-app-nc-main-class");
@@ -173,12 +225,21 @@ public class NCConfig implements Serializable {
         configuration.put("result-public-ip-address", resultPublicIPAddress);
         configuration.put("result-public-port", String.valueOf(resultPublicPort));
         configuration.put("iodevices", ioDevices);
+        configuration.put("io-read-ahead-depth", String.valueOf(ioReadAheadDepth));
+        configuration.put("io-queue-depth", String.valueOf(ioQueueDepth));
         configuration.put("net-thread-count", String.valueOf(nNetThreads));
         configuration.put("net-buffer-count", String.valueOf(nNetBuffers));
+        configuration.put("net-read-buffer-budget", String.valueOf(netReadBufferBudget));
         configuration.put("max-memory", String.valueOf(maxMemory));
+        configuration.put("max-job-memory", String.valueOf(maxJobMemory));
+        configuration.put("enforce-frame-memory", String.valueOf(enforceFrameMemory));
+        configuration.put("memory-admission-timeout", String.valueOf(memoryAdmissionTimeout));
+        configuration.put("frame-pool-size", String.valueOf(framePoolSize));
         configuration.put("result-time-to-live", String.valueOf(resultTTL));
         configuration.put("result-sweep-threshold", String.valueOf(resultSweepThreshold));
         configuration.put("result-manager-memory", String.valueOf(resultManagerMemory));
+        configuration.put("buffer-cache-page-replacement-strategy", bufferCachePageReplacementStrategy);
+        configuration.put("buffer-cache-optimistic-lookup", String.valueOf(bufferCacheOptimisticLookup));
 
         if (appNCMainClass != null) {
             configuration.put("app-nc-main-class", appNCMainClass);
@@ -19,10 +19,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -33,6 +36,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.hyracks.api.client.NodeControllerInfo;
+import org.apache.hyracks.api.client.NodeStatus;
 import org.apache.hyracks.api.comm.NetworkAddress;
 import org.apache.hyracks.api.dataflow.ActivityId;
 import org.apache.hyracks.api.dataflow.ConnectorDescriptorId;
@@ -133,6 +137,31 @@ public class CCNCFunctions {
             return FunctionId.SEND_APPLICATION_MESSAGE;
         }
 
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            byte[] data = readBytes(dis);
+            DeploymentId deploymentId = null;
+            boolean hasDeployed = dis.readBoolean();
+            if (hasDeployed) {
+                deploymentId = DeploymentId.create(dis);
+            }
+            String nodeId = readString(dis);
+            return new SendApplicationMessageFunction(data, deploymentId, nodeId);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            SendApplicationMessageFunction fn = (SendApplicationMessageFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            writeBytes(dos, fn.serializedMessage);
+            dos.writeBoolean(fn.deploymentId != null);
+            if (fn.deploymentId != null) {
+                fn.deploymentId.writeFields(dos);
+            }
+            writeString(dos, fn.nodeId);
+        }
+
     }
 
     public static abstract class Function implements Serializable {
@@ -177,6 +206,20 @@ public class CCNCFunctions {
         public String getNodeId() {
             return nodeId;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            String nodeId = dis.readUTF();
+            return new UnregisterNodeFunction(nodeId);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            UnregisterNodeFunction fn = (UnregisterNodeFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeUTF(fn.nodeId);
+        }
     }
 
     public static class NotifyTaskCompleteFunction extends Function {
@@ -271,6 +314,28 @@ public class CCNCFunctions {
         public List<Exception> getExceptions() {
             return exceptions;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            JobId jobId = JobId.create(dis);
+            String nodeId = dis.readUTF();
+            TaskAttemptId taskId = TaskAttemptId.create(dis);
+            // exceptions are open-ended, so they keep Java serialization
+            @SuppressWarnings("unchecked")
+            List<Exception> exceptions = (List<Exception>) readSerializable(dis);
+            return new NotifyTaskFailureFunction(jobId, taskId, nodeId, exceptions);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            NotifyTaskFailureFunction fn = (NotifyTaskFailureFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.jobId.writeFields(dos);
+            dos.writeUTF(fn.nodeId);
+            fn.taskId.writeFields(dos);
+            writeSerializable(dos, (Serializable) fn.exceptions);
+        }
     }
 
     public static class NotifyJobletCleanupFunction extends Function {
@@ -380,6 +445,29 @@ public class CCNCFunctions {
         public List<JobProfile> getProfiles() {
             return profiles;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            String nodeId = dis.readUTF();
+            int size = dis.readInt();
+            List<JobProfile> profiles = new ArrayList<JobProfile>(size);
+            for (int i = 0; i < size; i++) {
+                profiles.add(JobProfile.create(dis));
+            }
+            return new ReportProfileFunction(nodeId, profiles);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            ReportProfileFunction fn = (ReportProfileFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeUTF(fn.nodeId);
+            dos.writeInt(fn.profiles.size());
+            for (JobProfile profile : fn.profiles) {
+                profile.writeFields(dos);
+            }
+        }
     }
 
     public static class RegisterPartitionProviderFunction extends Function {
@@ -567,6 +655,33 @@ public class CCNCFunctions {
         public NetworkAddress getNetworkAddress() {
             return networkAddress;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            JobId jobId = JobId.create(dis);
+            ResultSetId rsId = new ResultSetId(dis.readLong());
+            boolean orderedResult = dis.readBoolean();
+            boolean emptyResult = dis.readBoolean();
+            int partition = dis.readInt();
+            int nPartitions = dis.readInt();
+            NetworkAddress networkAddress = readNetworkAddress(dis);
+            return new RegisterResultPartitionLocationFunction(jobId, rsId, orderedResult, emptyResult, partition,
+                    nPartitions, networkAddress);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            RegisterResultPartitionLocationFunction fn = (RegisterResultPartitionLocationFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.jobId.writeFields(dos);
+            dos.writeLong(fn.rsId.getId());
+            dos.writeBoolean(fn.orderedResult);
+            dos.writeBoolean(fn.emptyResult);
+            dos.writeInt(fn.partition);
+            dos.writeInt(fn.nPartitions);
+            writeNetworkAddress(dos, fn.networkAddress);
+        }
     }
 
     public static class ReportResultPartitionWriteCompletionFunction extends Function {
@@ -600,6 +715,24 @@ public class CCNCFunctions {
         public int getPartition() {
             return partition;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            JobId jobId = JobId.create(dis);
+            ResultSetId rsId = new ResultSetId(dis.readLong());
+            int partition = dis.readInt();
+            return new ReportResultPartitionWriteCompletionFunction(jobId, rsId, partition);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            ReportResultPartitionWriteCompletionFunction fn = (ReportResultPartitionWriteCompletionFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.jobId.writeFields(dos);
+            dos.writeLong(fn.rsId.getId());
+            dos.writeInt(fn.partition);
+        }
     }
 
     public static class ReportResultPartitionFailureFunction extends Function {
@@ -633,6 +766,24 @@ public class CCNCFunctions {
         public int getPartition() {
             return partition;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            JobId jobId = JobId.create(dis);
+            ResultSetId rsId = new ResultSetId(dis.readLong());
+            int partition = dis.readInt();
+            return new ReportResultPartitionFailureFunction(jobId, rsId, partition);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            ReportResultPartitionFailureFunction fn = (ReportResultPartitionFailureFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.jobId.writeFields(dos);
+            dos.writeLong(fn.rsId.getId());
+            dos.writeInt(fn.partition);
+        }
     }
 
     public static class NodeRegistrationResult extends Function {
@@ -819,6 +970,29 @@ public class CCNCFunctions {
         public List<TaskAttemptId> getTasks() {
             return tasks;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            JobId jobId = JobId.create(dis);
+            int size = dis.readInt();
+            List<TaskAttemptId> tasks = new ArrayList<TaskAttemptId>(size);
+            for (int i = 0; i < size; i++) {
+                tasks.add(TaskAttemptId.create(dis));
+            }
+            return new AbortTasksFunction(jobId, tasks);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            AbortTasksFunction fn = (AbortTasksFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.jobId.writeFields(dos);
+            dos.writeInt(fn.tasks.size());
+            for (TaskAttemptId task : fn.tasks) {
+                task.writeFields(dos);
+            }
+        }
     }
 
     public static class CleanupJobletFunction extends Function {
@@ -889,6 +1063,37 @@ public class CCNCFunctions {
         public Map<String, NodeControllerInfo> getNodeControllerInfos() {
             return ncInfos;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            int size = dis.readInt();
+            Map<String, NodeControllerInfo> ncInfos = new HashMap<String, NodeControllerInfo>();
+            for (int i = 0; i < size; i++) {
+                String key = dis.readUTF();
+                String nodeId = dis.readUTF();
+                NodeStatus status = NodeStatus.values()[dis.readInt()];
+                NetworkAddress netAddress = readNullableNetworkAddress(dis);
+                NetworkAddress datasetNetworkAddress = readNullableNetworkAddress(dis);
+                ncInfos.put(key, new NodeControllerInfo(nodeId, status, netAddress, datasetNetworkAddress));
+            }
+            return new GetNodeControllersInfoResponseFunction(ncInfos);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            GetNodeControllersInfoResponseFunction fn = (GetNodeControllersInfoResponseFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(fn.ncInfos.size());
+            for (Entry<String, NodeControllerInfo> entry : fn.ncInfos.entrySet()) {
+                NodeControllerInfo info = entry.getValue();
+                dos.writeUTF(entry.getKey());
+                dos.writeUTF(info.getNodeId());
+                dos.writeInt(info.getStatus().ordinal());
+                writeNullableNetworkAddress(dos, info.getNetworkAddress());
+                writeNullableNetworkAddress(dos, info.getDatasetNetworkAddress());
+            }
+        }
     }
 
     public static class ReportPartitionAvailabilityFunction extends Function {
@@ -964,6 +1169,34 @@ public class CCNCFunctions {
         public DeploymentId getDeploymentId() {
             return deploymentId;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            DeploymentId deploymentId = DeploymentId.create(dis);
+            int size = dis.readInt();
+            List<URL> binaryURLs = null;
+            if (size >= 0) {
+                binaryURLs = new ArrayList<URL>(size);
+                for (int i = 0; i < size; i++) {
+                    binaryURLs.add(new URL(dis.readUTF()));
+                }
+            }
+            return new DeployBinaryFunction(deploymentId, binaryURLs);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            DeployBinaryFunction fn = (DeployBinaryFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.deploymentId.writeFields(dos);
+            dos.writeInt(fn.binaryURLs == null ? -1 : fn.binaryURLs.size());
+            if (fn.binaryURLs != null) {
+                for (URL url : fn.binaryURLs) {
+                    dos.writeUTF(url.toString());
+                }
+            }
+        }
     }
 
     public static class UnDeployBinaryFunction extends Function {
@@ -983,6 +1216,20 @@ public class CCNCFunctions {
         public DeploymentId getDeploymentId() {
             return deploymentId;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            DeploymentId deploymentId = DeploymentId.create(dis);
+            return new UnDeployBinaryFunction(deploymentId);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            UnDeployBinaryFunction fn = (UnDeployBinaryFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.deploymentId.writeFields(dos);
+        }
     }
 
     public static class RequestShutdownFunction extends Function {
@@ -1044,6 +1291,24 @@ public class CCNCFunctions {
         public DeploymentStatus getDeploymentStatus() {
             return deploymentStatus;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            DeploymentId deploymentId = DeploymentId.create(dis);
+            String nodeId = dis.readUTF();
+            DeploymentStatus deploymentStatus = DeploymentStatus.values()[dis.readInt()];
+            return new NotifyDeployBinaryFunction(deploymentId, nodeId, deploymentStatus);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            NotifyDeployBinaryFunction fn = (NotifyDeployBinaryFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            fn.deploymentId.writeFields(dos);
+            dos.writeUTF(fn.nodeId);
+            dos.writeInt(fn.deploymentStatus.ordinal());
+        }
     }
 
     public static class StateDumpRequestFunction extends Function {
@@ -1064,6 +1329,20 @@ public class CCNCFunctions {
             return FunctionId.STATE_DUMP_REQUEST;
         }
 
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            String stateDumpId = readString(dis);
+            return new StateDumpRequestFunction(stateDumpId);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            StateDumpRequestFunction fn = (StateDumpRequestFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            writeString(dos, fn.stateDumpId);
+        }
+
     }
 
     public static class StateDumpResponseFunction extends Function {
@@ -1098,6 +1377,25 @@ public class CCNCFunctions {
         public FunctionId getFunctionId() {
             return FunctionId.STATE_DUMP_RESPONSE;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            String nodeId = dis.readUTF();
+            String stateDumpId = readString(dis);
+            // a state dump can exceed the 64KB of writeUTF()
+            String state = readString(dis);
+            return new StateDumpResponseFunction(nodeId, stateDumpId, state);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            StateDumpResponseFunction fn = (StateDumpResponseFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeUTF(fn.nodeId);
+            writeString(dos, fn.stateDumpId);
+            writeString(dos, fn.state);
+        }
     }
 
     public static class ShutdownRequestFunction extends Function {
@@ -1125,6 +1423,357 @@ public class CCNCFunctions {
         public FunctionId getFunctionId() {
             return FunctionId.SHUTDOWN_RESPONSE;
         }
+
+        public static Object deserialize(ByteBuffer buffer, int length) throws Exception {
+            ByteArrayInputStream bais = new ByteArrayInputStream(buffer.array(), buffer.position(), length);
+            DataInputStream dis = new DataInputStream(bais);
+
+            String nodeId = dis.readUTF();
+            return new ShutdownResponseFunction(nodeId);
+        }
+
+        public static void serialize(OutputStream out, Object object) throws Exception {
+            ShutdownResponseFunction fn = (ShutdownResponseFunction) object;
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeUTF(fn.nodeId);
+        }
+    }
+
+    /**
+     * Writes and reads the payload of one function type without Java serialization.
+     */
+    private static abstract class FunctionSerializerDeserializer {
+        private final Class<? extends Function> functionClass;
+
+        FunctionSerializerDeserializer(Class<? extends Function> functionClass) {
+            this.functionClass = functionClass;
+        }
+
+        abstract void serialize(OutputStream out, Object object) throws Exception;
+
+        abstract Object deserialize(ByteBuffer buffer, int length) throws Exception;
+    }
+
+    /**
+     * The binary payload formats, indexed by the ordinal of their function id. Functions without one, and functions
+     * of another class than the registered one (e.g. RequestShutdownFunction, which shares the id of
+     * ShutdownRequestFunction), are sent with Java serialization under {@link FunctionId#OTHER}.
+     */
+    private static final FunctionSerializerDeserializer[] FUNCTION_SERDES =
+            new FunctionSerializerDeserializer[FunctionId.values().length];
+
+    static {
+        register(FunctionId.SEND_APPLICATION_MESSAGE, new FunctionSerializerDeserializer(
+                SendApplicationMessageFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                SendApplicationMessageFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return SendApplicationMessageFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.UNREGISTER_NODE, new FunctionSerializerDeserializer(UnregisterNodeFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                UnregisterNodeFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return UnregisterNodeFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.NOTIFY_JOBLET_CLEANUP, new FunctionSerializerDeserializer(
+                NotifyJobletCleanupFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                NotifyJobletCleanupFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return NotifyJobletCleanupFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.NOTIFY_TASK_COMPLETE, new FunctionSerializerDeserializer(NotifyTaskCompleteFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                NotifyTaskCompleteFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return NotifyTaskCompleteFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.NOTIFY_TASK_FAILURE, new FunctionSerializerDeserializer(NotifyTaskFailureFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                NotifyTaskFailureFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return NotifyTaskFailureFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.NODE_HEARTBEAT, new FunctionSerializerDeserializer(NodeHeartbeatFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                NodeHeartbeatFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return NodeHeartbeatFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REPORT_PROFILE, new FunctionSerializerDeserializer(ReportProfileFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                ReportProfileFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return ReportProfileFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REGISTER_PARTITION_PROVIDER, new FunctionSerializerDeserializer(
+                RegisterPartitionProviderFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                RegisterPartitionProviderFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return RegisterPartitionProviderFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REGISTER_PARTITION_REQUEST, new FunctionSerializerDeserializer(
+                RegisterPartitionRequestFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                RegisterPartitionRequestFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return RegisterPartitionRequestFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REGISTER_RESULT_PARTITION_LOCATION, new FunctionSerializerDeserializer(
+                RegisterResultPartitionLocationFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                RegisterResultPartitionLocationFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return RegisterResultPartitionLocationFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REPORT_RESULT_PARTITION_WRITE_COMPLETION, new FunctionSerializerDeserializer(
+                ReportResultPartitionWriteCompletionFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                ReportResultPartitionWriteCompletionFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return ReportResultPartitionWriteCompletionFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REPORT_RESULT_PARTITION_FAILURE, new FunctionSerializerDeserializer(
+                ReportResultPartitionFailureFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                ReportResultPartitionFailureFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return ReportResultPartitionFailureFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.START_TASKS, new FunctionSerializerDeserializer(StartTasksFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                StartTasksFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return StartTasksFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.ABORT_TASKS, new FunctionSerializerDeserializer(AbortTasksFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                AbortTasksFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return AbortTasksFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.CLEANUP_JOBLET, new FunctionSerializerDeserializer(CleanupJobletFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                CleanupJobletFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return CleanupJobletFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.REPORT_PARTITION_AVAILABILITY, new FunctionSerializerDeserializer(
+                ReportPartitionAvailabilityFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                ReportPartitionAvailabilityFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return ReportPartitionAvailabilityFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.GET_NODE_CONTROLLERS_INFO_RESPONSE, new FunctionSerializerDeserializer(
+                GetNodeControllersInfoResponseFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                GetNodeControllersInfoResponseFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return GetNodeControllersInfoResponseFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.DEPLOY_BINARY, new FunctionSerializerDeserializer(DeployBinaryFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                DeployBinaryFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return DeployBinaryFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.NOTIFY_DEPLOY_BINARY, new FunctionSerializerDeserializer(NotifyDeployBinaryFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                NotifyDeployBinaryFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return NotifyDeployBinaryFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.UNDEPLOY_BINARY, new FunctionSerializerDeserializer(UnDeployBinaryFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                UnDeployBinaryFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return UnDeployBinaryFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.SHUTDOWN_RESPONSE, new FunctionSerializerDeserializer(ShutdownResponseFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                ShutdownResponseFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return ShutdownResponseFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.STATE_DUMP_REQUEST, new FunctionSerializerDeserializer(StateDumpRequestFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                StateDumpRequestFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return StateDumpRequestFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.STATE_DUMP_RESPONSE, new FunctionSerializerDeserializer(StateDumpResponseFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+                StateDumpResponseFunction.serialize(out, object);
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return StateDumpResponseFunction.deserialize(buffer, length);
+            }
+        });
+
+        register(FunctionId.GET_NODE_CONTROLLERS_INFO, new FunctionSerializerDeserializer(
+                GetNodeControllersInfoFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return new GetNodeControllersInfoFunction();
+            }
+        });
+
+        register(FunctionId.SHUTDOWN_REQUEST, new FunctionSerializerDeserializer(ShutdownRequestFunction.class) {
+            @Override
+            void serialize(OutputStream out, Object object) throws Exception {
+            }
+
+            @Override
+            Object deserialize(ByteBuffer buffer, int length) throws Exception {
+                return new ShutdownRequestFunction();
+            }
+        });
+    }
+
+    private static void register(FunctionId fid, FunctionSerializerDeserializer serde) {
+        FUNCTION_SERDES[fid.ordinal()] = serde;
     }
 
     public static class SerializerDeserializer implements IPayloadSerializerDeserializer {
@@ -1159,10 +1808,13 @@ public class CCNCFunctions {
         public byte[] serializeObject(Object object) throws Exception {
             if (object instanceof Function) {
                 Function fn = (Function) object;
-                return serialize(object, (byte) fn.getFunctionId().ordinal());
-            } else {
-                return serialize(object, (byte) FunctionId.OTHER.ordinal());
+                byte fid = (byte) fn.getFunctionId().ordinal();
+                FunctionSerializerDeserializer serde = FUNCTION_SERDES[fid];
+                if (serde != null && serde.functionClass == fn.getClass()) {
+                    return serialize(object, fid);
+                }
             }
+            return serialize(object, (byte) FunctionId.OTHER.ordinal());
         }
 
         @Override
@@ -1184,68 +1836,20 @@ public class CCNCFunctions {
         }
 
         private void serialize(OutputStream out, Object object, byte fid) throws Exception {
-            switch (FunctionId.values()[fid]) {
-                case REGISTER_PARTITION_PROVIDER:
-                    RegisterPartitionProviderFunction.serialize(out, object);
-                    return;
-
-                case REGISTER_PARTITION_REQUEST:
-                    RegisterPartitionRequestFunction.serialize(out, object);
-                    return;
-
-                case REPORT_PARTITION_AVAILABILITY:
-                    ReportPartitionAvailabilityFunction.serialize(out, object);
-                    return;
-
-                case NODE_HEARTBEAT:
-                    NodeHeartbeatFunction.serialize(out, object);
-                    return;
-
-                case START_TASKS:
-                    StartTasksFunction.serialize(out, object);
-                    return;
-
-                case NOTIFY_TASK_COMPLETE:
-                    NotifyTaskCompleteFunction.serialize(out, object);
-                    return;
-
-                case NOTIFY_JOBLET_CLEANUP:
-                    NotifyJobletCleanupFunction.serialize(out, object);
-                    return;
-                case CLEANUP_JOBLET:
-                    CleanupJobletFunction.serialize(out, object);
-                    return;
+            FunctionSerializerDeserializer serde = FUNCTION_SERDES[fid];
+            if (serde != null) {
+                serde.serialize(out, object);
+                return;
             }
             JavaSerializationBasedPayloadSerializerDeserializer.serialize(out, object);
         }
 
         private Object deserialize(byte fid, ByteBuffer buffer, int length) throws Exception {
-            switch (FunctionId.values()[fid]) {
-                case REGISTER_PARTITION_PROVIDER:
-                    return RegisterPartitionProviderFunction.deserialize(buffer, length);
-
-                case REGISTER_PARTITION_REQUEST:
-                    return RegisterPartitionRequestFunction.deserialize(buffer, length);
-
-                case REPORT_PARTITION_AVAILABILITY:
-                    return ReportPartitionAvailabilityFunction.deserialize(buffer, length);
-
-                case NODE_HEARTBEAT:
-                    return NodeHeartbeatFunction.deserialize(buffer, length);
-
-                case START_TASKS:
-                    return StartTasksFunction.deserialize(buffer, length);
-
-                case NOTIFY_TASK_COMPLETE:
-                    return NotifyTaskCompleteFunction.deserialize(buffer, length);
-
-                case NOTIFY_JOBLET_CLEANUP:
-                    return NotifyJobletCleanupFunction.deserialize(buffer, length);
-
-                case CLEANUP_JOBLET:
-                    return CleanupJobletFunction.deserialize(buffer, length);
+            FunctionSerializerDeserializer serde = fid >= 0 && fid < FUNCTION_SERDES.length ? FUNCTION_SERDES[fid]
+                    : null;
+            if (serde != null) {
+                return serde.deserialize(buffer, length);
             }
-
             return javaSerde.deserializeObject(buffer, length);
         }
     }
@@ -1306,4 +1910,73 @@ public class CCNCFunctions {
         dos.writeUTF(networkAddress.getAddress());
         dos.writeInt(networkAddress.getPort());
     }
+
+    private static NetworkAddress readNullableNetworkAddress(DataInputStream dis) throws IOException {
+        return dis.readBoolean() ? readNetworkAddress(dis) : null;
+    }
+
+    private static void writeNullableNetworkAddress(DataOutputStream dos, NetworkAddress networkAddress)
+            throws IOException {
+        dos.writeBoolean(networkAddress != null);
+        if (networkAddress != null) {
+            writeNetworkAddress(dos, networkAddress);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream dis) throws IOException {
+        int size = dis.readInt();
+        if (size < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[size];
+        dis.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream dos, byte[] bytes) throws IOException {
+        dos.writeInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            dos.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}, which unlike writeUTF() may be null
+     * or longer than 64KB.
+     */
+    private static String readString(DataInputStream dis) throws IOException {
+        byte[] bytes = readBytes(dis);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream dos, String string) throws IOException {
+        writeBytes(dos, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object readSerializable(DataInputStream dis) throws IOException {
+        byte[] bytes = readBytes(dis);
+        if (bytes == null) {
+            return null;
+        }
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void writeSerializable(DataOutputStream dos, Serializable object) throws IOException {
+        if (object == null) {
+            writeBytes(dos, null);
+            return;
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(object);
+        oos.close();
+        writeBytes(dos, baos.toByteArray());
+    }
 }
@@ -17,6 +17,7 @@ package org.apache.hyracks.control.nc;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
@@ -32,6 +33,7 @@ import org.apache.hyracks.api.dataflow.state.IStateObject;
 import org.apache.hyracks.api.deployment.DeploymentId;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.exceptions.HyracksException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
 import org.apache.hyracks.api.io.FileReference;
 import org.apache.hyracks.api.io.IIOManager;
 import org.apache.hyracks.api.io.IWorkspaceFileFactory;
@@ -40,6 +42,7 @@ import org.apache.hyracks.api.job.IGlobalJobDataFactory;
 import org.apache.hyracks.api.job.IJobletEventListener;
 import org.apache.hyracks.api.job.IJobletEventListenerFactory;
 import org.apache.hyracks.api.job.IOperatorEnvironment;
+import org.apache.hyracks.api.job.JobFlag;
 import org.apache.hyracks.api.job.JobId;
 import org.apache.hyracks.api.job.JobStatus;
 import org.apache.hyracks.api.job.profiling.counters.ICounter;
@@ -57,6 +60,7 @@ import org.apache.hyracks.control.nc.io.IOManager;
 import org.apache.hyracks.control.nc.io.WorkspaceFileFactory;
 import org.apache.hyracks.control.nc.resources.DefaultDeallocatableRegistry;
 import org.apache.hyracks.control.nc.resources.memory.FrameManager;
+import org.apache.hyracks.control.nc.resources.memory.MemoryManager;
 
 public class Joblet implements IHyracksJobletContext, ICounterContext {
     private static final Logger LOGGER = Logger.getLogger(Joblet.class.getName());
@@ -71,6 +75,8 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
 
     private final ActivityClusterGraph acg;
 
+    private final EnumSet<JobFlag> jobFlags;
+
     private final Map<PartitionId, IPartitionCollector> partitionRequestMap;
 
     private final IOperatorEnvironment env;
@@ -91,21 +97,35 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
 
     private final FrameManager frameManager;
 
-    private final AtomicLong memoryAllocation;
+    private final MemoryManager memoryManager;
+
+    private final boolean enforceFrameMemory;
+
+    private final long memoryAdmissionTimeout;
+
+    // bytes charged to the joblet's budget for frames that outlive the task that allocated them in a state object.
+    private final AtomicLong stateMemory;
 
     private JobStatus cleanupStatus;
 
     private boolean cleanupPending;
 
     public Joblet(NodeControllerService nodeController, DeploymentId deploymentId, JobId jobId,
-            INCApplicationContext appCtx, ActivityClusterGraph acg) {
+            INCApplicationContext appCtx, ActivityClusterGraph acg, EnumSet<JobFlag> jobFlags) {
         this.nodeController = nodeController;
         this.appCtx = appCtx;
         this.deploymentId = deploymentId;
         this.jobId = jobId;
-        this.frameManager = new FrameManager(acg.getFrameSize());
-        memoryAllocation = new AtomicLong();
+        this.frameManager = new FrameManager(acg.getFrameSize(), nodeController.getFramePool());
+        MemoryManager nodeMemoryManager = nodeController.getMemoryManager();
+        long maxJobMemory = nodeController.getConfiguration().maxJobMemory;
+        memoryManager = new MemoryManager(nodeMemoryManager, maxJobMemory > 0 ? Math.min(maxJobMemory,
+                nodeMemoryManager.getMaximumMemory()) : nodeMemoryManager.getMaximumMemory());
+        enforceFrameMemory = nodeController.getConfiguration().enforceFrameMemory;
+        memoryAdmissionTimeout = nodeController.getConfiguration().memoryAdmissionTimeout;
+        stateMemory = new AtomicLong();
         this.acg = acg;
+        this.jobFlags = jobFlags;
         partitionRequestMap = new HashMap<PartitionId, IPartitionCollector>();
         env = new OperatorEnvironmentImpl(nodeController.getId());
         stateObjectMap = new HashMap<Object, IStateObject>();
@@ -131,6 +151,10 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
         return jobId;
     }
 
+    public EnumSet<JobFlag> getJobFlags() {
+        return jobFlags;
+    }
+
     public ActivityClusterGraph getActivityClusterGraph() {
         return acg;
     }
@@ -209,10 +233,11 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
     }
 
     public void close() {
-        long stillAllocated = memoryAllocation.get();
+        memoryManager.deallocate(stateMemory.getAndSet(0));
+        long stillAllocated = memoryManager.getAllocatedMemory();
         if (stillAllocated > 0) {
             LOGGER.warning("Freeing leaked " + stillAllocated + " bytes");
-            appCtx.getMemoryManager().deallocate(stillAllocated);
+            memoryManager.deallocate(stillAllocated);
         }
         nodeController.getExecutor().execute(new Runnable() {
             @Override
@@ -222,16 +247,62 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
         });
     }
 
+    MemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    /**
+     * Charges the given number of bytes to the memory manager, waiting for the configured admission timeout if the
+     * budget of the task, the job or the node is exhausted. Frames are only charged when -enforce-frame-memory is set
+     * (the default). Frames that an operator lets be garbage collected without returning them stay charged until the
+     * task ends.
+     */
+    void reserveMemory(MemoryManager taskMemoryManager, long bytes) throws HyracksDataException {
+        if (!enforceFrameMemory) {
+            return;
+        }
+        try {
+            if (!taskMemoryManager.allocate(bytes, memoryAdmissionTimeout)) {
+                throw new InsufficientMemoryException("Unable to allocate frame: Not enough memory");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        }
+    }
+
+    /**
+     * Takes over the given number of bytes that a closing task leaves behind in state objects. They stay charged to
+     * the joblet until the frames are returned by the consumer of the state or the joblet is closed.
+     */
+    void adoptStateMemory(long bytes) {
+        stateMemory.addAndGet(bytes);
+    }
+
+    /**
+     * Returns frames of a state object, at most the amount that was adopted from closed tasks.
+     */
+    void releaseStateMemory(long bytes) {
+        long released;
+        while (true) {
+            long adopted = stateMemory.get();
+            released = Math.min(bytes, adopted);
+            if (released <= 0) {
+                return;
+            }
+            if (stateMemory.compareAndSet(adopted, adopted - released)) {
+                break;
+            }
+        }
+        memoryManager.deallocate(released);
+    }
+
     ByteBuffer allocateFrame() throws HyracksDataException {
         return frameManager.allocateFrame();
     }
 
     ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
-        if (appCtx.getMemoryManager().allocate(bytes)) {
-            memoryAllocation.addAndGet(bytes);
-            return frameManager.allocateFrame(bytes);
-       }
-        throw new HyracksDataException("Unable to allocate frame: Not enough memory");
+        return frameManager.allocateFrame(bytes);
     }
 
     ByteBuffer reallocateFrame(ByteBuffer usedBuffer, int newFrameSizeInBytes, boolean copyOldData)
@@ -240,11 +311,13 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
     }
 
     void deallocateFrames(int bytes) {
-        memoryAllocation.addAndGet(bytes);
-        appCtx.getMemoryManager().deallocate(bytes);
         frameManager.deallocateFrames(bytes);
     }
 
+    void deallocateFrame(ByteBuffer frame) {
+        frameManager.deallocateFrame(frame);
+    }
+
     public final int getFrameSize() {
         return frameManager.getInitialFrameSize();
     }
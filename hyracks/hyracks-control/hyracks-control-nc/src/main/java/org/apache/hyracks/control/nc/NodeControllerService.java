@@ -71,6 +71,7 @@ import org.apache.hyracks.control.nc.io.profiling.IOCounterFactory;
 import org.apache.hyracks.control.nc.net.DatasetNetworkManager;
 import org.apache.hyracks.control.nc.net.NetworkManager;
 import org.apache.hyracks.control.nc.partitions.PartitionManager;
+import org.apache.hyracks.control.nc.resources.memory.FramePool;
 import org.apache.hyracks.control.nc.resources.memory.MemoryManager;
 import org.apache.hyracks.control.nc.runtime.RootHyracksContext;
 import org.apache.hyracks.control.nc.work.AbortTasksWork;
@@ -150,6 +151,8 @@ public class NodeControllerService extends AbstractRemoteService {
 
     private final MemoryManager memoryManager;
 
+    private final FramePool framePool;
+
     private boolean shuttedDown = false;
 
     private IIOCounter ioCounter;
@@ -161,13 +164,15 @@ public class NodeControllerService extends AbstractRemoteService {
         ipc = new IPCSystem(new InetSocketAddress(ncConfig.clusterNetIPAddress, ncConfig.clusterNetPort), ipci,
                 new CCNCFunctions.SerializerDeserializer());
 
-        this.ctx = new RootHyracksContext(this, new IOManager(getDevices(ncConfig.ioDevices)));
+        this.ctx = new RootHyracksContext(this, new IOManager(getDevices(ncConfig.ioDevices),
+                ncConfig.ioReadAheadDepth, ncConfig.ioQueueDepth));
         if (id == null) {
             throw new Exception("id not set");
         }
         partitionManager = new PartitionManager(this);
         netManager = new NetworkManager(ncConfig.dataIPAddress, ncConfig.dataPort, partitionManager, ncConfig.nNetThreads,
-                                        ncConfig.nNetBuffers, ncConfig.dataPublicIPAddress, ncConfig.dataPublicPort);
+                                        ncConfig.nNetBuffers, ncConfig.dataPublicIPAddress, ncConfig.dataPublicPort,
+                                        ncConfig.netReadBufferBudget);
 
         lccm = new LifeCycleComponentManager();
         queue = new WorkQueue();
@@ -182,7 +187,9 @@ public class NodeControllerService extends AbstractRemoteService {
         osMXBean = ManagementFactory.getOperatingSystemMXBean();
         registrationPending = true;
         getNodeControllerInfosAcceptor = new MutableObject<FutureValue<Map<String, NodeControllerInfo>>>();
-        memoryManager = new MemoryManager((long) (memoryMXBean.getHeapMemoryUsage().getMax() * MEMORY_FUDGE_FACTOR));
+        memoryManager = new MemoryManager(ncConfig.maxMemory > 0 ? ncConfig.maxMemory
+                : (long) (memoryMXBean.getHeapMemoryUsage().getMax() * MEMORY_FUDGE_FACTOR));
+        framePool = new FramePool(ncConfig.framePoolSize);
         ioCounter = new IOCounterFactory().getIOCounter();
     }
 
@@ -243,7 +250,8 @@ public class NodeControllerService extends AbstractRemoteService {
             (this, executor, ncConfig.resultManagerMemory, ncConfig.resultTTL, ncConfig.resultSweepThreshold);
         datasetNetworkManager = new DatasetNetworkManager
             (ncConfig.resultIPAddress, ncConfig.resultPort, datasetPartitionManager,
-             ncConfig.nNetThreads, ncConfig.nNetBuffers, ncConfig.resultPublicIPAddress, ncConfig.resultPublicPort);
+             ncConfig.nNetThreads, ncConfig.nNetBuffers, ncConfig.resultPublicIPAddress, ncConfig.resultPublicPort,
+             ncConfig.netReadBufferBudget);
     }
 
     @Override
@@ -308,7 +316,8 @@ public class NodeControllerService extends AbstractRemoteService {
     }
 
     private void startApplication() throws Exception {
-        appCtx = new NCApplicationContext(serverCtx, ctx, id, memoryManager, lccm);
+        appCtx = new NCApplicationContext(serverCtx, ctx, id, memoryManager, lccm,
+                ncConfig.bufferCachePageReplacementStrategy, ncConfig.bufferCacheOptimisticLookup);
         String className = ncConfig.appNCMainClass;
         if (className != null) {
             Class<?> c = Class.forName(className);
@@ -318,6 +327,7 @@ public class NodeControllerService extends AbstractRemoteService {
             ncAppEntryPoint.start(appCtx, args);
         }
         executor = Executors.newCachedThreadPool(appCtx.getThreadFactory());
+        appCtx.setExecutor(executor);
     }
 
     @Override
@@ -374,6 +384,14 @@ public class NodeControllerService extends AbstractRemoteService {
         return executor;
     }
 
+    public MemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
     public NCConfig getConfiguration() {
         return ncConfig;
     }
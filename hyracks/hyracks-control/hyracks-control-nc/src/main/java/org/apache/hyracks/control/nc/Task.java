@@ -55,6 +55,7 @@ import org.apache.hyracks.control.common.utils.ExceptionUtils;
 import org.apache.hyracks.control.nc.io.IOManager;
 import org.apache.hyracks.control.nc.io.WorkspaceFileFactory;
 import org.apache.hyracks.control.nc.resources.DefaultDeallocatableRegistry;
+import org.apache.hyracks.control.nc.resources.memory.MemoryManager;
 import org.apache.hyracks.control.nc.work.NotifyTaskCompleteWork;
 import org.apache.hyracks.control.nc.work.NotifyTaskFailureWork;
 
@@ -71,6 +72,8 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
 
     private final DefaultDeallocatableRegistry deallocatableRegistry;
 
+    private final MemoryManager memoryManager;
+
     private final Map<String, Counter> counterMap;
 
     private final IOperatorEnvironment opEnv;
@@ -89,6 +92,8 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
 
     private volatile boolean aborted;
 
+    private volatile boolean producedState;
+
     private NodeControllerService ncs;
 
     private List<List<PartitionChannel>> inputChannelsFromConnectors;
@@ -101,6 +106,7 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
         this.executor = executor;
         fileFactory = new WorkspaceFileFactory(this, (IOManager) joblet.getIOManager());
         deallocatableRegistry = new DefaultDeallocatableRegistry();
+        memoryManager = new MemoryManager(joblet.getMemoryManager(), joblet.getMemoryManager().getMaximumMemory());
         counterMap = new HashMap<String, Counter>();
         opEnv = joblet.getEnvironment();
         partitionSendProfile = new Hashtable<PartitionId, PartitionProfile>();
@@ -117,25 +123,51 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
 
     @Override
     public ByteBuffer allocateFrame() throws HyracksDataException {
+        joblet.reserveMemory(memoryManager, getInitialFrameSize());
         return joblet.allocateFrame();
     }
 
     @Override
     public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+        joblet.reserveMemory(memoryManager, bytes);
         return joblet.allocateFrame(bytes);
     }
 
     @Override
     public ByteBuffer reallocateFrame(ByteBuffer usedBuffer, int newSizeInBytes, boolean copyOldData)
             throws HyracksDataException {
+        int delta = newSizeInBytes - usedBuffer.capacity();
+        if (delta > 0) {
+            joblet.reserveMemory(memoryManager, delta);
+        } else {
+            memoryManager.deallocate(-delta);
+        }
         return joblet.reallocateFrame(usedBuffer, newSizeInBytes, copyOldData);
     }
 
     @Override
     public void deallocateFrames(int bytes) {
+        releaseMemory(bytes);
         joblet.deallocateFrames(bytes);
     }
 
+    @Override
+    public void deallocateFrame(ByteBuffer frame) {
+        releaseMemory(frame.capacity());
+        joblet.deallocateFrame(frame);
+    }
+
+    /*
+     * Frames beyond what the task holds were handed over to the joblet by the task that produced a state object.
+     */
+    private void releaseMemory(long bytes) {
+        long held = Math.min(bytes, memoryManager.getAllocatedMemory());
+        memoryManager.deallocate(held);
+        if (bytes > held) {
+            joblet.releaseStateMemory(bytes - held);
+        }
+    }
+
     @Override
     public int getInitialFrameSize() {
         return joblet.getFrameSize();
@@ -163,6 +195,14 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
 
     public void close() {
         deallocatableRegistry.close();
+        // frames are not returned one by one, whatever the task still holds is released with the task unless the
+        // task published a state object, whose frames live on in the joblet.
+        long held = memoryManager.getAllocatedMemory();
+        if (producedState) {
+            joblet.adoptStateMemory(memoryManager.handOver(held));
+        } else {
+            memoryManager.deallocate(held);
+        }
     }
 
     @Override
@@ -359,6 +399,7 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
 
     @Override
     public void setStateObject(IStateObject taskState) {
+        producedState = true;
         opEnv.setStateObject(taskState);
     }
 
@@ -17,6 +17,7 @@ package org.apache.hyracks.control.nc.application;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
 import org.apache.hyracks.api.application.INCApplicationContext;
 import org.apache.hyracks.api.application.IStateDumpHandler;
@@ -32,16 +33,22 @@ public class NCApplicationContext extends ApplicationContext implements INCAppli
     private final String nodeId;
     private final IHyracksRootContext rootCtx;
     private final MemoryManager memoryManager;
+    private final String bufferCachePageReplacementStrategy;
+    private final boolean bufferCacheOptimisticLookup;
     private Object appObject;
+    private Executor executor;
     private IStateDumpHandler sdh;
 
     public NCApplicationContext(ServerContext serverCtx, IHyracksRootContext rootCtx, String nodeId,
-            MemoryManager memoryManager, ILifeCycleComponentManager lifeCyclecomponentManager) throws IOException {
+            MemoryManager memoryManager, ILifeCycleComponentManager lifeCyclecomponentManager,
+            String bufferCachePageReplacementStrategy, boolean bufferCacheOptimisticLookup) throws IOException {
         super(serverCtx);
         this.lccm = lifeCyclecomponentManager;
         this.nodeId = nodeId;
         this.rootCtx = rootCtx;
         this.memoryManager = memoryManager;
+        this.bufferCachePageReplacementStrategy = bufferCachePageReplacementStrategy;
+        this.bufferCacheOptimisticLookup = bufferCacheOptimisticLookup;
         sdh = new IStateDumpHandler() {
 
             @Override
@@ -65,6 +72,15 @@ public class NCApplicationContext extends ApplicationContext implements INCAppli
         distributedState = state;
     }
 
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
     @Override
     public void setStateDumpHandler(IStateDumpHandler handler) {
         this.sdh = handler;
@@ -93,4 +109,14 @@ public class NCApplicationContext extends ApplicationContext implements INCAppli
     public IMemoryManager getMemoryManager() {
         return memoryManager;
     }
+
+    @Override
+    public String getBufferCachePageReplacementStrategy() {
+        return bufferCachePageReplacementStrategy;
+    }
+
+    @Override
+    public boolean isBufferCacheOptimisticLookup() {
+        return bufferCacheOptimisticLookup;
+    }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
 
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.exceptions.HyracksException;
 import org.apache.hyracks.api.io.FileReference;
@@ -29,11 +30,18 @@ import org.apache.hyracks.api.io.IFileHandle;
 import org.apache.hyracks.api.io.IIOFuture;
 import org.apache.hyracks.api.io.IIOManager;
 import org.apache.hyracks.api.io.IODeviceHandle;
+import org.apache.hyracks.api.io.ISequentialFileReader;
 
 public class IOManager implements IIOManager {
+    public static final int DEFAULT_READ_AHEAD_DEPTH = 2;
+
+    public static final int DEFAULT_QUEUE_DEPTH = 4;
+
     private final List<IODeviceHandle> ioDevices;
 
-    private Executor executor;
+    private final IOScheduler scheduler;
+
+    private final int readAheadDepth;
 
     private final List<IODeviceHandle> workAreaIODevices;
 
@@ -41,11 +49,21 @@ public class IOManager implements IIOManager {
 
     public IOManager(List<IODeviceHandle> devices, Executor executor) throws HyracksException {
         this(devices);
-        this.executor = executor;
+        setExecutor(executor);
     }
 
     public IOManager(List<IODeviceHandle> devices) throws HyracksException {
+        this(devices, DEFAULT_READ_AHEAD_DEPTH);
+    }
+
+    public IOManager(List<IODeviceHandle> devices, int readAheadDepth) throws HyracksException {
+        this(devices, readAheadDepth, DEFAULT_QUEUE_DEPTH);
+    }
+
+    public IOManager(List<IODeviceHandle> devices, int readAheadDepth, int queueDepth) throws HyracksException {
         this.ioDevices = Collections.unmodifiableList(devices);
+        this.scheduler = new IOScheduler(ioDevices, queueDepth);
+        this.readAheadDepth = readAheadDepth;
         workAreaIODevices = new ArrayList<IODeviceHandle>();
         for (IODeviceHandle d : ioDevices) {
             if (d.getWorkAreaPath() != null) {
@@ -60,7 +78,7 @@ public class IOManager implements IIOManager {
     }
 
     public void setExecutor(Executor executor) {
-        this.executor = executor;
+        scheduler.setExecutor(executor);
     }
 
     @Override
@@ -137,17 +155,28 @@ public class IOManager implements IIOManager {
     @Override
     public IIOFuture asyncWrite(IFileHandle fHandle, long offset, ByteBuffer data) {
         AsyncWriteRequest req = new AsyncWriteRequest((FileHandle) fHandle, offset, data);
-        executor.execute(req);
+        scheduler.submit(req);
         return req;
     }
 
     @Override
     public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data) {
         AsyncReadRequest req = new AsyncReadRequest((FileHandle) fHandle, offset, data);
-        executor.execute(req);
+        scheduler.submit(req);
         return req;
     }
 
+    @Override
+    public ISequentialFileReader createSequentialReader(IHyracksFrameMgrContext frameManager, IFileHandle fHandle,
+            long offset, long length, int chunkSize) throws HyracksDataException {
+        return new ReadAheadFileReader(this, frameManager, fHandle, offset, length, chunkSize, readAheadDepth);
+    }
+
+    @Override
+    public int getReadAheadDepth() {
+        return readAheadDepth;
+    }
+
     @Override
     public void close(IFileHandle fHandle) throws HyracksDataException {
         try {
@@ -170,7 +199,7 @@ public class IOManager implements IIOManager {
         return dev.createFileReference(waPath + File.separator + waf.getName());
     }
 
-    private abstract class AsyncRequest implements IIOFuture, Runnable {
+    abstract class AsyncRequest implements IIOFuture, Runnable {
         protected final FileHandle fHandle;
         protected final long offset;
         protected final ByteBuffer data;
@@ -195,16 +224,20 @@ public class IOManager implements IIOManager {
             } catch (HyracksDataException e) {
                 hde = e;
             }
-            synchronized (this) {
-                exception = hde;
-                result = res;
-                complete = true;
-                notifyAll();
-            }
+            complete(res, hde);
+        }
+
+        synchronized void complete(int res, HyracksDataException hde) {
+            exception = hde;
+            result = res;
+            complete = true;
+            notifyAll();
         }
 
         protected abstract int performOperation() throws HyracksDataException;
 
+        abstract boolean isRead();
+
         @Override
         public synchronized int synchronize() throws HyracksDataException, InterruptedException {
             while (!complete) {
@@ -231,6 +264,11 @@ public class IOManager implements IIOManager {
         protected int performOperation() throws HyracksDataException {
             return syncRead(fHandle, offset, data);
         }
+
+        @Override
+        boolean isRead() {
+            return true;
+        }
     }
 
     private class AsyncWriteRequest extends AsyncRequest {
@@ -242,6 +280,11 @@ public class IOManager implements IIOManager {
         protected int performOperation() throws HyracksDataException {
             return syncWrite(fHandle, offset, data);
         }
+
+        @Override
+        boolean isRead() {
+            return false;
+        }
     }
 
     @Override
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.control.nc.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.IODeviceHandle;
+
+/**
+ * Queues the asynchronous requests of the {@link IOManager} per I/O device. Each device is served by up to queue
+ * depth workers, which are taken from the executor when requests arrive and returned when the queue is empty, so
+ * that the read-ahead of several concurrent readers (e.g. the runs of a merge) reaches the device together.
+ * A worker drains the queue in batches; within a batch, reads of adjacent ranges of the same file are merged into a
+ * single scattering read. A write runs alone on its device, after the batches taken before it and before the ones
+ * taken after it, so a read always sees the writes queued before it.
+ */
+class IOScheduler {
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private static final Comparator<IOManager.AsyncRequest> READ_ORDER = new Comparator<IOManager.AsyncRequest>() {
+        @Override
+        public int compare(IOManager.AsyncRequest r1, IOManager.AsyncRequest r2) {
+            int h1 = System.identityHashCode(r1.fHandle);
+            int h2 = System.identityHashCode(r2.fHandle);
+            if (h1 != h2) {
+                return h1 < h2 ? -1 : 1;
+            }
+            return r1.offset < r2.offset ? -1 : (r1.offset == r2.offset ? 0 : 1);
+        }
+    };
+
+    private final Map<IODeviceHandle, DeviceQueue> deviceQueues;
+
+    private final DeviceQueue defaultQueue;
+
+    private final int queueDepth;
+
+    private Executor executor;
+
+    IOScheduler(List<IODeviceHandle> devices, int queueDepth) {
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("Queue depth must be at least 1: " + queueDepth);
+        }
+        this.queueDepth = queueDepth;
+        deviceQueues = new IdentityHashMap<IODeviceHandle, DeviceQueue>();
+        for (IODeviceHandle device : devices) {
+            deviceQueues.put(device, new DeviceQueue());
+        }
+        defaultQueue = new DeviceQueue();
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    void submit(IOManager.AsyncRequest request) {
+        DeviceQueue queue = deviceQueues.get(request.fHandle.getFileReference().getDeviceHandle());
+        (queue == null ? defaultQueue : queue).add(request);
+    }
+
+    private class DeviceQueue {
+        private final ArrayDeque<IOManager.AsyncRequest> pending = new ArrayDeque<IOManager.AsyncRequest>();
+
+        private int workers;
+
+        private int readBatches;
+
+        private boolean writing;
+
+        void add(IOManager.AsyncRequest request) {
+            synchronized (this) {
+                pending.add(request);
+                if (workers >= queueDepth) {
+                    return;
+                }
+                ++workers;
+            }
+            executor.execute(new Worker(this));
+        }
+
+        /**
+         * Moves the next batch into the given list, or returns false and retires the calling worker if there is none
+         * it may start now. A worker is only retired while another one is running a batch, and that one takes the
+         * blocked requests when it is done.
+         */
+        synchronized boolean takeBatch(List<IOManager.AsyncRequest> batch) {
+            IOManager.AsyncRequest head = pending.peek();
+            if (head == null || writing || (!head.isRead() && readBatches > 0)) {
+                --workers;
+                return false;
+            }
+            if (!head.isRead()) {
+                batch.add(pending.poll());
+                writing = true;
+                return true;
+            }
+            while (!pending.isEmpty() && pending.peek().isRead() && batch.size() < MAX_BATCH_SIZE) {
+                batch.add(pending.poll());
+            }
+            ++readBatches;
+            return true;
+        }
+
+        synchronized void batchDone(boolean write) {
+            if (write) {
+                writing = false;
+            } else {
+                --readBatches;
+            }
+        }
+    }
+
+    private static class Worker implements Runnable {
+        private final DeviceQueue queue;
+
+        private final List<IOManager.AsyncRequest> batch = new ArrayList<IOManager.AsyncRequest>();
+
+        private Worker(DeviceQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            while (queue.takeBatch(batch)) {
+                boolean write = !batch.get(0).isRead();
+                try {
+                    if (write) {
+                        batch.get(0).run();
+                    } else {
+                        executeReads();
+                    }
+                } finally {
+                    batch.clear();
+                    queue.batchDone(write);
+                }
+            }
+        }
+
+        private void executeReads() {
+            if (batch.size() > 1) {
+                Collections.sort(batch, READ_ORDER);
+            }
+            int start = 0;
+            while (start < batch.size()) {
+                IOManager.AsyncRequest first = batch.get(start);
+                long end = first.offset + first.data.remaining();
+                int next = start + 1;
+                while (next < batch.size()) {
+                    IOManager.AsyncRequest r = batch.get(next);
+                    if (r.fHandle != first.fHandle || r.offset != end) {
+                        break;
+                    }
+                    end += r.data.remaining();
+                    ++next;
+                }
+                if (next - start == 1) {
+                    first.run();
+                } else {
+                    coalescedRead(batch.subList(start, next));
+                }
+                start = next;
+            }
+        }
+    }
+
+    private static void coalescedRead(List<IOManager.AsyncRequest> requests) {
+        ByteBuffer[] buffers = new ByteBuffer[requests.size()];
+        int[] positions = new int[buffers.length];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = requests.get(i).data;
+            positions[i] = buffers[i].position();
+            remaining += buffers[i].remaining();
+        }
+        HyracksDataException hde = null;
+        boolean eof = false;
+        FileChannel channel = requests.get(0).fHandle.getFileChannel();
+        // scattering reads move the channel position, which is shared by the workers of the device. All other
+        // accesses use positional reads and writes.
+        synchronized (channel) {
+            try {
+                channel.position(requests.get(0).offset);
+                while (remaining > 0) {
+                    long len = channel.read(buffers);
+                    if (len < 0) {
+                        eof = true;
+                        break;
+                    }
+                    remaining -= len;
+                }
+            } catch (IOException e) {
+                hde = new HyracksDataException(e);
+            }
+        }
+        for (int i = 0; i < buffers.length; ++i) {
+            int n = buffers[i].position() - positions[i];
+            requests.get(i).complete(n == 0 && eof ? -1 : n, hde);
+        }
+    }
+}
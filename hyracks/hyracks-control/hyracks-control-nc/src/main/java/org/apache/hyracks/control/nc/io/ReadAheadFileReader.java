@@ -0,0 +1,184 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.control.nc.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.IFileHandle;
+import org.apache.hyracks.api.io.IIOFuture;
+import org.apache.hyracks.api.io.IIOManager;
+import org.apache.hyracks.api.io.ISequentialFileReader;
+
+/**
+ * Reads a file range in chunks and keeps up to read-ahead depth chunks in flight while the consumer works on the
+ * current one. A depth of zero degenerates to one asynchronous read per chunk. The chunks are frames of the frame
+ * manager of the consumer, so the read-ahead counts against the consumer's memory budget.
+ */
+class ReadAheadFileReader implements ISequentialFileReader {
+    private final IIOManager ioManager;
+
+    private final IHyracksFrameMgrContext frameManager;
+
+    private final IFileHandle fHandle;
+
+    private final List<Chunk> chunks;
+
+    private final ArrayDeque<Chunk> inFlight;
+
+    private long nextOffset;
+
+    private long unrequested;
+
+    private Chunk current;
+
+    private boolean endReached;
+
+    ReadAheadFileReader(IIOManager ioManager, IHyracksFrameMgrContext frameManager, IFileHandle fHandle, long offset,
+            long length, int chunkSize, int readAheadDepth) throws HyracksDataException {
+        this.ioManager = ioManager;
+        this.frameManager = frameManager;
+        this.fHandle = fHandle;
+        nextOffset = offset;
+        unrequested = length;
+        chunks = new ArrayList<Chunk>(readAheadDepth + 1);
+        inFlight = new ArrayDeque<Chunk>(readAheadDepth + 1);
+        try {
+            for (int i = 0; i <= readAheadDepth && unrequested > 0; ++i) {
+                Chunk chunk = new Chunk(frameManager.allocateFrame(chunkSize));
+                chunks.add(chunk);
+                request(chunk);
+            }
+        } catch (HyracksDataException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer data) throws HyracksDataException {
+        int n = 0;
+        boolean eof = false;
+        while (data.hasRemaining()) {
+            if (current == null || !current.buffer.hasRemaining()) {
+                if (!nextChunk()) {
+                    eof = true;
+                    break;
+                }
+            }
+            ByteBuffer src = current.buffer;
+            int len = Math.min(src.remaining(), data.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + len);
+            data.put(src);
+            src.limit(limit);
+            n += len;
+        }
+        return n == 0 && eof ? -1 : n;
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        HyracksDataException failure = null;
+        InterruptedException interruption = null;
+        for (Chunk chunk : inFlight) {
+            try {
+                chunk.future.synchronize();
+            } catch (HyracksDataException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } catch (InterruptedException e) {
+                interruption = e;
+                break;
+            }
+        }
+        for (Chunk chunk : chunks) {
+            // a chunk that is still being read must not be handed out again, the task releases its memory when it ends.
+            if (chunk.future == null || chunk.future.isComplete()) {
+                frameManager.deallocateFrame(chunk.buffer);
+            }
+        }
+        chunks.clear();
+        inFlight.clear();
+        current = null;
+        endReached = true;
+        if (interruption != null) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(interruption);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private boolean nextChunk() throws HyracksDataException {
+        if (current != null) {
+            if (!endReached && unrequested > 0) {
+                request(current);
+            }
+            current = null;
+        }
+        if (endReached || inFlight.isEmpty()) {
+            endReached = true;
+            return false;
+        }
+        Chunk chunk = inFlight.poll();
+        int len;
+        try {
+            len = chunk.future.synchronize();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        }
+        if (len < chunk.requested) {
+            // the file is shorter than the range, the chunks behind this one read past its end.
+            endReached = true;
+        }
+        if (len <= 0) {
+            return false;
+        }
+        chunk.buffer.flip();
+        current = chunk;
+        return true;
+    }
+
+    private void request(Chunk chunk) {
+        int len = (int) Math.min(chunk.buffer.capacity(), unrequested);
+        chunk.buffer.clear();
+        chunk.buffer.limit(len);
+        chunk.requested = len;
+        chunk.future = ioManager.asyncRead(fHandle, nextOffset, chunk.buffer);
+        nextOffset += len;
+        unrequested -= len;
+        inFlight.add(chunk);
+    }
+
+    private static class Chunk {
+        private final ByteBuffer buffer;
+
+        private IIOFuture future;
+
+        private int requested;
+
+        private Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -63,10 +63,21 @@ public class DatasetNetworkManager implements IChannelConnectionFactory {
      */
     public DatasetNetworkManager(String inetAddress, int inetPort, IDatasetPartitionManager partitionManager, int nThreads,
                                  int nBuffers, String publicInetAddress, int publicInetPort) throws IOException {
+        this(inetAddress, inetPort, partitionManager, nThreads, nBuffers, publicInetAddress, publicInetPort,
+                MuxDemux.DEFAULT_READ_BUFFER_BUDGET);
+    }
+
+    /**
+     * @param readBufferBudget - Bytes of read buffers the input channels of one
+     *    connection may grow to together
+     */
+    public DatasetNetworkManager(String inetAddress, int inetPort, IDatasetPartitionManager partitionManager, int nThreads,
+                                 int nBuffers, String publicInetAddress, int publicInetPort, long readBufferBudget)
+            throws IOException {
         this.partitionManager = partitionManager;
         this.nBuffers = nBuffers;
         md = new MuxDemux(new InetSocketAddress(inetAddress, inetPort), new ChannelOpenListener(), nThreads,
-                MAX_CONNECTION_ATTEMPTS);
+                MAX_CONNECTION_ATTEMPTS, readBufferBudget);
         // Just save these values for the moment; may be reset in start()
         publicNetworkAddress = new NetworkAddress(publicInetAddress, publicInetPort);
     }
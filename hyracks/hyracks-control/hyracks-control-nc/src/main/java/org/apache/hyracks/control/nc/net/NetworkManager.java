@@ -42,7 +42,7 @@ public class NetworkManager implements IChannelConnectionFactory {
 
     private static final int MAX_CONNECTION_ATTEMPTS = 5;
 
-    static final int INITIAL_MESSAGE_SIZE = 20;
+    static final int INITIAL_MESSAGE_SIZE = 24;
 
     private final PartitionManager partitionManager;
 
@@ -57,10 +57,21 @@ public class NetworkManager implements IChannelConnectionFactory {
     public NetworkManager(String inetAddress, int inetPort, PartitionManager partitionManager, int nThreads, int nBuffers,
                           String publicInetAddress, int publicInetPort)
             throws IOException {
+        this(inetAddress, inetPort, partitionManager, nThreads, nBuffers, publicInetAddress, publicInetPort,
+                MuxDemux.DEFAULT_READ_BUFFER_BUDGET);
+    }
+
+    /**
+     * @param readBufferBudget
+     *            the bytes of read buffers the input channels of one connection may grow to together
+     */
+    public NetworkManager(String inetAddress, int inetPort, PartitionManager partitionManager, int nThreads, int nBuffers,
+                          String publicInetAddress, int publicInetPort, long readBufferBudget)
+            throws IOException {
         this.partitionManager = partitionManager;
         this.nBuffers = nBuffers;
         md = new MuxDemux(new InetSocketAddress(inetAddress, inetPort), new ChannelOpenListener(), nThreads,
-                MAX_CONNECTION_ATTEMPTS);
+                MAX_CONNECTION_ATTEMPTS, readBufferBudget);
         // Just save these values for the moment; may be reset in start()
         publicNetworkAddress = new NetworkAddress(publicInetAddress, publicInetPort);
     }
@@ -121,10 +132,12 @@ public class NetworkManager implements IChannelConnectionFactory {
         @Override
         public void accept(ByteBuffer buffer) {
             PartitionId pid = readInitialMessage(buffer);
+            boolean compressed = buffer.getInt() != 0;
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine("Received initial partition request: " + pid + " on channel: " + ccb);
             }
             noc = new NetworkOutputChannel(ccb, nBuffers);
+            noc.setCompressed(compressed);
             try {
                 partitionManager.registerPartitionRequest(pid, noc);
             } catch (HyracksException e) {
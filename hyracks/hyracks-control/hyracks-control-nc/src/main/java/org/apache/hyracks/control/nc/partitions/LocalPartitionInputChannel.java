@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.control.nc.partitions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.apache.hyracks.api.channels.IInputChannel;
+import org.apache.hyracks.api.channels.IInputChannelMonitor;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksCommonContext;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.HyracksException;
+import org.apache.hyracks.api.partitions.PartitionId;
+
+/**
+ * An input channel for a partition produced on the same node controller. It requests the partition from the
+ * partition manager directly, and the producer copies its frames into the buffers of this channel instead of sending
+ * them through the network manager. There are at most nBuffers buffers, and a buffer can only be filled again once the
+ * consumer has recycled it, so a producer that runs ahead of its consumer waits, as it does on a network channel.
+ */
+public class LocalPartitionInputChannel implements IInputChannel {
+    private final int nBuffers;
+
+    private final Queue<ByteBuffer> emptyQueue;
+
+    private final Queue<ByteBuffer> fullQueue;
+
+    private final PartitionId pid;
+
+    private final PartitionManager manager;
+
+    private final FrameWriter writer;
+
+    private IInputChannelMonitor monitor;
+
+    private Object attachment;
+
+    private int frameSize;
+
+    private int allocateCounter;
+
+    private boolean aborted;
+
+    public LocalPartitionInputChannel(int nBuffers, PartitionId pid, PartitionManager manager) {
+        this.nBuffers = nBuffers;
+        this.emptyQueue = new ArrayDeque<ByteBuffer>(nBuffers);
+        fullQueue = new ArrayDeque<ByteBuffer>(nBuffers);
+        this.pid = pid;
+        this.manager = manager;
+        writer = new FrameWriter();
+    }
+
+    @Override
+    public void registerMonitor(IInputChannelMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    @Override
+    public synchronized ByteBuffer getNextBuffer() {
+        return fullQueue.poll();
+    }
+
+    @Override
+    public void recycleBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        synchronized (this) {
+            emptyQueue.add(buffer);
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void open(IHyracksCommonContext ctx) throws HyracksDataException {
+        frameSize = ctx.getInitialFrameSize();
+        try {
+            manager.registerPartitionRequest(pid, writer);
+        } catch (HyracksException e) {
+            throw new HyracksDataException(e);
+        }
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        synchronized (this) {
+            aborted = true;
+            notifyAll();
+        }
+    }
+
+    private class FrameWriter implements IFrameWriter {
+        @Override
+        public void open() throws HyracksDataException {
+
+        }
+
+        /**
+         * Splits the frame into buffers of the initial frame size, which is how the channel readers expect a frame
+         * larger than that to arrive.
+         */
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            int startPos = 0;
+            do {
+                ByteBuffer destBuffer;
+                synchronized (LocalPartitionInputChannel.this) {
+                    while (true) {
+                        if (aborted) {
+                            throw new HyracksDataException("Channel has been closed by the consumer");
+                        }
+                        destBuffer = emptyQueue.poll();
+                        if (destBuffer == null && allocateCounter < nBuffers) {
+                            destBuffer = ByteBuffer.allocate(frameSize);
+                            allocateCounter++;
+                        }
+                        if (destBuffer != null) {
+                            break;
+                        }
+                        try {
+                            LocalPartitionInputChannel.this.wait();
+                        } catch (InterruptedException e) {
+                            throw new HyracksDataException(e);
+                        }
+                    }
+                }
+                buffer.position(startPos);
+                startPos = Math.min(startPos + destBuffer.capacity(), buffer.capacity());
+                buffer.limit(startPos);
+                destBuffer.clear();
+                destBuffer.put(buffer);
+                destBuffer.flip();
+                synchronized (LocalPartitionInputChannel.this) {
+                    fullQueue.add(destBuffer);
+                }
+                monitor.notifyDataAvailability(LocalPartitionInputChannel.this, 1);
+            } while (startPos < buffer.capacity());
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+            monitor.notifyFailure(LocalPartitionInputChannel.this);
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+            monitor.notifyEndOfStream(LocalPartitionInputChannel.this);
+        }
+    }
+}
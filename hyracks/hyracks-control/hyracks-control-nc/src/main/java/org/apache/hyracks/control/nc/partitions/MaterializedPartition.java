@@ -23,7 +23,9 @@ import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.io.FileReference;
 import org.apache.hyracks.api.io.IFileHandle;
 import org.apache.hyracks.api.io.IIOManager;
+import org.apache.hyracks.api.io.ISequentialFileReader;
 import org.apache.hyracks.api.partitions.IPartition;
+import org.apache.hyracks.comm.channels.FrameCompressor;
 import org.apache.hyracks.control.nc.io.IOManager;
 
 public class MaterializedPartition implements IPartition {
@@ -35,12 +37,24 @@ public class MaterializedPartition implements IPartition {
 
     private final IOManager ioManager;
 
+    private final boolean compressed;
+
     public MaterializedPartition(IHyracksTaskContext ctx, FileReference partitionFile, Executor executor,
             IOManager ioManager) {
+        this(ctx, partitionFile, executor, ioManager, false);
+    }
+
+    /**
+     * @param compressed
+     *            whether the file holds {@link FrameCompressor} records instead of frames
+     */
+    public MaterializedPartition(IHyracksTaskContext ctx, FileReference partitionFile, Executor executor,
+            IOManager ioManager, boolean compressed) {
         this.ctx = ctx;
         this.partitionFile = partitionFile;
         this.executor = executor;
         this.ioManager = ioManager;
+        this.compressed = compressed;
     }
 
     @Override
@@ -70,23 +84,31 @@ public class MaterializedPartition implements IPartition {
                             IIOManager.FileSyncMode.METADATA_ASYNC_DATA_ASYNC);
                     try {
                         writer.open();
+                        ByteBuffer buffer = ctx.allocateFrame();
+                        ISequentialFileReader reader = ioManager.createSequentialReader(ctx, fh, 0,
+                                Long.MAX_VALUE, buffer.capacity());
                         try {
-                            long offset = 0;
-                            ByteBuffer buffer = ctx.allocateFrame();
+                            if (compressed) {
+                                readRecords(reader, buffer, writer);
+                                return;
+                            }
                             while (true) {
                                 buffer.clear();
-                                long size = ioManager.syncRead(fh, offset, buffer);
+                                long size = reader.read(buffer);
                                 if (size < 0) {
                                     break;
                                 } else if (size < buffer.capacity()) {
                                     throw new HyracksDataException("Premature end of file");
                                 }
-                                offset += size;
                                 buffer.flip();
                                 writer.nextFrame(buffer);
                             }
                         } finally {
-                            writer.close();
+                            try {
+                                reader.close();
+                            } finally {
+                                writer.close();
+                            }
                         }
                     } finally {
                         ioManager.close(fh);
@@ -98,6 +120,35 @@ public class MaterializedPartition implements IPartition {
         });
     }
 
+    private static void readRecords(ISequentialFileReader reader, ByteBuffer buffer, IFrameWriter writer)
+            throws HyracksDataException {
+        FrameCompressor compressor = new FrameCompressor();
+        byte[] record = new byte[FrameCompressor.getMaxRecordLength(buffer.capacity(), 1)];
+        ByteBuffer header = ByteBuffer.wrap(record, 0, FrameCompressor.HEADER_SIZE);
+        while (true) {
+            header.clear();
+            long size = reader.read(header);
+            if (size < 0) {
+                break;
+            } else if (size < FrameCompressor.HEADER_SIZE) {
+                throw new HyracksDataException("Premature end of file");
+            }
+            int recordLength = FrameCompressor.getRecordLength(record, 0);
+            if (recordLength > record.length) {
+                throw new HyracksDataException("Corrupted frame record of " + recordLength + " bytes");
+            }
+            ByteBuffer body = ByteBuffer.wrap(record, FrameCompressor.HEADER_SIZE, recordLength
+                    - FrameCompressor.HEADER_SIZE);
+            if (body.hasRemaining() && reader.read(body) < recordLength - FrameCompressor.HEADER_SIZE) {
+                throw new HyracksDataException("Premature end of file");
+            }
+            buffer.clear();
+            compressor.decompress(record, 0, buffer);
+            buffer.flip();
+            writer.nextFrame(buffer);
+        }
+    }
+
     @Override
     public boolean isReusable() {
         return true;
@@ -26,7 +26,9 @@ import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.io.FileReference;
 import org.apache.hyracks.api.io.IFileHandle;
 import org.apache.hyracks.api.io.IIOManager;
+import org.apache.hyracks.api.job.profiling.counters.ICounter;
 import org.apache.hyracks.api.partitions.PartitionId;
+import org.apache.hyracks.comm.channels.FrameCompressor;
 import org.apache.hyracks.control.common.job.PartitionState;
 import org.apache.hyracks.control.nc.io.IOManager;
 
@@ -43,6 +45,16 @@ public class MaterializedPartitionWriter implements IFrameWriter {
 
     private final Executor executor;
 
+    private final boolean compressed;
+
+    private FrameCompressor compressor;
+
+    private byte[] record;
+
+    private ICounter rawBytesCounter;
+
+    private ICounter compressedBytesCounter;
+
     private FileReference fRef;
 
     private IFileHandle handle;
@@ -53,11 +65,21 @@ public class MaterializedPartitionWriter implements IFrameWriter {
 
     public MaterializedPartitionWriter(IHyracksTaskContext ctx, PartitionManager manager, PartitionId pid,
             TaskAttemptId taId, Executor executor) {
+        this(ctx, manager, pid, taId, executor, false);
+    }
+
+    /**
+     * @param compressed
+     *            whether to write every chunk of a frame as a {@link FrameCompressor} record
+     */
+    public MaterializedPartitionWriter(IHyracksTaskContext ctx, PartitionManager manager, PartitionId pid,
+            TaskAttemptId taId, Executor executor, boolean compressed) {
         this.ctx = ctx;
         this.manager = manager;
         this.pid = pid;
         this.taId = taId;
         this.executor = executor;
+        this.compressed = compressed;
     }
 
     @Override
@@ -76,7 +98,25 @@ public class MaterializedPartitionWriter implements IFrameWriter {
                     IIOManager.FileSyncMode.METADATA_ASYNC_DATA_ASYNC);
             size = 0;
         }
-        size += ctx.getIOManager().syncWrite(handle, size, buffer);
+        if (!compressed) {
+            size += ctx.getIOManager().syncWrite(handle, size, buffer);
+            return;
+        }
+        int frameSize = ctx.getInitialFrameSize();
+        if (compressor == null) {
+            compressor = new FrameCompressor();
+            record = new byte[FrameCompressor.getMaxRecordLength(frameSize, 1)];
+            String prefix = pid.getConnectorDescriptorId() + ".sender." + pid.getSenderIndex();
+            rawBytesCounter = ctx.getCounterContext().getCounter(prefix + ".rawBytes", true);
+            compressedBytesCounter = ctx.getCounterContext().getCounter(prefix + ".compressedBytes", true);
+        }
+        for (int chunkStart = buffer.position(); chunkStart < buffer.limit(); chunkStart += frameSize) {
+            int rawLength = Math.min(frameSize, buffer.limit() - chunkStart);
+            int recordLength = compressor.compress(buffer, chunkStart, rawLength, record);
+            size += ctx.getIOManager().syncWrite(handle, size, ByteBuffer.wrap(record, 0, recordLength));
+            rawBytesCounter.update(rawLength);
+            compressedBytesCounter.update(recordLength);
+        }
     }
 
     @Override
@@ -94,7 +134,7 @@ public class MaterializedPartitionWriter implements IFrameWriter {
         }
         if (!failed) {
             manager.registerPartition(pid, taId,
-                    new MaterializedPartition(ctx, fRef, executor, (IOManager) ctx.getIOManager()),
+                    new MaterializedPartition(ctx, fRef, executor, (IOManager) ctx.getIOManager(), compressed),
                     PartitionState.COMMITTED, taId.getAttempt() == 0 ? false : true);
 
         }
@@ -21,6 +21,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.dataflow.TaskAttemptId;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.exceptions.HyracksException;
@@ -46,7 +47,7 @@ public class PartitionManager {
 
     private final IWorkspaceFileFactory fileFactory;
 
-    private final Map<PartitionId, NetworkOutputChannel> partitionRequests = new HashMap<PartitionId, NetworkOutputChannel>();
+    private final Map<PartitionId, IFrameWriter> partitionRequests = new HashMap<PartitionId, IFrameWriter>();
 
     public PartitionManager(NodeControllerService ncs) {
         this.ncs = ncs;
@@ -62,9 +63,9 @@ public class PartitionManager {
             /**
              * process pending requests
              */
-            NetworkOutputChannel writer = partitionRequests.remove(pid);
+            IFrameWriter writer = partitionRequests.remove(pid);
             if (writer != null) {
-                writer.setFrameSize(partition.getTaskContext().getInitialFrameSize());
+                setFrameSize(writer, partition);
                 partition.writeTo(writer);
                 if (!partition.isReusable()) {
                     return;
@@ -110,13 +111,18 @@ public class PartitionManager {
         }
     }
 
-    public synchronized void registerPartitionRequest(PartitionId partitionId, NetworkOutputChannel writer)
+    /**
+     * @param writer
+     *            a {@link NetworkOutputChannel} for a remote consumer, or the writer of a
+     *            {@link LocalPartitionInputChannel} for a consumer on this node controller
+     */
+    public synchronized void registerPartitionRequest(PartitionId partitionId, IFrameWriter writer)
             throws HyracksException {
         try {
             List<IPartition> pList = availablePartitionMap.get(partitionId);
             if (pList != null && !pList.isEmpty()) {
                 IPartition partition = pList.get(0);
-                writer.setFrameSize(partition.getTaskContext().getInitialFrameSize());
+                setFrameSize(writer, partition);
                 partition.writeTo(writer);
                 if (!partition.isReusable()) {
                     availablePartitionMap.remove(partitionId);
@@ -130,6 +136,12 @@ public class PartitionManager {
         }
     }
 
+    private static void setFrameSize(IFrameWriter writer, IPartition partition) {
+        if (writer instanceof NetworkOutputChannel) {
+            ((NetworkOutputChannel) writer).setFrameSize(partition.getTaskContext().getInitialFrameSize());
+        }
+    }
+
     public IWorkspaceFileFactory getFileFactory() {
         return fileFactory;
     }
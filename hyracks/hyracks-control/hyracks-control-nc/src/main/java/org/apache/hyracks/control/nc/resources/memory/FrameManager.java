@@ -26,8 +26,15 @@ public class FrameManager implements IHyracksFrameMgrContext {
 
     private final int minFrameSize;
 
+    private final FramePool framePool;
+
     public FrameManager(int minFrameSize) {
+        this(minFrameSize, null);
+    }
+
+    public FrameManager(int minFrameSize, FramePool framePool) {
         this.minFrameSize = minFrameSize;
+        this.framePool = framePool;
     }
 
     @Override
@@ -45,11 +52,11 @@ public class FrameManager implements IHyracksFrameMgrContext {
         if (bytes % minFrameSize != 0) {
             throw new HyracksDataException("The size should be an integral multiple of the default frame size");
         }
-        ByteBuffer buffer = ByteBuffer.allocate(bytes);
         if (bytes / minFrameSize > FrameConstants.MAX_NUM_MINFRAME) {
             throw new HyracksDataException(
                     "Unable to allocate frame larger than:" + FrameConstants.MAX_NUM_MINFRAME + " bytes");
         }
+        ByteBuffer buffer = framePool != null ? framePool.allocate(bytes) : ByteBuffer.allocate(bytes);
         FrameHelper.serializeFrameSize(buffer, (byte) (bytes / minFrameSize));
         return (ByteBuffer) buffer.clear();
     }
@@ -58,7 +65,7 @@ public class FrameManager implements IHyracksFrameMgrContext {
     public ByteBuffer reallocateFrame(ByteBuffer tobeDeallocate, int newSizeInBytes, boolean copyOldData)
             throws HyracksDataException {
         if (!copyOldData) {
-            deallocateFrames(tobeDeallocate.capacity());
+            deallocateFrame(tobeDeallocate);
             return allocateFrame(newSizeInBytes);
         } else {
             ByteBuffer buffer = allocateFrame(newSizeInBytes);
@@ -74,6 +81,7 @@ public class FrameManager implements IHyracksFrameMgrContext {
                         + FrameConstants.MAX_NUM_MINFRAME);
             }
             FrameHelper.serializeFrameSize(buffer, (byte) (newSizeInBytes / minFrameSize));
+            deallocateFrame(tobeDeallocate);
             return buffer;
         }
     }
@@ -82,4 +90,11 @@ public class FrameManager implements IHyracksFrameMgrContext {
     public void deallocateFrames(int bytes) {
         //TODO make a global memory manager to allocate and deallocate the frames.
     }
+
+    @Override
+    public void deallocateFrame(ByteBuffer frame) {
+        if (framePool != null) {
+            framePool.release(frame);
+        }
+    }
 }
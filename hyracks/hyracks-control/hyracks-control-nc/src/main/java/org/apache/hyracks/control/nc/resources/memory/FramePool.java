@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.control.nc.resources.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps frames that were returned by their users so that later allocations of the same size do not have to create
+ * a new buffer. Frames are kept in one queue per size, which is always a multiple of the minimum frame size, and at
+ * most maxPooledBytes are kept in total; frames returned beyond that are left to the garbage collector.
+ * In debug mode (assertions enabled) returned frames are overwritten with a marker so that a use after release
+ * shows up as corrupt data, and returning a frame that is already pooled is rejected.
+ */
+public class FramePool {
+    private static final byte POISON = (byte) 0xDE;
+
+    private final long maxPooledBytes;
+
+    private final boolean debug;
+
+    private final ConcurrentMap<Integer, ConcurrentLinkedQueue<ByteBuffer>> sizeClasses;
+
+    private final AtomicLong pooledBytes;
+
+    private final Set<ByteBuffer> pooledFrames;
+
+    public FramePool(long maxPooledBytes) {
+        this(maxPooledBytes, FramePool.class.desiredAssertionStatus());
+    }
+
+    public FramePool(long maxPooledBytes, boolean debug) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.debug = debug;
+        sizeClasses = new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<ByteBuffer>>();
+        pooledBytes = new AtomicLong();
+        pooledFrames = debug ? Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>()) : null;
+    }
+
+    public ByteBuffer allocate(int bytes) {
+        ConcurrentLinkedQueue<ByteBuffer> queue = sizeClasses.get(bytes);
+        ByteBuffer frame = queue == null ? null : queue.poll();
+        if (frame == null) {
+            return ByteBuffer.allocate(bytes);
+        }
+        pooledBytes.addAndGet(-bytes);
+        if (debug) {
+            synchronized (pooledFrames) {
+                pooledFrames.remove(frame);
+            }
+        }
+        // callers expect the zeroed content of a fresh buffer.
+        Arrays.fill(frame.array(), (byte) 0);
+        frame.clear();
+        return frame;
+    }
+
+    public void release(ByteBuffer frame) {
+        if (frame == null || !frame.hasArray() || frame.arrayOffset() != 0) {
+            return;
+        }
+        int bytes = frame.capacity();
+        if (debug) {
+            synchronized (pooledFrames) {
+                if (!pooledFrames.add(frame)) {
+                    throw new IllegalStateException("Frame of " + bytes + " bytes was released twice");
+                }
+            }
+            Arrays.fill(frame.array(), POISON);
+        }
+        if (pooledBytes.addAndGet(bytes) > maxPooledBytes) {
+            pooledBytes.addAndGet(-bytes);
+            if (debug) {
+                synchronized (pooledFrames) {
+                    pooledFrames.remove(frame);
+                }
+            }
+            return;
+        }
+        ConcurrentLinkedQueue<ByteBuffer> queue = sizeClasses.get(bytes);
+        if (queue == null) {
+            ConcurrentLinkedQueue<ByteBuffer> newQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+            queue = sizeClasses.putIfAbsent(bytes, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        queue.offer(frame);
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+}
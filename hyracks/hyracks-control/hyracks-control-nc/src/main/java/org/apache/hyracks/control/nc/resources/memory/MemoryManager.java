@@ -18,12 +18,33 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hyracks.api.resources.memory.IMemoryManager;
 
+/**
+ * Tracks a memory budget. A memory manager may have a parent, in which case every allocation is also charged to the
+ * parent and fails if either budget is exhausted. The node controller owns the root budget, every joblet gets a
+ * child of it and every task a child of its joblet's budget, so a single job cannot take all of the node's memory
+ * and memory that a task forgot to return is released when the task ends.
+ */
 public class MemoryManager implements IMemoryManager {
+    private final MemoryManager parent;
+
+    private final MemoryManager root;
+
     private final long maxMemory;
 
     private final AtomicLong memory;
 
+    // counts deallocations in the whole hierarchy, guarded by the root's monitor.
+    private long releases;
+
+    private int waiters;
+
     public MemoryManager(long maxMemory) {
+        this(null, maxMemory);
+    }
+
+    public MemoryManager(MemoryManager parent, long maxMemory) {
+        this.parent = parent;
+        this.root = parent == null ? this : parent.root;
         this.maxMemory = maxMemory;
         this.memory = new AtomicLong(maxMemory);
     }
@@ -38,18 +59,123 @@ public class MemoryManager implements IMemoryManager {
         return memory.get();
     }
 
+    public long getAllocatedMemory() {
+        return maxMemory - memory.get();
+    }
+
     @Override
     public boolean allocate(long memory) {
-        // commented as now the deallocation is not implemented yet.
-        //        if (this.memory.addAndGet(-memory) < 0) {
-        //            this.memory.addAndGet(memory);
-        //            return false;
-        //        }
+        if (!reserve(memory)) {
+            return false;
+        }
+        if (parent != null && !parent.allocate(memory)) {
+            this.memory.addAndGet(memory);
+            return false;
+        }
         return true;
     }
 
+    /**
+     * Allocates memory, waiting up to the given time for other allocations in the hierarchy to be returned.
+     * 
+     * @param memory
+     *            the number of bytes to allocate
+     * @param timeout
+     *            the maximum time to wait in milliseconds
+     * @return true if the memory was allocated
+     * @throws InterruptedException
+     */
+    public boolean allocate(long memory, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            long releaseCount = root.getReleaseCount();
+            if (allocate(memory)) {
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || memory > maxMemory) {
+                return false;
+            }
+            root.awaitRelease(releaseCount, remaining);
+        }
+    }
+
+    /**
+     * Returns memory to this budget and its ancestors. Returning more memory than is allocated only returns the
+     * allocated amount, so that memory released by the owner of the budget (e.g. when a task ends) is not returned
+     * twice by a data structure that is closed later.
+     */
     @Override
     public void deallocate(long memory) {
-        this.memory.addAndGet(memory);
+        long released;
+        while (true) {
+            long available = this.memory.get();
+            released = Math.min(memory, maxMemory - available);
+            if (released <= 0) {
+                return;
+            }
+            if (this.memory.compareAndSet(available, available + released)) {
+                break;
+            }
+        }
+        if (parent != null) {
+            parent.deallocate(released);
+        } else {
+            signalRelease();
+        }
+    }
+
+    /**
+     * Returns memory to this budget only, the ancestors stay charged. This hands the allocation over to the parent,
+     * e.g. when a task ends but the frames it allocated live on in a state object of its joblet.
+     *
+     * @return the number of bytes that were handed over, at most the allocated amount
+     */
+    public long handOver(long memory) {
+        while (true) {
+            long available = this.memory.get();
+            long released = Math.min(memory, maxMemory - available);
+            if (released <= 0) {
+                return 0;
+            }
+            if (this.memory.compareAndSet(available, available + released)) {
+                return released;
+            }
+        }
+    }
+
+    private boolean reserve(long memory) {
+        while (true) {
+            long available = this.memory.get();
+            if (available < memory) {
+                return false;
+            }
+            if (this.memory.compareAndSet(available, available - memory)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized long getReleaseCount() {
+        return releases;
+    }
+
+    private synchronized void awaitRelease(long releaseCount, long timeout) throws InterruptedException {
+        if (releases != releaseCount) {
+            return;
+        }
+        ++waiters;
+        try {
+            wait(timeout);
+        } finally {
+            --waiters;
+        }
+    }
+
+    private synchronized void signalRelease() {
+        ++releases;
+        if (waiters > 0) {
+            notifyAll();
+        }
     }
-}
\ No newline at end of file
+}
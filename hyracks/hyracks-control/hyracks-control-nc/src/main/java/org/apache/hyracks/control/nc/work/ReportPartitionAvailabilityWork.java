@@ -18,14 +18,17 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Map;
 
+import org.apache.hyracks.api.channels.IInputChannel;
 import org.apache.hyracks.api.comm.NetworkAddress;
 import org.apache.hyracks.api.comm.PartitionChannel;
+import org.apache.hyracks.api.job.JobFlag;
 import org.apache.hyracks.api.job.JobId;
 import org.apache.hyracks.api.partitions.PartitionId;
 import org.apache.hyracks.comm.channels.NetworkInputChannel;
 import org.apache.hyracks.control.common.work.AbstractWork;
 import org.apache.hyracks.control.nc.Joblet;
 import org.apache.hyracks.control.nc.NodeControllerService;
+import org.apache.hyracks.control.nc.partitions.LocalPartitionInputChannel;
 
 public class ReportPartitionAvailabilityWork extends AbstractWork {
     private final NodeControllerService ncs;
@@ -46,9 +49,15 @@ public class ReportPartitionAvailabilityWork extends AbstractWork {
             Map<JobId, Joblet> jobletMap = ncs.getJobletMap();
             Joblet ji = jobletMap.get(pid.getJobId());
             if (ji != null) {
-                PartitionChannel channel = new PartitionChannel(pid, new NetworkInputChannel(ncs.getNetworkManager(),
-                        new InetSocketAddress(InetAddress.getByAddress(networkAddress.lookupIpAddress()),
-                                networkAddress.getPort()), pid, 5));
+                IInputChannel inputChannel;
+                if (networkAddress.equals(ncs.getNetworkManager().getPublicNetworkAddress())) {
+                    inputChannel = new LocalPartitionInputChannel(5, pid, ncs.getPartitionManager());
+                } else {
+                    inputChannel = new NetworkInputChannel(ncs.getNetworkManager(), new InetSocketAddress(
+                            InetAddress.getByAddress(networkAddress.lookupIpAddress()), networkAddress.getPort()),
+                            pid, 5, ji.getJobFlags().contains(JobFlag.COMPRESS_FRAMES), ji);
+                }
+                PartitionChannel channel = new PartitionChannel(pid, inputChannel);
                 ji.reportPartitionAvailability(channel);
             }
         } catch (Exception e) {
@@ -25,6 +25,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.hyracks.api.application.INCApplicationContext;
+import org.apache.hyracks.api.channels.IInputChannel;
 import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.comm.IPartitionCollector;
 import org.apache.hyracks.api.comm.IPartitionWriterFactory;
@@ -56,6 +57,7 @@ import org.apache.hyracks.control.nc.Joblet;
 import org.apache.hyracks.control.nc.NodeControllerService;
 import org.apache.hyracks.control.nc.Task;
 import org.apache.hyracks.control.nc.application.NCApplicationContext;
+import org.apache.hyracks.control.nc.partitions.LocalPartitionInputChannel;
 import org.apache.hyracks.control.nc.partitions.MaterializedPartitionWriter;
 import org.apache.hyracks.control.nc.partitions.MaterializingPipelinedPartition;
 import org.apache.hyracks.control.nc.partitions.PipelinedPartition;
@@ -126,7 +128,7 @@ public class StartTasksWork extends AbstractWork {
                 final int partition = tid.getPartition();
                 List<IConnectorDescriptor> inputs = ac.getActivityInputMap().get(aid);
                 Task task = new Task(joblet, taId, han.getClass().getName(), ncs.getExecutor(), ncs,
-                        createInputChannels(td, inputs));
+                        createInputChannels(joblet, td, inputs));
                 IOperatorNodePushable operator = han.createPushRuntime(task, rdp, partition, td.getPartitionCount());
 
                 List<IPartitionCollector> collectors = new ArrayList<IPartitionCollector>();
@@ -184,7 +186,7 @@ public class StartTasksWork extends AbstractWork {
             }
             ActivityClusterGraph acg = (ActivityClusterGraph) DeploymentUtils.deserialize(acgBytes, deploymentId,
                     appCtx);
-            ji = new Joblet(ncs, deploymentId, jobId, appCtx, acg);
+            ji = new Joblet(ncs, deploymentId, jobId, appCtx, acg, flags);
             jobletMap.put(jobId, ji);
         }
         return ji;
@@ -207,13 +209,15 @@ public class StartTasksWork extends AbstractWork {
             IConnectorPolicy cPolicy, final JobId jobId, final IConnectorDescriptor conn, final int senderIndex,
             final TaskAttemptId taId, EnumSet<JobFlag> flags) {
         IPartitionWriterFactory factory;
+        final boolean compressed = flags.contains(JobFlag.COMPRESS_FRAMES);
         if (cPolicy.materializeOnSendSide()) {
             if (cPolicy.consumerWaitsForProducerToFinish()) {
                 factory = new IPartitionWriterFactory() {
                     @Override
                     public IFrameWriter createFrameWriter(int receiverIndex) throws HyracksDataException {
                         return new MaterializedPartitionWriter(ctx, ncs.getPartitionManager(), new PartitionId(jobId,
-                                conn.getConnectorId(), senderIndex, receiverIndex), taId, ncs.getExecutor());
+                                conn.getConnectorId(), senderIndex, receiverIndex), taId, ncs.getExecutor(),
+                                compressed);
                     }
                 };
             } else {
@@ -243,6 +247,8 @@ public class StartTasksWork extends AbstractWork {
     /**
      * Create a list of known channels for each input connector
      * 
+     * @param joblet
+     *            the joblet of the task
      * @param td
      *            the task attempt id
      * @param inputs
@@ -250,8 +256,8 @@ public class StartTasksWork extends AbstractWork {
      * @return a list of known channels, one for each connector
      * @throws UnknownHostException
      */
-    private List<List<PartitionChannel>> createInputChannels(TaskAttemptDescriptor td, List<IConnectorDescriptor> inputs)
-            throws UnknownHostException {
+    private List<List<PartitionChannel>> createInputChannels(Joblet joblet, TaskAttemptDescriptor td,
+            List<IConnectorDescriptor> inputs) throws UnknownHostException {
         NetworkAddress[][] inputAddresses = td.getInputPartitionLocations();
         List<List<PartitionChannel>> channelsForInputConnectors = new ArrayList<List<PartitionChannel>>();
         if (inputAddresses != null) {
@@ -262,9 +268,16 @@ public class StartTasksWork extends AbstractWork {
                         NetworkAddress networkAddress = inputAddresses[i][j];
                         PartitionId pid = new PartitionId(jobId, inputs.get(i).getConnectorId(), j, td
                                 .getTaskAttemptId().getTaskId().getPartition());
-                        PartitionChannel channel = new PartitionChannel(pid, new NetworkInputChannel(
-                                ncs.getNetworkManager(), new InetSocketAddress(InetAddress.getByAddress(networkAddress
-                                        .lookupIpAddress()), networkAddress.getPort()), pid, 5));
+                        IInputChannel inputChannel;
+                        if (networkAddress.equals(ncs.getNetworkManager().getPublicNetworkAddress())) {
+                            inputChannel = new LocalPartitionInputChannel(5, pid, ncs.getPartitionManager());
+                        } else {
+                            inputChannel = new NetworkInputChannel(ncs.getNetworkManager(), new InetSocketAddress(
+                                    InetAddress.getByAddress(networkAddress.lookupIpAddress()),
+                                    networkAddress.getPort()), pid, 5, flags.contains(JobFlag.COMPRESS_FRAMES),
+                                    joblet);
+                        }
+                        PartitionChannel channel = new PartitionChannel(pid, inputChannel);
                         channels.add(channel);
                     }
                 }
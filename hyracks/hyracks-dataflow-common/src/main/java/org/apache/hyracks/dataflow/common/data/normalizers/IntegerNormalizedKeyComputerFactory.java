@@ -14,12 +14,12 @@
  */
 package org.apache.hyracks.dataflow.common.data.normalizers;
 
+import org.apache.hyracks.api.dataflow.value.IDecisiveNormalizedKeyComputerFactory;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
-import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import org.apache.hyracks.data.std.primitive.IntegerPointable;
 import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
 
-public class IntegerNormalizedKeyComputerFactory implements INormalizedKeyComputerFactory {
+public class IntegerNormalizedKeyComputerFactory implements IDecisiveNormalizedKeyComputerFactory {
     private static final long serialVersionUID = 1L;
 
     @Override
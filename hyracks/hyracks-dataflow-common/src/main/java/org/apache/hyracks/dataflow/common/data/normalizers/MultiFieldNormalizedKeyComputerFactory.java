@@ -0,0 +1,169 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.common.data.normalizers;
+
+import org.apache.hyracks.api.dataflow.value.IDecisiveNormalizedKeyComputerFactory;
+import org.apache.hyracks.api.dataflow.value.IMultiFieldNormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.IMultiWordNormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+
+/**
+ * Combines the normalized key computers of the leading sort fields into one normalized key prefix of up to
+ * {@link #MAX_NORMALIZED_KEY_LENGTH} ints. The prefix extends over a field only as long as every field before it is
+ * decisive, since a tie on a lossy normalized key says nothing about the order of the following fields. The last
+ * field of the prefix takes all the remaining ints if its computer is an {@link IMultiWordNormalizedKeyComputer},
+ * e.g. a string key gets 8 characters instead of 2.
+ */
+public class MultiFieldNormalizedKeyComputerFactory implements INormalizedKeyComputerFactory {
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_NORMALIZED_KEY_LENGTH = 4;
+
+    private final INormalizedKeyComputerFactory[] keyNormalizerFactories;
+
+    /**
+     * @param keyNormalizerFactories
+     *            one factory per sort field, in sort key order; a null entry ends the prefix
+     */
+    public MultiFieldNormalizedKeyComputerFactory(INormalizedKeyComputerFactory[] keyNormalizerFactories) {
+        this.keyNormalizerFactories = keyNormalizerFactories;
+    }
+
+    @Override
+    public IMultiFieldNormalizedKeyComputer createNormalizedKeyComputer() {
+        int fieldCount = 0;
+        int decisiveFields = 0;
+        while (fieldCount < keyNormalizerFactories.length && fieldCount < MAX_NORMALIZED_KEY_LENGTH
+                && keyNormalizerFactories[fieldCount] != null) {
+            boolean decisive = keyNormalizerFactories[fieldCount] instanceof IDecisiveNormalizedKeyComputerFactory;
+            fieldCount++;
+            if (!decisive) {
+                break;
+            }
+            decisiveFields++;
+        }
+        final INormalizedKeyComputer[] nkcs = new INormalizedKeyComputer[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            nkcs[i] = keyNormalizerFactories[i].createNormalizedKeyComputer();
+        }
+        int length = fieldCount;
+        if (fieldCount > decisiveFields && nkcs[fieldCount - 1] instanceof IMultiWordNormalizedKeyComputer) {
+            length = MAX_NORMALIZED_KEY_LENGTH;
+        }
+        // the field and the word within the field of every int of the prefix
+        final int[] keyFields = new int[length];
+        final int[] words = new int[length];
+        for (int i = 0; i < length; i++) {
+            keyFields[i] = Math.min(i, fieldCount - 1);
+            words[i] = i - keyFields[i];
+        }
+        final int decisiveFieldCount = decisiveFields;
+        return new IMultiFieldNormalizedKeyComputer() {
+            @Override
+            public int normalize(byte[] bytes, int start, int length) {
+                return nkcs.length == 0 ? 0 : nkcs[0].normalize(bytes, start, length);
+            }
+
+            @Override
+            public int normalize(int index, byte[] bytes, int start, int length) {
+                INormalizedKeyComputer nkc = nkcs[keyFields[index]];
+                if (words[index] > 0) {
+                    return ((IMultiWordNormalizedKeyComputer) nkc).normalize(words[index], bytes, start, length);
+                }
+                return nkc.normalize(bytes, start, length);
+            }
+
+            @Override
+            public int getNormalizedKeyLength() {
+                return keyFields.length;
+            }
+
+            @Override
+            public int getDecisiveFieldCount() {
+                return decisiveFieldCount;
+            }
+
+            @Override
+            public int getKeyField(int index) {
+                return keyFields[index];
+            }
+        };
+    }
+
+    /**
+     * @return the number of ints of the given prefix that are computed from the first fieldCount sort fields
+     */
+    public static int getPrefixLength(IMultiFieldNormalizedKeyComputer nkc, int fieldCount) {
+        int length = 0;
+        while (length < nkc.getNormalizedKeyLength() && nkc.getKeyField(length) < fieldCount) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Creates a multi-field view of the given factory's computer. Single-field factories yield a prefix of one int.
+     *
+     * @return null if the factory is null
+     */
+    public static IMultiFieldNormalizedKeyComputer createMultiFieldComputer(INormalizedKeyComputerFactory factory) {
+        if (factory == null) {
+            return null;
+        }
+        if (factory instanceof MultiFieldNormalizedKeyComputerFactory) {
+            return ((MultiFieldNormalizedKeyComputerFactory) factory).createNormalizedKeyComputer();
+        }
+        return new MultiFieldNormalizedKeyComputerFactory(new INormalizedKeyComputerFactory[] { factory })
+                .createNormalizedKeyComputer();
+    }
+
+    /**
+     * Wraps an already created computer. A computer that is not multi-field yields a non-decisive prefix of one int.
+     *
+     * @return null if the computer is null
+     */
+    public static IMultiFieldNormalizedKeyComputer asMultiFieldComputer(final INormalizedKeyComputer nkc) {
+        if (nkc == null || nkc instanceof IMultiFieldNormalizedKeyComputer) {
+            return (IMultiFieldNormalizedKeyComputer) nkc;
+        }
+        return new IMultiFieldNormalizedKeyComputer() {
+            @Override
+            public int normalize(byte[] bytes, int start, int length) {
+                return nkc.normalize(bytes, start, length);
+            }
+
+            @Override
+            public int normalize(int field, byte[] bytes, int start, int length) {
+                return nkc.normalize(bytes, start, length);
+            }
+
+            @Override
+            public int getNormalizedKeyLength() {
+                return 1;
+            }
+
+            @Override
+            public int getDecisiveFieldCount() {
+                return 0;
+            }
+
+            @Override
+            public int getKeyField(int index) {
+                return 0;
+            }
+        };
+    }
+}
@@ -14,7 +14,7 @@
  */
 package org.apache.hyracks.dataflow.common.data.normalizers;
 
-import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.IMultiWordNormalizedKeyComputer;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
 
@@ -22,16 +22,28 @@ public class UTF8StringNormalizedKeyComputerFactory implements INormalizedKeyCom
     private static final long serialVersionUID = 1L;
 
     @Override
-    public INormalizedKeyComputer createNormalizedKeyComputer() {
-        return new INormalizedKeyComputer() {
+    public IMultiWordNormalizedKeyComputer createNormalizedKeyComputer() {
+        return new IMultiWordNormalizedKeyComputer() {
             @Override
             public int normalize(byte[] bytes, int start, int length) {
+                return normalize(0, bytes, start, length);
+            }
+
+            /**
+             * Word i holds the characters 2i and 2i + 1, padded with 0 past the end of the string.
+             */
+            @Override
+            public int normalize(int word, byte[] bytes, int start, int length) {
                 int len = UTF8StringPointable.getUTFLength(bytes, start);
-                int nk = 0;
                 int offset = start + 2;
+                int end = offset + len;
+                for (int i = 0; i < 2 * word && offset < end; ++i) {
+                    offset += UTF8StringPointable.charSize(bytes, offset);
+                }
+                int nk = 0;
                 for (int i = 0; i < 2; ++i) {
                     nk <<= 16;
-                    if (i < len) {
+                    if (offset < end) {
                         nk += ((int) UTF8StringPointable.charAt(bytes, offset)) & 0xffff;
                         offset += UTF8StringPointable.charSize(bytes, offset);
                     }
@@ -40,4 +52,4 @@ public class UTF8StringNormalizedKeyComputerFactory implements INormalizedKeyCom
             }
         };
     }
-}
\ No newline at end of file
+}
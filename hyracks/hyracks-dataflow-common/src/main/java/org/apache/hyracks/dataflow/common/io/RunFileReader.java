@@ -17,28 +17,34 @@ package org.apache.hyracks.dataflow.common.io;
 import org.apache.hyracks.api.comm.FrameHelper;
 import org.apache.hyracks.api.comm.IFrame;
 import org.apache.hyracks.api.comm.IFrameReader;
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.io.FileReference;
 import org.apache.hyracks.api.io.IFileHandle;
 import org.apache.hyracks.api.io.IIOManager;
+import org.apache.hyracks.api.io.ISequentialFileReader;
 
 public class RunFileReader implements IFrameReader {
     private final FileReference file;
     private final IIOManager ioManager;
+    private final IHyracksFrameMgrContext frameManager;
     private final long size;
 
     private IFileHandle handle;
+    private ISequentialFileReader reader;
     private long readPtr;
 
-    public RunFileReader(FileReference file, IIOManager ioManager, long size) {
+    public RunFileReader(FileReference file, IIOManager ioManager, IHyracksFrameMgrContext frameManager, long size) {
         this.file = file;
         this.ioManager = ioManager;
+        this.frameManager = frameManager;
         this.size = size;
     }
 
     @Override
     public void open() throws HyracksDataException {
         handle = ioManager.open(file, IIOManager.FileReadWriteMode.READ_ONLY, null);
+        reader = null;
         readPtr = 0;
     }
 
@@ -48,7 +54,11 @@ public class RunFileReader implements IFrameReader {
             return false;
         }
         frame.reset();
-        int readLength = ioManager.syncRead(handle, readPtr, frame.getBuffer());
+        if (reader == null) {
+            // the run is consumed front to back, so let the I/O manager read ahead in chunks of one minimum frame.
+            reader = ioManager.createSequentialReader(frameManager, handle, 0, size, frame.getMinSize());
+        }
+        int readLength = reader.read(frame.getBuffer());
         if (readLength <= 0) {
             throw new HyracksDataException("Premature end of file");
         }
@@ -56,7 +66,7 @@ public class RunFileReader implements IFrameReader {
         frame.ensureFrameSize(frame.getMinSize() * FrameHelper.deserializeNumOfMinFrame(frame.getBuffer()));
         if (frame.getBuffer().hasRemaining()) {
             if (readPtr < size) {
-                readLength = ioManager.syncRead(handle, readPtr, frame.getBuffer());
+                readLength = reader.read(frame.getBuffer());
                 if (readLength < 0) {
                     throw new HyracksDataException("Premature end of file");
                 }
@@ -72,7 +82,14 @@ public class RunFileReader implements IFrameReader {
 
     @Override
     public void close() throws HyracksDataException {
-        ioManager.close(handle);
+        try {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        } finally {
+            ioManager.close(handle);
+        }
     }
 
     public long getFileSize() {
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.common.io;
+
+import java.util.List;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * Reads several runs one after the other, as if they were a single run. Only one of the runs is open at a time.
+ */
+public class RunFileSequenceReader implements IFrameReader {
+    private final List<RunFileReader> readers;
+    private int current;
+
+    public RunFileSequenceReader(List<RunFileReader> readers) {
+        this.readers = readers;
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        current = 0;
+        if (!readers.isEmpty()) {
+            readers.get(0).open();
+        }
+    }
+
+    @Override
+    public boolean nextFrame(IFrame frame) throws HyracksDataException {
+        while (current < readers.size()) {
+            if (readers.get(current).nextFrame(frame)) {
+                return true;
+            }
+            readers.get(current).close();
+            current++;
+            if (current < readers.size()) {
+                readers.get(current).open();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        if (current < readers.size()) {
+            readers.get(current).close();
+            current = readers.size();
+        }
+    }
+
+    public long getFileSize() {
+        long size = 0;
+        for (RunFileReader reader : readers) {
+            size += reader.getFileSize();
+        }
+        return size;
+    }
+}
@@ -17,6 +17,7 @@ package org.apache.hyracks.dataflow.common.io;
 import java.nio.ByteBuffer;
 
 import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.io.FileReference;
 import org.apache.hyracks.api.io.IFileHandle;
@@ -25,14 +26,20 @@ import org.apache.hyracks.api.io.IIOManager;
 public class RunFileWriter implements IFrameWriter {
     private final FileReference file;
     private final IIOManager ioManager;
+    private final IHyracksFrameMgrContext frameManager;
     private boolean failed;
 
     private IFileHandle handle;
     private long size;
 
-    public RunFileWriter(FileReference file, IIOManager ioManager) {
+    /**
+     * @param frameManager
+     *            the frame manager that the read-ahead buffers of the readers of the run are charged to
+     */
+    public RunFileWriter(FileReference file, IIOManager ioManager, IHyracksFrameMgrContext frameManager) {
         this.file = file;
         this.ioManager = ioManager;
+        this.frameManager = frameManager;
     }
 
     @Override
@@ -73,6 +80,6 @@ public class RunFileWriter implements IFrameWriter {
         if (failed) {
             throw new HyracksDataException("createReader() called on a failed RunFileWriter");
         }
-        return new RunFileReader(file, ioManager, size);
+        return new RunFileReader(file, ioManager, frameManager, size);
     }
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.common.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hyracks.api.comm.FrameHelper;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.HyracksException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.api.io.IFileHandle;
+import org.apache.hyracks.api.io.IIOManager;
+import org.apache.hyracks.api.io.IODeviceHandle;
+import org.apache.hyracks.api.io.ISequentialFileReader;
+import org.apache.hyracks.control.nc.io.IOManager;
+import org.apache.hyracks.control.nc.resources.memory.FrameManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RunFileReaderTest {
+    private static final int FRAME_SIZE = 256;
+    private static final int NUM_FRAMES = 100;
+    private static final int MAX_FRAME_MULTIPLE = 4;
+    private static final int[] READ_AHEAD_DEPTHS = { 0, 1, 4 };
+    private static final int NUM_CONCURRENT_READERS = 8;
+
+    private ExecutorService executor;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        file = File.createTempFile("runFileReaderTest", ".run");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void readFramesTest() throws Exception {
+        for (int depth : READ_AHEAD_DEPTHS) {
+            IOManager ioManager = createIOManager(depth);
+            FrameManager frameManager = new FrameManager(FRAME_SIZE);
+            List<Integer> frameSizes = writeFrames(ioManager, frameManager);
+            RunFileReader reader = new RunFileReader(new FileReference(file), ioManager, frameManager, file.length());
+            VSizeFrame frame = new VSizeFrame(frameManager);
+            reader.open();
+            try {
+                for (int i = 0; i < frameSizes.size(); ++i) {
+                    assertTrue(reader.nextFrame(frame));
+                    ByteBuffer buffer = frame.getBuffer();
+                    assertEquals(frameSizes.get(i).intValue(), buffer.remaining());
+                    for (int j = 1; j < buffer.limit(); ++j) {
+                        assertEquals((byte) (i + j), buffer.get(j));
+                    }
+                }
+                assertFalse(reader.nextFrame(frame));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void concurrentReadersTest() throws Exception {
+        final IOManager ioManager = createIOManager(2);
+        final List<Integer> frameSizes = writeFrames(ioManager, new FrameManager(FRAME_SIZE));
+        final CountingFrameManager frameManager = new CountingFrameManager(FRAME_SIZE);
+        final long fileSize = file.length();
+        List<Future<Void>> readers = new ArrayList<Future<Void>>();
+        ExecutorService readerExecutor = Executors.newFixedThreadPool(NUM_CONCURRENT_READERS);
+        try {
+            for (int r = 0; r < NUM_CONCURRENT_READERS; ++r) {
+                readers.add(readerExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        RunFileReader reader = new RunFileReader(new FileReference(file), ioManager, frameManager,
+                                fileSize);
+                        VSizeFrame frame = new VSizeFrame(new FrameManager(FRAME_SIZE));
+                        reader.open();
+                        try {
+                            for (int i = 0; i < frameSizes.size(); ++i) {
+                                assertTrue(reader.nextFrame(frame));
+                                ByteBuffer buffer = frame.getBuffer();
+                                assertEquals(frameSizes.get(i).intValue(), buffer.remaining());
+                                for (int j = 1; j < buffer.limit(); ++j) {
+                                    assertEquals((byte) (i + j), buffer.get(j));
+                                }
+                            }
+                            assertFalse(reader.nextFrame(frame));
+                        } finally {
+                            reader.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            readerExecutor.shutdownNow();
+        }
+        // every read-ahead chunk was returned to the frame manager it was charged to.
+        assertEquals(0, frameManager.outstandingFrames.get());
+    }
+
+    @Test
+    public void sequentialReaderTest() throws Exception {
+        byte[] content = new byte[10000];
+        new Random(0).nextBytes(content);
+        IOManager ioManager = createIOManager(2);
+        FileReference fileRef = new FileReference(file);
+        IFileHandle handle = ioManager.open(fileRef, IIOManager.FileReadWriteMode.READ_WRITE,
+                IIOManager.FileSyncMode.METADATA_ASYNC_DATA_ASYNC);
+        try {
+            ioManager.syncWrite(handle, 0, ByteBuffer.wrap(content));
+            // the range runs past the end of the file and the chunk size does not divide the file size.
+            ISequentialFileReader reader = ioManager.createSequentialReader(new FrameManager(333), handle, 100,
+                    Long.MAX_VALUE, 333);
+            ByteBuffer buffer = ByteBuffer.allocate(517);
+            int offset = 100;
+            try {
+                while (true) {
+                    buffer.clear();
+                    int n = reader.read(buffer);
+                    if (n < 0) {
+                        break;
+                    }
+                    assertEquals(Math.min(buffer.capacity(), content.length - offset), n);
+                    for (int i = 0; i < n; ++i) {
+                        assertEquals(content[offset + i], buffer.get(i));
+                    }
+                    offset += n;
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(content.length, offset);
+        } finally {
+            ioManager.close(handle);
+        }
+    }
+
+    private IOManager createIOManager(int readAheadDepth) throws HyracksException {
+        List<IODeviceHandle> devices = new ArrayList<IODeviceHandle>();
+        devices.add(new IODeviceHandle(new File(System.getProperty("java.io.tmpdir")), "."));
+        IOManager ioManager = new IOManager(devices, readAheadDepth);
+        ioManager.setExecutor(executor);
+        return ioManager;
+    }
+
+    private List<Integer> writeFrames(IOManager ioManager, FrameManager frameManager) throws Exception {
+        List<Integer> frameSizes = new ArrayList<Integer>();
+        Random rnd = new Random(0);
+        RunFileWriter writer = new RunFileWriter(new FileReference(file), ioManager, frameManager);
+        writer.open();
+        try {
+            for (int i = 0; i < NUM_FRAMES; ++i) {
+                int multiple = 1 + rnd.nextInt(MAX_FRAME_MULTIPLE);
+                ByteBuffer buffer = frameManager.allocateFrame(multiple * FRAME_SIZE);
+                FrameHelper.serializeFrameSize(buffer, (byte) multiple);
+                for (int j = 1; j < buffer.capacity(); ++j) {
+                    buffer.put(j, (byte) (i + j));
+                }
+                writer.nextFrame(buffer);
+                frameSizes.add(buffer.capacity());
+            }
+        } finally {
+            writer.close();
+        }
+        return frameSizes;
+    }
+
+    private static class CountingFrameManager extends FrameManager {
+        private final AtomicInteger outstandingFrames = new AtomicInteger();
+
+        private CountingFrameManager(int minFrameSize) {
+            super(minFrameSize);
+        }
+
+        @Override
+        public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+            ByteBuffer frame = super.allocateFrame(bytes);
+            outstandingFrames.incrementAndGet();
+            return frame;
+        }
+
+        @Override
+        public void deallocateFrame(ByteBuffer frame) {
+            outstandingFrames.decrementAndGet();
+            super.deallocateFrame(frame);
+        }
+    }
+}
@@ -122,7 +122,7 @@ public class ShuffleFrameReader implements IFrameReader {
         for (int i = 0; i < runFileWriters.size(); i++) {
             runs.add(new RunAndMaxFrameSizePair(runFileWriters.get(i).createReader(), runFileMaxFrameSize.get(i)));
         }
-        RunFileWriter rfw = new RunFileWriter(outFile, ctx.getIOManager());
+        RunFileWriter rfw = new RunFileWriter(outFile, ctx.getIOManager(), ctx);
         ExternalSortRunMerger merger = new ExternalSortRunMerger(ctx, null, runs, new int[] { 0 },
                 comparators, null, recordDescriptor, framesLimit, rfw);
         merger.process();
@@ -179,7 +179,7 @@ public class ShuffleFrameReader implements IFrameReader {
             fta.reset(buffer, true);
             try {
                 file = ctx.createManagedWorkspaceFile(ShuffleFrameReader.class.getName() + ".run");
-                rfw = new RunFileWriter(file, ctx.getIOManager());
+                rfw = new RunFileWriter(file, ctx.getIOManager(), ctx);
             } catch (IOException e) {
                 throw new HyracksDataException(e);
             }
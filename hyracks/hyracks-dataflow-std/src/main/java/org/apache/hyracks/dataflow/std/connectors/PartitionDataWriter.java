@@ -32,6 +32,7 @@ public class PartitionDataWriter implements IFrameWriter {
     private final int consumerPartitionCount;
     private final IFrameWriter[] pWriters;
     private final FrameTupleAppender[] appenders;
+    private final VSizeFrame[] frames;
     private final FrameTupleAccessor tupleAccessor;
     private final ITuplePartitionComputer tpc;
     private final IHyracksTaskContext ctx;
@@ -42,6 +43,7 @@ public class PartitionDataWriter implements IFrameWriter {
         this.consumerPartitionCount = consumerPartitionCount;
         pWriters = new IFrameWriter[consumerPartitionCount];
         appenders = new FrameTupleAppender[consumerPartitionCount];
+        frames = new VSizeFrame[consumerPartitionCount];
         for (int i = 0; i < consumerPartitionCount; ++i) {
             try {
                 pWriters[i] = pwFactory.createFrameWriter(i);
@@ -63,6 +65,7 @@ public class PartitionDataWriter implements IFrameWriter {
             }
             pWriters[i].close();
         }
+        releaseFrames();
     }
 
     @Override
@@ -89,7 +92,18 @@ public class PartitionDataWriter implements IFrameWriter {
 
     private void allocateFrames() throws HyracksDataException {
         for (int i = 0; i < appenders.length; ++i) {
-            appenders[i].reset(new VSizeFrame(ctx), true);
+            frames[i] = new VSizeFrame(ctx);
+            appenders[i].reset(frames[i], true);
+        }
+    }
+
+    private void releaseFrames() {
+        if (allocatedFrame) {
+            for (int i = 0; i < frames.length; ++i) {
+                ctx.deallocateFrame(frames[i].getBuffer());
+                frames[i] = null;
+            }
+            allocatedFrame = false;
         }
     }
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.connectors;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.IPartitionCollector;
+import org.apache.hyracks.api.comm.IPartitionWriterFactory;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.IConnectorDescriptorRegistry;
+import org.apache.hyracks.dataflow.std.base.AbstractMToNConnectorDescriptor;
+import org.apache.hyracks.dataflow.std.collectors.NonDeterministicChannelReader;
+import org.apache.hyracks.dataflow.std.collectors.NonDeterministicFrameReader;
+import org.apache.hyracks.dataflow.std.collectors.PartitionCollector;
+
+/**
+ * A hash partitioning connector for the inputs of a join whose keys are skewed. The tuples of a few known heavy
+ * hitter keys do not all go to the partition of their key: the connector of the build side replicates them to every
+ * consumer, and the connector of the probe side spreads them over the consumers in a round-robin fashion. Each probe
+ * tuple of a heavy key then still meets every build tuple of its key exactly once, so both inputs of the join have
+ * to go through this connector with the same partition computer and heavy hitters.
+ * A key is identified by the value of the partitioner for {@link #KEY_HASH_RANGE} partitions; all the other tuples
+ * go to the partition of that value modulo the number of consumers.
+ */
+public class SkewAwareMToNPartitioningConnectorDescriptor extends AbstractMToNConnectorDescriptor {
+    private static final long serialVersionUID = 1L;
+
+    public static final int KEY_HASH_RANGE = Integer.MAX_VALUE;
+
+    private final ITuplePartitionComputerFactory tpcf;
+    private final int[] heavyHitterHashes;
+    private final boolean replicateHeavyHitters;
+
+    public SkewAwareMToNPartitioningConnectorDescriptor(IConnectorDescriptorRegistry spec,
+            ITuplePartitionComputerFactory tpcf, int[] heavyHitterHashes, boolean replicateHeavyHitters) {
+        super(spec);
+        this.tpcf = tpcf;
+        this.heavyHitterHashes = Arrays.copyOf(heavyHitterHashes, heavyHitterHashes.length);
+        Arrays.sort(this.heavyHitterHashes);
+        this.replicateHeavyHitters = replicateHeavyHitters;
+    }
+
+    @Override
+    public IFrameWriter createPartitioner(IHyracksTaskContext ctx, RecordDescriptor recordDesc,
+            IPartitionWriterFactory edwFactory, int index, int nProducerPartitions, int nConsumerPartitions)
+            throws HyracksDataException {
+        return new SkewAwarePartitionDataWriter(ctx, nConsumerPartitions, edwFactory, recordDesc,
+                tpcf.createPartitioner(), heavyHitterHashes, replicateHeavyHitters, index);
+    }
+
+    @Override
+    public IPartitionCollector createPartitionCollector(IHyracksTaskContext ctx, RecordDescriptor recordDesc,
+            int index, int nProducerPartitions, int nConsumerPartitions) throws HyracksDataException {
+        BitSet expectedPartitions = new BitSet(nProducerPartitions);
+        expectedPartitions.set(0, nProducerPartitions);
+        NonDeterministicChannelReader channelReader = new NonDeterministicChannelReader(nProducerPartitions,
+                expectedPartitions);
+        NonDeterministicFrameReader frameReader = new NonDeterministicFrameReader(channelReader);
+        return new PartitionCollector(ctx, getConnectorId(), index, expectedPartitions, frameReader, channelReader);
+    }
+}
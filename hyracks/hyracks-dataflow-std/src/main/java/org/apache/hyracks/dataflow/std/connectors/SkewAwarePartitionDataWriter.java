@@ -0,0 +1,142 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.connectors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.IPartitionWriterFactory;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+
+/**
+ * The sender side of {@link SkewAwareMToNPartitioningConnectorDescriptor}.
+ */
+public class SkewAwarePartitionDataWriter implements IFrameWriter {
+    private final int consumerPartitionCount;
+    private final IFrameWriter[] pWriters;
+    private final FrameTupleAppender[] appenders;
+    private final VSizeFrame[] frames;
+    private final FrameTupleAccessor tupleAccessor;
+    private final ITuplePartitionComputer tpc;
+    private final IHyracksTaskContext ctx;
+    private final int[] heavyHitterHashes;
+    private final boolean replicateHeavyHitters;
+    private int nextSpreadPartition;
+    private boolean allocatedFrame = false;
+
+    /**
+     * @param heavyHitterHashes
+     *            the sorted hashes of the heavy hitter keys
+     */
+    public SkewAwarePartitionDataWriter(IHyracksTaskContext ctx, int consumerPartitionCount,
+            IPartitionWriterFactory pwFactory, RecordDescriptor recordDescriptor, ITuplePartitionComputer tpc,
+            int[] heavyHitterHashes, boolean replicateHeavyHitters, int senderIndex) throws HyracksDataException {
+        this.consumerPartitionCount = consumerPartitionCount;
+        pWriters = new IFrameWriter[consumerPartitionCount];
+        appenders = new FrameTupleAppender[consumerPartitionCount];
+        frames = new VSizeFrame[consumerPartitionCount];
+        for (int i = 0; i < consumerPartitionCount; ++i) {
+            try {
+                pWriters[i] = pwFactory.createFrameWriter(i);
+                appenders[i] = new FrameTupleAppender();
+            } catch (IOException e) {
+                throw new HyracksDataException(e);
+            }
+        }
+        tupleAccessor = new FrameTupleAccessor(recordDescriptor);
+        this.tpc = tpc;
+        this.ctx = ctx;
+        this.heavyHitterHashes = heavyHitterHashes;
+        this.replicateHeavyHitters = replicateHeavyHitters;
+        // senders start spreading at different consumers, so that they do not all send their first tuples to one
+        this.nextSpreadPartition = senderIndex % consumerPartitionCount;
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        for (int i = 0; i < pWriters.length; ++i) {
+            pWriters[i].open();
+        }
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (!allocatedFrame) {
+            allocateFrames();
+            allocatedFrame = true;
+        }
+        tupleAccessor.reset(buffer);
+        int tupleCount = tupleAccessor.getTupleCount();
+        for (int i = 0; i < tupleCount; ++i) {
+            int keyHash = tpc.partition(tupleAccessor, i, SkewAwareMToNPartitioningConnectorDescriptor.KEY_HASH_RANGE);
+            if (Arrays.binarySearch(heavyHitterHashes, keyHash) < 0) {
+                int h = keyHash % consumerPartitionCount;
+                FrameUtils.appendToWriter(pWriters[h], appenders[h], tupleAccessor, i);
+            } else if (replicateHeavyHitters) {
+                for (int h = 0; h < consumerPartitionCount; ++h) {
+                    FrameUtils.appendToWriter(pWriters[h], appenders[h], tupleAccessor, i);
+                }
+            } else {
+                int h = nextSpreadPartition;
+                nextSpreadPartition = (nextSpreadPartition + 1) % consumerPartitionCount;
+                FrameUtils.appendToWriter(pWriters[h], appenders[h], tupleAccessor, i);
+            }
+        }
+    }
+
+    private void allocateFrames() throws HyracksDataException {
+        for (int i = 0; i < appenders.length; ++i) {
+            frames[i] = new VSizeFrame(ctx);
+            appenders[i].reset(frames[i], true);
+        }
+    }
+
+    private void releaseFrames() {
+        if (allocatedFrame) {
+            for (int i = 0; i < frames.length; ++i) {
+                ctx.deallocateFrame(frames[i].getBuffer());
+                frames[i] = null;
+            }
+            allocatedFrame = false;
+        }
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        for (int i = 0; i < appenders.length; ++i) {
+            pWriters[i].fail();
+        }
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        for (int i = 0; i < pWriters.length; ++i) {
+            if (allocatedFrame) {
+                appenders[i].flush(pWriters[i], true);
+            }
+            pWriters[i].close();
+        }
+        releaseFrames();
+    }
+}
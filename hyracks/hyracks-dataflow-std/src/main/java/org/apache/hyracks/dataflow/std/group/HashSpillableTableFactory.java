@@ -30,11 +30,14 @@ import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
 import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
 import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import org.apache.hyracks.dataflow.std.structures.ISerializableTable;
+import org.apache.hyracks.dataflow.std.structures.ITuplePointerTable;
+import org.apache.hyracks.dataflow.std.structures.PrimitiveKeyHashTable;
 import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
 import org.apache.hyracks.dataflow.std.structures.TuplePointer;
 
@@ -90,6 +93,9 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
         final ITuplePartitionComputer tpc = tpcf.createPartitioner();
 
+        // a single fixed-width group key is looked up by its bytes, without hashing or comparing the stored tuples
+        final int primitiveKeyLength = PrimitiveKeyHashTable.getKeyLength(inRecordDescriptor, keyFields);
+
         final INormalizedKeyComputer nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory
                 .createNormalizedKeyComputer();
 
@@ -116,12 +122,19 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
             private int lastBufIndex;
 
+            // lowered to the frames at hand once the memory budget of the task refuses a frame
+            private int frameLimit = framesLimit;
+
             private IFrame outputFrame;
             private FrameTupleAppender outputAppender;
 
             private FrameTupleAppender stateAppender = new FrameTupleAppender();
 
-            private final ISerializableTable table = new SerializableHashTable(tableSize, ctx);
+            private final PrimitiveKeyHashTable primitiveTable = primitiveKeyLength > 0 ? new PrimitiveKeyHashTable(
+                    ctx, primitiveKeyLength, tableSize) : null;
+            private final ISerializableTable serializableTable = primitiveKeyLength > 0 ? null
+                    : new SerializableHashTable(tableSize, ctx);
+            private final ITuplePointerTable table = primitiveKeyLength > 0 ? primitiveTable : serializableTable;
             private final TuplePointer storedTuplePointer = new TuplePointer();
             private final List<IFrame> frames = new ArrayList<>();
 
@@ -139,7 +152,8 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
                 tPointers = new int[totalTCount * 3];
                 int ptr = 0;
 
-                for (int i = 0; i < tableSize; i++) {
+                int nEntries = getTableSize();
+                for (int i = 0; i < nEntries; i++) {
                     int entry = i;
                     int offset = 0;
                     do {
@@ -182,6 +196,9 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
             public boolean insert(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
                 if (lastBufIndex < 0)
                     nextAvailableFrame();
+                if (primitiveKeyLength > 0) {
+                    return insertPrimitiveKey(accessor, tIndex);
+                }
                 int entry = tpc.partition(accessor, tIndex, tableSize);
                 boolean foundGroup = false;
                 int offset = 0;
@@ -198,37 +215,90 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
                 } while (true);
 
                 if (!foundGroup) {
+                    if (!appendNewGroup(accessor, tIndex)) {
+                        return false;
+                    }
+                    try {
+                        serializableTable.insert(entry, storedTuplePointer);
+                    } catch (InsufficientMemoryException e) {
+                        return spillOnRefusedFrame(e);
+                    }
+                } else {
 
-                    stateTupleBuilder.reset();
+                    aggregator.aggregate(accessor, tIndex, storedKeysAccessor1, storedTuplePointer.tupleIndex,
+                            aggregateState);
 
-                    for (int k = 0; k < keyFields.length; k++) {
-                        stateTupleBuilder.addField(accessor, tIndex, keyFields[k]);
-                    }
+                }
+                return true;
+            }
 
-                    aggregator.init(stateTupleBuilder, accessor, tIndex, aggregateState);
-                    if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
-                            stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
-                        if (!nextAvailableFrame()) {
-                            return false;
-                        }
-                        if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
-                                stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
-                            throw new HyracksDataException("Cannot init external aggregate state in a frame.");
-                        }
+            private boolean insertPrimitiveKey(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+                long key = primitiveTable.getKey(accessor, tIndex, keyFields[0]);
+                int slot = primitiveTable.findFirst(key);
+                if (slot < 0) {
+                    if (!appendNewGroup(accessor, tIndex)) {
+                        return false;
+                    }
+                    try {
+                        primitiveTable.put(key, storedTuplePointer);
+                    } catch (InsufficientMemoryException e) {
+                        return spillOnRefusedFrame(e);
                     }
-
-                    storedTuplePointer.frameIndex = lastBufIndex;
-                    storedTuplePointer.tupleIndex = stateAppender.getTupleCount() - 1;
-                    table.insert(entry, storedTuplePointer);
                 } else {
-
+                    primitiveTable.getTuplePointer(slot, 0, storedTuplePointer);
+                    storedKeysAccessor1.reset(frames.get(storedTuplePointer.frameIndex).getBuffer());
                     aggregator.aggregate(accessor, tIndex, storedKeysAccessor1, storedTuplePointer.tupleIndex,
                             aggregateState);
+                }
+                return true;
+            }
 
+            /**
+             * The hash table could not grow, so the caller has to spill the groups and insert the tuple again. The
+             * state appended for the tuple is not reachable from the table, it is dropped with the other frames.
+             *
+             * @return false, unless there is nothing to spill
+             */
+            private boolean spillOnRefusedFrame(InsufficientMemoryException e) throws HyracksDataException {
+                if (table.getTupleCount() == 0) {
+                    throw e;
+                }
+                return false;
+            }
+
+            /**
+             * Initializes the aggregate state of a new group and points the stored tuple pointer to it.
+             *
+             * @return false if there is no frame left for the state
+             */
+            private boolean appendNewGroup(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+                stateTupleBuilder.reset();
+
+                for (int k = 0; k < keyFields.length; k++) {
+                    stateTupleBuilder.addField(accessor, tIndex, keyFields[k]);
+                }
+
+                aggregator.init(stateTupleBuilder, accessor, tIndex, aggregateState);
+                if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
+                        stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
+                    if (!nextAvailableFrame()) {
+                        return false;
+                    }
+                    if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
+                            stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
+                        throw new HyracksDataException("Cannot init external aggregate state in a frame.");
+                    }
                 }
+
+                storedTuplePointer.frameIndex = lastBufIndex;
+                storedTuplePointer.tupleIndex = stateAppender.getTupleCount() - 1;
                 return true;
             }
 
+            private int getTableSize() {
+                return primitiveKeyLength > 0 ? primitiveTable.getTableSize() : tableSize;
+            }
+
             @Override
             public List<IFrame> getFrames() {
                 return frames;
@@ -239,6 +309,11 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
                 return lastBufIndex;
             }
 
+            @Override
+            public int getGroupCount() {
+                return table.getTupleCount();
+            }
+
             @Override
             public void flushFrames(IFrameWriter writer, boolean isPartial) throws HyracksDataException {
                 if (outputFrame == null) {
@@ -253,7 +328,8 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
                 if (tPointers == null) {
                     // Not sorted
-                    for (int i = 0; i < tableSize; ++i) {
+                    int nEntries = getTableSize();
+                    for (int i = 0; i < nEntries; ++i) {
                         int entry = i;
                         int offset = 0;
                         do {
@@ -342,7 +418,14 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
                 lastBufIndex = -1;
                 tPointers = null;
                 table.close();
+                for (IFrame frame : frames) {
+                    ctx.deallocateFrame(frame.getBuffer());
+                }
                 frames.clear();
+                if (outputFrame != null) {
+                    ctx.deallocateFrame(outputFrame.getBuffer());
+                    outputFrame = null;
+                }
                 aggregateState.close();
             }
 
@@ -350,19 +433,30 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
              * Set the working frame to the next available frame in the frame
              * list. There are two cases:<br>
              * 1) If the next frame is not initialized, allocate a new frame. 2)
-             * When frames are already created, they are recycled.
+             * When frames are already created, they are recycled. If the memory
+             * budget of the task refuses a new frame, the frames at hand become
+             * the limit.
              *
              * @return Whether a new frame is added successfully.
              * @throws HyracksDataException
              */
             private boolean nextAvailableFrame() throws HyracksDataException {
                 // Return false if the number of frames is equal to the limit.
-                if (lastBufIndex + 1 >= framesLimit)
+                if (lastBufIndex + 1 >= frameLimit)
                     return false;
 
-                if (frames.size() < framesLimit) {
+                if (lastBufIndex + 1 >= frames.size()) {
                     // Insert a new frame
-                    IFrame frame = new VSizeFrame(ctx);
+                    IFrame frame;
+                    try {
+                        frame = new VSizeFrame(ctx);
+                    } catch (InsufficientMemoryException e) {
+                        if (frames.isEmpty()) {
+                            throw e;
+                        }
+                        frameLimit = frames.size();
+                        return false;
+                    }
                     frames.add(frame);
                     stateAppender.reset(frame, true);
                     lastBufIndex = frames.size() - 1;
@@ -29,6 +29,11 @@ public interface ISpillableTable {
 
     public int getFrameCount();
 
+    /**
+     * @return the number of groups in the table since the last reset
+     */
+    public int getGroupCount();
+
     public List<IFrame> getFrames();
 
     public void sortFrames() throws HyracksDataException;
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.group;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hyracks.api.comm.FrameConstants;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.util.IntSerDeUtils;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.ITupleBufferAccessor;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.ITupleBufferManager;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.VariableFramePool;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.VariableTupleMemoryManager;
+import org.apache.hyracks.dataflow.std.structures.IResetableComparable;
+import org.apache.hyracks.dataflow.std.structures.IResetableComparableFactory;
+import org.apache.hyracks.dataflow.std.structures.MinMaxHeap;
+import org.apache.hyracks.dataflow.std.structures.TuplePointer;
+
+/**
+ * Keeps the first topK groups in the order of the rank fields, and writes them in that order when closed. A group
+ * that ranks after all the kept groups, once topK are kept, is dropped as soon as it arrives. This is only a filter on
+ * the output of a group-by: the aggregation that feeds the writer still holds, and may spill, every group.
+ * <p>
+ * The kept groups are copied into at most framesLimit frames allocated from the task. If the top k groups do not fit
+ * into them, the writer stops pruning: it writes the kept groups and passes all the following ones through, which
+ * still gives the right result since the order and the limit above the group-by stay in the plan.
+ */
+public class TopKGroupWriter implements IFrameWriter {
+    private static final Logger LOGGER = Logger.getLogger(TopKGroupWriter.class.getName());
+
+    private class HeapEntryFactory implements IResetableComparableFactory<HeapEntry> {
+        @Override
+        public IResetableComparable<HeapEntry> createResetableComparable() {
+            return new HeapEntry();
+        }
+    }
+
+    private class HeapEntry implements IResetableComparable<HeapEntry> {
+        final TuplePointer tuplePointer = new TuplePointer();
+
+        @Override
+        public int compareTo(HeapEntry o) {
+            bufferAccessor1.reset(tuplePointer);
+            bufferAccessor2.reset(o.tuplePointer);
+            try {
+                return compare(bufferAccessor1.getTupleBuffer().array(), bufferAccessor1.getTupleStartOffset(),
+                        bufferAccessor2.getTupleBuffer().array(), bufferAccessor2.getTupleStartOffset());
+            } catch (HyracksDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void reset(HeapEntry other) {
+            tuplePointer.reset(other.tuplePointer);
+        }
+    }
+
+    private final IHyracksTaskContext ctx;
+    private final int framesLimit;
+    private final int topK;
+    private final int[] rankFields;
+    private final IBinaryComparator[] comparators;
+    private final int fieldSlotsLength;
+    private final RecordDescriptor recordDescriptor;
+    private final IFrameWriter writer;
+    private final FrameTupleAccessor inAccessor;
+    private final HeapEntry lastEntry;
+    private final HeapEntry newEntry;
+
+    private MinMaxHeap heap;
+    private ITupleBufferManager bufferManager;
+    private ITupleBufferAccessor bufferAccessor1;
+    private ITupleBufferAccessor bufferAccessor2;
+    private FrameTupleAppender appender;
+    private boolean isPassingThrough;
+    private long prunedCount;
+
+    /**
+     * @param framesLimit
+     *            the number of frames holding the kept groups
+     */
+    public TopKGroupWriter(IHyracksTaskContext ctx, int framesLimit, int topK, int[] rankFields,
+            IBinaryComparatorFactory[] rankComparatorFactories, RecordDescriptor recordDescriptor,
+            IFrameWriter writer) {
+        this.ctx = ctx;
+        this.framesLimit = framesLimit;
+        this.topK = topK;
+        this.rankFields = rankFields;
+        this.comparators = new IBinaryComparator[rankComparatorFactories.length];
+        for (int i = 0; i < rankComparatorFactories.length; ++i) {
+            comparators[i] = rankComparatorFactories[i].createBinaryComparator();
+        }
+        this.fieldSlotsLength = recordDescriptor.getFieldCount() * FrameConstants.SIZE_LEN;
+        this.recordDescriptor = recordDescriptor;
+        this.writer = writer;
+        this.inAccessor = new FrameTupleAccessor(recordDescriptor);
+        this.lastEntry = new HeapEntry();
+        this.newEntry = new HeapEntry();
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        heap = new MinMaxHeap(new HeapEntryFactory(), topK);
+        int budget = (int) Math.min(Integer.MAX_VALUE, (long) framesLimit * ctx.getInitialFrameSize());
+        bufferManager = new VariableTupleMemoryManager(new VariableFramePool(ctx, budget), recordDescriptor);
+        bufferAccessor1 = bufferManager.getTupleAccessor();
+        bufferAccessor2 = bufferManager.getTupleAccessor();
+        appender = new FrameTupleAppender(new VSizeFrame(ctx), true);
+        isPassingThrough = false;
+        prunedCount = 0;
+        writer.open();
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        inAccessor.reset(buffer);
+        int nTuples = inAccessor.getTupleCount();
+        for (int i = 0; i < nTuples; i++) {
+            if (isPassingThrough) {
+                FrameUtils.appendToWriter(writer, appender, inAccessor, i);
+                continue;
+            }
+            boolean isFull = heap.getNumEntries() >= topK;
+            if (isFull) {
+                heap.peekMax(lastEntry);
+                bufferAccessor2.reset(lastEntry.tuplePointer);
+                if (compare(inAccessor.getBuffer().array(), inAccessor.getTupleStartOffset(i),
+                        bufferAccessor2.getTupleBuffer().array(), bufferAccessor2.getTupleStartOffset()) >= 0) {
+                    prunedCount++;
+                    continue;
+                }
+            }
+            boolean isInserted = bufferManager.insertTuple(inAccessor, i, newEntry.tuplePointer);
+            if (!isInserted && isFull) {
+                // the evicted group ranks after the new one, so it cannot be among the top k any more
+                heap.getMax(lastEntry);
+                bufferManager.deleteTuple(lastEntry.tuplePointer);
+                isFull = false;
+                isInserted = bufferManager.insertTuple(inAccessor, i, newEntry.tuplePointer);
+            }
+            if (!isInserted) {
+                startPassingThrough();
+                FrameUtils.appendToWriter(writer, appender, inAccessor, i);
+                continue;
+            }
+            if (isFull) {
+                bufferManager.deleteTuple(lastEntry.tuplePointer);
+                heap.replaceMax(newEntry);
+            } else {
+                heap.insert(newEntry);
+            }
+        }
+    }
+
+    /**
+     * Writes the kept groups, releases their frames and passes all the following groups through.
+     */
+    private void startPassingThrough() throws HyracksDataException {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.warning("The top " + topK + " groups do not fit into " + framesLimit
+                    + " frames, passing the groups through.");
+        }
+        writeKeptGroups();
+        bufferManager.close();
+        isPassingThrough = true;
+    }
+
+    private void writeKeptGroups() throws HyracksDataException {
+        while (!heap.isEmpty()) {
+            heap.getMin(lastEntry);
+            bufferAccessor1.reset(lastEntry.tuplePointer);
+            FrameUtils.appendToWriter(writer, appender, bufferAccessor1.getTupleBuffer().array(),
+                    bufferAccessor1.getTupleStartOffset(), bufferAccessor1.getTupleLength());
+        }
+    }
+
+    /**
+     * Compares the rank fields of the tuple starting at start1 in b1 with those of the tuple starting at start2 in b2.
+     */
+    private int compare(byte[] b1, int start1, byte[] b2, int start2) throws HyracksDataException {
+        for (int f = 0; f < comparators.length; ++f) {
+            int fIdx = rankFields[f];
+            int fStart1 = getFieldStart(b1, start1, fIdx);
+            int fStart2 = getFieldStart(b2, start2, fIdx);
+            int c = comparators[f].compare(b1, fStart1, getFieldEnd(b1, start1, fIdx) - fStart1, b2, fStart2,
+                    getFieldEnd(b2, start2, fIdx) - fStart2);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private int getFieldStart(byte[] bytes, int tupleStart, int fIdx) {
+        return fIdx == 0 ? tupleStart + fieldSlotsLength : getFieldEnd(bytes, tupleStart, fIdx - 1);
+    }
+
+    private int getFieldEnd(byte[] bytes, int tupleStart, int fIdx) {
+        return tupleStart + fieldSlotsLength + IntSerDeUtils.getInt(bytes, tupleStart + fIdx * FrameConstants.SIZE_LEN);
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        writer.fail();
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        try {
+            int outCount = heap.getNumEntries();
+            writeKeptGroups();
+            appender.flush(writer, true);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Output " + outCount + " groups of the top " + topK + ", pruned " + prunedCount
+                        + " groups.");
+            }
+        } finally {
+            bufferManager.close();
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.group.aggregators;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.primitive.DoublePointable;
+import org.apache.hyracks.data.std.primitive.LongPointable;
+import org.apache.hyracks.dataflow.std.group.AggregateState;
+import org.apache.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
+import org.apache.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+
+/**
+ * Aggregates a 64-bit integer or double field with a binary state of fixed width, which is updated in place in the
+ * state tuple, e.g. in the frames of the hash table of a group-by. The function is picked once, when the aggregator
+ * is created, so aggregating a tuple reads the field and the state, computes, and writes the state back, without
+ * allocating anything.
+ * <p>
+ * The state, which is also the partial result, is the value for SUM, MIN and MAX, the 64-bit count for COUNT, and
+ * the sum followed by the 64-bit count for AVG. The final result of AVG is a double, the other final results are the
+ * state. To merge partial results, use SUM for COUNT, and AVG with mergePartials for AVG.
+ */
+public class PrimitiveFieldAggregatorFactory implements IFieldAggregateDescriptorFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum FieldType {
+        INT64,
+        DOUBLE
+    }
+
+    public enum Function {
+        SUM,
+        MIN,
+        MAX,
+        COUNT,
+        AVG
+    }
+
+    private final int aggField;
+
+    private final FieldType type;
+
+    private final Function function;
+
+    private final boolean mergePartials;
+
+    public PrimitiveFieldAggregatorFactory(int aggField, FieldType type, Function function) {
+        this(aggField, type, function, false);
+    }
+
+    /**
+     * @param mergePartials
+     *            whether the input field holds the partial results of AVG, i.e. a sum and a 64-bit count
+     */
+    public PrimitiveFieldAggregatorFactory(int aggField, FieldType type, Function function, boolean mergePartials) {
+        this.aggField = aggField;
+        this.type = type;
+        this.function = function;
+        this.mergePartials = mergePartials;
+    }
+
+    @Override
+    public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx, RecordDescriptor inRecordDescriptor,
+            RecordDescriptor outRecordDescriptor) throws HyracksDataException {
+        switch (function) {
+            case COUNT:
+                return new CountAggregator();
+            case AVG:
+                if (mergePartials) {
+                    return type == FieldType.INT64 ? new Int64AvgMergeAggregator() : new DoubleAvgMergeAggregator();
+                }
+                return type == FieldType.INT64 ? new Int64AvgAggregator() : new DoubleAvgAggregator();
+            case SUM:
+                return type == FieldType.INT64 ? new Int64SumAggregator() : new DoubleSumAggregator();
+            case MIN:
+                return type == FieldType.INT64 ? new Int64MinAggregator() : new DoubleMinAggregator();
+            case MAX:
+                return type == FieldType.INT64 ? new Int64MaxAggregator() : new DoubleMaxAggregator();
+            default:
+                throw new HyracksDataException("Unsupported aggregate function " + function);
+        }
+    }
+
+    /**
+     * Keeps its state of stateLength bytes in the state tuple only.
+     */
+    private abstract class AbstractPrimitiveAggregator implements IFieldAggregateDescriptor {
+        private final int stateLength;
+
+        AbstractPrimitiveAggregator(int stateLength) {
+            this.stateLength = stateLength;
+        }
+
+        /**
+         * @return the offset of the aggregated field in the buffer of the accessor
+         */
+        protected int getFieldOffset(IFrameTupleAccessor accessor, int tIndex) {
+            return accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                    + accessor.getFieldStartOffset(tIndex, aggField);
+        }
+
+        @Override
+        public void init(IFrameTupleAccessor accessor, int tIndex, DataOutput fieldOutput, AggregateState state)
+                throws HyracksDataException {
+            try {
+                init(accessor.getBuffer().array(), getFieldOffset(accessor, tIndex), fieldOutput);
+            } catch (IOException e) {
+                throw new HyracksDataException("I/O exception when initializing the aggregator.");
+            }
+        }
+
+        /**
+         * Writes the initial state for the field at the given offset.
+         */
+        protected abstract void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException;
+
+        @Override
+        public void aggregate(IFrameTupleAccessor accessor, int tIndex, byte[] data, int offset,
+                AggregateState state) throws HyracksDataException {
+            aggregate(accessor.getBuffer().array(), getFieldOffset(accessor, tIndex), data, offset);
+        }
+
+        /**
+         * Updates the state at the given offset in place with the field at the given offset.
+         */
+        protected abstract void aggregate(byte[] field, int fieldOffset, byte[] data, int offset);
+
+        @Override
+        public void outputPartialResult(DataOutput fieldOutput, byte[] data, int offset, AggregateState state)
+                throws HyracksDataException {
+            try {
+                fieldOutput.write(data, offset, stateLength);
+            } catch (IOException e) {
+                throw new HyracksDataException("I/O exception when writing aggregation to the output buffer.");
+            }
+        }
+
+        @Override
+        public void outputFinalResult(DataOutput fieldOutput, byte[] data, int offset, AggregateState state)
+                throws HyracksDataException {
+            outputPartialResult(fieldOutput, data, offset, state);
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean needsObjectState() {
+            return false;
+        }
+
+        @Override
+        public boolean needsBinaryState() {
+            return true;
+        }
+
+        @Override
+        public AggregateState createState() {
+            return new AggregateState();
+        }
+    }
+
+    private abstract class AbstractInt64Aggregator extends AbstractPrimitiveAggregator {
+        AbstractInt64Aggregator() {
+            super(8);
+        }
+
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.writeLong(LongPointable.getLong(field, fieldOffset));
+        }
+    }
+
+    private abstract class AbstractDoubleAggregator extends AbstractPrimitiveAggregator {
+        AbstractDoubleAggregator() {
+            super(8);
+        }
+
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.writeDouble(DoublePointable.getDouble(field, fieldOffset));
+        }
+    }
+
+    private class Int64SumAggregator extends AbstractInt64Aggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            LongPointable.setLong(data, offset, LongPointable.getLong(data, offset)
+                    + LongPointable.getLong(field, fieldOffset));
+        }
+    }
+
+    private class Int64MinAggregator extends AbstractInt64Aggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            long value = LongPointable.getLong(field, fieldOffset);
+            if (value < LongPointable.getLong(data, offset)) {
+                LongPointable.setLong(data, offset, value);
+            }
+        }
+    }
+
+    private class Int64MaxAggregator extends AbstractInt64Aggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            long value = LongPointable.getLong(field, fieldOffset);
+            if (value > LongPointable.getLong(data, offset)) {
+                LongPointable.setLong(data, offset, value);
+            }
+        }
+    }
+
+    private class DoubleSumAggregator extends AbstractDoubleAggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            DoublePointable.setDouble(data, offset, DoublePointable.getDouble(data, offset)
+                    + DoublePointable.getDouble(field, fieldOffset));
+        }
+    }
+
+    private class DoubleMinAggregator extends AbstractDoubleAggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            double value = DoublePointable.getDouble(field, fieldOffset);
+            if (value < DoublePointable.getDouble(data, offset)) {
+                DoublePointable.setDouble(data, offset, value);
+            }
+        }
+    }
+
+    private class DoubleMaxAggregator extends AbstractDoubleAggregator {
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            double value = DoublePointable.getDouble(field, fieldOffset);
+            if (value > DoublePointable.getDouble(data, offset)) {
+                DoublePointable.setDouble(data, offset, value);
+            }
+        }
+    }
+
+    /**
+     * Counts the tuples, whatever the type of the field.
+     */
+    private class CountAggregator extends AbstractPrimitiveAggregator {
+        CountAggregator() {
+            super(8);
+        }
+
+        @Override
+        protected int getFieldOffset(IFrameTupleAccessor accessor, int tIndex) {
+            return 0;
+        }
+
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.writeLong(1);
+        }
+
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            LongPointable.setLong(data, offset, LongPointable.getLong(data, offset) + 1);
+        }
+    }
+
+    /**
+     * Keeps the sum and the count, and outputs their quotient as a double.
+     */
+    private abstract class AbstractAvgAggregator extends AbstractPrimitiveAggregator {
+        AbstractAvgAggregator() {
+            super(16);
+        }
+
+        protected abstract double getSum(byte[] data, int offset);
+
+        @Override
+        public void outputFinalResult(DataOutput fieldOutput, byte[] data, int offset, AggregateState state)
+                throws HyracksDataException {
+            try {
+                fieldOutput.writeDouble(getSum(data, offset) / LongPointable.getLong(data, offset + 8));
+            } catch (IOException e) {
+                throw new HyracksDataException("I/O exception when writing aggregation to the output buffer.");
+            }
+        }
+    }
+
+    private class Int64AvgAggregator extends AbstractAvgAggregator {
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.writeLong(LongPointable.getLong(field, fieldOffset));
+            fieldOutput.writeLong(1);
+        }
+
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            LongPointable.setLong(data, offset, LongPointable.getLong(data, offset)
+                    + LongPointable.getLong(field, fieldOffset));
+            LongPointable.setLong(data, offset + 8, LongPointable.getLong(data, offset + 8) + 1);
+        }
+
+        @Override
+        protected double getSum(byte[] data, int offset) {
+            return LongPointable.getLong(data, offset);
+        }
+    }
+
+    private class Int64AvgMergeAggregator extends Int64AvgAggregator {
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.write(field, fieldOffset, 16);
+        }
+
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            LongPointable.setLong(data, offset, LongPointable.getLong(data, offset)
+                    + LongPointable.getLong(field, fieldOffset));
+            LongPointable.setLong(data, offset + 8, LongPointable.getLong(data, offset + 8)
+                    + LongPointable.getLong(field, fieldOffset + 8));
+        }
+    }
+
+    private class DoubleAvgAggregator extends AbstractAvgAggregator {
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.writeDouble(DoublePointable.getDouble(field, fieldOffset));
+            fieldOutput.writeLong(1);
+        }
+
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            DoublePointable.setDouble(data, offset, DoublePointable.getDouble(data, offset)
+                    + DoublePointable.getDouble(field, fieldOffset));
+            LongPointable.setLong(data, offset + 8, LongPointable.getLong(data, offset + 8) + 1);
+        }
+
+        @Override
+        protected double getSum(byte[] data, int offset) {
+            return DoublePointable.getDouble(data, offset);
+        }
+    }
+
+    private class DoubleAvgMergeAggregator extends DoubleAvgAggregator {
+        @Override
+        protected void init(byte[] field, int fieldOffset, DataOutput fieldOutput) throws IOException {
+            fieldOutput.write(field, fieldOffset, 16);
+        }
+
+        @Override
+        protected void aggregate(byte[] field, int fieldOffset, byte[] data, int offset) {
+            DoublePointable.setDouble(data, offset, DoublePointable.getDouble(data, offset)
+                    + DoublePointable.getDouble(field, fieldOffset));
+            LongPointable.setLong(data, offset + 8, LongPointable.getLong(data, offset + 8)
+                    + LongPointable.getLong(field, fieldOffset + 8));
+        }
+    }
+}
@@ -17,22 +17,43 @@ package org.apache.hyracks.dataflow.std.group.external;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.VSizeFrame;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFamily;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.common.io.RunFileReader;
 import org.apache.hyracks.dataflow.common.io.RunFileWriter;
 import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
+import org.apache.hyracks.dataflow.std.group.AggregateState;
+import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptor;
 import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import org.apache.hyracks.dataflow.std.group.ISpillableTable;
 import org.apache.hyracks.dataflow.std.group.ISpillableTableFactory;
 
+/**
+ * Builds the in-memory groups and spills them to sorted runs, or to one run per hash partition if a partitioner family
+ * is given, in which case the runs are aggregated again by {@link ExternalHashGroupMergeOperatorNodePushable}. If minReductionRatio is positive, which is only allowed
+ * when the output may contain a group more than once (e.g. for a local combiner), the reduction of the input by the
+ * spillable table is checked every time the table is full. A table whose groups are fewer than
+ * (1 - minReductionRatio) of its input tuples is written out unsorted as final results, and the following tuples
+ * bypass the table: each one becomes a group of its own in a pass-through run. After as many tuples as the table had
+ * absorbed, the table is tried again, with the pass-through stretch doubled every time the reduction stays poor.
+ */
 class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOperatorNodePushable {
+    private static final Logger LOGGER = Logger.getLogger(ExternalGroupBuildOperatorNodePushable.class.getName());
+
     private final IHyracksTaskContext ctx;
     private final Object stateId;
     private final int[] keyFields;
@@ -44,13 +65,40 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
     private final RecordDescriptor inRecordDescriptor;
     private final RecordDescriptor outRecordDescriptor;
     private final FrameTupleAccessor accessor;
+    private final double minReductionRatio;
+    private final ITuplePartitionComputerFamily spillPartitionerFamily;
+    private final int numSpillPartitions;
 
     private ExternalGroupState state;
 
+    /**
+     * The number of tuples inserted into the table since its last reset.
+     */
+    private long tableTupleCount;
+    /**
+     * The number of tuples to pass through before trying the table again, 0 if the reduction was good last time.
+     */
+    private long passThroughLimit;
+    private long passThroughTupleCount;
+    private boolean passThrough;
+
+    private HashPartitionRunWriter partitionRunWriter;
+
+    private RunFileWriter passThroughWriter;
+    private IAggregatorDescriptor passThroughAggregator;
+    private AggregateState passThroughAggregateState;
+    private ArrayTupleBuilder stateTupleBuilder;
+    private ArrayTupleBuilder outputTupleBuilder;
+    private IFrame stateFrame;
+    private FrameTupleAppender stateAppender;
+    private FrameTupleAccessor stateAccessor;
+    private FrameTupleAppender outputAppender;
+
     ExternalGroupBuildOperatorNodePushable(IHyracksTaskContext ctx, Object stateId, int[] keyFields, int framesLimit,
             IBinaryComparatorFactory[] comparatorFactories, INormalizedKeyComputerFactory firstNormalizerFactory,
             IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor inRecordDescriptor,
-            RecordDescriptor outRecordDescriptor, ISpillableTableFactory spillableTableFactory) {
+            RecordDescriptor outRecordDescriptor, ISpillableTableFactory spillableTableFactory,
+            double minReductionRatio, ITuplePartitionComputerFamily spillPartitionerFamily, int numSpillPartitions) {
         this.ctx = ctx;
         this.stateId = stateId;
         this.framesLimit = framesLimit;
@@ -62,6 +110,9 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
         this.inRecordDescriptor = inRecordDescriptor;
         this.outRecordDescriptor = outRecordDescriptor;
         this.accessor = new FrameTupleAccessor(inRecordDescriptor);
+        this.minReductionRatio = minReductionRatio;
+        this.spillPartitionerFamily = spillPartitionerFamily;
+        this.numSpillPartitions = numSpillPartitions;
     }
 
     @Override
@@ -72,6 +123,13 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
                 firstNormalizerFactory, aggregatorFactory, inRecordDescriptor, outRecordDescriptor, framesLimit);
         table.reset();
         state.setSpillableTable(table);
+        tableTupleCount = 0;
+        passThroughLimit = 0;
+        passThrough = false;
+        if (spillPartitionerFamily != null) {
+            partitionRunWriter = new HashPartitionRunWriter(ctx, numSpillPartitions,
+                    spillPartitionerFamily.createPartitioner(0), outRecordDescriptor);
+        }
     }
 
     @Override
@@ -80,16 +138,134 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
         int tupleCount = accessor.getTupleCount();
         ISpillableTable gTable = state.getSpillableTable();
         for (int i = 0; i < tupleCount; i++) {
+            if (passThrough) {
+                appendPassThrough(accessor, i);
+                if (++passThroughTupleCount >= passThroughLimit) {
+                    passThrough = false;
+                }
+                continue;
+            }
             /**
              * If the group table is too large, flush the table into
-             * a run file.
+             * a run file, or bypass it if it hardly reduces the input.
              */
             if (!gTable.insert(accessor, i)) {
+                if (isReductionPoor(gTable)) {
+                    startPassThrough(gTable);
+                    appendPassThrough(accessor, i);
+                    passThroughTupleCount++;
+                    continue;
+                }
+                passThroughLimit = 0;
                 flushFramesToRun();
                 if (!gTable.insert(accessor, i))
                     throw new HyracksDataException("Failed to insert a new buffer into the aggregate operator!");
             }
+            tableTupleCount++;
+        }
+    }
+
+    private boolean isReductionPoor(ISpillableTable gTable) {
+        if (minReductionRatio <= 0 || tableTupleCount <= 0) {
+            return false;
+        }
+        return 1.0 - (double) gTable.getGroupCount() / tableTupleCount < minReductionRatio;
+    }
+
+    /**
+     * Writes the groups of the table to the pass-through run as final results and empties the table.
+     */
+    private void startPassThrough(ISpillableTable gTable) throws HyracksDataException {
+        if (passThroughWriter == null) {
+            openPassThrough();
+        }
+        passThroughLimit = passThroughLimit == 0 ? tableTupleCount : passThroughLimit * 2;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Bypassing the group table for " + passThroughLimit + " tuples: " + gTable.getGroupCount()
+                    + " groups for " + tableTupleCount + " tuples");
         }
+        gTable.flushFrames(passThroughWriter, false);
+        gTable.reset();
+        tableTupleCount = 0;
+        passThroughTupleCount = 0;
+        passThrough = true;
+    }
+
+    private void openPassThrough() throws HyracksDataException {
+        FileReference runFile;
+        try {
+            runFile = ctx.getJobletContext().createManagedWorkspaceFile(
+                    ExternalGroupOperatorDescriptor.class.getSimpleName());
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
+        passThroughWriter = new RunFileWriter(runFile, ctx.getIOManager(), ctx);
+        passThroughWriter.open();
+
+        int[] keyFieldsInPartialResults = new int[keyFields.length];
+        for (int i = 0; i < keyFieldsInPartialResults.length; i++) {
+            keyFieldsInPartialResults[i] = i;
+        }
+        passThroughAggregator = aggregatorFactory.createAggregator(ctx, inRecordDescriptor, outRecordDescriptor,
+                keyFields, keyFieldsInPartialResults, null);
+        passThroughAggregateState = passThroughAggregator.createAggregateStates();
+        int outFieldCount = outRecordDescriptor.getFields().length;
+        stateTupleBuilder = new ArrayTupleBuilder(keyFields.length < outFieldCount ? outFieldCount
+                : outFieldCount + 1);
+        outputTupleBuilder = new ArrayTupleBuilder(outFieldCount);
+        stateFrame = new VSizeFrame(ctx);
+        stateAppender = new FrameTupleAppender(stateFrame, true);
+        stateAccessor = new FrameTupleAccessor(outRecordDescriptor);
+        outputAppender = new FrameTupleAppender(new VSizeFrame(ctx), true);
+    }
+
+    /**
+     * Initializes the aggregate state of a group holding only the given tuple. The states are turned into final
+     * results a frame at a time.
+     */
+    private void appendPassThrough(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        stateTupleBuilder.reset();
+        for (int k = 0; k < keyFields.length; k++) {
+            stateTupleBuilder.addField(accessor, tIndex, keyFields[k]);
+        }
+        passThroughAggregator.init(stateTupleBuilder, accessor, tIndex, passThroughAggregateState);
+        if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
+                stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
+            flushPassThroughStates();
+            if (!stateAppender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
+                    stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
+                throw new HyracksDataException("Cannot init external aggregate state in a frame.");
+            }
+        }
+    }
+
+    private void flushPassThroughStates() throws HyracksDataException {
+        stateAccessor.reset(stateFrame.getBuffer());
+        int stateCount = stateAccessor.getTupleCount();
+        for (int t = 0; t < stateCount; t++) {
+            outputTupleBuilder.reset();
+            for (int k = 0; k < keyFields.length; k++) {
+                outputTupleBuilder.addField(stateAccessor, t, k);
+            }
+            passThroughAggregator.outputFinalResult(outputTupleBuilder, stateAccessor, t, passThroughAggregateState);
+            FrameUtils.appendSkipEmptyFieldToWriter(passThroughWriter, outputAppender,
+                    outputTupleBuilder.getFieldEndOffsets(), outputTupleBuilder.getByteArray(), 0,
+                    outputTupleBuilder.getSize());
+        }
+        stateAppender.reset(stateFrame, true);
+    }
+
+    private void closePassThrough() throws HyracksDataException {
+        try {
+            flushPassThroughStates();
+            outputAppender.flush(passThroughWriter, true);
+            passThroughAggregator.close();
+            passThroughAggregateState.close();
+        } finally {
+            passThroughWriter.close();
+        }
+        state.setPassThroughRun(passThroughWriter.createReader());
+        passThroughWriter = null;
     }
 
     @Override
@@ -99,9 +275,13 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
 
     @Override
     public void close() throws HyracksDataException {
+        if (passThroughWriter != null) {
+            closePassThrough();
+        }
         ISpillableTable gTable = state.getSpillableTable();
+        boolean spilled = partitionRunWriter != null ? partitionRunWriter.hasRuns() : state.getRuns().size() > 0;
         if (gTable.getFrameCount() >= 0) {
-            if (state.getRuns().size() > 0) {
+            if (spilled) {
                 /**
                  * flush the memory into the run file.
                  */
@@ -110,10 +290,19 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
                 gTable = null;
             }
         }
+        if (partitionRunWriter != null) {
+            state.getRuns().addAll(partitionRunWriter.closeRuns());
+        }
         ctx.setStateObject(state);
     }
 
     private void flushFramesToRun() throws HyracksDataException {
+        if (partitionRunWriter != null) {
+            ISpillableTable gTable = state.getSpillableTable();
+            gTable.flushFrames(partitionRunWriter, true);
+            gTable.reset();
+            return;
+        }
         FileReference runFile;
         try {
             runFile = ctx.getJobletContext().createManagedWorkspaceFile(
@@ -121,7 +310,7 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
         } catch (IOException e) {
             throw new HyracksDataException(e);
         }
-        RunFileWriter writer = new RunFileWriter(runFile, ctx.getIOManager());
+        RunFileWriter writer = new RunFileWriter(runFile, ctx.getIOManager(), ctx);
         writer.open();
         ISpillableTable gTable = state.getSpillableTable();
         try {
@@ -119,6 +119,10 @@ class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOp
         runs = aggState.getRuns();
         writer.open();
         try {
+            RunFileReader passThroughRun = aggState.getPassThroughRun();
+            if (passThroughRun != null) {
+                copyRun(ctx, passThroughRun, writer);
+            }
             if (runs.size() <= 0) {
                 ISpillableTable gTable = aggState.getSpillableTable();
                 if (gTable != null) {
@@ -152,6 +156,21 @@ class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOp
         }
     }
 
+    /**
+     * Sends the final results of a run to the output as they are.
+     */
+    static void copyRun(IHyracksTaskContext ctx, RunFileReader run, IFrameWriter writer) throws HyracksDataException {
+        IFrame frame = new VSizeFrame(ctx);
+        run.open();
+        try {
+            while (run.nextFrame(frame)) {
+                writer.nextFrame(frame.getBuffer());
+            }
+        } finally {
+            run.close();
+        }
+    }
+
     private void doPass(LinkedList<RunFileReader> runs) throws HyracksDataException {
         FileReference newRun = null;
         IFrameWriter writer = this.writer;
@@ -169,7 +188,7 @@ class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOp
             runNumber = framesLimit - 2;
             newRun = ctx.getJobletContext().createManagedWorkspaceFile(
                     ExternalGroupOperatorDescriptor.class.getSimpleName());
-            writer = new RunFileWriter(newRun, ctx.getIOManager());
+            writer = new RunFileWriter(newRun, ctx.getIOManager(), ctx);
             writer.open();
         }
         try {
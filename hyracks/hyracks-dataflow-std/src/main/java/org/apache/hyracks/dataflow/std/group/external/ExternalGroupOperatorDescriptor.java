@@ -29,6 +29,7 @@ import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
 import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import org.apache.hyracks.dataflow.std.group.ISpillableTableFactory;
+import org.apache.hyracks.dataflow.std.group.TopKGroupWriter;
 
 /**
  *
@@ -50,11 +51,32 @@ public class ExternalGroupOperatorDescriptor extends AbstractOperatorDescriptor
     private final int framesLimit;
     private final ISpillableTableFactory spillableTableFactory;
     private final boolean isOutputSorted;
+    private final double minReductionRatio;
+
+    private int topK = 0;
+    private int[] rankFields;
+    private IBinaryComparatorFactory[] rankComparatorFactories;
+    private int topKFramesLimit;
 
     public ExternalGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keyFields, int framesLimit,
             IBinaryComparatorFactory[] comparatorFactories, INormalizedKeyComputerFactory firstNormalizerFactory,
             IAggregatorDescriptorFactory aggregatorFactory, IAggregatorDescriptorFactory mergerFactory,
             RecordDescriptor recordDescriptor, ISpillableTableFactory spillableTableFactory, boolean isOutputSorted) {
+        this(spec, keyFields, framesLimit, comparatorFactories, firstNormalizerFactory, aggregatorFactory,
+                mergerFactory, recordDescriptor, spillableTableFactory, isOutputSorted, 0);
+    }
+
+    /**
+     * @param minReductionRatio
+     *            if positive, the input bypasses the spillable table while the table removes less than this fraction
+     *            of the tuples inserted into it, so a group may be output more than once. This is only correct for a
+     *            local (combiner) group-by whose output is grouped again, and requires isOutputSorted to be false.
+     */
+    public ExternalGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keyFields, int framesLimit,
+            IBinaryComparatorFactory[] comparatorFactories, INormalizedKeyComputerFactory firstNormalizerFactory,
+            IAggregatorDescriptorFactory aggregatorFactory, IAggregatorDescriptorFactory mergerFactory,
+            RecordDescriptor recordDescriptor, ISpillableTableFactory spillableTableFactory, boolean isOutputSorted,
+            double minReductionRatio) {
         super(spec, 1, 1);
         this.framesLimit = framesLimit;
         if (framesLimit <= 1) {
@@ -71,6 +93,10 @@ public class ExternalGroupOperatorDescriptor extends AbstractOperatorDescriptor
         this.firstNormalizerFactory = firstNormalizerFactory;
         this.spillableTableFactory = spillableTableFactory;
         this.isOutputSorted = isOutputSorted;
+        if (isOutputSorted && minReductionRatio > 0) {
+            throw new IllegalStateException("a sorted output cannot bypass the aggregation!");
+        }
+        this.minReductionRatio = minReductionRatio;
 
         /**
          * Set the record descriptor. Note that since this operator is a unary
@@ -79,6 +105,32 @@ public class ExternalGroupOperatorDescriptor extends AbstractOperatorDescriptor
         recordDescriptors[0] = recordDescriptor;
     }
 
+    /**
+     * Outputs only the first topK groups in the order of the rank fields, sorted in that order. A group that cannot
+     * be among them any more is dropped as soon as its aggregate is final. This only filters the output: the
+     * aggregation and its runs still hold every group.
+     *
+     * @param topKFramesLimit
+     *            the number of frames holding the kept groups, which are taken out of the frames of the merge
+     */
+    public void setTopK(int topK, int[] rankFields, IBinaryComparatorFactory[] rankComparatorFactories,
+            int topKFramesLimit) {
+        if (topK <= 0 || topKFramesLimit <= 0) {
+            throw new IllegalStateException("top-k should be at least 1 group in at least 1 frame!");
+        }
+        if (framesLimit - topKFramesLimit <= 1) {
+            throw new IllegalStateException("top-k should leave at least 2 frames to the merge, but it leaves "
+                    + (framesLimit - topKFramesLimit) + "!");
+        }
+        if (isOutputSorted || minReductionRatio > 0) {
+            throw new IllegalStateException("a top-k output can neither be sorted on the keys nor bypassed!");
+        }
+        this.topK = topK;
+        this.rankFields = rankFields;
+        this.rankComparatorFactories = rankComparatorFactories;
+        this.topKFramesLimit = topKFramesLimit;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -114,7 +166,7 @@ public class ExternalGroupOperatorDescriptor extends AbstractOperatorDescriptor
             return new ExternalGroupBuildOperatorNodePushable(ctx, new TaskId(getActivityId(), partition), keyFields,
                     framesLimit, comparatorFactories, firstNormalizerFactory, aggregatorFactory,
                     recordDescProvider.getInputRecordDescriptor(getActivityId(), 0), recordDescriptors[0],
-                    spillableTableFactory);
+                    spillableTableFactory, minReductionRatio, null, 0);
         }
     }
 
@@ -129,9 +181,22 @@ public class ExternalGroupOperatorDescriptor extends AbstractOperatorDescriptor
         public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
                 IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions)
                 throws HyracksDataException {
-            return new ExternalGroupMergeOperatorNodePushable(ctx, new TaskId(new ActivityId(getOperatorId(),
-                    AGGREGATE_ACTIVITY_ID), partition), comparatorFactories, firstNormalizerFactory, keyFields,
-                    mergerFactory, isOutputSorted, framesLimit, recordDescriptors[0]);
+            TaskId aggregateTaskId = new TaskId(new ActivityId(getOperatorId(), AGGREGATE_ACTIVITY_ID), partition);
+            if (topK <= 0) {
+                return new ExternalGroupMergeOperatorNodePushable(ctx, aggregateTaskId, comparatorFactories,
+                        firstNormalizerFactory, keyFields, mergerFactory, isOutputSorted, framesLimit,
+                        recordDescriptors[0]);
+            }
+            return new ExternalGroupMergeOperatorNodePushable(ctx, aggregateTaskId, comparatorFactories,
+                    firstNormalizerFactory, keyFields, mergerFactory, isOutputSorted, framesLimit - topKFramesLimit,
+                    recordDescriptors[0]) {
+                @Override
+                public void initialize() throws HyracksDataException {
+                    writer = new TopKGroupWriter(ctx, topKFramesLimit, topK, rankFields, rankComparatorFactories,
+                            recordDescriptors[0], writer);
+                    super.initialize();
+                }
+            };
         }
 
     }
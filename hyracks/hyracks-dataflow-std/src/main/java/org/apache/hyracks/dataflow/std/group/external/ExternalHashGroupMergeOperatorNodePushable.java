@@ -0,0 +1,162 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.group.external;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputerFamily;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.std.base.AbstractUnaryOutputSourceOperatorNodePushable;
+import org.apache.hyracks.dataflow.std.group.HashSpillableTableFactory;
+import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
+import org.apache.hyracks.dataflow.std.group.ISpillableTable;
+
+/**
+ * Aggregates every spilled partition of {@link ExternalHashGroupOperatorDescriptor} on its own, partitioning it again
+ * with the seeds of the next level when its groups do not fit into the hash table.
+ */
+class ExternalHashGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOperatorNodePushable {
+    private static final Logger LOGGER = Logger.getLogger(ExternalHashGroupMergeOperatorNodePushable.class.getName());
+
+    /**
+     * Every level divides the groups of a partition by the number of partitions, so this is only reached if the hash
+     * functions do not tell the keys apart.
+     */
+    private static final int MAX_LEVEL = 16;
+
+    private final IHyracksTaskContext ctx;
+    private final Object stateId;
+    private final int[] storedKeys;
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final ITuplePartitionComputerFactory tableHashFactory;
+    private final ITuplePartitionComputerFamily partitionerFamily;
+    private final IAggregatorDescriptorFactory mergerFactory;
+    private final int tableSize;
+    private final int tableFramesLimit;
+    private final int numPartitions;
+    private final RecordDescriptor outRecordDescriptor;
+
+    ExternalHashGroupMergeOperatorNodePushable(IHyracksTaskContext ctx, Object stateId, int keyCount,
+            IBinaryComparatorFactory[] comparatorFactories, ITuplePartitionComputerFactory tableHashFactory,
+            ITuplePartitionComputerFamily partitionerFamily,
+            IAggregatorDescriptorFactory mergerFactory, int tableSize, int tableFramesLimit, int numPartitions,
+            RecordDescriptor outRecordDescriptor) {
+        this.ctx = ctx;
+        this.stateId = stateId;
+        this.storedKeys = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            storedKeys[i] = i;
+        }
+        this.comparatorFactories = comparatorFactories;
+        this.tableHashFactory = tableHashFactory;
+        this.partitionerFamily = partitionerFamily;
+        this.mergerFactory = mergerFactory;
+        this.tableSize = tableSize;
+        this.tableFramesLimit = tableFramesLimit;
+        this.numPartitions = numPartitions;
+        this.outRecordDescriptor = outRecordDescriptor;
+    }
+
+    @Override
+    public void initialize() throws HyracksDataException {
+        ExternalGroupState aggState = (ExternalGroupState) ctx.getStateObject(stateId);
+        writer.open();
+        try {
+            RunFileReader passThroughRun = aggState.getPassThroughRun();
+            if (passThroughRun != null) {
+                ExternalGroupMergeOperatorNodePushable.copyRun(ctx, passThroughRun, writer);
+            }
+            List<RunFileReader> runs = aggState.getRuns();
+            if (runs.isEmpty()) {
+                ISpillableTable gTable = aggState.getSpillableTable();
+                if (gTable != null) {
+                    gTable.flushFrames(writer, false);
+                }
+            } else {
+                IFrame inFrame = new VSizeFrame(ctx);
+                for (RunFileReader run : runs) {
+                    aggregateRun(run, 1, inFrame);
+                }
+            }
+        } catch (Exception e) {
+            writer.fail();
+            throw new HyracksDataException(e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void aggregateRun(RunFileReader run, int level, IFrame inFrame) throws HyracksDataException {
+        if (level > MAX_LEVEL) {
+            throw new HyracksDataException("Failed to split a spilled group-by partition after " + MAX_LEVEL
+                    + " levels of partitioning.");
+        }
+        ISpillableTable table = new HashSpillableTableFactory(tableHashFactory, tableSize).buildSpillableTable(ctx,
+                storedKeys, comparatorFactories, null, mergerFactory, outRecordDescriptor, outRecordDescriptor,
+                tableFramesLimit);
+        table.reset();
+        HashPartitionRunWriter partitionRunWriter = null;
+        FrameTupleAccessor accessor = new FrameTupleAccessor(outRecordDescriptor);
+        try {
+            run.open();
+            try {
+                while (run.nextFrame(inFrame)) {
+                    accessor.reset(inFrame.getBuffer());
+                    int tupleCount = accessor.getTupleCount();
+                    for (int i = 0; i < tupleCount; i++) {
+                        if (table.insert(accessor, i)) {
+                            continue;
+                        }
+                        if (partitionRunWriter == null) {
+                            partitionRunWriter = new HashPartitionRunWriter(ctx, numPartitions,
+                                    partitionerFamily.createPartitioner(level), outRecordDescriptor);
+                        }
+                        table.flushFrames(partitionRunWriter, true);
+                        table.reset();
+                        if (!table.insert(accessor, i)) {
+                            throw new HyracksDataException("Failed to insert a new buffer into the aggregate operator!");
+                        }
+                    }
+                }
+            } finally {
+                run.close();
+            }
+            if (partitionRunWriter == null) {
+                table.flushFrames(writer, false);
+                return;
+            }
+            table.flushFrames(partitionRunWriter, true);
+        } finally {
+            table.close();
+        }
+        List<RunFileReader> subRuns = partitionRunWriter.closeRuns();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Partitioned a spilled group-by partition into " + subRuns.size() + " runs at level " + level);
+        }
+        for (RunFileReader subRun : subRuns) {
+            aggregateRun(subRun, level + 1, inFrame);
+        }
+    }
+}
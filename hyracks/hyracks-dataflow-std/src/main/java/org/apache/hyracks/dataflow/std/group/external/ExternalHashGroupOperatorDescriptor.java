@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.group.external;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.ActivityId;
+import org.apache.hyracks.api.dataflow.IActivityGraphBuilder;
+import org.apache.hyracks.api.dataflow.IOperatorNodePushable;
+import org.apache.hyracks.api.dataflow.TaskId;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import org.apache.hyracks.api.dataflow.value.IRecordDescriptorProvider;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
+import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
+import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
+import org.apache.hyracks.dataflow.std.group.HashSpillableTableFactory;
+import org.apache.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
+import org.apache.hyracks.dataflow.std.group.TopKGroupWriter;
+
+/**
+ * An external group-by that spills hash partitions instead of sorted runs, so it never sorts. When the hash table is
+ * full, its partial results are spread over one run file per partition, and the table is emptied. Every spilled
+ * partition is then aggregated again with the merger, and a partition that still does not fit is partitioned again
+ * with the next seed of the hash function families, level after level. The output is not sorted.
+ * <p>
+ * The hash functions and families are for the first keyFields, the remaining key fields (e.g. decor fields) are only
+ * carried along. The hash tables use the hash functions, and the partitioning of level i uses the seed i of the
+ * families.
+ */
+public class ExternalHashGroupOperatorDescriptor extends AbstractOperatorDescriptor {
+
+    private static final int AGGREGATE_ACTIVITY_ID = 0;
+
+    private static final int MERGE_ACTIVITY_ID = 1;
+
+    private static final int MAX_PARTITIONS = 64;
+
+    private static final long serialVersionUID = 1L;
+    private final int[] keyFields;
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final IBinaryHashFunctionFactory[] hashFunctionFactories;
+    private final IBinaryHashFunctionFamily[] hashFunctionFamilies;
+
+    private final IAggregatorDescriptorFactory aggregatorFactory;
+    private final IAggregatorDescriptorFactory mergerFactory;
+
+    private final int tableSize;
+    private final int numPartitions;
+    private final int tableFramesLimit;
+    private final double minReductionRatio;
+
+    private int topK = 0;
+    private int[] rankFields;
+    private IBinaryComparatorFactory[] rankComparatorFactories;
+    private int topKFramesLimit;
+
+    public ExternalHashGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keyFields, int framesLimit,
+            int tableSize, IBinaryComparatorFactory[] comparatorFactories,
+            IBinaryHashFunctionFactory[] hashFunctionFactories, IBinaryHashFunctionFamily[] hashFunctionFamilies,
+            IAggregatorDescriptorFactory aggregatorFactory, IAggregatorDescriptorFactory mergerFactory,
+            RecordDescriptor recordDescriptor) {
+        this(spec, keyFields, framesLimit, tableSize, comparatorFactories, hashFunctionFactories,
+                hashFunctionFamilies, aggregatorFactory, mergerFactory, recordDescriptor, 0);
+    }
+
+    /**
+     * @param minReductionRatio
+     *            see {@link ExternalGroupOperatorDescriptor}
+     */
+    public ExternalHashGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keyFields, int framesLimit,
+            int tableSize, IBinaryComparatorFactory[] comparatorFactories,
+            IBinaryHashFunctionFactory[] hashFunctionFactories, IBinaryHashFunctionFamily[] hashFunctionFamilies,
+            IAggregatorDescriptorFactory aggregatorFactory, IAggregatorDescriptorFactory mergerFactory,
+            RecordDescriptor recordDescriptor, double minReductionRatio) {
+        super(spec, 1, 1);
+        if (framesLimit < 4) {
+            /**
+             * Minimum of 4 frames: 2 for the partitions, 1 for the spilled
+             * partition being read, and 1 for the hash table.
+             */
+            throw new IllegalStateException("frame limit should at least be 4, but it is " + framesLimit + "!");
+        }
+        this.keyFields = keyFields;
+        this.tableSize = tableSize;
+        this.comparatorFactories = comparatorFactories;
+        this.hashFunctionFactories = hashFunctionFactories;
+        this.hashFunctionFamilies = hashFunctionFamilies;
+        this.aggregatorFactory = aggregatorFactory;
+        this.mergerFactory = mergerFactory;
+        this.numPartitions = Math.max(2, Math.min(MAX_PARTITIONS, framesLimit / 4));
+        this.tableFramesLimit = framesLimit - numPartitions - 1;
+        this.minReductionRatio = minReductionRatio;
+        recordDescriptors[0] = recordDescriptor;
+    }
+
+    /**
+     * See {@link ExternalGroupOperatorDescriptor#setTopK(int, int[], IBinaryComparatorFactory[], int)}.
+     */
+    public void setTopK(int topK, int[] rankFields, IBinaryComparatorFactory[] rankComparatorFactories,
+            int topKFramesLimit) {
+        if (topK <= 0 || topKFramesLimit <= 0) {
+            throw new IllegalStateException("top-k should be at least 1 group in at least 1 frame!");
+        }
+        if (tableFramesLimit - topKFramesLimit <= 0) {
+            throw new IllegalStateException("top-k should leave at least 1 frame to the hash table, but it leaves "
+                    + (tableFramesLimit - topKFramesLimit) + "!");
+        }
+        if (minReductionRatio > 0) {
+            throw new IllegalStateException("a top-k output cannot be bypassed!");
+        }
+        this.topK = topK;
+        this.rankFields = rankFields;
+        this.rankComparatorFactories = rankComparatorFactories;
+        this.topKFramesLimit = topKFramesLimit;
+    }
+
+    /**
+     * @return the hash fields of the partial results, where the keys are the first fields
+     */
+    private int[] getStoredHashFields() {
+        int[] storedHashFields = new int[hashFunctionFamilies.length];
+        for (int i = 0; i < storedHashFields.length; i++) {
+            storedHashFields[i] = i;
+        }
+        return storedHashFields;
+    }
+
+    @Override
+    public void contributeActivities(IActivityGraphBuilder builder) {
+        AggregateActivity aggregateAct = new AggregateActivity(new ActivityId(getOperatorId(), AGGREGATE_ACTIVITY_ID));
+        MergeActivity mergeAct = new MergeActivity(new ActivityId(odId, MERGE_ACTIVITY_ID));
+
+        builder.addActivity(this, aggregateAct);
+        builder.addSourceEdge(0, aggregateAct, 0);
+
+        builder.addActivity(this, mergeAct);
+        builder.addTargetEdge(0, mergeAct, 0);
+
+        builder.addBlockingEdge(aggregateAct, mergeAct);
+    }
+
+    private class AggregateActivity extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        public AggregateActivity(ActivityId id) {
+            super(id);
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                final IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions)
+                throws HyracksDataException {
+            int[] hashFields = new int[hashFunctionFactories.length];
+            System.arraycopy(keyFields, 0, hashFields, 0, hashFields.length);
+            HashSpillableTableFactory tableFactory = new HashSpillableTableFactory(
+                    new FieldHashPartitionComputerFactory(hashFields, hashFunctionFactories), tableSize);
+            return new ExternalGroupBuildOperatorNodePushable(ctx, new TaskId(getActivityId(), partition), keyFields,
+                    tableFramesLimit, comparatorFactories, null, aggregatorFactory,
+                    recordDescProvider.getInputRecordDescriptor(getActivityId(), 0), recordDescriptors[0],
+                    tableFactory, minReductionRatio, new FieldHashPartitionComputerFamily(getStoredHashFields(),
+                            hashFunctionFamilies), numPartitions);
+        }
+    }
+
+    private class MergeActivity extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        public MergeActivity(ActivityId id) {
+            super(id);
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions)
+                throws HyracksDataException {
+            TaskId aggregateTaskId = new TaskId(new ActivityId(getOperatorId(), AGGREGATE_ACTIVITY_ID), partition);
+            FieldHashPartitionComputerFactory tableHashFactory = new FieldHashPartitionComputerFactory(
+                    getStoredHashFields(), hashFunctionFactories);
+            FieldHashPartitionComputerFamily partitionerFamily = new FieldHashPartitionComputerFamily(
+                    getStoredHashFields(), hashFunctionFamilies);
+            if (topK <= 0) {
+                return new ExternalHashGroupMergeOperatorNodePushable(ctx, aggregateTaskId, keyFields.length,
+                        comparatorFactories, tableHashFactory, partitionerFamily, mergerFactory, tableSize,
+                        tableFramesLimit, numPartitions, recordDescriptors[0]);
+            }
+            return new ExternalHashGroupMergeOperatorNodePushable(ctx, aggregateTaskId, keyFields.length,
+                    comparatorFactories, tableHashFactory, partitionerFamily, mergerFactory, tableSize,
+                    tableFramesLimit - topKFramesLimit, numPartitions, recordDescriptors[0]) {
+                @Override
+                public void initialize() throws HyracksDataException {
+                    writer = new TopKGroupWriter(ctx, topKFramesLimit, topK, rankFields, rankComparatorFactories,
+                            recordDescriptors[0], writer);
+                    super.initialize();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.group.external;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.common.io.RunFileWriter;
+
+/**
+ * Spreads the tuples of the frames it gets over one run file per hash partition. The runs stay open across the
+ * flushes of a spillable table, and an output frame is only taken for a partition that gets a tuple.
+ */
+class HashPartitionRunWriter implements IFrameWriter {
+    private final IHyracksTaskContext ctx;
+    private final ITuplePartitionComputer partitioner;
+    private final FrameTupleAccessor accessor;
+    private final RunFileWriter[] runWriters;
+    private final FrameTupleAppender[] appenders;
+
+    HashPartitionRunWriter(IHyracksTaskContext ctx, int numPartitions, ITuplePartitionComputer partitioner,
+            RecordDescriptor recordDescriptor) {
+        this.ctx = ctx;
+        this.partitioner = partitioner;
+        this.accessor = new FrameTupleAccessor(recordDescriptor);
+        this.runWriters = new RunFileWriter[numPartitions];
+        this.appenders = new FrameTupleAppender[numPartitions];
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        accessor.reset(buffer);
+        int tupleCount = accessor.getTupleCount();
+        for (int i = 0; i < tupleCount; i++) {
+            int p = partitioner.partition(accessor, i, runWriters.length);
+            if (runWriters[p] == null) {
+                runWriters[p] = new RunFileWriter(ctx.getJobletContext().createManagedWorkspaceFile(
+                        ExternalGroupOperatorDescriptor.class.getSimpleName()), ctx.getIOManager(), ctx);
+                runWriters[p].open();
+                appenders[p] = new FrameTupleAppender(new VSizeFrame(ctx));
+            }
+            FrameUtils.appendToWriter(runWriters[p], appenders[p], accessor, i);
+        }
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        for (RunFileWriter runWriter : runWriters) {
+            if (runWriter != null) {
+                runWriter.fail();
+            }
+        }
+    }
+
+    /**
+     * Does nothing, the runs stay open until {@link #closeRuns()}.
+     */
+    @Override
+    public void close() throws HyracksDataException {
+    }
+
+    public boolean hasRuns() {
+        for (RunFileWriter runWriter : runWriters) {
+            if (runWriter != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the runs of the partitions that got at least one tuple
+     */
+    public List<RunFileReader> closeRuns() throws HyracksDataException {
+        List<RunFileReader> runs = new ArrayList<RunFileReader>();
+        for (int p = 0; p < runWriters.length; p++) {
+            if (runWriters[p] == null) {
+                continue;
+            }
+            try {
+                appenders[p].flush(runWriters[p], true);
+            } finally {
+                runWriters[p].close();
+            }
+            runs.add(runWriters[p].createReader());
+            runWriters[p] = null;
+            appenders[p] = null;
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.ITuplePairComparator;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.common.io.RunFileWriter;
+
+/**
+ * Joins every left tuple with the right tuples whose interval [low, high] contains its point, i.e. the band join
+ * {@code left.point BETWEEN right.low AND right.high}, by sweeping both inputs: the left input has to be sorted in
+ * ascending order of its point and the right input in ascending order of the low end of its interval.
+ * The right input is cached in a run file and read back while the left input streams. The right tuples whose
+ * interval starts before the current point form the window of the sweep; a right tuple leaves the window once its
+ * interval ends before the current point, since the points only grow. The window keeps at most memSize - 4 frames in
+ * memory, the rest of it is spilled to a run file that is read again for each left frame, so the memory only bounds the
+ * width of the band that can be joined without I/O. The matches of the spilled part of the window are output for the
+ * whole left frame at once, after the matches found in memory, so the output does not keep the order of the left input.
+ * The comparator orders nulls and values of different types like any other value, so the pairs found by the sweep are
+ * checked against the join condition itself, if one is given.
+ */
+public class BandJoin {
+    private final IHyracksTaskContext ctx;
+    private final FrameTupleAccessor accessorLeft;
+    private final FrameTupleAccessor accessorRight;
+    private final FrameTupleAccessor accessorWindow;
+    private final int pointField;
+    private final int lowField;
+    private final int highField;
+    private final IBinaryComparator comparator;
+    private final ITuplePairComparator condition;
+    private final boolean isLeftOuter;
+    private boolean[] leftMatched;
+    private final ArrayTupleBuilder nullTupleBuilder;
+    private final int maxWindowFrames;
+
+    private final FrameTupleAppender appender;
+    private final RunFileWriter rightWriter;
+    private RunFileReader rightReader;
+    private final IFrame rightFrame;
+    private int rightTupleIndex;
+    private boolean rightExhausted;
+
+    private final List<IFrame> windowFrames;
+    private int windowFrameCount;
+    private final FrameTupleAppender windowAppender;
+    private int windowTupleCount;
+    private final IFrame spareFrame;
+    private final IFrame overflowFrame;
+    private final FrameTupleAppender overflowAppender;
+    private RunFileWriter overflowWriter;
+
+    public BandJoin(IHyracksTaskContext ctx, RecordDescriptor rdLeft, RecordDescriptor rdRight, int pointField,
+            int lowField, int highField, IBinaryComparator comparator, int memSize, boolean isLeftOuter,
+            INullWriter[] nullWritersRight) throws HyracksDataException {
+        this(ctx, rdLeft, rdRight, pointField, lowField, highField, comparator, null, memSize, isLeftOuter,
+                nullWritersRight);
+    }
+
+    /**
+     * @param condition
+     *            the join condition, which a pair of a left and a right tuple found by the sweep has to meet
+     *            (compare to 0) to be output, or null if the comparator decides it alone
+     */
+    public BandJoin(IHyracksTaskContext ctx, RecordDescriptor rdLeft, RecordDescriptor rdRight, int pointField,
+            int lowField, int highField, IBinaryComparator comparator, ITuplePairComparator condition, int memSize,
+            boolean isLeftOuter, INullWriter[] nullWritersRight) throws HyracksDataException {
+        if (memSize < 5) {
+            throw new HyracksDataException("Not enough memory is available for Band Join");
+        }
+        this.ctx = ctx;
+        this.accessorLeft = new FrameTupleAccessor(rdLeft);
+        this.accessorRight = new FrameTupleAccessor(rdRight);
+        this.accessorWindow = new FrameTupleAccessor(rdRight);
+        this.pointField = pointField;
+        this.lowField = lowField;
+        this.highField = highField;
+        this.comparator = comparator;
+        this.condition = condition;
+        this.maxWindowFrames = memSize - 4;
+        this.isLeftOuter = isLeftOuter;
+        if (isLeftOuter) {
+            int rightFieldCount = rdRight.getFieldCount();
+            nullTupleBuilder = new ArrayTupleBuilder(rightFieldCount);
+            DataOutput out = nullTupleBuilder.getDataOutput();
+            for (int i = 0; i < rightFieldCount; i++) {
+                nullWritersRight[i].writeNull(out);
+                nullTupleBuilder.addFieldEndOffset();
+            }
+        } else {
+            nullTupleBuilder = null;
+        }
+
+        this.appender = new FrameTupleAppender(new VSizeFrame(ctx));
+        this.rightFrame = new VSizeFrame(ctx);
+        this.windowFrames = new ArrayList<IFrame>();
+        this.windowAppender = new FrameTupleAppender();
+        this.spareFrame = new VSizeFrame(ctx);
+        this.overflowFrame = new VSizeFrame(ctx);
+        this.overflowAppender = new FrameTupleAppender(overflowFrame);
+
+        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(this.getClass().getSimpleName());
+        rightWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
+        rightWriter.open();
+    }
+
+    public void cacheRight(ByteBuffer buffer) throws HyracksDataException {
+        rightWriter.nextFrame(buffer);
+    }
+
+    public void closeCache() throws HyracksDataException {
+        rightWriter.close();
+    }
+
+    public void join(ByteBuffer leftBuffer, IFrameWriter writer) throws HyracksDataException {
+        if (rightReader == null) {
+            rightReader = rightWriter.createReader();
+            rightReader.open();
+            loadNextRightFrame();
+        }
+        accessorLeft.reset(leftBuffer);
+        int tupleCount = accessorLeft.getTupleCount();
+        if (tupleCount == 0) {
+            return;
+        }
+        int lastTupleIndex = tupleCount - 1;
+        while (!rightExhausted && compareToRight(lastTupleIndex, accessorRight, rightTupleIndex, lowField) >= 0) {
+            addToWindow(accessorRight, rightTupleIndex, maxWindowFrames);
+            nextRightTuple();
+        }
+        if (isLeftOuter) {
+            if (leftMatched == null || leftMatched.length < tupleCount) {
+                leftMatched = new boolean[tupleCount];
+            }
+            Arrays.fill(leftMatched, 0, tupleCount, false);
+        }
+        int expiredCount = 0;
+        for (int i = 0; i < tupleCount; i++) {
+            for (int f = 0; f < windowFrameCount; f++) {
+                accessorWindow.reset(windowFrames.get(f).getBuffer());
+                expiredCount += joinWithWindowFrame(i, i, writer);
+            }
+        }
+        if (overflowWriter != null) {
+            RunFileReader reader = overflowWriter.createReader();
+            reader.open();
+            while (reader.nextFrame(spareFrame)) {
+                accessorWindow.reset(spareFrame.getBuffer());
+                expiredCount += joinWithWindowFrame(0, lastTupleIndex, writer);
+            }
+            reader.close();
+            accessorWindow.reset(overflowFrame.getBuffer());
+            expiredCount += joinWithWindowFrame(0, lastTupleIndex, writer);
+        }
+        if (isLeftOuter) {
+            for (int i = 0; i < tupleCount; i++) {
+                if (!leftMatched[i]) {
+                    appendNullTuple(i, writer);
+                }
+            }
+        }
+        if (expiredCount > 0 && expiredCount * 2 >= windowTupleCount) {
+            compactWindow(lastTupleIndex);
+        }
+    }
+
+    public void closeJoin(IFrameWriter writer) throws HyracksDataException {
+        appender.flush(writer, true);
+        if (overflowWriter != null) {
+            overflowWriter.close();
+            overflowWriter.getFileReference().delete();
+            overflowWriter = null;
+        }
+        if (rightReader != null) {
+            rightReader.close();
+        }
+        rightWriter.getFileReference().delete();
+    }
+
+    /**
+     * Joins the left tuples from fromLeft to toLeft with the tuples of the window frame. The window holds the right
+     * tuples for the last tuple of the left frame, so the right tuples whose interval starts after the point of an
+     * earlier left tuple are skipped for it.
+     *
+     * @return the number of tuples of the window frame whose interval ends before the point of the last tuple of the
+     *         left frame, if it is among the joined left tuples
+     */
+    private int joinWithWindowFrame(int fromLeft, int toLeft, IFrameWriter writer) throws HyracksDataException {
+        int lastTupleIndex = accessorLeft.getTupleCount() - 1;
+        int expiredCount = 0;
+        int tupleCount = accessorWindow.getTupleCount();
+        for (int i = fromLeft; i <= toLeft; i++) {
+            for (int j = 0; j < tupleCount; j++) {
+                if (compareToRight(i, accessorWindow, j, highField) > 0) {
+                    if (i == lastTupleIndex) {
+                        expiredCount++;
+                    }
+                    continue;
+                }
+                if (i < lastTupleIndex && compareToRight(i, accessorWindow, j, lowField) < 0) {
+                    continue;
+                }
+                if (condition != null && condition.compare(accessorLeft, i, accessorWindow, j) != 0) {
+                    continue;
+                }
+                FrameUtils.appendConcatToWriter(writer, appender, accessorLeft, i, accessorWindow, j);
+                if (isLeftOuter) {
+                    leftMatched[i] = true;
+                }
+            }
+        }
+        return expiredCount;
+    }
+
+    /**
+     * Removes the tuples whose interval ends before the point of the given left tuple from the window. The frames in
+     * memory are compacted in place, each of them being copied to the spare frame first, then the spilled tuples are
+     * read back into the free frames.
+     */
+    private void compactWindow(int leftTupleIndex) throws HyracksDataException {
+        RunFileWriter oldOverflowWriter = overflowWriter;
+        if (oldOverflowWriter != null) {
+            if (overflowAppender.getTupleCount() > 0) {
+                overflowAppender.flush(oldOverflowWriter, true);
+            }
+            oldOverflowWriter.close();
+            overflowWriter = null;
+        }
+        int oldFrameCount = windowFrameCount;
+        windowFrameCount = 0;
+        windowTupleCount = 0;
+        for (int f = 0; f < oldFrameCount; f++) {
+            ByteBuffer frame = windowFrames.get(f).getBuffer();
+            spareFrame.ensureFrameSize(frame.capacity());
+            FrameUtils.copyWholeFrame(frame, spareFrame.getBuffer());
+            accessorWindow.reset(spareFrame.getBuffer());
+            addLiveTuples(leftTupleIndex, f + 1);
+        }
+        if (oldOverflowWriter != null) {
+            RunFileReader reader = oldOverflowWriter.createReader();
+            reader.open();
+            while (reader.nextFrame(spareFrame)) {
+                accessorWindow.reset(spareFrame.getBuffer());
+                addLiveTuples(leftTupleIndex, maxWindowFrames);
+            }
+            reader.close();
+            oldOverflowWriter.getFileReference().delete();
+        }
+    }
+
+    private void addLiveTuples(int leftTupleIndex, int frameLimit) throws HyracksDataException {
+        int tupleCount = accessorWindow.getTupleCount();
+        for (int j = 0; j < tupleCount; j++) {
+            if (compareToRight(leftTupleIndex, accessorWindow, j, highField) <= 0) {
+                addToWindow(accessorWindow, j, frameLimit);
+            }
+        }
+    }
+
+    /**
+     * Appends the tuple to the frames of the window in memory, using at most frameLimit of them, or to the spilled
+     * part of the window.
+     */
+    private void addToWindow(FrameTupleAccessor accessor, int tIndex, int frameLimit) throws HyracksDataException {
+        windowTupleCount++;
+        if (windowFrameCount == 0) {
+            windowAppender.reset(nextWindowFrame(), true);
+        }
+        if (windowAppender.append(accessor, tIndex)) {
+            return;
+        }
+        if (windowFrameCount < frameLimit) {
+            windowAppender.reset(nextWindowFrame(), true);
+            if (windowAppender.append(accessor, tIndex)) {
+                return;
+            }
+        }
+        if (overflowWriter == null) {
+            FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                    this.getClass().getSimpleName() + "Window");
+            overflowWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
+            overflowWriter.open();
+            overflowAppender.reset(overflowFrame, true);
+        }
+        FrameUtils.appendToWriter(overflowWriter, overflowAppender, accessor, tIndex);
+    }
+
+    private IFrame nextWindowFrame() throws HyracksDataException {
+        if (windowFrameCount == windowFrames.size()) {
+            windowFrames.add(new VSizeFrame(ctx));
+        }
+        IFrame frame = windowFrames.get(windowFrameCount++);
+        frame.reset();
+        return frame;
+    }
+
+    /**
+     * Compares the point of a left tuple with the given field (the low or the high end of the interval) of a right
+     * tuple.
+     */
+    private int compareToRight(int leftTupleIndex, FrameTupleAccessor accessor, int tIndex, int field)
+            throws HyracksDataException {
+        int lStart = accessorLeft.getTupleStartOffset(leftTupleIndex) + accessorLeft.getFieldSlotsLength()
+                + accessorLeft.getFieldStartOffset(leftTupleIndex, pointField);
+        int lLength = accessorLeft.getFieldLength(leftTupleIndex, pointField);
+        int rStart = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(tIndex, field);
+        int rLength = accessor.getFieldLength(tIndex, field);
+        return comparator.compare(accessorLeft.getBuffer().array(), lStart, lLength, accessor.getBuffer().array(),
+                rStart, rLength);
+    }
+
+    private void appendNullTuple(int leftTupleIndex, IFrameWriter writer) throws HyracksDataException {
+        final int[] ntFieldEndOffsets = nullTupleBuilder.getFieldEndOffsets();
+        final byte[] ntByteArray = nullTupleBuilder.getByteArray();
+        final int ntSize = nullTupleBuilder.getSize();
+        FrameUtils.appendConcatToWriter(writer, appender, accessorLeft, leftTupleIndex, ntFieldEndOffsets,
+                ntByteArray, 0, ntSize);
+    }
+
+    private void nextRightTuple() throws HyracksDataException {
+        if (++rightTupleIndex >= accessorRight.getTupleCount()) {
+            loadNextRightFrame();
+        }
+    }
+
+    private void loadNextRightFrame() throws HyracksDataException {
+        rightTupleIndex = 0;
+        while (rightReader.nextFrame(rightFrame)) {
+            accessorRight.reset(rightFrame.getBuffer());
+            if (accessorRight.getTupleCount() > 0) {
+                return;
+            }
+        }
+        rightExhausted = true;
+    }
+}
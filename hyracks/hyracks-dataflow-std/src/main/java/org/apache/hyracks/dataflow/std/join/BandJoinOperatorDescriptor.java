@@ -0,0 +1,224 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.ActivityId;
+import org.apache.hyracks.api.dataflow.IActivityGraphBuilder;
+import org.apache.hyracks.api.dataflow.IOperatorNodePushable;
+import org.apache.hyracks.api.dataflow.TaskId;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.INullWriterFactory;
+import org.apache.hyracks.api.dataflow.value.IRecordDescriptorProvider;
+import org.apache.hyracks.api.dataflow.value.ITuplePairComparator;
+import org.apache.hyracks.api.dataflow.value.ITuplePairComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
+import org.apache.hyracks.api.job.JobId;
+import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
+import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
+import org.apache.hyracks.dataflow.std.base.AbstractStateObject;
+import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
+import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
+
+/**
+ * Joins the tuples of the input 0 with the tuples of the input 1 whose interval contains their point, i.e.
+ * {@code point BETWEEN low AND high}, with {@link BandJoin}. The input 0 has to be sorted in ascending order of the
+ * point and the input 1 in ascending order of the low end of the interval, and the comparator has to order the point,
+ * low and high fields alike. The pairs found with the comparator are checked against the join condition given by the
+ * conditionFactory, if any, as the comparator does not follow the semantics of the condition for nulls. The input 1
+ * is cached in a run file first, then the input 0 streams through the join.
+ * memSize is the number of frames of the join, the window of the right tuples taking all but 4 of them.
+ */
+public class BandJoinOperatorDescriptor extends AbstractOperatorDescriptor {
+    private static final int CACHE_ACTIVITY_ID = 0;
+    private static final int BAND_JOIN_ACTIVITY_ID = 1;
+
+    private static final long serialVersionUID = 1L;
+    private final int pointField0;
+    private final int lowField1;
+    private final int highField1;
+    private final IBinaryComparatorFactory comparatorFactory;
+    private final ITuplePairComparatorFactory conditionFactory;
+    private final int memSize;
+    private final boolean isLeftOuter;
+    private final INullWriterFactory[] nullWriterFactories1;
+
+    public BandJoinOperatorDescriptor(IOperatorDescriptorRegistry spec, int pointField0, int lowField1,
+            int highField1, IBinaryComparatorFactory comparatorFactory, RecordDescriptor recordDescriptor,
+            int memSize) {
+        this(spec, pointField0, lowField1, highField1, comparatorFactory, null, recordDescriptor, memSize, false,
+                null);
+    }
+
+    public BandJoinOperatorDescriptor(IOperatorDescriptorRegistry spec, int pointField0, int lowField1,
+            int highField1, IBinaryComparatorFactory comparatorFactory, ITuplePairComparatorFactory conditionFactory,
+            RecordDescriptor recordDescriptor, int memSize, boolean isLeftOuter,
+            INullWriterFactory[] nullWriterFactories1) {
+        super(spec, 2, 1);
+        this.pointField0 = pointField0;
+        this.lowField1 = lowField1;
+        this.highField1 = highField1;
+        this.comparatorFactory = comparatorFactory;
+        this.conditionFactory = conditionFactory;
+        this.recordDescriptors[0] = recordDescriptor;
+        this.memSize = memSize;
+        this.isLeftOuter = isLeftOuter;
+        this.nullWriterFactories1 = nullWriterFactories1;
+    }
+
+    @Override
+    public void contributeActivities(IActivityGraphBuilder builder) {
+        ActivityId cacheAid = new ActivityId(getOperatorId(), CACHE_ACTIVITY_ID);
+        ActivityId joinAid = new ActivityId(getOperatorId(), BAND_JOIN_ACTIVITY_ID);
+        CacheActivityNode cache = new CacheActivityNode(cacheAid, joinAid);
+        BandJoinActivityNode join = new BandJoinActivityNode(joinAid);
+
+        builder.addActivity(this, cache);
+        builder.addSourceEdge(1, cache, 0);
+
+        builder.addActivity(this, join);
+        builder.addSourceEdge(0, join, 0);
+
+        builder.addTargetEdge(0, join, 0);
+        builder.addBlockingEdge(cache, join);
+    }
+
+    public static class BandJoinTaskState extends AbstractStateObject {
+        private BandJoin joiner;
+
+        public BandJoinTaskState() {
+        }
+
+        private BandJoinTaskState(JobId jobId, TaskId taskId) {
+            super(jobId, taskId);
+        }
+
+        @Override
+        public void toBytes(DataOutput out) throws IOException {
+
+        }
+
+        @Override
+        public void fromBytes(DataInput in) throws IOException {
+
+        }
+    }
+
+    private class CacheActivityNode extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        private final ActivityId joinAid;
+
+        public CacheActivityNode(ActivityId id, ActivityId joinAid) {
+            super(id);
+            this.joinAid = joinAid;
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions) {
+            final RecordDescriptor rd0 = recordDescProvider.getInputRecordDescriptor(joinAid, 0);
+            final RecordDescriptor rd1 = recordDescProvider.getInputRecordDescriptor(getActivityId(), 0);
+            final IBinaryComparator comparator = comparatorFactory.createBinaryComparator();
+            final ITuplePairComparator condition = (conditionFactory == null ? null : conditionFactory
+                    .createTuplePairComparator(ctx));
+
+            final INullWriter[] nullWriters1 = isLeftOuter ? new INullWriter[nullWriterFactories1.length] : null;
+            if (isLeftOuter) {
+                for (int i = 0; i < nullWriterFactories1.length; i++) {
+                    nullWriters1[i] = nullWriterFactories1[i].createNullWriter();
+                }
+            }
+
+            IOperatorNodePushable op = new AbstractUnaryInputSinkOperatorNodePushable() {
+                private BandJoinTaskState state;
+
+                @Override
+                public void open() throws HyracksDataException {
+                    state = new BandJoinTaskState(ctx.getJobletContext().getJobId(), new TaskId(
+                            getActivityId(), partition));
+                    state.joiner = new BandJoin(ctx, rd0, rd1, pointField0, lowField1, highField1, comparator,
+                            condition, memSize, isLeftOuter, nullWriters1);
+                }
+
+                @Override
+                public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                    state.joiner.cacheRight(buffer);
+                }
+
+                @Override
+                public void close() throws HyracksDataException {
+                    state.joiner.closeCache();
+                    ctx.setStateObject(state);
+                }
+
+                @Override
+                public void fail() throws HyracksDataException {
+                }
+            };
+            return op;
+        }
+    }
+
+    private class BandJoinActivityNode extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        public BandJoinActivityNode(ActivityId id) {
+            super(id);
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions) {
+
+            IOperatorNodePushable op = new AbstractUnaryInputUnaryOutputOperatorNodePushable() {
+                private BandJoinTaskState state;
+
+                @Override
+                public void open() throws HyracksDataException {
+                    state = (BandJoinTaskState) ctx.getStateObject(new TaskId(new ActivityId(getOperatorId(),
+                            CACHE_ACTIVITY_ID), partition));
+                    writer.open();
+                }
+
+                @Override
+                public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                    state.joiner.join(buffer, writer);
+                }
+
+                @Override
+                public void close() throws HyracksDataException {
+                    state.joiner.closeJoin(writer);
+                    writer.close();
+                }
+
+                @Override
+                public void fail() throws HyracksDataException {
+                    writer.fail();
+                }
+            };
+            return op;
+        }
+    }
+}
@@ -85,7 +85,7 @@ class GraceHashJoinPartitionBuildOperatorNodePushable extends
         if (writer == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                     GraceHashJoinOperatorDescriptor.class.getSimpleName());
-            writer = new RunFileWriter(file, ctx.getIOManager());
+            writer = new RunFileWriter(file, ctx.getIOManager(), ctx);
             writer.open();
             state.getRunWriters()[i] = writer;
         }
@@ -18,6 +18,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.logging.Logger;
 
 import org.apache.hyracks.api.comm.IFrame;
 import org.apache.hyracks.api.comm.VSizeFrame;
@@ -28,6 +29,7 @@ import org.apache.hyracks.api.dataflow.IOperatorNodePushable;
 import org.apache.hyracks.api.dataflow.TaskId;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
 import org.apache.hyracks.api.dataflow.value.INullWriter;
 import org.apache.hyracks.api.dataflow.value.INullWriterFactory;
@@ -60,6 +62,7 @@ import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
 public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor {
     private static final int BUILD_AND_PARTITION_ACTIVITY_ID = 0;
     private static final int PARTITION_AND_JOIN_ACTIVITY_ID = 1;
+    private static final int BLOOM_FILTER_MEMORY_RATIO = 4; //Bloom filters take at most a quarter of the table frames
 
     private final int memsize;
     private static final long serialVersionUID = 1L;
@@ -74,6 +77,8 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
     private final boolean isLeftOuter;
     private final INullWriterFactory[] nullWriterFactories1;
 
+    private static final Logger LOGGER = Logger.getLogger(HybridHashJoinOperatorDescriptor.class.getName());
+
     /**
      * @param spec
      * @param memsize               in frames
@@ -144,15 +149,33 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
         builder.addTargetEdge(0, phase2, 0);
     }
 
+    private IBinaryHashFunction[] createHashFunctions() {
+        IBinaryHashFunction[] hashFunctions = new IBinaryHashFunction[hashFunctionFactories.length];
+        for (int i = 0; i < hashFunctionFactories.length; i++) {
+            hashFunctions[i] = hashFunctionFactories[i].createBinaryHashFunction();
+        }
+        return hashFunctions;
+    }
+
     public static class BuildAndPartitionTaskState extends AbstractStateObject {
         private RunFileWriter[] fWriters;
         private InMemoryHashJoin joiner;
         private int nPartitions;
         private int memoryForHashtable;
+        private RuntimeBloomFilter[] bloomFilters;
+        private int bloomFilterFrames;
 
         public BuildAndPartitionTaskState() {
         }
 
+        /**
+         * @return the bloom filter over the build keys of the given spilled partition, or null if the partition has
+         *         not been spilled or the join has no bloom filters. Only complete once the build activity is closed.
+         */
+        public RuntimeBloomFilter getBloomFilter(int spilledPartition) {
+            return bloomFilters == null ? null : bloomFilters[spilledPartition];
+        }
+
         private BuildAndPartitionTaskState(JobId jobId, TaskId taskId) {
             super(jobId, taskId);
         }
@@ -202,12 +225,14 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                 private BuildAndPartitionTaskState state = new BuildAndPartitionTaskState(ctx.getJobletContext()
                         .getJobId(), new TaskId(getActivityId(), partition));
                 private final FrameTupleAccessor accessorBuild = new FrameTupleAccessor(rd1);
+                private final FrameTupleAccessor bloomFilterAccessor = new FrameTupleAccessor(rd1);
                 private final ITuplePartitionComputer hpcBuild = new FieldHashPartitionComputerFactory(keys1,
                         hashFunctionFactories).createPartitioner();
                 private final FrameTupleAppender appender = new FrameTupleAppender();
                 private final FrameTupleAppender ftappender = new FrameTupleAppender();
                 private IFrame[] bufferForPartitions;
                 private final IFrame inBuffer = new VSizeFrame(ctx);
+                private final IBinaryHashFunction[] hashFunctions = createHashFunctions();
 
                 @Override
                 public void close() throws HyracksDataException {
@@ -310,6 +335,9 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                                 state.nPartitions = (int) Math.ceil(Math.sqrt(inputsize0 * factor / nPartitions));
                             }
                         }
+                        if (state.nPartitions > 0 && !isLeftOuter) {
+                            reserveBloomFilters();
+                        }
                     } else {
                         throw new HyracksDataException("not enough memory");
                     }
@@ -333,6 +361,21 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                     ftappender.reset(inBuffer, true);
                 }
 
+                /**
+                 * Takes the frames of a bloom filter for each spilled partition from the frames of the hash table, if
+                 * they are at most a quarter of them. The filters are only created once their partitions spill.
+                 */
+                private void reserveBloomFilters() {
+                    long spilledFrames = (long) (inputsize0 * factor / nPartitions) - state.memoryForHashtable;
+                    int frames = RuntimeBloomFilter.getFrameCountFor(ctx.getInitialFrameSize(), spilledFrames
+                            * recordsPerFrame / state.nPartitions);
+                    if ((long) frames * state.nPartitions <= state.memoryForHashtable / BLOOM_FILTER_MEMORY_RATIO) {
+                        state.memoryForHashtable -= frames * state.nPartitions;
+                        state.bloomFilterFrames = frames;
+                        state.bloomFilters = new RuntimeBloomFilter[state.nPartitions];
+                    }
+                }
+
                 @Override
                 public void fail() throws HyracksDataException {
                 }
@@ -349,11 +392,31 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                     if (writer == null) {
                         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                                 BuildAndPartitionActivityNode.class.getSimpleName());
-                        writer = new RunFileWriter(file, ctx.getIOManager());
+                        writer = new RunFileWriter(file, ctx.getIOManager(), ctx);
                         writer.open();
                         state.fWriters[i] = writer;
                     }
                     writer.nextFrame(head);
+                    if (state.bloomFilters != null) {
+                        addToBloomFilter(i, head);
+                    }
+                }
+
+                /**
+                 * Every build frame of a spilled partition is written here, so its bloom filter is created with the
+                 * first frame the partition spills and filled from the frames it spills.
+                 */
+                private void addToBloomFilter(int i, ByteBuffer head) throws HyracksDataException {
+                    RuntimeBloomFilter bloomFilter = state.bloomFilters[i];
+                    if (bloomFilter == null) {
+                        bloomFilter = new RuntimeBloomFilter(ctx, state.bloomFilterFrames);
+                        state.bloomFilters[i] = bloomFilter;
+                    }
+                    bloomFilterAccessor.reset(head);
+                    int tCount = bloomFilterAccessor.getTupleCount();
+                    for (int j = 0; j < tCount; ++j) {
+                        bloomFilter.add(RuntimeBloomFilter.hash(hashFunctions, keys1, bloomFilterAccessor, j));
+                    }
                 }
             };
             return op;
@@ -405,6 +468,8 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                 private RunFileWriter[] buildWriters;
                 private RunFileWriter[] probeWriters;
                 private IFrame[] bufferForPartitions;
+                private final IBinaryHashFunction[] hashFunctions = createHashFunctions();
+                private long filteredCount;
 
                 @Override
                 public void open() throws HyracksDataException {
@@ -431,6 +496,9 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                             int entry ;
                             if (state.memoryForHashtable == 0) {
                                 entry = hpcProbe.partition(accessorProbe, i, state.nPartitions);
+                                if (isFilteredOut(entry, i)) {
+                                    continue;
+                                }
                                 boolean newBuffer = false;
                                 IFrame outbuf = bufferForPartitions[entry];
                                 while (true) {
@@ -456,6 +524,9 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
 
                                 } else {
                                     entry %= state.nPartitions;
+                                    if (isFilteredOut(entry, i)) {
+                                        continue;
+                                    }
                                     boolean newBuffer = false;
                                     IFrame outbuf = bufferForPartitions[entry];
                                     while (true) {
@@ -537,9 +608,32 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                             joiner.closeJoin(writer);
                         }
                     }
+                    if (state.bloomFilters != null) {
+                        LOGGER.fine("HybridHashJoin bloom filters (" + state.bloomFilterFrames + " frames each) have "
+                                + "dropped " + filteredCount + " probe tuples before spilling them");
+                        for (RuntimeBloomFilter bloomFilter : state.bloomFilters) {
+                            if (bloomFilter != null) {
+                                bloomFilter.close();
+                            }
+                        }
+                    }
                     writer.close();
                 }
 
+                /**
+                 * @return true if the probe tuple would be spilled although the spilled build partition has no tuple
+                 *         with its key
+                 */
+                private boolean isFilteredOut(int entry, int tIndex) throws HyracksDataException {
+                    RuntimeBloomFilter bloomFilter = state.bloomFilters == null ? null : state.bloomFilters[entry];
+                    if (bloomFilter == null || bloomFilter.mightContain(RuntimeBloomFilter.hash(hashFunctions,
+                            keys0, accessorProbe, tIndex))) {
+                        return false;
+                    }
+                    filteredCount++;
+                    return true;
+                }
+
                 private void closeWriter(int i) throws HyracksDataException {
                     RunFileWriter writer = probeWriters[i];
                     if (writer != null) {
@@ -552,7 +646,7 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                     if (writer == null) {
                         FileReference file = ctx.createManagedWorkspaceFile(PartitionAndJoinActivityNode.class
                                 .getSimpleName());
-                        writer = new RunFileWriter(file, ctx.getIOManager());
+                        writer = new RunFileWriter(file, ctx.getIOManager(), ctx);
                         writer.open();
                         probeWriters[i] = writer;
                     }
@@ -20,12 +20,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.apache.hyracks.api.comm.IFrame;
 import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.comm.VSizeFrame;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.INullWriter;
 import org.apache.hyracks.api.dataflow.value.IPredicateEvaluator;
 import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
@@ -33,6 +35,9 @@ import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.std.structures.ISerializableTable;
+import org.apache.hyracks.dataflow.std.structures.ITuplePointerTable;
+import org.apache.hyracks.dataflow.std.structures.PrimitiveKeyHashTable;
+import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
 import org.apache.hyracks.dataflow.std.structures.TuplePointer;
 
 public class InMemoryHashJoin {
@@ -43,11 +48,16 @@ public class InMemoryHashJoin {
     private final ITuplePartitionComputer tpcBuild;
     private final FrameTupleAccessor accessorProbe;
     private final ITuplePartitionComputer tpcProbe;
+    private final IFrame outputFrame;
     private final FrameTupleAppender appender;
     private final FrameTuplePairComparator tpComparator;
     private final boolean isLeftOuter;
     private final ArrayTupleBuilder nullTupleBuild;
-    private final ISerializableTable table;
+    private final ITuplePointerTable table;
+    private final ISerializableTable serializableTable;
+    private final PrimitiveKeyHashTable primitiveTable;
+    private final int probeKeyField;
+    private final int buildKeyField;
     private final int tableSize;
     private final TuplePointer storedTuplePointer;
     private final boolean reverseOutputOrder; //Should we reverse the order of tuples, we are writing in output
@@ -58,7 +68,7 @@ public class InMemoryHashJoin {
     public InMemoryHashJoin(IHyracksTaskContext ctx, int tableSize, FrameTupleAccessor accessor0,
             ITuplePartitionComputer tpc0, FrameTupleAccessor accessor1, ITuplePartitionComputer tpc1,
             FrameTuplePairComparator comparator, boolean isLeftOuter, INullWriter[] nullWriters1,
-            ISerializableTable table, IPredicateEvaluator predEval) throws HyracksDataException {
+            ITuplePointerTable table, IPredicateEvaluator predEval) throws HyracksDataException {
         this(ctx, tableSize, accessor0, tpc0, accessor1, tpc1, comparator, isLeftOuter, nullWriters1, table, predEval,
                 false);
     }
@@ -66,17 +76,44 @@ public class InMemoryHashJoin {
     public InMemoryHashJoin(IHyracksTaskContext ctx, int tableSize, FrameTupleAccessor accessor0,
             ITuplePartitionComputer tpc0, FrameTupleAccessor accessor1, ITuplePartitionComputer tpc1,
             FrameTuplePairComparator comparator, boolean isLeftOuter, INullWriter[] nullWriters1,
-            ISerializableTable table, IPredicateEvaluator predEval, boolean reverse) throws HyracksDataException {
+            ITuplePointerTable table, IPredicateEvaluator predEval, boolean reverse) throws HyracksDataException {
+        this(ctx, tableSize, accessor0, tpc0, accessor1, tpc1, comparator, isLeftOuter, nullWriters1, table, predEval,
+                reverse, null, null);
+    }
+
+    /**
+     * @param keys0
+     *            the key fields of the probe side, only needed if the table is a {@link PrimitiveKeyHashTable}
+     * @param keys1
+     *            the key fields of the build side, only needed if the table is a {@link PrimitiveKeyHashTable}
+     */
+    public InMemoryHashJoin(IHyracksTaskContext ctx, int tableSize, FrameTupleAccessor accessor0,
+            ITuplePartitionComputer tpc0, FrameTupleAccessor accessor1, ITuplePartitionComputer tpc1,
+            FrameTuplePairComparator comparator, boolean isLeftOuter, INullWriter[] nullWriters1,
+            ITuplePointerTable table, IPredicateEvaluator predEval, boolean reverse, int[] keys0, int[] keys1)
+            throws HyracksDataException {
         this.ctx = ctx;
         this.tableSize = tableSize;
         this.table = table;
+        if (table instanceof PrimitiveKeyHashTable) {
+            serializableTable = null;
+            primitiveTable = (PrimitiveKeyHashTable) table;
+            probeKeyField = keys0[0];
+            buildKeyField = keys1[0];
+        } else {
+            serializableTable = (ISerializableTable) table;
+            primitiveTable = null;
+            probeKeyField = -1;
+            buildKeyField = -1;
+        }
         storedTuplePointer = new TuplePointer();
         buffers = new ArrayList<ByteBuffer>();
         this.accessorBuild = accessor1;
         this.tpcBuild = tpc1;
         this.accessorProbe = accessor0;
         this.tpcProbe = tpc0;
-        appender = new FrameTupleAppender(new VSizeFrame(ctx));
+        outputFrame = new VSizeFrame(ctx);
+        appender = new FrameTupleAppender(outputFrame);
         tpComparator = comparator;
         predEvaluator = predEval;
         this.isLeftOuter = isLeftOuter;
@@ -96,16 +133,37 @@ public class InMemoryHashJoin {
                 + Thread.currentThread().getId() + ".");
     }
 
+    /**
+     * Creates a {@link PrimitiveKeyHashTable} if the type traits of both sides make them joined on one fixed-width key
+     * of the same length, and a {@link SerializableHashTable} otherwise.
+     */
+    public static ITuplePointerTable createTable(IHyracksTaskContext ctx, int tableSize, RecordDescriptor probeRd,
+            int[] probeKeys, RecordDescriptor buildRd, int[] buildKeys) throws HyracksDataException {
+        int keyLength = PrimitiveKeyHashTable.getKeyLength(buildRd, buildKeys);
+        if (keyLength > 0 && keyLength == PrimitiveKeyHashTable.getKeyLength(probeRd, probeKeys)) {
+            return new PrimitiveKeyHashTable(ctx, keyLength, tableSize);
+        }
+        return new SerializableHashTable(tableSize, ctx);
+    }
+
     public void build(ByteBuffer buffer) throws HyracksDataException {
         buffers.add(buffer);
         int bIndex = buffers.size() - 1;
         accessorBuild.reset(buffer);
         int tCount = accessorBuild.getTupleCount();
+        if (primitiveTable != null) {
+            for (int i = 0; i < tCount; ++i) {
+                storedTuplePointer.frameIndex = bIndex;
+                storedTuplePointer.tupleIndex = i;
+                primitiveTable.put(primitiveTable.getKey(accessorBuild, i, buildKeyField), storedTuplePointer);
+            }
+            return;
+        }
         for (int i = 0; i < tCount; ++i) {
             int entry = tpcBuild.partition(accessorBuild, i, tableSize);
             storedTuplePointer.frameIndex = bIndex;
             storedTuplePointer.tupleIndex = i;
-            table.insert(entry, storedTuplePointer);
+            serializableTable.insert(entry, storedTuplePointer);
         }
     }
 
@@ -114,7 +172,19 @@ public class InMemoryHashJoin {
         int tupleCount0 = accessorProbe.getTupleCount();
         for (int i = 0; i < tupleCount0; ++i) {
             boolean matchFound = false;
-            if (tableSize != 0) {
+            if (primitiveTable != null) {
+                // equal keys have equal bytes, so a matching slot needs no comparison against the build tuple
+                long key = primitiveTable.getKey(accessorProbe, i, probeKeyField);
+                for (int slot = primitiveTable.findFirst(key); slot >= 0; slot = primitiveTable.findNext(key, slot)) {
+                    primitiveTable.getTuplePointer(slot, 0, storedTuplePointer);
+                    int tIndex = storedTuplePointer.tupleIndex;
+                    accessorBuild.reset(buffers.get(storedTuplePointer.frameIndex));
+                    if (evaluatePredicate(i, tIndex)) {
+                        matchFound = true;
+                        appendToResult(i, tIndex, writer);
+                    }
+                }
+            } else if (tableSize != 0) {
                 int entry = tpcProbe.partition(accessorProbe, i, tableSize);
                 int offset = 0;
                 do {
@@ -145,8 +215,14 @@ public class InMemoryHashJoin {
     public void closeJoin(IFrameWriter writer) throws HyracksDataException {
         appender.flush(writer, true);
         int nFrames = buffers.size();
+        int nBytes = 0;
+        for (ByteBuffer buffer : buffers) {
+            nBytes += buffer.capacity();
+        }
         buffers.clear();
-        ctx.deallocateFrames(nFrames);
+        ctx.deallocateFrames(nBytes);
+        ctx.deallocateFrame(outputFrame.getBuffer());
+        table.close();
         LOGGER.fine("InMemoryHashJoin has finished using " + nFrames + " frames for Thread ID "
                 + Thread.currentThread().getId() + ".");
     }
@@ -17,6 +17,7 @@ package org.apache.hyracks.dataflow.std.join;
 import java.io.DataOutput;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hyracks.api.comm.IFrame;
@@ -52,6 +53,8 @@ public class NestedLoopJoin {
     private final ArrayTupleBuilder nullTupleBuilder;
     private final IPredicateEvaluator predEvaluator;
     private boolean isReversed;        //Added for handling correct calling for predicate-evaluator upon recursive calls (in OptimizedHybridHashJoin) that cause role-reversal
+    private NestedLoopJoinBlockIndex blockIndex;
+    private boolean[] blockMatches;
 
     public NestedLoopJoin(IHyracksTaskContext ctx, FrameTupleAccessor accessor0, FrameTupleAccessor accessor1,
             ITuplePairComparator comparators, int memSize, IPredicateEvaluator predEval, boolean isLeftOuter,
@@ -88,7 +91,7 @@ public class NestedLoopJoin {
 
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 this.getClass().getSimpleName() + this.toString());
-        runFileWriter = new RunFileWriter(file, ctx.getIOManager());
+        runFileWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
         runFileWriter.open();
     }
 
@@ -105,16 +108,37 @@ public class NestedLoopJoin {
             reloadFrame(outerBuffer);
             return;
         }
+        joinBlock(currentMemSize, writer);
+        currentMemSize = 0;
+        reloadFrame(outerBuffer);
+    }
+
+    private void joinBlock(int blockSize, IFrameWriter writer) throws HyracksDataException {
+        if (blockIndex != null) {
+            blockIndex.build(outBuffers, blockSize, accessorOuter);
+            if (isLeftOuter) {
+                if (blockMatches == null || blockMatches.length < blockIndex.getSize()) {
+                    blockMatches = new boolean[blockIndex.getSize()];
+                } else {
+                    Arrays.fill(blockMatches, 0, blockIndex.getSize(), false);
+                }
+            }
+        }
         runFileReader = runFileWriter.createReader();
         runFileReader.open();
         while (runFileReader.nextFrame(innerBuffer)) {
-            for (ByteBuffer outBuffer : outBuffers) {
-                blockJoin(outBuffer, innerBuffer.getBuffer(), writer);
+            if (blockIndex != null) {
+                indexedBlockJoin(innerBuffer.getBuffer(), writer);
+            } else {
+                for (int i = 0; i < blockSize; i++) {
+                    blockJoin(outBuffers.get(i), innerBuffer.getBuffer(), writer);
+                }
             }
         }
         runFileReader.close();
-        currentMemSize = 0;
-        reloadFrame(outerBuffer);
+        if (blockIndex != null && isLeftOuter) {
+            appendUnmatchedOuterTuples(writer);
+        }
     }
 
     private void createAndCopyFrame(ByteBuffer outerBuffer) throws HyracksDataException {
@@ -127,6 +151,7 @@ public class NestedLoopJoin {
     private void reloadFrame(ByteBuffer outerBuffer) throws HyracksDataException {
         outBuffers.get(currentMemSize).clear();
         if (outBuffers.get(currentMemSize).capacity() != outerBuffer.capacity()) {
+            ctx.deallocateFrame(outBuffers.get(currentMemSize));
             outBuffers.set(currentMemSize, ctx.allocateFrame(outerBuffer.capacity()));
         }
         FrameUtils.copyAndFlip(outerBuffer, outBuffers.get(currentMemSize));
@@ -161,6 +186,42 @@ public class NestedLoopJoin {
         }
     }
 
+    /**
+     * Joins the tuples of an inner frame with the outer tuples found by the block index, the outer tuples of the block
+     * that find no match being output at the end of the block for a left outer join.
+     */
+    private void indexedBlockJoin(ByteBuffer innerBuffer, IFrameWriter writer) throws HyracksDataException {
+        accessorInner.reset(innerBuffer);
+        int tupleCount1 = accessorInner.getTupleCount();
+        for (int j = 0; j < tupleCount1; ++j) {
+            blockIndex.search(accessorInner, j);
+            int rangeEnd = blockIndex.getRangeEnd();
+            for (int p = blockIndex.getRangeStart(); p < rangeEnd; p++) {
+                accessorOuter.reset(outBuffers.get(blockIndex.getFrameIndex(p)));
+                int i = blockIndex.getTupleIndex(p);
+                if (compare(accessorOuter, i, accessorInner, j) == 0 && evaluatePredicate(i, j)) {
+                    if (isLeftOuter) {
+                        blockMatches[p] = true;
+                    }
+                    appendToResults(i, j, writer);
+                }
+            }
+        }
+    }
+
+    private void appendUnmatchedOuterTuples(IFrameWriter writer) throws HyracksDataException {
+        final int[] ntFieldEndOffsets = nullTupleBuilder.getFieldEndOffsets();
+        final byte[] ntByteArray = nullTupleBuilder.getByteArray();
+        final int ntSize = nullTupleBuilder.getSize();
+        for (int p = 0; p < blockIndex.getSize(); p++) {
+            if (!blockMatches[p]) {
+                accessorOuter.reset(outBuffers.get(blockIndex.getFrameIndex(p)));
+                FrameUtils.appendConcatToWriter(writer, appender, accessorOuter, blockIndex.getTupleIndex(p),
+                        ntFieldEndOffsets, ntByteArray, 0, ntSize);
+            }
+        }
+    }
+
     private boolean evaluatePredicate(int tIx1, int tIx2) {
         if (isReversed) {        //Role Reversal Optimization is triggered
             return ((predEvaluator == null) || predEvaluator.evaluate(accessorInner, tIx2, accessorOuter, tIx1));
@@ -190,18 +251,16 @@ public class NestedLoopJoin {
     }
 
     public void closeJoin(IFrameWriter writer) throws HyracksDataException {
-        runFileReader = runFileWriter.createReader();
-        runFileReader.open();
-        while (runFileReader.nextFrame(innerBuffer)) {
-            for (int i = 0; i < currentMemSize; i++) {
-                blockJoin(outBuffers.get(i), innerBuffer.getBuffer(), writer);
-            }
+        joinBlock(currentMemSize, writer);
+        for (ByteBuffer buffer : outBuffers) {
+            ctx.deallocateFrame(buffer);
         }
-        runFileReader.close();
         outBuffers.clear();
         currentMemSize = 0;
 
         appender.flush(writer, true);
+        ctx.deallocateFrame(outBuffer.getBuffer());
+        ctx.deallocateFrame(innerBuffer.getBuffer());
     }
 
     private int compare(FrameTupleAccessor accessor0, int tIndex0, FrameTupleAccessor accessor1, int tIndex1)
@@ -216,4 +275,12 @@ public class NestedLoopJoin {
     public void setIsReversed(boolean b) {
         this.isReversed = b;
     }
+
+    /**
+     * Indexes the blocks of outer tuples with the given index, so that an inner tuple is only compared with the outer
+     * tuples the index finds instead of the whole block.
+     */
+    public void setBlockIndex(NestedLoopJoinBlockIndex blockIndex) {
+        this.blockIndex = blockIndex;
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.algorithms.BinarySearchAlgorithm;
+import org.apache.hyracks.data.std.api.IComparable;
+import org.apache.hyracks.data.std.api.IPointable;
+import org.apache.hyracks.data.std.collections.api.IValueReferenceVector;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+
+/**
+ * Sorts the tuples of the outer block of a {@link NestedLoopJoin} on one key field, so that each inner tuple only
+ * meets the outer tuples satisfying {@code outerKey <condition> innerKey}: the range of the matching outer tuples is
+ * found by a binary search for the key of the inner tuple. The join condition is still evaluated on every pair of the
+ * range, so the index only has to be implied by the condition.
+ */
+public class NestedLoopJoinBlockIndex {
+
+    public enum Condition {
+        EQ,
+        LT,
+        LE,
+        GT,
+        GE
+    }
+
+    private final int outerField;
+    private final int innerField;
+    private final IBinaryComparator comparator;
+    private final Condition condition;
+    private final BinarySearchAlgorithm binarySearch = new BinarySearchAlgorithm();
+    private final SortedKeys sortedKeys = new SortedKeys();
+    private final ProbeKey probeKey = new ProbeKey();
+
+    private List<ByteBuffer> frames;
+    private int size;
+    private int[] frameIndexes = new int[0];
+    private int[] tupleIndexes = new int[0];
+    private int[] keyStarts = new int[0];
+    private int[] keyLengths = new int[0];
+    private int[] sortOrder = new int[0];
+    private int[] sortBuffer = new int[0];
+    private int rangeStart;
+    private int rangeEnd;
+
+    public NestedLoopJoinBlockIndex(int outerField, int innerField, IBinaryComparator comparator,
+            Condition condition) {
+        this.outerField = outerField;
+        this.innerField = innerField;
+        this.comparator = comparator;
+        this.condition = condition;
+    }
+
+    /**
+     * Indexes the tuples of the first frameCount frames of the block.
+     */
+    public void build(List<ByteBuffer> frames, int frameCount, FrameTupleAccessor accessor)
+            throws HyracksDataException {
+        this.frames = frames;
+        size = 0;
+        for (int f = 0; f < frameCount; f++) {
+            accessor.reset(frames.get(f));
+            int tupleCount = accessor.getTupleCount();
+            ensureCapacity(size + tupleCount);
+            for (int i = 0; i < tupleCount; i++) {
+                frameIndexes[size] = f;
+                tupleIndexes[size] = i;
+                keyStarts[size] = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength()
+                        + accessor.getFieldStartOffset(i, outerField);
+                keyLengths[size] = accessor.getFieldLength(i, outerField);
+                sortOrder[size] = size;
+                size++;
+            }
+        }
+        sort(0, size);
+    }
+
+    /**
+     * Finds the outer tuples matching the given inner tuple, which are then the positions from
+     * {@link #getRangeStart()} to {@link #getRangeEnd()} of the index.
+     */
+    public void search(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        probeKey.bytes = accessor.getBuffer().array();
+        probeKey.start = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(tIndex, innerField);
+        probeKey.length = accessor.getFieldLength(tIndex, innerField);
+        int lowerBound;
+        int upperBound;
+        if (binarySearch.find(sortedKeys, probeKey)) {
+            lowerBound = binarySearch.getIndex();
+            while (lowerBound > 0 && compareToProbe(lowerBound - 1) == 0) {
+                lowerBound--;
+            }
+            upperBound = binarySearch.getIndex() + 1;
+            while (upperBound < size && compareToProbe(upperBound) == 0) {
+                upperBound++;
+            }
+        } else {
+            lowerBound = binarySearch.getIndex();
+            upperBound = lowerBound;
+        }
+        switch (condition) {
+            case EQ:
+                rangeStart = lowerBound;
+                rangeEnd = upperBound;
+                break;
+            case LT:
+                rangeStart = 0;
+                rangeEnd = lowerBound;
+                break;
+            case LE:
+                rangeStart = 0;
+                rangeEnd = upperBound;
+                break;
+            case GT:
+                rangeStart = upperBound;
+                rangeEnd = size;
+                break;
+            case GE:
+                rangeStart = lowerBound;
+                rangeEnd = size;
+                break;
+        }
+    }
+
+    public int getRangeStart() {
+        return rangeStart;
+    }
+
+    public int getRangeEnd() {
+        return rangeEnd;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getFrameIndex(int position) {
+        return frameIndexes[sortOrder[position]];
+    }
+
+    public int getTupleIndex(int position) {
+        return tupleIndexes[sortOrder[position]];
+    }
+
+    private int compareToProbe(int position) throws HyracksDataException {
+        int entry = sortOrder[position];
+        return comparator.compare(frames.get(frameIndexes[entry]).array(), keyStarts[entry], keyLengths[entry],
+                probeKey.bytes, probeKey.start, probeKey.length);
+    }
+
+    private int compareEntries(int entry1, int entry2) throws HyracksDataException {
+        return comparator.compare(frames.get(frameIndexes[entry1]).array(), keyStarts[entry1], keyLengths[entry1],
+                frames.get(frameIndexes[entry2]).array(), keyStarts[entry2], keyLengths[entry2]);
+    }
+
+    /**
+     * Merge sort of the entries from start to end of the sort order.
+     */
+    private void sort(int start, int end) throws HyracksDataException {
+        if (end - start < 2) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        sort(start, middle);
+        sort(middle, end);
+        if (compareEntries(sortOrder[middle - 1], sortOrder[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(sortOrder, start, sortBuffer, start, end - start);
+        int i = start;
+        int j = middle;
+        for (int k = start; k < end; k++) {
+            if (j >= end || (i < middle && compareEntries(sortBuffer[i], sortBuffer[j]) <= 0)) {
+                sortOrder[k] = sortBuffer[i++];
+            } else {
+                sortOrder[k] = sortBuffer[j++];
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= frameIndexes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, frameIndexes.length * 2);
+        int[] newFrameIndexes = new int[newCapacity];
+        int[] newTupleIndexes = new int[newCapacity];
+        int[] newKeyStarts = new int[newCapacity];
+        int[] newKeyLengths = new int[newCapacity];
+        System.arraycopy(frameIndexes, 0, newFrameIndexes, 0, size);
+        System.arraycopy(tupleIndexes, 0, newTupleIndexes, 0, size);
+        System.arraycopy(keyStarts, 0, newKeyStarts, 0, size);
+        System.arraycopy(keyLengths, 0, newKeyLengths, 0, size);
+        int[] newSortOrder = new int[newCapacity];
+        System.arraycopy(sortOrder, 0, newSortOrder, 0, size);
+        frameIndexes = newFrameIndexes;
+        tupleIndexes = newTupleIndexes;
+        keyStarts = newKeyStarts;
+        keyLengths = newKeyLengths;
+        sortOrder = newSortOrder;
+        sortBuffer = new int[newCapacity];
+    }
+
+    private class SortedKeys implements IValueReferenceVector {
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes(int index) {
+            return frames.get(frameIndexes[sortOrder[index]]).array();
+        }
+
+        @Override
+        public int getStart(int index) {
+            return keyStarts[sortOrder[index]];
+        }
+
+        @Override
+        public int getLength(int index) {
+            return keyLengths[sortOrder[index]];
+        }
+    }
+
+    private class ProbeKey implements IComparable {
+        private byte[] bytes;
+        private int start;
+        private int length;
+
+        @Override
+        public int compareTo(IPointable pointer) {
+            return compareTo(pointer.getByteArray(), pointer.getStartOffset(), pointer.getLength());
+        }
+
+        @Override
+        public int compareTo(byte[] bytes, int start, int length) {
+            try {
+                return comparator.compare(this.bytes, this.start, this.length, bytes, start, length);
+            } catch (HyracksDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.io.Serializable;
+
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndex.Condition;
+
+/**
+ * Describes the part {@code outer.outerField <condition> inner.innerField} of a nested loop join condition that the
+ * outer blocks are indexed on. The comparator has to order both fields.
+ */
+public class NestedLoopJoinBlockIndexFactory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int outerField;
+    private final int innerField;
+    private final IBinaryComparatorFactory comparatorFactory;
+    private final Condition condition;
+
+    public NestedLoopJoinBlockIndexFactory(int outerField, int innerField, IBinaryComparatorFactory comparatorFactory,
+            Condition condition) {
+        this.outerField = outerField;
+        this.innerField = innerField;
+        this.comparatorFactory = comparatorFactory;
+        this.condition = condition;
+    }
+
+    public NestedLoopJoinBlockIndex createBlockIndex() {
+        return new NestedLoopJoinBlockIndex(outerField, innerField, comparatorFactory.createBinaryComparator(),
+                condition);
+    }
+}
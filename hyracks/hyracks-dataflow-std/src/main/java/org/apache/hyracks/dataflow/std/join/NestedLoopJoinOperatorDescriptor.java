@@ -37,7 +37,6 @@ import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
 import org.apache.hyracks.api.job.JobId;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
-import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
 import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.base.AbstractStateObject;
@@ -54,6 +53,7 @@ public class NestedLoopJoinOperatorDescriptor extends AbstractOperatorDescriptor
     private final IPredicateEvaluatorFactory predEvaluatorFactory;
     private final boolean isLeftOuter;
     private final INullWriterFactory[] nullWriterFactories1;
+    private final NestedLoopJoinBlockIndexFactory blockIndexFactory;
 
     public NestedLoopJoinOperatorDescriptor(IOperatorDescriptorRegistry spec,
             ITuplePairComparatorFactory comparatorFactory, RecordDescriptor recordDescriptor, int memSize,
@@ -65,6 +65,19 @@ public class NestedLoopJoinOperatorDescriptor extends AbstractOperatorDescriptor
             ITuplePairComparatorFactory comparatorFactory, RecordDescriptor recordDescriptor, int memSize,
             IPredicateEvaluatorFactory predEvalFactory, boolean isLeftOuter,
             INullWriterFactory[] nullWriterFactories1) {
+        this(spec, comparatorFactory, recordDescriptor, memSize, predEvalFactory, isLeftOuter, nullWriterFactories1,
+                null);
+    }
+
+    /**
+     * @param blockIndexFactory
+     *            describes a comparison of the join condition between a field of the input 0 and a field of the
+     *            input 1 to index the blocks of the input 0 on, or null to compare every pair of tuples
+     */
+    public NestedLoopJoinOperatorDescriptor(IOperatorDescriptorRegistry spec,
+            ITuplePairComparatorFactory comparatorFactory, RecordDescriptor recordDescriptor, int memSize,
+            IPredicateEvaluatorFactory predEvalFactory, boolean isLeftOuter,
+            INullWriterFactory[] nullWriterFactories1, NestedLoopJoinBlockIndexFactory blockIndexFactory) {
         super(spec, 2, 1);
         this.comparatorFactory = comparatorFactory;
         this.recordDescriptors[0] = recordDescriptor;
@@ -72,6 +85,7 @@ public class NestedLoopJoinOperatorDescriptor extends AbstractOperatorDescriptor
         this.predEvaluatorFactory = predEvalFactory;
         this.isLeftOuter = isLeftOuter;
         this.nullWriterFactories1 = nullWriterFactories1;
+        this.blockIndexFactory = blockIndexFactory;
     }
 
     @Override
@@ -150,14 +164,14 @@ public class NestedLoopJoinOperatorDescriptor extends AbstractOperatorDescriptor
                     state.joiner = new NestedLoopJoin(ctx, new FrameTupleAccessor(rd0),
                             new FrameTupleAccessor(rd1), comparator, memSize, predEvaluator, isLeftOuter,
                             nullWriters1);
-
+                    if (blockIndexFactory != null) {
+                        state.joiner.setBlockIndex(blockIndexFactory.createBlockIndex());
+                    }
                 }
 
                 @Override
                 public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-                    ByteBuffer copyBuffer = ctx.allocateFrame(buffer.capacity());
-                    FrameUtils.copyAndFlip(buffer, copyBuffer);
-                    state.joiner.cache(copyBuffer);
+                    state.joiner.cache(buffer); //Written to the run file right away, no copy is kept
                 }
 
                 @Override
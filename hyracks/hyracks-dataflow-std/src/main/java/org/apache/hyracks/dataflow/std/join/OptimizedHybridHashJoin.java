@@ -16,29 +16,41 @@ package org.apache.hyracks.dataflow.std.join;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
 import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.comm.VSizeFrame;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
 import org.apache.hyracks.api.dataflow.value.INullWriter;
 import org.apache.hyracks.api.dataflow.value.INullWriterFactory;
 import org.apache.hyracks.api.dataflow.value.IPredicateEvaluator;
 import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
 import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.api.job.profiling.counters.ICounterContext;
+import org.apache.hyracks.api.resources.memory.IMemoryManager;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.common.io.RunFileSequenceReader;
 import org.apache.hyracks.dataflow.common.io.RunFileWriter;
-import org.apache.hyracks.dataflow.std.structures.ISerializableTable;
-import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+import org.apache.hyracks.dataflow.std.structures.HeavyHitterSketch;
+import org.apache.hyracks.dataflow.std.structures.ITuplePointerTable;
 
 /**
  * @author pouria
@@ -51,7 +63,12 @@ public class OptimizedHybridHashJoin {
     private final int END_OF_PARTITION = -1;
     private final int INVALID_BUFFER = -2;
     private final int UNALLOCATED_FRAME = -3;
+    private final int BLOOM_FILTER_FRAME = -4;
     private final int BUFFER_FOR_RESIDENT_PARTS = -1;
+    private final int NO_HEAVY_HITTER_PARTITION = -1;
+    private final int HEAVY_HITTER_MIN_COUNT = 32; //A key needs this many build tuples to get into the side partition
+    private final int TABLE_BYTES_PER_TUPLE = 32; //Estimated size of the in-memory hash table per resident tuple
+    private final int BLOOM_FILTER_MEMORY_RATIO = 4; //The bloom filters take at most a quarter of the frames
 
     private IHyracksTaskContext ctx;
 
@@ -70,6 +87,8 @@ public class OptimizedHybridHashJoin {
     private final RecordDescriptor probeRd;
 
     private RunFileWriter[] buildRFWriters; //writing spilled build partitions
+    //Run files of each group of merged partitions, read in sequence as the run of the first partition of the group
+    private final Map<Integer, List<RunFileWriter>> mergedBuildRFWriters = new HashMap<Integer, List<RunFileWriter>>();
     private RunFileWriter[] probeRFWriters; //writing spilled probe partitions
 
     private final IPredicateEvaluator predEvaluator;
@@ -102,8 +121,28 @@ public class OptimizedHybridHashJoin {
     private int freeFramesCounter; //Used for partition tuning
 
     private boolean isTableEmpty; //Added for handling the case, where build side is empty (tableSize is 0)
+
+    private boolean isMemoryRefused; //The task's memory budget has refused a frame, free frames are left for the probe
     private boolean isReversed; //Added for handling correct calling for predicate-evaluator upon recursive calls that cause role-reversal
 
+    private RuntimeBloomFilter[] bloomFilters; //Build keys of the spilled partitions, drop probe tuples before spilling
+    private int bloomFilterFrames; //Frames of the join given up for the bloom filters
+    private FrameTupleAccessor bloomFilterAccessor;
+    private IBinaryHashFunction[] buildBloomHashFunctions;
+    private IBinaryHashFunction[] probeBloomHashFunctions;
+    private long numOfProbeTupsFiltered;
+
+    private HeavyHitterSketch heavyHitters; //Detects the keys dominating the build side, null if skew is not handled
+    private int heavyHitterPid = NO_HEAVY_HITTER_PARTITION; //Side partition for the build tuples of heavy keys
+
+    private IMemoryManager memoryManager; //Asked for spare memory before spilling, null if memForJoin is fixed
+    private int maxMemForJoin;
+    private long grownMemoryInBytes; //Reserved from memoryManager, returned by close()
+    private int[] pidMapping; //Partition whose run files hold the tuples of each partition, after merging
+    private int numOfMergedParts;
+
+    private static final String COUNTER_PREFIX = OptimizedHybridHashJoin.class.getSimpleName() + ".";
+
     private static final Logger LOGGER = Logger.getLogger(OptimizedHybridHashJoin.class.getName());
 
     public OptimizedHybridHashJoin(IHyracksTaskContext ctx, int memForJoin, int numOfPartitions, String rel0Name,
@@ -177,6 +216,10 @@ public class OptimizedHybridHashJoin {
         nextBuff = new int[memForJoin];
         pStatus = new BitSet(numOfPartitions);
         buildPSizeInTups = new int[numOfPartitions];
+        pidMapping = new int[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            pidMapping[i] = i;
+        }
 
         buildPSizeInFrames = new int[numOfPartitions];
         freeFramesCounter = memForJoin - numOfPartitions;
@@ -198,6 +241,10 @@ public class OptimizedHybridHashJoin {
 
         buildTupAppender = new FrameTupleAppender();
 
+        if (buildBloomHashFunctions != null && !isLeftOuter) {
+            bloomFilters = new RuntimeBloomFilter[numOfPartitions];
+            bloomFilterAccessor = new FrameTupleAccessor(buildRd);
+        }
     }
 
     public void build(ByteBuffer buffer) throws HyracksDataException {
@@ -210,7 +257,13 @@ public class OptimizedHybridHashJoin {
         }
 
         for (int i = 0; i < tupleCount; ++i) {
-            int pid = buildHpc.partition(accessorBuild, i, numOfPartitions);
+            int pid;
+            if (heavyHitters == null) {
+                pid = buildHpc.partition(accessorBuild, i, numOfPartitions);
+            } else {
+                int keyHash = buildHpc.partition(accessorBuild, i, Integer.MAX_VALUE);
+                pid = heavyHitters.add(keyHash) ? heavyHitterPid : keyHash % heavyHitterPid;
+            }
             processTuple(i, pid);
             buildPSizeInTups[pid]++;
         }
@@ -228,6 +281,9 @@ public class OptimizedHybridHashJoin {
                 }
                 //partition does not have enough room
                 int newBuffIx = allocateFreeBuffer(pid);
+                if (newBuffIx == NO_MORE_FREE_BUFFER && growMemory()) { //The node has memory to spare
+                    newBuffIx = allocateFreeBuffer(pid);
+                }
                 if (newBuffIx == NO_MORE_FREE_BUFFER) { //Spill one partition
                     int pidToSpill = selectPartitionToSpill();
                     if (pidToSpill == -1) { //No more partition to spill
@@ -260,13 +316,68 @@ public class OptimizedHybridHashJoin {
                 needClear = true;
                 buildPSizeInFrames[pid]++;
             }
+            if (bloomFilters != null && bloomFilters[pid] != null) {
+                addToBloomFilter(pid, tid);
+            }
+        }
+    }
+
+    /**
+     * A full bloom filter grows if the frames of the join and the share of the bloom filters in them allow it.
+     * Otherwise the keys go to its full segment.
+     */
+    private void addToBloomFilter(int pid, int tid) throws HyracksDataException {
+        RuntimeBloomFilter bloomFilter = bloomFilters[pid];
+        if (bloomFilter.isFull()) {
+            int growth = bloomFilter.getGrowthInFrames();
+            if (growth <= Math.min(freeFramesCounter, getSpareBloomFilterFrames())) {
+                try {
+                    bloomFilter.grow(growth);
+                    withholdFreeFrames(growth);
+                } catch (InsufficientMemoryException e) {
+                    //The filter keeps its size
+                }
+            }
+        }
+        bloomFilter.add(RuntimeBloomFilter.hash(buildBloomHashFunctions, buildKeys, accessorBuild, tid));
+    }
+
+    private int getSpareBloomFilterFrames() {
+        return memForJoin / BLOOM_FILTER_MEMORY_RATIO - bloomFilterFrames;
+    }
+
+    /**
+     * Takes the given number of frames off the chain of free frames, for the bloom filters that have been allocated
+     * the same number of frames from the task. The frames the join had allocated among them are returned to the task.
+     */
+    private void withholdFreeFrames(int frames) {
+        for (int i = 0; i < frames && nextFreeBuffIx != NO_MORE_FREE_BUFFER; i++) {
+            int buffIx = nextFreeBuffIx;
+            int oldNext = nextBuff[buffIx];
+            if (oldNext == UNALLOCATED_FRAME) {
+                nextFreeBuffIx = (buffIx + 1 == memForJoin) ? NO_MORE_FREE_BUFFER : buffIx + 1;
+            } else {
+                nextFreeBuffIx = oldNext;
+            }
+            if (memBuffs[buffIx] != null) {
+                ctx.deallocateFrame(memBuffs[buffIx].getBuffer());
+                memBuffs[buffIx] = null;
+            }
+            nextBuff[buffIx] = BLOOM_FILTER_FRAME;
+            freeFramesCounter--;
         }
+        bloomFilterFrames += frames;
     }
 
     private int allocateFreeBuffer(int pid) throws HyracksDataException {
         if (nextFreeBuffIx != NO_MORE_FREE_BUFFER) {
             if (memBuffs[nextFreeBuffIx] == null) {
-                memBuffs[nextFreeBuffIx] = new VSizeFrame(ctx);
+                try {
+                    memBuffs[nextFreeBuffIx] = new VSizeFrame(ctx);
+                } catch (InsufficientMemoryException e) {
+                    shrinkMemory(nextFreeBuffIx);
+                    return NO_MORE_FREE_BUFFER; //A partitions needs to be spilled (if feasible)
+                }
             }
             int curPartBuffIx = curPBuff[pid];
             curPBuff[pid] = nextFreeBuffIx;
@@ -289,15 +400,65 @@ public class OptimizedHybridHashJoin {
         }
     }
 
+    /**
+     * The task's memory budget has refused a frame: the join keeps the frames it has allocated so far and spills
+     * partitions instead of asking for more. Frames are allocated in index order, so the first unallocated frame
+     * is also the number of allocated frames.
+     */
+    private void shrinkMemory(int allocatedFrames) {
+        LOGGER.fine("OptimizedHybridHashJoin has been refused a frame, shrinking its memory from " + memForJoin
+                + " to " + allocatedFrames + " frames");
+        freeFramesCounter -= memForJoin - allocatedFrames;
+        memForJoin = allocatedFrames;
+        maxMemForJoin = allocatedFrames;
+        nextFreeBuffIx = NO_MORE_FREE_BUFFER;
+        isMemoryRefused = true;
+    }
+
+    /**
+     * Adds half of the current frames (at most up to maxMemForJoin) to the memory for the join, if the node keeps at
+     * least half of its memory available afterwards. The added frames are reserved from the memory manager, so that
+     * concurrent joins cannot grow into the same spare memory.
+     */
+    private boolean growMemory() {
+        if (memoryManager == null || memForJoin >= maxMemForJoin) {
+            return false;
+        }
+        int growth = Math.min(Math.max(1, memForJoin / 2), maxMemForJoin - memForJoin);
+        long growthInBytes = (long) growth * ctx.getInitialFrameSize();
+        if (memoryManager.getAvailableMemory() - growthInBytes < memoryManager.getMaximumMemory() / 2) {
+            return false;
+        }
+        if (!memoryManager.allocate(growthInBytes)) {
+            return false;
+        }
+        grownMemoryInBytes += growthInBytes;
+        int oldMemForJoin = memForJoin;
+        memForJoin += growth;
+        memBuffs = Arrays.copyOf(memBuffs, memForJoin);
+        nextBuff = Arrays.copyOf(nextBuff, memForJoin);
+        for (int i = oldMemForJoin; i < memForJoin; i++) {
+            nextBuff[i] = UNALLOCATED_FRAME;
+        }
+        nextFreeBuffIx = oldMemForJoin; //Only called once all the frames are used
+        freeFramesCounter += growth;
+        LOGGER.fine("OptimizedHybridHashJoin has grown its memory from " + oldMemForJoin + " to " + memForJoin
+                + " frames for Thread ID " + Thread.currentThread().getId() + ".");
+        return true;
+    }
+
     private int selectPartitionToSpill() {
         int maxSize = -1;
         int partitionToSpill = -1;
         for (int i = 0; i < buildPSizeInTups.length; i++) { //Find the largest partition, to spill
-            if (!pStatus.get(i) && (buildPSizeInTups[i] > maxSize)) {
+            if (!pStatus.get(i) && (buildPSizeInTups[i] > maxSize) && i != heavyHitterPid) {
                 maxSize = buildPSizeInTups[i];
                 partitionToSpill = i;
             }
         }
+        if (partitionToSpill == -1 && heavyHitterPid != NO_HEAVY_HITTER_PARTITION && !pStatus.get(heavyHitterPid)) {
+            partitionToSpill = heavyHitterPid; //The heavy hitters are only spilled as the last resort
+        }
         return partitionToSpill;
     }
 
@@ -305,10 +466,19 @@ public class OptimizedHybridHashJoin {
         LOGGER.fine("OptimizedHybridHashJoin is spilling partition:" + pid + " with " + buildPSizeInFrames[pid]
                 + " frames for Thread ID " + Thread.currentThread().getId() + " (free frames: " + freeFramesCounter
                 + ").");
+        RuntimeBloomFilter bloomFilter = createBloomFilter(pid);
         int curBuffIx = curPBuff[pid];
         while (curBuffIx != END_OF_PARTITION) {
             IFrame frame = memBuffs[curBuffIx];
             buildWrite(pid, frame.getBuffer());
+            if (bloomFilter != null) {
+                bloomFilterAccessor.reset(frame.getBuffer());
+                int tupleCount = bloomFilterAccessor.getTupleCount();
+                for (int i = 0; i < tupleCount; i++) {
+                    bloomFilter.add(RuntimeBloomFilter.hash(buildBloomHashFunctions, buildKeys,
+                            bloomFilterAccessor, i));
+                }
+            }
             frame.reset();
 
             int freedBuffIx = curBuffIx;
@@ -322,17 +492,50 @@ public class OptimizedHybridHashJoin {
         }
         curPBuff[pid] = pid;
         pStatus.set(pid);
+        if (bloomFilter != null) {
+            withholdFreeFrames(bloomFilter.getFrameCount());
+            bloomFilters[pid] = bloomFilter;
+        }
         LOGGER.fine("OptimizedHybridHashJoin has freed " + freeFramesCounter + " frames by spilling partition:" + pid
                 + " for Thread ID " + Thread.currentThread().getId() + ".");
     }
 
+    /**
+     * A partition gets its bloom filter when it is first spilled, sized for twice its tuples so far, out of the frames
+     * freed by spilling it and the free frames of the join. The filter is allocated from the task before the frames
+     * of the partition are returned, as it is filled from them.
+     *
+     * @return null if the partition is spilled without a bloom filter
+     */
+    private RuntimeBloomFilter createBloomFilter(int pid) throws HyracksDataException {
+        if (bloomFilters == null) {
+            return null;
+        }
+        int freedFrames = 0;
+        for (int buffIx = curPBuff[pid]; buffIx != END_OF_PARTITION; buffIx = nextBuff[buffIx]) {
+            if (buffIx != pid) {
+                freedFrames++;
+            }
+        }
+        int frames = Math.min(RuntimeBloomFilter.getFrameCountFor(ctx.getInitialFrameSize(),
+                2L * buildPSizeInTups[pid]), Math.min(freeFramesCounter + freedFrames, getSpareBloomFilterFrames()));
+        if (frames < 1) {
+            return null;
+        }
+        try {
+            return new RuntimeBloomFilter(ctx, frames);
+        } catch (InsufficientMemoryException e) {
+            return null;
+        }
+    }
+
     private void buildWrite(int pid, ByteBuffer buff) throws HyracksDataException {
         RunFileWriter writer = buildRFWriters[pid];
         if (writer == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(rel0Name);
             LOGGER.fine("OptimizedHybridHashJoin is creating a run file (" + file.getFile().getAbsolutePath()
                     + ") for partition:" + pid + " for Thread ID " + Thread.currentThread().getId() + ".");
-            writer = new RunFileWriter(file, ctx.getIOManager());
+            writer = new RunFileWriter(file, ctx.getIOManager(), ctx);
             writer.open();
             buildRFWriters[pid] = writer;
         }
@@ -349,6 +552,9 @@ public class OptimizedHybridHashJoin {
                 freeFramesCounter++;
             }
         }
+        if (isMemoryRefused) {
+            fitResidentPartitions();
+        }
 
         ByteBuffer buff = null;
         for (int i = pStatus.nextSetBit(0); i >= 0; i = pStatus
@@ -369,7 +575,8 @@ public class OptimizedHybridHashJoin {
             }
         }
 
-        partitionTune(); //Trying to bring back as many spilled partitions as possible, making them resident
+        int numOfReloadedParts = partitionTune(); //Trying to bring back as many spilled partitions as possible, making them resident
+        mergeSmallSpilledPartitions(); //Merging the spilled partitions that turned out to be small
 
         int inMemTupCount = 0;
         int inMemFrameCount = 0;
@@ -389,16 +596,72 @@ public class OptimizedHybridHashJoin {
         LOGGER.fine("OptimizedHybridHashJoin build phase has spilled " + numOfSpilledParts + " of " + numOfPartitions
                 + " partitions for Thread ID " + Thread.currentThread().getId() + ". (" + inMemFrameCount
                 + " in-memory frames, " + spilledFrameCount + " spilled frames)");
+        List<IFrame> residentFrames = takeResidentFrames();
+        releaseBuildFrames(); //The frames left are free, they are returned before the joiner allocates its table
         createInMemoryJoiner(inMemTupCount);
-        cacheInMemJoin();
+        cacheInMemJoin(residentFrames);
         this.isTableEmpty = (inMemTupCount == 0);
+        reportBuildPlan(numOfReloadedParts);
+    }
+
+    /**
+     * Once the memory budget has refused a frame, the join can only count on the frames it holds. Resident
+     * partitions are spilled until these frames also cover the in-memory hash table and one probe frame per spilled
+     * partition.
+     */
+    private void fitResidentPartitions() throws HyracksDataException {
+        int frameSize = ctx.getInitialFrameSize();
+        while (true) {
+            int residentFrames = 0;
+            long residentTups = 0;
+            for (int i = 0; i < numOfPartitions; i++) {
+                if (!pStatus.get(i)) {
+                    residentFrames += buildPSizeInFrames[i];
+                    residentTups += buildPSizeInTups[i];
+                }
+            }
+            long tableFrames = (residentTups * TABLE_BYTES_PER_TUPLE + frameSize - 1) / frameSize;
+            if (residentTups == 0
+                    || residentFrames + tableFrames + pStatus.cardinality() + 1 + bloomFilterFrames <= memForJoin) {
+                return;
+            }
+            int pidToSpill = selectPartitionToSpill();
+            spillPartition(pidToSpill);
+            buildTupAppender.reset(memBuffs[pidToSpill], true);
+        }
+    }
+
+    private void reportBuildPlan(int numOfReloadedParts) {
+        long buildTupCount = 0;
+        for (int i = 0; i < numOfPartitions; i++) {
+            buildTupCount += buildPSizeInTups[i];
+        }
+        ICounterContext counters = ctx.getCounterContext();
+        counters.getCounter(COUNTER_PREFIX + "build-tuples", true).update(buildTupCount);
+        counters.getCounter(COUNTER_PREFIX + "partitions", true).update(numOfPartitions);
+        counters.getCounter(COUNTER_PREFIX + "spilled-partitions", true).update(numOfSpilledParts);
+        counters.getCounter(COUNTER_PREFIX + "reloaded-partitions", true).update(numOfReloadedParts);
+        counters.getCounter(COUNTER_PREFIX + "merged-partitions", true).update(numOfMergedParts);
+        counters.getCounter(COUNTER_PREFIX + "memory-frames", true).update(memForJoin);
+        counters.getCounter(COUNTER_PREFIX + "heavy-hitters", true).update(getNumOfHeavyHitters());
     }
 
-    private void partitionTune() throws HyracksDataException {
-        reloadBuffer = new VSizeFrame(ctx);
+    /**
+     * @return the number of spilled partitions that were made resident again
+     */
+    private int partitionTune() throws HyracksDataException {
+        if (isMemoryRefused) {
+            return 0; //The in-memory table and the probe need the frames freed by spilling
+        }
+        try {
+            reloadBuffer = new VSizeFrame(ctx);
+        } catch (InsufficientMemoryException e) {
+            return 0; //The memory budget is exhausted, the spilled partitions stay as they are
+        }
         ArrayList<Integer> reloadSet = selectPartitionsToReload();
-        for (int i = 0; i < reloadSet.size(); i++) {
-            int pid = reloadSet.get(i);
+        int numOfReloadedParts = 0;
+        for (; numOfReloadedParts < reloadSet.size(); numOfReloadedParts++) {
+            int pid = reloadSet.get(numOfReloadedParts);
             int[] buffsToLoad = new int[buildPSizeInFrames[pid]];
             for (int j = 0; j < buffsToLoad.length; j++) {
                 buffsToLoad[j] = nextFreeBuffIx;
@@ -413,6 +676,13 @@ public class OptimizedHybridHashJoin {
                 }
 
             }
+            if (!allocateBuffers(buffsToLoad)) { //The memory budget is exhausted, the other partitions stay spilled
+                nextFreeBuffIx = buffsToLoad[0];
+                for (int j = numOfReloadedParts; j < reloadSet.size(); j++) {
+                    freeFramesCounter += buildPSizeInFrames[reloadSet.get(j)];
+                }
+                break;
+            }
             curPBuff[pid] = buffsToLoad[0];
             for (int k = 1; k < buffsToLoad.length; k++) {
                 nextBuff[buffsToLoad[k - 1]] = buffsToLoad[k];
@@ -420,6 +690,85 @@ public class OptimizedHybridHashJoin {
             loadPartitionInMem(pid, buildRFWriters[pid], buffsToLoad);
         }
         reloadSet.clear();
+        return numOfReloadedParts;
+    }
+
+    private boolean allocateBuffers(int[] buffs) throws HyracksDataException {
+        try {
+            for (int buffIx : buffs) {
+                if (memBuffs[buffIx] == null) {
+                    memBuffs[buffIx] = new VSizeFrame(ctx);
+                }
+            }
+            return true;
+        } catch (InsufficientMemoryException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The number of partitions comes from an estimate of the build size, so many spilled partitions might turn out
+     * to be much smaller than the memory. Such partitions are merged, smallest first, into groups that still take at
+     * most half of the memory: the probe phase then needs fewer buffers and run files, and fewer partition pairs are
+     * joined afterwards. The probe tuples of a merged partition go to the first partition of its group.
+     */
+    private void mergeSmallSpilledPartitions() throws HyracksDataException {
+        final int frameSize = ctx.getInitialFrameSize();
+        long maxMergedFrames = memForJoin / 2;
+        List<Integer> candidates = new ArrayList<Integer>();
+        for (int i = pStatus.nextSetBit(0); i >= 0; i = pStatus.nextSetBit(i + 1)) {
+            if (i != heavyHitterPid && buildRFWriters[i] != null
+                    && buildRFWriters[i].getFileSize() / frameSize < maxMergedFrames) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.size() < 2) {
+            return;
+        }
+        Collections.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer pid1, Integer pid2) {
+                return Long.compare(buildRFWriters[pid1].getFileSize(), buildRFWriters[pid2].getFileSize());
+            }
+        });
+        int groupStart = 0;
+        long groupFrames = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            long frames = Math.max(1, buildRFWriters[candidates.get(i)].getFileSize() / frameSize);
+            if (groupFrames + frames > maxMergedFrames) {
+                mergeSpilledPartitions(candidates.subList(groupStart, i));
+                groupStart = i;
+                groupFrames = 0;
+            }
+            groupFrames += frames;
+        }
+        mergeSpilledPartitions(candidates.subList(groupStart, candidates.size()));
+    }
+
+    /**
+     * The run files of the merged partitions are kept as they are, and read one after the other as the run of the
+     * first partition of the group.
+     */
+    private void mergeSpilledPartitions(List<Integer> pids) throws HyracksDataException {
+        if (pids.size() < 2) {
+            return;
+        }
+        int target = pids.get(0);
+        List<RunFileWriter> group = new ArrayList<RunFileWriter>(pids.size());
+        for (int pid : pids) {
+            group.add(buildRFWriters[pid]);
+            if (pid != target) {
+                buildRFWriters[pid] = null;
+                buildPSizeInTups[target] += buildPSizeInTups[pid];
+                buildPSizeInFrames[target] += buildPSizeInFrames[pid];
+                buildPSizeInTups[pid] = 0;
+                buildPSizeInFrames[pid] = 0;
+                pidMapping[pid] = target;
+                pStatus.clear(pid);
+                numOfMergedParts++;
+            }
+        }
+        mergedBuildRFWriters.put(target, group);
     }
 
     private void loadPartitionInMem(int pid, RunFileWriter wr, int[] buffs) throws HyracksDataException {
@@ -446,6 +795,10 @@ public class OptimizedHybridHashJoin {
         r.close();
         pStatus.set(pid, false);
         buildRFWriters[pid] = null;
+        if (bloomFilters != null && bloomFilters[pid] != null) { //A resident partition does not need its filter
+            bloomFilters[pid].close();
+            bloomFilters[pid] = null;
+        }
     }
 
     private ArrayList<Integer> selectPartitionsToReload() {
@@ -463,24 +816,33 @@ public class OptimizedHybridHashJoin {
     }
 
     private void createInMemoryJoiner(int inMemTupCount) throws HyracksDataException {
-        ISerializableTable table = new SerializableHashTable(inMemTupCount, ctx);
+        ITuplePointerTable table = InMemoryHashJoin.createTable(ctx, inMemTupCount, probeRd, probeKeys, buildRd,
+                buildKeys);
         this.inMemJoiner = new InMemoryHashJoin(ctx, inMemTupCount, new FrameTupleAccessor(probeRd), probeHpc,
                 new FrameTupleAccessor(buildRd), buildHpc,
                 new FrameTuplePairComparator(probeKeys, buildKeys, comparators), isLeftOuter, nullWriters1, table,
-                predEvaluator, isReversed);
+                predEvaluator, isReversed, probeKeys, buildKeys);
     }
 
-    private void cacheInMemJoin() throws HyracksDataException {
-
+    private List<IFrame> takeResidentFrames() {
+        List<IFrame> residentFrames = new ArrayList<IFrame>();
         for (int pid = 0; pid < numOfPartitions; pid++) {
             if (!pStatus.get(pid)) {
                 int nextBuffIx = curPBuff[pid];
                 while (nextBuffIx > -1) { //It is not Invalid or End_Of_Partition
-                    inMemJoiner.build(memBuffs[nextBuffIx].getBuffer());
+                    residentFrames.add(memBuffs[nextBuffIx]);
+                    memBuffs[nextBuffIx] = null; //Returned by the in-memory joiner
                     nextBuffIx = nextBuff[nextBuffIx];
                 }
             }
         }
+        return residentFrames;
+    }
+
+    private void cacheInMemJoin(List<IFrame> residentFrames) throws HyracksDataException {
+        for (IFrame frame : residentFrames) {
+            inMemJoiner.build(frame.getBuffer());
+        }
     }
 
     public void initProbe() throws HyracksDataException {
@@ -523,36 +885,70 @@ public class OptimizedHybridHashJoin {
             return;
         }
         for (int i = 0; i < tupleCount; ++i) {
-            int pid = probeHpc.partition(accessorProbe, i, numOfPartitions);
+            int pid;
+            boolean isHeavyHitter = false;
+            if (heavyHitters == null) {
+                pid = probeHpc.partition(accessorProbe, i, numOfPartitions);
+            } else {
+                int keyHash = probeHpc.partition(accessorProbe, i, Integer.MAX_VALUE);
+                pid = keyHash % heavyHitterPid;
+                isHeavyHitter = heavyHitters.isHeavy(keyHash);
+            }
+            int buildPid = pid; //The bloom filters stay with the partitions they were built for, before merging
+            pid = pidMapping[pid];
 
+            boolean isSentToResident = false;
             if (buildPSizeInTups[pid] > 0 || isLeftOuter) { //Tuple has potential match from previous phase
                 if (pStatus.get(pid)) { //pid is Spilled
-                    boolean needToClear = false;
-                    IFrame frame = sPartBuffs[curPBuff[pid]];
-                    while (true) {
-                        probeTupAppenderToSpilled.reset(frame, needToClear);
-                        if (probeTupAppenderToSpilled.append(accessorProbe, i)) {
-                            break;
-                        }
-                        probeWrite(pid, frame.getBuffer());
-                        frame.reset();
-                        needToClear = true;
-                    }
+                    probeTupleToSpilled(i, pid, buildPid);
                 } else { //pid is Resident
-                    while (true) {
-                        if (probeTupAppenderToResident.append(accessorProbe, i)) {
-                            break;
-                        }
-                        inMemJoiner.join(probeResBuff.getBuffer(), writer);
-                        probeTupAppenderToResident.reset(probeResBuff, true);
-                    }
-
+                    probeTupleToResident(i, writer);
+                    isSentToResident = true;
+                    probePSizeInTups[pid]++;
+                }
+            }
+            /* The build tuples of a heavy key seen before it was detected stay in its own partition,
+             * so its probe tuples have to meet both that partition and the heavy hitter partition */
+            if (isHeavyHitter && buildPSizeInTups[heavyHitterPid] > 0) {
+                if (pStatus.get(heavyHitterPid)) {
+                    probeTupleToSpilled(i, heavyHitterPid, heavyHitterPid);
+                } else if (!isSentToResident) {
+                    probeTupleToResident(i, writer);
+                    probePSizeInTups[heavyHitterPid]++;
                 }
-                probePSizeInTups[pid]++;
             }
+        }
+
+    }
 
+    private void probeTupleToSpilled(int tid, int pid, int buildPid) throws HyracksDataException {
+        if (bloomFilters != null && bloomFilters[buildPid] != null && !bloomFilters[buildPid].mightContain(
+                RuntimeBloomFilter.hash(probeBloomHashFunctions, probeKeys, accessorProbe, tid))) {
+            numOfProbeTupsFiltered++; //No build tuple has the key, so it is not worth spilling
+            return;
         }
+        boolean needToClear = false;
+        IFrame frame = sPartBuffs[curPBuff[pid]];
+        while (true) {
+            probeTupAppenderToSpilled.reset(frame, needToClear);
+            if (probeTupAppenderToSpilled.append(accessorProbe, tid)) {
+                break;
+            }
+            probeWrite(pid, frame.getBuffer());
+            frame.reset();
+            needToClear = true;
+        }
+        probePSizeInTups[pid]++;
+    }
 
+    private void probeTupleToResident(int tid, IFrameWriter writer) throws HyracksDataException {
+        while (true) {
+            if (probeTupAppenderToResident.append(accessorProbe, tid)) {
+                break;
+            }
+            inMemJoiner.join(probeResBuff.getBuffer(), writer);
+            probeTupAppenderToResident.reset(probeResBuff, true);
+        }
     }
 
     public void closeProbe(IFrameWriter writer) throws
@@ -568,13 +964,62 @@ public class OptimizedHybridHashJoin {
             }
             closeProbeWriter(pid);
         }
+        if (bloomFilters != null) {
+            LOGGER.fine("OptimizedHybridHashJoin bloom filters (" + bloomFilterFrames + " frames) have dropped "
+                    + numOfProbeTupsFiltered + " probe tuples of spilled partitions");
+        }
+        close();
+    }
+
+    /**
+     * Returns the frames of the join to the task and the memory the join has grown by to the memory manager. It is
+     * called by {@link #closeProbe(IFrameWriter)}, and has to be called if the join fails before.
+     */
+    public void close() {
+        releaseBuildFrames();
+        if (sPartBuffs != null) {
+            for (IFrame frame : sPartBuffs) {
+                ctx.deallocateFrame(frame.getBuffer());
+            }
+            sPartBuffs = null;
+        }
+        if (probeResBuff != null) {
+            ctx.deallocateFrame(probeResBuff.getBuffer());
+            probeResBuff = null;
+        }
+        if (bloomFilters != null) {
+            for (RuntimeBloomFilter bloomFilter : bloomFilters) {
+                if (bloomFilter != null) {
+                    bloomFilter.close();
+                }
+            }
+        }
+        if (grownMemoryInBytes > 0) {
+            memoryManager.deallocate(grownMemoryInBytes);
+            grownMemoryInBytes = 0;
+        }
+    }
+
+    private void releaseBuildFrames() {
+        if (memBuffs != null) {
+            for (int i = 0; i < memBuffs.length; i++) {
+                if (memBuffs[i] != null) {
+                    ctx.deallocateFrame(memBuffs[i].getBuffer());
+                    memBuffs[i] = null;
+                }
+            }
+        }
+        if (reloadBuffer != null) {
+            ctx.deallocateFrame(reloadBuffer.getBuffer());
+            reloadBuffer = null;
+        }
     }
 
     private void probeWrite(int pid, ByteBuffer buff) throws HyracksDataException {
         RunFileWriter pWriter = probeRFWriters[pid];
         if (pWriter == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(rel1Name);
-            pWriter = new RunFileWriter(file, ctx.getIOManager());
+            pWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
             pWriter.open();
             probeRFWriters[pid] = pWriter;
         }
@@ -588,19 +1033,35 @@ public class OptimizedHybridHashJoin {
         }
     }
 
-    public RunFileReader getBuildRFReader(int pid) throws HyracksDataException {
-        return ((buildRFWriters[pid] == null) ? null : (buildRFWriters[pid]).createReader());
+    public IFrameReader getBuildRFReader(int pid) throws HyracksDataException {
+        List<RunFileWriter> group = mergedBuildRFWriters.get(pid);
+        if (group == null) {
+            return ((buildRFWriters[pid] == null) ? null : (buildRFWriters[pid]).createReader());
+        }
+        List<RunFileReader> readers = new ArrayList<RunFileReader>(group.size());
+        for (RunFileWriter writer : group) {
+            readers.add(writer.createReader());
+        }
+        return new RunFileSequenceReader(readers);
     }
 
     public long getBuildPartitionSize(int pid) {
-        return ((buildRFWriters[pid] == null) ? 0 : buildRFWriters[pid].getFileSize());
+        List<RunFileWriter> group = mergedBuildRFWriters.get(pid);
+        if (group == null) {
+            return ((buildRFWriters[pid] == null) ? 0 : buildRFWriters[pid].getFileSize());
+        }
+        long size = 0;
+        for (RunFileWriter writer : group) {
+            size += writer.getFileSize();
+        }
+        return size;
     }
 
     public int getBuildPartitionSizeInTup(int pid) {
         return (buildPSizeInTups[pid]);
     }
 
-    public RunFileReader getProbeRFReader(int pid) throws HyracksDataException {
+    public IFrameReader getProbeRFReader(int pid) throws HyracksDataException {
         return ((probeRFWriters[pid] == null) ? null : (probeRFWriters[pid]).createReader());
     }
 
@@ -669,4 +1130,77 @@ public class OptimizedHybridHashJoin {
     public void setIsReversed(boolean b) {
         this.isReversed = b;
     }
+
+    /**
+     * Gives each spilled partition a bloom filter over its build keys, which drops the probe tuples it does not
+     * contain before they are spilled. The filter of a partition is created when the partition is first spilled, and
+     * its frames are taken from the memory of the join. It has no effect on left outer joins, where every probe tuple
+     * is part of the result. Must be called before {@link #initBuild()}.
+     */
+    public void setBloomFilter(IBinaryHashFunction[] buildHashFunctions, IBinaryHashFunction[] probeHashFunctions) {
+        this.buildBloomHashFunctions = buildHashFunctions;
+        this.probeBloomHashFunctions = probeHashFunctions;
+    }
+
+    /**
+     * Keeps the build tuples of the keys that dominate the build side in a side partition, which is only spilled when
+     * no other partition is left to spill. A heavy key would otherwise fill a single partition that no recursive
+     * partitioning can split. The probe tuples of heavy keys stream against the side partition.
+     * It has no effect on left outer joins, whose probe tuples have to meet all of their matches at once, or when
+     * there is no frame left for the side partition. Must be called before {@link #initBuild()}.
+     */
+    public void setHeavyHitterDetection(int maxHeavyKeys) {
+        if (isLeftOuter || numOfPartitions + 1 > memForJoin) {
+            return;
+        }
+        heavyHitterPid = numOfPartitions;
+        numOfPartitions++;
+        buildRFWriters = new RunFileWriter[numOfPartitions];
+        probeRFWriters = new RunFileWriter[numOfPartitions];
+        heavyHitters = new HeavyHitterSketch(2 * maxHeavyKeys, HEAVY_HITTER_MIN_COUNT, maxHeavyKeys);
+    }
+
+    /**
+     * Lets the join take more frames, up to maxMemForJoin in total, instead of spilling a partition during the build
+     * phase, as long as the given memory manager of the node keeps at least half of its memory available. The frames
+     * are allocated from the memory manager until {@link #close()}. Must be called before {@link #initBuild()}.
+     */
+    public void setMemoryGrowth(IMemoryManager memoryManager, int maxMemForJoin) {
+        this.memoryManager = memoryManager;
+        this.maxMemForJoin = maxMemForJoin;
+    }
+
+    public int getMemForJoin() {
+        return memForJoin;
+    }
+
+    /**
+     * @return the number of spilled partitions whose tuples went to the run files of another partition
+     */
+    public int getNumOfMergedPartitions() {
+        return numOfMergedParts;
+    }
+
+    /**
+     * @return the id of the partition holding the build tuples of the heavy keys, or -1 if there is none
+     */
+    public int getHeavyHitterPartition() {
+        return heavyHitterPid;
+    }
+
+    public int getNumOfHeavyHitters() {
+        return heavyHitters == null ? 0 : heavyHitters.getHeavyKeyCount();
+    }
+
+    /**
+     * @return the bloom filter of the given partition, or null if the partition is resident or has been spilled
+     *         without one
+     */
+    public RuntimeBloomFilter getBloomFilter(int pid) {
+        return bloomFilters == null ? null : bloomFilters[pid];
+    }
+
+    public long getNumOfProbeTupsFiltered() {
+        return numOfProbeTupsFiltered;
+    }
 }
@@ -22,6 +22,7 @@ import java.util.BitSet;
 import java.util.logging.Logger;
 
 import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
 import org.apache.hyracks.api.comm.VSizeFrame;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.ActivityId;
@@ -30,6 +31,7 @@ import org.apache.hyracks.api.dataflow.IOperatorNodePushable;
 import org.apache.hyracks.api.dataflow.TaskId;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
 import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
 import org.apache.hyracks.api.dataflow.value.INullWriter;
 import org.apache.hyracks.api.dataflow.value.INullWriterFactory;
@@ -49,14 +51,12 @@ import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
 import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
 import org.apache.hyracks.dataflow.common.data.partition.RepartitionComputerFamily;
-import org.apache.hyracks.dataflow.common.io.RunFileReader;
 import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
 import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.base.AbstractStateObject;
 import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
 import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
-import org.apache.hyracks.dataflow.std.structures.ISerializableTable;
-import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+import org.apache.hyracks.dataflow.std.structures.ITuplePointerTable;
 
 /**
  * @author pouria
@@ -106,6 +106,12 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
 
     private static final String PROBE_REL = "RelR";
     private static final String BUILD_REL = "RelS";
+    //Seed of the hash functions for the bloom filter, different from the seed (0) of the first level partitioning
+    private static final int BLOOM_FILTER_SEED = 1;
+    //Number of keys that can get a side partition for their build tuples when they dominate the build side
+    private static final int MAX_HEAVY_HITTERS = 32;
+    //The build phase may take up to this many times memsize frames when the node has memory to spare
+    private static final int MAX_MEMORY_GROWTH_FACTOR = 2;
 
     private final int memsize;
     private final int inputsize0;
@@ -224,6 +230,15 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
         public BuildAndPartitionTaskState() {
         }
 
+        /**
+         * @return the bloom filter over the build keys of the given spilled partition of the join, or null if the
+         *         partition is resident, has no filter or the join is a left outer join. Only complete once the build
+         *         activity is closed.
+         */
+        public RuntimeBloomFilter getBloomFilter(int pid) {
+            return hybridHJ == null ? null : hybridHJ.getBloomFilter(pid);
+        }
+
         private BuildAndPartitionTaskState(JobId jobId, TaskId taskId) {
             super(jobId, taskId);
         }
@@ -298,6 +313,21 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                 PROBE_REL, BUILD_REL, probeKeys, buildKeys, comparators, probeRd, buildRd, probeHpc,
                                 buildHpc, predEvaluator, isLeftOuter, nullWriterFactories1);
                     }
+                    if (!isLeftOuter) {
+                        IBinaryHashFunction[] buildHashFunctions = new IBinaryHashFunction[buildKeys.length];
+                        IBinaryHashFunction[] probeHashFunctions = new IBinaryHashFunction[probeKeys.length];
+                        for (int i = 0; i < hashFunctionGeneratorFactories.length; i++) {
+                            buildHashFunctions[i] = hashFunctionGeneratorFactories[i]
+                                    .createBinaryHashFunction(BLOOM_FILTER_SEED);
+                            probeHashFunctions[i] = hashFunctionGeneratorFactories[i]
+                                    .createBinaryHashFunction(BLOOM_FILTER_SEED);
+                        }
+                        state.hybridHJ.setBloomFilter(buildHashFunctions, probeHashFunctions);
+                        state.hybridHJ.setHeavyHitterDetection(MAX_HEAVY_HITTERS);
+                    }
+                    state.hybridHJ.setMemoryGrowth(
+                            ctx.getJobletContext().getApplicationContext().getMemoryManager(),
+                            state.memForJoin * MAX_MEMORY_GROWTH_FACTOR);
 
                     state.hybridHJ.initBuild();
                     LOGGER.fine("OptimizedHybridHashJoin is starting the build phase with " + state.numOfPartitions
@@ -313,11 +343,15 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                 public void close() throws HyracksDataException {
                     state.hybridHJ.closeBuild();
                     ctx.setStateObject(state);
-                    LOGGER.fine("OptimizedHybridHashJoin closed its build phase");
+                    LOGGER.fine("OptimizedHybridHashJoin closed its build phase with "
+                            + state.hybridHJ.getNumOfHeavyHitters() + " heavy hitter keys");
                 }
 
                 @Override
                 public void fail() throws HyracksDataException {
+                    if (state.hybridHJ != null) {
+                        state.hybridHJ.close();
+                    }
                 }
 
             };
@@ -390,6 +424,9 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
 
                 @Override
                 public void fail() throws HyracksDataException {
+                    if (state != null) {
+                        state.hybridHJ.close();
+                    }
                     writer.fail();
                 }
 
@@ -402,8 +439,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                     rPartbuff.reset();
                     for (int pid = partitionStatus.nextSetBit(0); pid >= 0; pid = partitionStatus.nextSetBit(pid + 1)) {
 
-                        RunFileReader bReader = state.hybridHJ.getBuildRFReader(pid);
-                        RunFileReader pReader = state.hybridHJ.getProbeRFReader(pid);
+                        IFrameReader bReader = state.hybridHJ.getBuildRFReader(pid);
+                        IFrameReader pReader = state.hybridHJ.getProbeRFReader(pid);
 
                         if (bReader == null || pReader
                                 == null) { //either of sides (or both) does not have any tuple, thus no need for joining (no potential match)
@@ -418,8 +455,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                     LOGGER.fine("OptimizedHybridHashJoin closed its probe phase");
                 }
 
-                private void joinPartitionPair(OptimizedHybridHashJoin ohhj, RunFileReader buildSideReader,
-                        RunFileReader probeSideReader, int pid, int beforeMax, int level, boolean wasReversed)
+                private void joinPartitionPair(OptimizedHybridHashJoin ohhj, IFrameReader buildSideReader,
+                        IFrameReader probeSideReader, int pid, int beforeMax, int level, boolean wasReversed)
                         throws HyracksDataException {
                     ITuplePartitionComputer probeHpc = new FieldHashPartitionComputerFamily(probeKeys,
                             hashFunctionGeneratorFactories).createPartitioner(level);
@@ -516,8 +553,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                                 + level + "]");
                                 for (int rPid = rPStatus.nextSetBit(0);
                                      rPid >= 0; rPid = rPStatus.nextSetBit(rPid + 1)) {
-                                    RunFileReader rbrfw = rHHj.getBuildRFReader(rPid);
-                                    RunFileReader rprfw = rHHj.getProbeRFReader(rPid);
+                                    IFrameReader rbrfw = rHHj.getBuildRFReader(rPid);
+                                    IFrameReader rprfw = rHHj.getProbeRFReader(rPid);
 
                                     if (rbrfw == null || rprfw == null) {
                                         continue;
@@ -533,8 +570,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                                 + level + "]");
                                 for (int rPid = rPStatus.nextSetBit(0);
                                      rPid >= 0; rPid = rPStatus.nextSetBit(rPid + 1)) {
-                                    RunFileReader rbrfw = rHHj.getBuildRFReader(rPid);
-                                    RunFileReader rprfw = rHHj.getProbeRFReader(rPid);
+                                    IFrameReader rbrfw = rHHj.getBuildRFReader(rPid);
+                                    IFrameReader rprfw = rHHj.getProbeRFReader(rPid);
 
                                     if (rbrfw == null || rprfw == null) {
                                         continue;
@@ -587,8 +624,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                         + level + "]");
                                 for (int rPid = rPStatus.nextSetBit(0);
                                      rPid >= 0; rPid = rPStatus.nextSetBit(rPid + 1)) {
-                                    RunFileReader rbrfw = rHHj.getBuildRFReader(rPid);
-                                    RunFileReader rprfw = rHHj.getProbeRFReader(rPid);
+                                    IFrameReader rbrfw = rHHj.getBuildRFReader(rPid);
+                                    IFrameReader rprfw = rHHj.getProbeRFReader(rPid);
 
                                     if (rbrfw == null || rprfw == null) {
                                         continue;
@@ -603,15 +640,15 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                                 + level + "]");
                                 for (int rPid = rPStatus.nextSetBit(0);
                                      rPid >= 0; rPid = rPStatus.nextSetBit(rPid + 1)) {
-                                    RunFileReader rbrfw = rHHj.getBuildRFReader(rPid);
-                                    RunFileReader rprfw = rHHj.getProbeRFReader(rPid);
+                                    IFrameReader rbrfw = rHHj.getBuildRFReader(rPid);
+                                    IFrameReader rprfw = rHHj.getProbeRFReader(rPid);
 
                                     if (rbrfw == null || rprfw == null) {
                                         continue;
                                     }
 
-                                    long buildSideSize = rbrfw.getFileSize();
-                                    long probeSideSize = rprfw.getFileSize();
+                                    long buildSideSize = rHHj.getBuildPartitionSize(rPid);
+                                    long probeSideSize = rHHj.getProbePartitionSize(rPid);
                                     if (buildSideSize > probeSideSize) {
                                         applyNestedLoopJoin(buildRd, probeRd, memsize, rbrfw, rprfw, nljComparator0,
                                                 true); //checked-modified
@@ -629,13 +666,14 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
 
                 private void applyInMemHashJoin(int[] bKeys, int[] pKeys, int tabSize, RecordDescriptor buildRDesc,
                         RecordDescriptor probeRDesc, ITuplePartitionComputer hpcRepLarger,
-                        ITuplePartitionComputer hpcRepSmaller, RunFileReader bReader, RunFileReader pReader,
+                        ITuplePartitionComputer hpcRepSmaller, IFrameReader bReader, IFrameReader pReader,
                         boolean reverse, int pid) throws HyracksDataException {
-                    ISerializableTable table = new SerializableHashTable(tabSize, ctx);
+                    ITuplePointerTable table = InMemoryHashJoin.createTable(ctx, tabSize, probeRDesc, pKeys,
+                            buildRDesc, bKeys);
                     InMemoryHashJoin joiner = new InMemoryHashJoin(ctx, tabSize, new FrameTupleAccessor(probeRDesc),
                             hpcRepLarger, new FrameTupleAccessor(buildRDesc), hpcRepSmaller,
                             new FrameTuplePairComparator(pKeys, bKeys, comparators), isLeftOuter, nullWriters1, table,
-                            predEvaluator, reverse);
+                            predEvaluator, reverse, pKeys, bKeys);
 
                     bReader.open();
                     rPartbuff.reset();
@@ -659,7 +697,7 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                 }
 
                 private void applyNestedLoopJoin(RecordDescriptor outerRd, RecordDescriptor innerRd, int memorySize,
-                        RunFileReader outerReader, RunFileReader innerReader, ITuplePairComparator nljComparator,
+                        IFrameReader outerReader, IFrameReader innerReader, ITuplePairComparator nljComparator,
                         boolean reverse) throws HyracksDataException {
                     NestedLoopJoin nlj = new NestedLoopJoin(ctx,
                             new FrameTupleAccessor(outerRd),
@@ -686,6 +724,8 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                     nlj.closeJoin(writer);
                     outerReader.close();
                     innerReader.close();
+                    ctx.deallocateFrame(cacheBuff.getBuffer());
+                    ctx.deallocateFrame(joinBuff.getBuffer());
                 }
             };
             return op;
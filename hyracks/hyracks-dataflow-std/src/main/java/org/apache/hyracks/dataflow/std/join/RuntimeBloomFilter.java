@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.FrameConstants;
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A bloom filter over the join keys of a spilled partition of the build side of a hash join, so that probe tuples
+ * without a match can be dropped before they are spilled.
+ * The bits of the filter are kept in segments of whole frames, which are allocated from the task and charged by the
+ * join to its own memory. The number of keys of a spilled partition is only an estimate when its filter is created,
+ * so the join may {@link #grow(int)} a full filter by a segment four times as large as the last one, which keeps the
+ * number of segments to check for a lookup small when the estimate is far off. When the join has no frame to spare,
+ * the keys go to the full segment, which only raises the rate of false positives. A key might be contained iff one
+ * of the segments might contain it. Keys are given as the 32-bit hash of their fields; see
+ * {@link #hash(IBinaryHashFunction[], int[], IFrameTupleAccessor, int)}.
+ */
+public class RuntimeBloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int NUM_HASHES = 7;
+    private static final int SEGMENT_GROWTH = 4;
+
+    private final IHyracksFrameMgrContext ctx;
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private int frameCount;
+    private long segmentCapacity;
+    private long segmentKeyCount;
+    private long keyCount;
+
+    /**
+     * Creates a filter whose first segment takes the given number of frames of the task.
+     */
+    public RuntimeBloomFilter(IHyracksFrameMgrContext ctx, int frames) throws HyracksDataException {
+        this.ctx = ctx;
+        grow(frames);
+    }
+
+    /**
+     * @return the number of frames a segment needs to hold the given number of keys, at most the frames of the
+     *         largest frame the task allocates
+     */
+    public static int getFrameCountFor(int frameSize, long keyCount) {
+        long frameBits = (long) frameSize * 8;
+        return (int) Math.min(FrameConstants.MAX_NUM_MINFRAME, Math.max(1, (keyCount * BITS_PER_KEY + frameBits - 1)
+                / frameBits));
+    }
+
+    /**
+     * Combines the hashes of the given key fields of a tuple the same way for both sides of a join. The hash
+     * functions have to be the same for both sides.
+     */
+    public static int hash(IBinaryHashFunction[] hashFunctions, int[] keyFields, IFrameTupleAccessor accessor,
+            int tIndex) throws HyracksDataException {
+        int h = 0;
+        int startOffset = accessor.getTupleStartOffset(tIndex);
+        int slotLength = accessor.getFieldSlotsLength();
+        for (int i = 0; i < keyFields.length; ++i) {
+            int fIdx = keyFields[i];
+            int fStart = accessor.getFieldStartOffset(tIndex, fIdx);
+            int fEnd = accessor.getFieldEndOffset(tIndex, fIdx);
+            int fh = hashFunctions[i].hash(accessor.getBuffer().array(), startOffset + slotLength + fStart,
+                    fEnd - fStart);
+            h = h * 31 + fh;
+        }
+        return h;
+    }
+
+    /**
+     * Adds a segment of the given number of frames, to which the keys added from now on go.
+     */
+    public void grow(int frames) throws HyracksDataException {
+        ByteBuffer bits = ctx.allocateFrame(frames * ctx.getInitialFrameSize());
+        for (int i = 0; i < bits.capacity(); i += 8) {
+            bits.putLong(i, 0L);
+        }
+        segments.add(bits);
+        frameCount += frames;
+        segmentCapacity = (long) bits.capacity() * 8 / BITS_PER_KEY;
+        segmentKeyCount = 0;
+    }
+
+    /**
+     * @return true if the last segment holds as many keys as it was sized for
+     */
+    public boolean isFull() {
+        return segmentKeyCount >= segmentCapacity;
+    }
+
+    /**
+     * @return the number of frames of the segment to add once the filter is full
+     */
+    public int getGrowthInFrames() {
+        int lastFrames = segments.get(segments.size() - 1).capacity() / ctx.getInitialFrameSize();
+        return Math.min(FrameConstants.MAX_NUM_MINFRAME, lastFrames * SEGMENT_GROWTH);
+    }
+
+    public void add(int hash) {
+        ByteBuffer bits = segments.get(segments.size() - 1);
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        long nBits = (long) bits.capacity() * 8;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = ((h1 + i * h2) & 0x7fffffffL) % nBits;
+            int word = (int) (bit >>> 6) << 3;
+            bits.putLong(word, bits.getLong(word) | (1L << bit));
+        }
+        segmentKeyCount++;
+        keyCount++;
+    }
+
+    public boolean mightContain(int hash) {
+        long h = mix(hash);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int s = 0; s < segments.size(); s++) {
+            if (segmentMightContain(segments.get(s), h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentMightContain(ByteBuffer bits, int h1, int h2) {
+        long nBits = (long) bits.capacity() * 8;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            long bit = ((h1 + i * h2) & 0x7fffffffL) % nBits;
+            if ((bits.getLong((int) (bit >>> 6) << 3) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return the number of frames taken by the bits of the filter
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getSizeInBytes() {
+        return (long) frameCount * ctx.getInitialFrameSize();
+    }
+
+    /**
+     * Returns the frames of the filter to the task. The filter must not be used afterwards, except for its
+     * statistics.
+     */
+    public void close() {
+        for (ByteBuffer bits : segments) {
+            ctx.deallocateFrame(bits);
+        }
+        segments.clear();
+    }
+
+    private static long mix(int hash) {
+        // the finalizer of MurmurHash3, so that the two halves can serve as independent hashes
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.join;
+
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.IPredicateEvaluator;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.common.io.RunFileWriter;
+
+/**
+ * Joins two inputs sorted in ascending order of their join keys by merging them. The right input is cached in a run
+ * file as it comes, since both inputs are pushed, and is then read back frame by frame while the left input streams
+ * through {@link #join(ByteBuffer, IFrameWriter)}; neither input is sorted or hashed again.
+ * The right tuples sharing a key form a group that is joined with every left tuple of that key. A group keeps at most
+ * memSize - 1 frames in memory, the rest of it is spilled to a run file. The left tuples of a frame that share the
+ * key of the group are joined as a block, so the spilled part is read once per block rather than once per left tuple.
+ */
+public class SortMergeJoin {
+    private final IHyracksTaskContext ctx;
+    private final FrameTupleAccessor accessorLeft;
+    private final FrameTupleAccessor accessorRight;
+    private final FrameTupleAccessor accessorGroup;
+    private final FrameTupleAccessor accessorGroupKey;
+    private final FrameTuplePairComparator comparator;
+    private final IPredicateEvaluator predEvaluator;
+    private final boolean isLeftOuter;
+    private final ArrayTupleBuilder nullTupleBuilder;
+    private final int memSize;
+
+    private final FrameTupleAppender appender;
+    private final RunFileWriter rightWriter;
+    private RunFileReader rightReader;
+    private final IFrame rightFrame;
+    private int rightTupleIndex;
+    private boolean rightExhausted;
+
+    private final IFrame groupKeyFrame;
+    private final List<IFrame> groupFrames;
+    private int groupFrameCount;
+    private final IFrame groupSpillFrame;
+    private RunFileWriter groupSpillWriter;
+    private final FrameTupleAppender groupAppender;
+    private boolean hasGroup;
+    private final BitSet blockMatches;
+
+    public SortMergeJoin(IHyracksTaskContext ctx, RecordDescriptor rdLeft, RecordDescriptor rdRight,
+            FrameTuplePairComparator comparator, int memSize, IPredicateEvaluator predEval, boolean isLeftOuter,
+            INullWriter[] nullWritersRight) throws HyracksDataException {
+        if (memSize < 2) {
+            throw new HyracksDataException("Not enough memory is available for Sort Merge Join");
+        }
+        this.ctx = ctx;
+        this.accessorLeft = new FrameTupleAccessor(rdLeft);
+        this.accessorRight = new FrameTupleAccessor(rdRight);
+        this.accessorGroup = new FrameTupleAccessor(rdRight);
+        this.accessorGroupKey = new FrameTupleAccessor(rdRight);
+        this.comparator = comparator;
+        this.predEvaluator = predEval;
+        this.memSize = memSize;
+        this.isLeftOuter = isLeftOuter;
+        if (isLeftOuter) {
+            int rightFieldCount = rdRight.getFieldCount();
+            nullTupleBuilder = new ArrayTupleBuilder(rightFieldCount);
+            DataOutput out = nullTupleBuilder.getDataOutput();
+            for (int i = 0; i < rightFieldCount; i++) {
+                nullWritersRight[i].writeNull(out);
+                nullTupleBuilder.addFieldEndOffset();
+            }
+        } else {
+            nullTupleBuilder = null;
+        }
+
+        this.appender = new FrameTupleAppender(new VSizeFrame(ctx));
+        this.rightFrame = new VSizeFrame(ctx);
+        this.groupKeyFrame = new VSizeFrame(ctx);
+        this.groupFrames = new ArrayList<IFrame>();
+        this.groupSpillFrame = new VSizeFrame(ctx);
+        this.groupAppender = new FrameTupleAppender();
+        this.blockMatches = new BitSet();
+
+        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(this.getClass().getSimpleName());
+        rightWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
+        rightWriter.open();
+    }
+
+    public void cacheRight(ByteBuffer buffer) throws HyracksDataException {
+        rightWriter.nextFrame(buffer);
+    }
+
+    public void closeCache() throws HyracksDataException {
+        rightWriter.close();
+    }
+
+    public void join(ByteBuffer leftBuffer, IFrameWriter writer) throws HyracksDataException {
+        if (rightReader == null) {
+            rightReader = rightWriter.createReader();
+            rightReader.open();
+            loadNextRightFrame();
+        }
+        accessorLeft.reset(leftBuffer);
+        int tupleCount = accessorLeft.getTupleCount();
+        int i = 0;
+        while (i < tupleCount) {
+            if (hasGroup) {
+                int c = comparator.compare(accessorLeft, i, accessorGroupKey, 0);
+                if (c == 0) {
+                    i = joinWithGroup(i, writer);
+                    continue;
+                }
+                if (c > 0) {
+                    clearGroup();
+                }
+            }
+            int c = -1;
+            while (!rightExhausted && (c = comparator.compare(accessorLeft, i, accessorRight, rightTupleIndex)) > 0) {
+                nextRightTuple();
+            }
+            if (!rightExhausted && c == 0) {
+                loadGroup(i);
+                i = joinWithGroup(i, writer);
+            } else {
+                if (isLeftOuter) {
+                    appendNullTuple(i, writer);
+                }
+                i++;
+            }
+        }
+    }
+
+    public void closeJoin(IFrameWriter writer) throws HyracksDataException {
+        appender.flush(writer, true);
+        clearGroup();
+        if (rightReader != null) {
+            rightReader.close();
+        }
+        rightWriter.getFileReference().delete();
+    }
+
+    /**
+     * Reads the right tuples having the same key as the given left tuple into the group, spilling the group once it
+     * fills the memory.
+     */
+    private void loadGroup(int leftTupleIndex) throws HyracksDataException {
+        groupKeyFrame.reset();
+        groupAppender.reset(groupKeyFrame, true);
+        appendToGroup(accessorRight, rightTupleIndex);
+
+        groupFrameCount = 0;
+        groupAppender.reset(nextGroupFrame(), true);
+        do {
+            if (!appendToGroup(accessorRight, rightTupleIndex)) {
+                if (groupFrameCount < memSize - 1) {
+                    groupAppender.reset(nextGroupFrame(), true);
+                } else {
+                    spillGroupFrame();
+                }
+                if (!appendToGroup(accessorRight, rightTupleIndex)) {
+                    throw new HyracksDataException("The tuple is too large to fit in a frame of the group.");
+                }
+            }
+            nextRightTuple();
+        } while (!rightExhausted && comparator.compare(accessorLeft, leftTupleIndex, accessorRight,
+                rightTupleIndex) == 0);
+        if (groupSpillWriter != null) {
+            spillGroupFrame();
+            groupSpillWriter.close();
+        }
+        hasGroup = true;
+        accessorGroupKey.reset(groupKeyFrame.getBuffer());
+    }
+
+    private boolean appendToGroup(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        return groupAppender.append(accessor, tIndex);
+    }
+
+    private IFrame nextGroupFrame() throws HyracksDataException {
+        if (groupFrameCount == groupFrames.size()) {
+            groupFrames.add(new VSizeFrame(ctx));
+        }
+        IFrame frame = groupFrames.get(groupFrameCount++);
+        frame.reset();
+        return frame;
+    }
+
+    /**
+     * Once the group takes all of its frames, the tuples coming next are appended to the spill frame, which is
+     * written to the spill file of the group whenever it is full.
+     */
+    private void spillGroupFrame() throws HyracksDataException {
+        if (groupSpillWriter == null) {
+            FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                    this.getClass().getSimpleName() + "Group");
+            groupSpillWriter = new RunFileWriter(file, ctx.getIOManager(), ctx);
+            groupSpillWriter.open();
+        } else if (groupAppender.getTupleCount() > 0) {
+            groupAppender.flush(groupSpillWriter, true);
+        }
+        groupSpillFrame.reset();
+        groupAppender.reset(groupSpillFrame, true);
+    }
+
+    /**
+     * Joins the group with the block of left tuples of the current frame that starts at the given tuple and shares the
+     * key of the group, reading the spilled part of the group once for the whole block.
+     *
+     * @return the index of the first left tuple after the block
+     */
+    private int joinWithGroup(int firstLeftTupleIndex, IFrameWriter writer) throws HyracksDataException {
+        int endLeftTupleIndex = firstLeftTupleIndex + 1;
+        int tupleCount = accessorLeft.getTupleCount();
+        while (endLeftTupleIndex < tupleCount
+                && comparator.compare(accessorLeft, endLeftTupleIndex, accessorGroupKey, 0) == 0) {
+            endLeftTupleIndex++;
+        }
+        blockMatches.clear();
+        for (int i = firstLeftTupleIndex; i < endLeftTupleIndex; i++) {
+            for (int f = 0; f < groupFrameCount; f++) {
+                if (joinWithGroupFrame(i, groupFrames.get(f).getBuffer(), writer)) {
+                    blockMatches.set(i);
+                }
+            }
+        }
+        if (groupSpillWriter != null) {
+            RunFileReader reader = groupSpillWriter.createReader();
+            reader.open();
+            while (reader.nextFrame(groupSpillFrame)) {
+                for (int i = firstLeftTupleIndex; i < endLeftTupleIndex; i++) {
+                    if (joinWithGroupFrame(i, groupSpillFrame.getBuffer(), writer)) {
+                        blockMatches.set(i);
+                    }
+                }
+            }
+            reader.close();
+        }
+        if (isLeftOuter) {
+            for (int i = firstLeftTupleIndex; i < endLeftTupleIndex; i++) {
+                if (!blockMatches.get(i)) {
+                    appendNullTuple(i, writer);
+                }
+            }
+        }
+        return endLeftTupleIndex;
+    }
+
+    private boolean joinWithGroupFrame(int leftTupleIndex, ByteBuffer groupBuffer, IFrameWriter writer)
+            throws HyracksDataException {
+        boolean matchFound = false;
+        accessorGroup.reset(groupBuffer);
+        int tupleCount = accessorGroup.getTupleCount();
+        for (int j = 0; j < tupleCount; j++) {
+            if (predEvaluator == null || predEvaluator.evaluate(accessorLeft, leftTupleIndex, accessorGroup, j)) {
+                matchFound = true;
+                FrameUtils.appendConcatToWriter(writer, appender, accessorLeft, leftTupleIndex, accessorGroup, j);
+            }
+        }
+        return matchFound;
+    }
+
+    private void appendNullTuple(int leftTupleIndex, IFrameWriter writer) throws HyracksDataException {
+        final int[] ntFieldEndOffsets = nullTupleBuilder.getFieldEndOffsets();
+        final byte[] ntByteArray = nullTupleBuilder.getByteArray();
+        final int ntSize = nullTupleBuilder.getSize();
+        FrameUtils.appendConcatToWriter(writer, appender, accessorLeft, leftTupleIndex, ntFieldEndOffsets,
+                ntByteArray, 0, ntSize);
+    }
+
+    private void clearGroup() {
+        hasGroup = false;
+        groupFrameCount = 0;
+        if (groupSpillWriter != null) {
+            groupSpillWriter.getFileReference().delete();
+            groupSpillWriter = null;
+        }
+    }
+
+    private void nextRightTuple() throws HyracksDataException {
+        if (++rightTupleIndex >= accessorRight.getTupleCount()) {
+            loadNextRightFrame();
+        }
+    }
+
+    private void loadNextRightFrame() throws HyracksDataException {
+        rightTupleIndex = 0;
+        while (rightReader.nextFrame(rightFrame)) {
+            accessorRight.reset(rightFrame.getBuffer());
+            if (accessorRight.getTupleCount() > 0) {
+                return;
+            }
+        }
+        rightExhausted = true;
+    }
+}
@@ -26,19 +26,19 @@ import org.apache.hyracks.api.comm.VSizeFrame;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
-import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.IMultiFieldNormalizedKeyComputer;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.data.normalizers.MultiFieldNormalizedKeyComputerFactory;
 import org.apache.hyracks.dataflow.std.sort.buffermanager.IFrameBufferManager;
 
 public abstract class AbstractFrameSorter implements IFrameSorter {
 
     protected Logger LOGGER = Logger.getLogger(AbstractFrameSorter.class.getName());
-    static final int PTR_SIZE = 4;
     static final int ID_FRAMEID = 0;
     static final int ID_TUPLE_START = 1;
     static final int ID_TUPLE_END = 2;
@@ -46,7 +46,13 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
 
     protected final int[] sortFields;
     protected final IBinaryComparator[] comparators;
-    protected final INormalizedKeyComputer nkc;
+    protected final IMultiFieldNormalizedKeyComputer nkc;
+    /** number of normalized key ints stored after {@link #ID_NORMAL_KEY} */
+    protected final int nkLength;
+    /** number of leading sort fields that are fully decided by equal normalized keys */
+    protected final int nkDecisiveFields;
+    /** number of ints per tuple reference in {@link #tPointers} */
+    protected final int ptrSize;
     protected final IFrameBufferManager bufferManager;
     protected final FrameTupleAccessor inputTupleAccessor;
     protected final IFrameTupleAppender outputAppender;
@@ -69,7 +75,11 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
             throws HyracksDataException {
         this.bufferManager = bufferManager;
         this.sortFields = sortFields;
-        this.nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
+        this.nkc = MultiFieldNormalizedKeyComputerFactory.createMultiFieldComputer(firstKeyNormalizerFactory);
+        this.nkLength = nkc == null ? 0 : MultiFieldNormalizedKeyComputerFactory.getPrefixLength(nkc,
+                sortFields.length);
+        this.nkDecisiveFields = nkc == null ? 0 : Math.min(nkc.getDecisiveFieldCount(), nkLength);
+        this.ptrSize = ID_NORMAL_KEY + nkLength;
         this.comparators = new IBinaryComparator[comparatorFactories.length];
         for (int i = 0; i < comparatorFactories.length; ++i) {
             comparators[i] = comparatorFactories[i].createBinaryComparator();
@@ -107,11 +117,10 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
                             bufferManager.getFrameSize(i));
             tupleCount += inputTupleAccessor.getTupleCount();
         }
-        if (tPointers == null || tPointers.length < tupleCount * PTR_SIZE) {
-            tPointers = new int[tupleCount * PTR_SIZE];
+        if (tPointers == null || tPointers.length < tupleCount * ptrSize) {
+            tPointers = new int[tupleCount * ptrSize];
         }
         int ptr = 0;
-        int sfIdx = sortFields[0];
         for (int i = 0; i < bufferManager.getNumFrames(); ++i) {
             inputTupleAccessor
                     .reset(bufferManager.getFrame(i), bufferManager.getFrameStartOffset(i),
@@ -121,14 +130,17 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
             for (int j = 0; j < tCount; ++j) {
                 int tStart = inputTupleAccessor.getTupleStartOffset(j);
                 int tEnd = inputTupleAccessor.getTupleEndOffset(j);
-                tPointers[ptr * PTR_SIZE + ID_FRAMEID] = i;
-                tPointers[ptr * PTR_SIZE + ID_TUPLE_START] = tStart;
-                tPointers[ptr * PTR_SIZE + ID_TUPLE_END] = tEnd;
-                int f0StartRel = inputTupleAccessor.getFieldStartOffset(j, sfIdx);
-                int f0EndRel = inputTupleAccessor.getFieldEndOffset(j, sfIdx);
-                int f0Start = f0StartRel + tStart + inputTupleAccessor.getFieldSlotsLength();
-                tPointers[ptr * PTR_SIZE + ID_NORMAL_KEY] =
-                        nkc == null ? 0 : nkc.normalize(array, f0Start, f0EndRel - f0StartRel);
+                tPointers[ptr * ptrSize + ID_FRAMEID] = i;
+                tPointers[ptr * ptrSize + ID_TUPLE_START] = tStart;
+                tPointers[ptr * ptrSize + ID_TUPLE_END] = tEnd;
+                for (int k = 0; k < nkLength; ++k) {
+                    int sfIdx = sortFields[nkc.getKeyField(k)];
+                    int fStartRel = inputTupleAccessor.getFieldStartOffset(j, sfIdx);
+                    int fEndRel = inputTupleAccessor.getFieldEndOffset(j, sfIdx);
+                    int fStart = fStartRel + tStart + inputTupleAccessor.getFieldSlotsLength();
+                    tPointers[ptr * ptrSize + ID_NORMAL_KEY + k] = nkc.normalize(k, array, fStart,
+                            fEndRel - fStartRel);
+                }
                 ++ptr;
             }
         }
@@ -139,6 +151,20 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
 
     abstract void sortTupleReferences() throws HyracksDataException;
 
+    /**
+     * Compares two normalized key prefixes as unsigned ints.
+     */
+    protected int compareNormalizedKeys(int[] ptrs1, int offset1, int[] ptrs2, int offset2) {
+        for (int k = 0; k < nkLength; ++k) {
+            int v1 = ptrs1[offset1 + k];
+            int v2 = ptrs2[offset2 + k];
+            if (v1 != v2) {
+                return ((((long) v1) & 0xffffffffL) < (((long) v2) & 0xffffffffL)) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
     @Override
     public int getFrameCount() {
         return bufferManager.getNumFrames();
@@ -156,9 +182,9 @@ public abstract class AbstractFrameSorter implements IFrameSorter {
         int limit = Math.min(tupleCount, outputLimit);
         int io = 0;
         for (int ptr = 0; ptr < limit; ++ptr) {
-            int i = tPointers[ptr * PTR_SIZE + ID_FRAMEID];
-            int tStart = tPointers[ptr * PTR_SIZE + ID_TUPLE_START];
-            int tEnd = tPointers[ptr * PTR_SIZE + ID_TUPLE_END];
+            int i = tPointers[ptr * ptrSize + ID_FRAMEID];
+            int tStart = tPointers[ptr * ptrSize + ID_TUPLE_START];
+            int tEnd = tPointers[ptr * ptrSize + ID_TUPLE_END];
             ByteBuffer buffer = bufferManager.getFrame(i);
             inputTupleAccessor.reset(buffer, bufferManager.getFrameStartOffset(i), bufferManager.getFrameSize(i));
 
@@ -17,5 +17,7 @@ package org.apache.hyracks.dataflow.std.sort;
 
 public enum Algorithm {
     QUICK_SORT,
-    MERGE_SORT
+    MERGE_SORT,
+    /** Replacement selection run generation, only used by {@link ExternalSortOperatorDescriptor}. */
+    REPLACEMENT_SELECTION
 }
@@ -31,6 +31,8 @@ public class ExternalSortOperatorDescriptor extends AbstractSorterOperatorDescri
     private Algorithm alg = Algorithm.MERGE_SORT;
     private EnumFreeSlotPolicy policy = EnumFreeSlotPolicy.LAST_FIT;
     private final int outputLimit;
+    private final int sortThreads;
+    private final boolean asyncRunWriting;
 
     public ExternalSortOperatorDescriptor(IOperatorDescriptorRegistry spec, int framesLimit, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
@@ -57,8 +59,13 @@ public class ExternalSortOperatorDescriptor extends AbstractSorterOperatorDescri
             @Override
             protected AbstractSortRunGenerator getRunGenerator(IHyracksTaskContext ctx,
                     IRecordDescriptorProvider recordDescProvider) throws HyracksDataException {
+                if (alg == Algorithm.REPLACEMENT_SELECTION) {
+                    return new ReplacementSelectionRunGenerator(ctx, framesLimit, sortFields,
+                            firstKeyNormalizerFactory, comparatorFactories, recordDescriptors[0]);
+                }
                 return new ExternalSortRunGenerator(ctx, sortFields, firstKeyNormalizerFactory,
-                        comparatorFactories, recordDescriptors[0], alg, policy, framesLimit, outputLimit);
+                        comparatorFactories, recordDescriptors[0], alg, policy, framesLimit, outputLimit, sortThreads,
+                        asyncRunWriting);
             }
         };
     }
@@ -86,6 +93,33 @@ public class ExternalSortOperatorDescriptor extends AbstractSorterOperatorDescri
     public ExternalSortOperatorDescriptor(IOperatorDescriptorRegistry spec, int framesLimit, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
             RecordDescriptor recordDescriptor, Algorithm alg, EnumFreeSlotPolicy policy, int outputLimit) {
+        this(spec, framesLimit, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDescriptor, alg,
+                policy, outputLimit, 1);
+    }
+
+    /**
+     * @param sortThreads
+     *            the number of threads that sort and spill the runs of one partition. The sort memory is split evenly
+     *            among them, so each sub-run holds 1/sortThreads of the frames and a spilling input produces
+     *            sortThreads times as many runs to merge. The threads are taken from the node controller executor.
+     */
+    public ExternalSortOperatorDescriptor(IOperatorDescriptorRegistry spec, int framesLimit, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDescriptor, Algorithm alg, EnumFreeSlotPolicy policy, int outputLimit,
+            int sortThreads) {
+        this(spec, framesLimit, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDescriptor, alg,
+                policy, outputLimit, sortThreads, false);
+    }
+
+    /**
+     * @param asyncRunWriting
+     *            if true, a full sort buffer is sorted and written out in the background while the input fills the
+     *            next one.
+     */
+    public ExternalSortOperatorDescriptor(IOperatorDescriptorRegistry spec, int framesLimit, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDescriptor, Algorithm alg, EnumFreeSlotPolicy policy, int outputLimit,
+            int sortThreads, boolean asyncRunWriting) {
         super(spec, framesLimit, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDescriptor);
         if (framesLimit <= 1) {
             throw new IllegalStateException();// minimum of 2 fames (1 in,1 out)
@@ -93,6 +127,8 @@ public class ExternalSortOperatorDescriptor extends AbstractSorterOperatorDescri
         this.alg = alg;
         this.policy = policy;
         this.outputLimit = outputLimit;
+        this.sortThreads = sortThreads;
+        this.asyncRunWriting = asyncRunWriting;
     }
 
 }
\ No newline at end of file
@@ -15,7 +15,15 @@
 package org.apache.hyracks.dataflow.std.sort;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
+import org.apache.hyracks.api.application.INCApplicationContext;
 import org.apache.hyracks.api.comm.IFrameWriter;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
@@ -38,6 +46,17 @@ public class ExternalSortRunGenerator extends AbstractSortRunGenerator {
     protected final IHyracksTaskContext ctx;
     protected final IFrameSorter frameSorter;
     protected final int maxSortFrames;
+    /**
+     * The sort buffer is split among these sorters, {@link #frameSorter} being the first one. Each of them spills its
+     * own sub-run, and the sub-runs are sorted and written in parallel.
+     */
+    protected final IFrameSorter[] frameSorters;
+    /**
+     * If set, a full sorter is sorted and written by a background thread while the next sorter keeps absorbing input.
+     */
+    protected final boolean asyncRunWriting;
+    private final PendingRun[] pendingRuns;
+    private int currentSorter;
 
     public ExternalSortRunGenerator(IHyracksTaskContext ctx, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
@@ -58,46 +77,272 @@ public class ExternalSortRunGenerator extends AbstractSortRunGenerator {
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
             RecordDescriptor recordDesc, Algorithm alg, EnumFreeSlotPolicy policy, int framesLimit, int outputLimit)
             throws HyracksDataException {
+        this(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDesc, alg, policy, framesLimit,
+                outputLimit, 1);
+    }
+
+    /**
+     * @param sortThreads
+     *            the number of sorters the sort memory is split into. Each of them only gets 1/sortThreads of the
+     *            frames, so an input that spills produces sortThreads times as many (and as many times smaller) runs
+     *            for the merge phase. The sub-runs are sorted on the executor of the node controller.
+     */
+    public ExternalSortRunGenerator(IHyracksTaskContext ctx, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDesc, Algorithm alg, EnumFreeSlotPolicy policy, int framesLimit, int outputLimit,
+            int sortThreads) throws HyracksDataException {
+        this(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDesc, alg, policy, framesLimit,
+                outputLimit, sortThreads, false);
+    }
+
+    /**
+     * @param asyncRunWriting
+     *            splits the sort memory into at least two halves, so that one of them can be spilled in the
+     *            background while the other one is being filled
+     */
+    public ExternalSortRunGenerator(IHyracksTaskContext ctx, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDesc, Algorithm alg, EnumFreeSlotPolicy policy, int framesLimit, int outputLimit,
+            int sortThreads, boolean asyncRunWriting) throws HyracksDataException {
         this.ctx = ctx;
         maxSortFrames = framesLimit - 1;
 
-        IFrameFreeSlotPolicy freeSlotPolicy = null;
+        int nSorters = Math.max(1, Math.min(asyncRunWriting ? Math.max(2, sortThreads) : sortThreads, maxSortFrames));
+        this.asyncRunWriting = asyncRunWriting && nSorters > 1;
+        this.pendingRuns = new PendingRun[nSorters];
+        int framesPerSorter = maxSortFrames / nSorters;
+        frameSorters = new IFrameSorter[nSorters];
+        for (int i = 0; i < nSorters; i++) {
+            // the first sorter also takes the remainder of the division
+            int sorterFrames = i == 0 ? maxSortFrames - framesPerSorter * (nSorters - 1) : framesPerSorter;
+            IFrameBufferManager bufferManager = new VariableFrameMemoryManager(
+                    new VariableFramePool(ctx, sorterFrames * ctx.getInitialFrameSize()),
+                    createFreeSlotPolicy(policy, sorterFrames));
+            if (alg == Algorithm.MERGE_SORT) {
+                frameSorters[i] = new FrameSorterMergeSort(ctx, bufferManager, sortFields, firstKeyNormalizerFactory,
+                        comparatorFactories, recordDesc, outputLimit);
+            } else {
+                frameSorters[i] = new FrameSorterQuickSort(ctx, bufferManager, sortFields, firstKeyNormalizerFactory,
+                        comparatorFactories, recordDesc, outputLimit);
+            }
+        }
+        frameSorter = frameSorters[0];
+    }
+
+    private static IFrameFreeSlotPolicy createFreeSlotPolicy(EnumFreeSlotPolicy policy, int sortFrames) {
         switch (policy) {
             case SMALLEST_FIT:
-                freeSlotPolicy = new FrameFreeSlotSmallestFit();
-                break;
+                return new FrameFreeSlotSmallestFit();
             case LAST_FIT:
-                freeSlotPolicy = new FrameFreeSlotLastFit(maxSortFrames);
-                break;
+                return new FrameFreeSlotLastFit(sortFrames);
             case BIGGEST_FIT:
-                freeSlotPolicy = new FrameFreeSlotBiggestFirst(maxSortFrames);
-                break;
-        }
-        IFrameBufferManager bufferManager = new VariableFrameMemoryManager(
-                new VariableFramePool(ctx, maxSortFrames * ctx.getInitialFrameSize()), freeSlotPolicy);
-        if (alg == Algorithm.MERGE_SORT) {
-            frameSorter = new FrameSorterMergeSort(ctx, bufferManager, sortFields, firstKeyNormalizerFactory,
-                    comparatorFactories, recordDesc, outputLimit);
-        } else {
-            frameSorter = new FrameSorterQuickSort(ctx, bufferManager, sortFields, firstKeyNormalizerFactory,
-                    comparatorFactories, recordDesc, outputLimit);
+                return new FrameFreeSlotBiggestFirst(sortFrames);
         }
+        return null;
     }
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-        if (!frameSorter.insertFrame(buffer)) {
-            flushFramesToRun();
-            if (!frameSorter.insertFrame(buffer)) {
+        if (!frameSorters[currentSorter].insertFrame(buffer)) {
+            if (asyncRunWriting) {
+                spillInBackground(currentSorter);
+                currentSorter = (currentSorter + 1) % frameSorters.length;
+                awaitSpill(currentSorter);
+            } else if (currentSorter + 1 < frameSorters.length) {
+                currentSorter++;
+            } else {
+                flushFramesToRun();
+            }
+            if (!frameSorters[currentSorter].insertFrame(buffer)) {
                 throw new HyracksDataException("The given frame is too big to insert into the sorting memory.");
             }
         }
     }
 
+    @Override
+    public void close() throws HyracksDataException {
+        try {
+            for (int i = 0; i < pendingRuns.length; i++) {
+                awaitSpill(i);
+            }
+            if (currentSorter > 0) {
+                // the input is spread over several sorters, so it cannot be handed to the merger as one in-memory run
+                flushFramesToRun();
+            } else {
+                super.close();
+            }
+        } finally {
+            for (int i = 0; i < pendingRuns.length; i++) {
+                awaitSpillQuietly(i);
+            }
+            for (int i = 1; i < frameSorters.length; i++) {
+                frameSorters[i].close();
+            }
+        }
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        try {
+            super.fail();
+        } finally {
+            // the background spills still read their sorters, so the sort memory is released once they are done
+            for (int i = 0; i < pendingRuns.length; i++) {
+                awaitSpillQuietly(i);
+            }
+            for (IFrameSorter sorter : frameSorters) {
+                sorter.close();
+            }
+        }
+    }
+
+    @Override
+    protected void flushFramesToRun() throws HyracksDataException {
+        currentSorter = 0;
+        if (frameSorters.length == 1) {
+            super.flushFramesToRun();
+            return;
+        }
+        List<IFrameSorter> sorters = new ArrayList<>(frameSorters.length);
+        List<RunFileWriter> runWriters = new ArrayList<>(frameSorters.length);
+        List<IFrameWriter> flushWriters = new ArrayList<>(frameSorters.length);
+        for (IFrameSorter sorter : frameSorters) {
+            if (sorter.hasRemaining()) {
+                RunFileWriter runWriter = getRunFileWriter();
+                sorters.add(sorter);
+                runWriters.add(runWriter);
+                flushWriters.add(getFlushableFrameWriter(runWriter));
+            }
+        }
+        if (sorters.isEmpty()) {
+            return;
+        }
+        // fork all but the last sub-run, the task thread sorts and writes that one itself
+        int last = sorters.size() - 1;
+        List<Future<Integer>> futures = new ArrayList<>(last);
+        for (int i = 0; i < last; i++) {
+            futures.add(submit(createSortAndFlushTask(sorters.get(i), flushWriters.get(i))));
+        }
+        int[] maxFrameSizes = new int[sorters.size()];
+        HyracksDataException failure = null;
+        try {
+            maxFrameSizes[last] = sortAndFlush(sorters.get(last), flushWriters.get(last));
+        } catch (HyracksDataException e) {
+            failure = e;
+        }
+        for (int i = 0; i < last; i++) {
+            try {
+                maxFrameSizes[i] = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure == null ? new HyracksDataException(e) : failure;
+            } catch (ExecutionException e) {
+                failure = failure == null ? new HyracksDataException(e.getCause()) : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        for (int i = 0; i < sorters.size(); i++) {
+            runAndMaxSizes.add(new RunAndMaxFrameSizePair(runWriters.get(i).createReader(), maxFrameSizes[i]));
+            sorters.get(i).reset();
+        }
+    }
+
+    private void spillInBackground(int sorterIndex) throws HyracksDataException {
+        RunFileWriter runWriter = getRunFileWriter();
+        IFrameWriter flushWriter = getFlushableFrameWriter(runWriter);
+        Future<Integer> future = submit(createSortAndFlushTask(frameSorters[sorterIndex], flushWriter));
+        pendingRuns[sorterIndex] = new PendingRun(runWriter, future);
+    }
+
+    private void awaitSpill(int sorterIndex) throws HyracksDataException {
+        PendingRun pendingRun = pendingRuns[sorterIndex];
+        if (pendingRun == null) {
+            return;
+        }
+        pendingRuns[sorterIndex] = null;
+        int maxFrameSize;
+        try {
+            maxFrameSize = pendingRun.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        } catch (ExecutionException e) {
+            throw new HyracksDataException(e.getCause());
+        }
+        runAndMaxSizes.add(new RunAndMaxFrameSizePair(pendingRun.runWriter.createReader(), maxFrameSize));
+        frameSorters[sorterIndex].reset();
+    }
+
+    private void awaitSpillQuietly(int sorterIndex) {
+        PendingRun pendingRun = pendingRuns[sorterIndex];
+        if (pendingRun == null) {
+            return;
+        }
+        pendingRuns[sorterIndex] = null;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pendingRun.future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class PendingRun {
+        final RunFileWriter runWriter;
+        final Future<Integer> future;
+
+        PendingRun(RunFileWriter runWriter, Future<Integer> future) {
+            this.runWriter = runWriter;
+            this.future = future;
+        }
+    }
+
+    private static Callable<Integer> createSortAndFlushTask(final IFrameSorter sorter, final IFrameWriter writer) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws HyracksDataException {
+                return sortAndFlush(sorter, writer);
+            }
+        };
+    }
+
+    private static int sortAndFlush(IFrameSorter sorter, IFrameWriter writer) throws HyracksDataException {
+        sorter.sort();
+        writer.open();
+        try {
+            return sorter.flush(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private Future<Integer> submit(Callable<Integer> task) {
+        FutureTask<Integer> future = new FutureTask<>(task);
+        INCApplicationContext appCtx = ctx.getJobletContext().getApplicationContext();
+        Executor executor = appCtx == null ? null : appCtx.getExecutor();
+        if (executor == null) {
+            // no node executor to fork to, the task thread sorts the sub-run itself
+            future.run();
+        } else {
+            executor.execute(future);
+        }
+        return future;
+    }
+
     protected RunFileWriter getRunFileWriter() throws HyracksDataException {
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 ExternalSortRunGenerator.class.getSimpleName());
-        return new RunFileWriter(file, ctx.getIOManager());
+        return new RunFileWriter(file, ctx.getIOManager(), ctx);
     }
 
     protected IFrameWriter getFlushableFrameWriter(RunFileWriter writer) throws HyracksDataException {
@@ -109,4 +354,4 @@ public class ExternalSortRunGenerator extends AbstractSortRunGenerator {
         return frameSorter;
     }
 
-}
\ No newline at end of file
+}
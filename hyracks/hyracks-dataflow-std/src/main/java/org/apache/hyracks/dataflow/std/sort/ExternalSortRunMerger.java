@@ -226,7 +226,7 @@ public class ExternalSortRunMerger {
 
     protected RunFileWriter prepareIntermediateMergeRunFile() throws HyracksDataException {
         FileReference newRun = ctx.createManagedWorkspaceFile(ExternalSortRunMerger.class.getSimpleName());
-        return new RunFileWriter(newRun, ctx.getIOManager());
+        return new RunFileWriter(newRun, ctx.getIOManager(), ctx);
     }
 
     protected IFrameWriter prepareIntermediateMergeResultWriter(RunFileWriter mergeFileWriter)
@@ -70,7 +70,7 @@ public class FrameSorterMergeSort extends AbstractFrameSorter {
                 if (next < end) {
                     merge(i, next, step, Math.min(step, end - next));
                 } else {
-                    System.arraycopy(tPointers, i * 4, tPointersTemp, i * 4, (end - i) * 4);
+                    System.arraycopy(tPointers, i * ptrSize, tPointersTemp, i * ptrSize, (end - i) * ptrSize);
                 }
             }
             /** prepare next phase merge */
@@ -103,32 +103,29 @@ public class FrameSorterMergeSort extends AbstractFrameSorter {
         }
         if (pos1 <= end1) {
             int rest = end1 - pos1 + 1;
-            System.arraycopy(tPointers, pos1 * 4, tPointersTemp, targetPos * 4, rest * 4);
+            System.arraycopy(tPointers, pos1 * ptrSize, tPointersTemp, targetPos * ptrSize, rest * ptrSize);
         }
         if (pos2 <= end2) {
             int rest = end2 - pos2 + 1;
-            System.arraycopy(tPointers, pos2 * 4, tPointersTemp, targetPos * 4, rest * 4);
+            System.arraycopy(tPointers, pos2 * ptrSize, tPointersTemp, targetPos * ptrSize, rest * ptrSize);
         }
     }
 
     private void copy(int src, int dest) {
-        tPointersTemp[dest * 4] = tPointers[src * 4];
-        tPointersTemp[dest * 4 + 1] = tPointers[src * 4 + 1];
-        tPointersTemp[dest * 4 + 2] = tPointers[src * 4 + 2];
-        tPointersTemp[dest * 4 + 3] = tPointers[src * 4 + 3];
+        System.arraycopy(tPointers, src * ptrSize, tPointersTemp, dest * ptrSize, ptrSize);
     }
 
     private int compare(int tp1, int tp2) throws HyracksDataException {
-        int i1 = tPointers[tp1 * 4];
-        int j1 = tPointers[tp1 * 4 + 1];
-        int v1 = tPointers[tp1 * 4 + 3];
+        int i1 = tPointers[tp1 * ptrSize + ID_FRAMEID];
+        int j1 = tPointers[tp1 * ptrSize + ID_TUPLE_START];
 
-        int tp2i = tPointers[tp2 * 4];
-        int tp2j = tPointers[tp2 * 4 + 1];
-        int tp2v = tPointers[tp2 * 4 + 3];
+        int tp2i = tPointers[tp2 * ptrSize + ID_FRAMEID];
+        int tp2j = tPointers[tp2 * ptrSize + ID_TUPLE_START];
 
-        if (v1 != tp2v) {
-            return ((((long) v1) & 0xffffffffL) < (((long) tp2v) & 0xffffffffL)) ? -1 : 1;
+        int cmp = compareNormalizedKeys(tPointers, tp1 * ptrSize + ID_NORMAL_KEY, tPointers,
+                tp2 * ptrSize + ID_NORMAL_KEY);
+        if (cmp != 0 || nkDecisiveFields == comparators.length) {
+            return cmp;
         }
         int i2 = tp2i;
         int j2 = tp2j;
@@ -138,7 +135,7 @@ public class FrameSorterMergeSort extends AbstractFrameSorter {
         byte[] b2 = buf2.array();
         inputTupleAccessor.reset(buf1);
         fta2.reset(buf2);
-        for (int f = 0; f < comparators.length; ++f) {
+        for (int f = nkDecisiveFields; f < comparators.length; ++f) {
             int fIdx = sortFields[f];
             int f1Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(b1, j1 + (fIdx - 1) * 4);
             int f1End = IntSerDeUtils.getInt(b1, j1 + fIdx * 4);
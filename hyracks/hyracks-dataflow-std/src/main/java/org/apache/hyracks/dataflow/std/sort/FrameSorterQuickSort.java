@@ -27,6 +27,7 @@ import org.apache.hyracks.dataflow.std.sort.buffermanager.IFrameBufferManager;
 public class FrameSorterQuickSort extends AbstractFrameSorter {
 
     private FrameTupleAccessor fta2;
+    private int[] pivot;
 
     public FrameSorterQuickSort(IHyracksTaskContext ctx, IFrameBufferManager bufferManager, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
@@ -41,6 +42,7 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
         super(ctx, bufferManager, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDescriptor,
                 outputLimit);
         fta2 = new FrameTupleAccessor(recordDescriptor);
+        pivot = new int[ptrSize];
     }
 
     @Override
@@ -50,9 +52,9 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
 
     void sort(int[] tPointers, int offset, int length) throws HyracksDataException {
         int m = offset + (length >> 1);
-        int mi = tPointers[m * 4];
-        int mj = tPointers[m * 4 + 1];
-        int mv = tPointers[m * 4 + 3];
+        System.arraycopy(tPointers, m * ptrSize, pivot, 0, ptrSize);
+        int mi = pivot[ID_FRAMEID];
+        int mj = pivot[ID_TUPLE_START];
 
         int a = offset;
         int b = a;
@@ -60,7 +62,7 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
         int d = c;
         while (true) {
             while (b <= c) {
-                int cmp = compare(tPointers, b, mi, mj, mv);
+                int cmp = compare(tPointers, b, mi, mj);
                 if (cmp > 0) {
                     break;
                 }
@@ -70,7 +72,7 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
                 ++b;
             }
             while (c >= b) {
-                int cmp = compare(tPointers, c, mi, mj, mv);
+                int cmp = compare(tPointers, c, mi, mj);
                 if (cmp < 0) {
                     break;
                 }
@@ -100,10 +102,10 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
     }
 
     private void swap(int x[], int a, int b) {
-        for (int i = 0; i < 4; ++i) {
-            int t = x[a * 4 + i];
-            x[a * 4 + i] = x[b * 4 + i];
-            x[b * 4 + i] = t;
+        for (int i = 0; i < ptrSize; ++i) {
+            int t = x[a * ptrSize + i];
+            x[a * ptrSize + i] = x[b * ptrSize + i];
+            x[b * ptrSize + i] = t;
         }
     }
 
@@ -113,12 +115,12 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
         }
     }
 
-    private int compare(int[] tPointers, int tp1, int tp2i, int tp2j, int tp2v) throws HyracksDataException {
-        int i1 = tPointers[tp1 * 4];
-        int j1 = tPointers[tp1 * 4 + 1];
-        int v1 = tPointers[tp1 * 4 + 3];
-        if (v1 != tp2v) {
-            return ((((long) v1) & 0xffffffffL) < (((long) tp2v) & 0xffffffffL)) ? -1 : 1;
+    private int compare(int[] tPointers, int tp1, int tp2i, int tp2j) throws HyracksDataException {
+        int i1 = tPointers[tp1 * ptrSize + ID_FRAMEID];
+        int j1 = tPointers[tp1 * ptrSize + ID_TUPLE_START];
+        int cmp = compareNormalizedKeys(tPointers, tp1 * ptrSize + ID_NORMAL_KEY, pivot, ID_NORMAL_KEY);
+        if (cmp != 0 || nkDecisiveFields == comparators.length) {
+            return cmp;
         }
         int i2 = tp2i;
         int j2 = tp2j;
@@ -128,7 +130,7 @@ public class FrameSorterQuickSort extends AbstractFrameSorter {
         byte[] b2 = buf2.array();
         inputTupleAccessor.reset(buf1);
         fta2.reset(buf2);
-        for (int f = 0; f < comparators.length; ++f) {
+        for (int f = nkDecisiveFields; f < comparators.length; ++f) {
             int fIdx = sortFields[f];
             int f1Start = fIdx == 0 ? 0 : buf1.getInt(j1 + (fIdx - 1) * 4);
             int f1End = buf1.getInt(j1 + fIdx * 4);
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.dataflow.std.sort;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.io.RunFileWriter;
+import org.apache.hyracks.dataflow.common.util.IntSerDeUtils;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.ITupleBufferAccessor;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.VariableFramePool;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.VariableTupleMemoryManager;
+import org.apache.hyracks.dataflow.std.structures.IResetableComparable;
+import org.apache.hyracks.dataflow.std.structures.IResetableComparableFactory;
+import org.apache.hyracks.dataflow.std.structures.MinHeap;
+import org.apache.hyracks.dataflow.std.structures.TuplePointer;
+
+/**
+ * Generates runs by replacement selection. The tuples are kept in the same tuple buffer as the
+ * {@link HeapSortRunGenerator}, ordered by a min-heap on (run number, sort key). Whenever the memory is full, the
+ * smallest tuple of the current run is written out and its space is reused for the next input tuple. An input tuple
+ * that is smaller than the last written one is tagged for the next run. On random input, runs are about twice the
+ * size of the memory.
+ * The space of the written tuples is reclaimed in place: once an eighth of the memory is held by deleted tuples,
+ * the frames are compacted and the heap entries are pointed to the moved tuples.
+ */
+public class ReplacementSelectionRunGenerator extends AbstractSortRunGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(ReplacementSelectionRunGenerator.class.getName());
+    private static final int COMPACTION_RATIO = 8;
+
+    protected final IHyracksTaskContext ctx;
+    protected final int frameLimit;
+    protected final int[] sortFields;
+    protected final RecordDescriptor recordDescriptor;
+    private final INormalizedKeyComputer nkc;
+    private final IBinaryComparator[] comparators;
+    private final IFrameTupleAccessor inAccessor;
+    private final FrameTupleAppender outputAppender;
+    private final IFrame outputFrame;
+
+    private VariableTupleMemoryManager bufferManager;
+    private ITupleBufferAccessor bufferAccessor1;
+    private ITupleBufferAccessor bufferAccessor2;
+    private MinHeap heap;
+    private HeapEntry minEntry;
+    private HeapEntry newEntry;
+
+    private int currentRun;
+    private int deletedBytes;
+    private int compactionThreshold;
+    private RunFileWriter runWriter;
+    private IFrameWriter flushWriter;
+    private int maxFlushedFrameSize;
+
+    private byte[] lastOutput = new byte[0];
+    private boolean hasLastOutput;
+    private int lastOutputNmk;
+
+    private final ISorter inMemorySorter = new ISorter() {
+        @Override
+        public boolean hasRemaining() {
+            return heap != null && !heap.isEmpty();
+        }
+
+        @Override
+        public void reset() throws HyracksDataException {
+            bufferManager.reset();
+            heap.reset();
+            deletedBytes = 0;
+        }
+
+        @Override
+        public void sort() throws HyracksDataException {
+            // the heap already keeps the tuples in order
+        }
+
+        @Override
+        public int flush(IFrameWriter writer) throws HyracksDataException {
+            outputAppender.reset(outputFrame, true);
+            int maxFrameSize = outputFrame.getFrameSize();
+            while (!heap.isEmpty()) {
+                heap.getMin(minEntry);
+                maxFrameSize = Math.max(maxFrameSize, appendMinEntry(writer));
+            }
+            maxFrameSize = Math.max(maxFrameSize, outputFrame.getFrameSize());
+            outputAppender.flush(writer, true);
+            return maxFrameSize;
+        }
+
+        @Override
+        public void close() {
+            if (heap != null) {
+                heap = null;
+                bufferManager.close();
+            }
+        }
+    };
+
+    public ReplacementSelectionRunGenerator(IHyracksTaskContext ctx, int frameLimit, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDescriptor) throws HyracksDataException {
+        super();
+        this.ctx = ctx;
+        this.frameLimit = frameLimit;
+        this.sortFields = sortFields;
+        this.recordDescriptor = recordDescriptor;
+        this.nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
+        this.comparators = new IBinaryComparator[comparatorFactories.length];
+        for (int i = 0; i < comparatorFactories.length; ++i) {
+            comparators[i] = comparatorFactories[i].createBinaryComparator();
+        }
+        this.inAccessor = new FrameTupleAccessor(recordDescriptor);
+        this.outputAppender = new FrameTupleAppender();
+        this.outputFrame = new VSizeFrame(ctx);
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        super.open();
+        int memoryBytes = (frameLimit - 1) * ctx.getInitialFrameSize();
+        bufferManager = new VariableTupleMemoryManager(new VariableFramePool(ctx, memoryBytes), recordDescriptor,
+                false);
+        bufferAccessor1 = bufferManager.getTupleAccessor();
+        bufferAccessor2 = bufferManager.getTupleAccessor();
+        heap = new MinHeap(new HeapEntryFactory(), frameLimit);
+        minEntry = new HeapEntry();
+        newEntry = new HeapEntry();
+        currentRun = 0;
+        runWriter = null;
+        hasLastOutput = false;
+        deletedBytes = 0;
+        compactionThreshold = memoryBytes / COMPACTION_RATIO;
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        inAccessor.reset(buffer);
+        for (int i = 0; i < inAccessor.getTupleCount(); i++) {
+            while (!bufferManager.insertTuple(inAccessor, i, newEntry.tuplePointer)) {
+                if (heap.isEmpty()) {
+                    bufferManager.reset();
+                    deletedBytes = 0;
+                    if (!bufferManager.insertTuple(inAccessor, i, newEntry.tuplePointer)) {
+                        throw new HyracksDataException(
+                                "The given tuple is too big to insert into the sorting memory.");
+                    }
+                    break;
+                }
+                if (deletedBytes >= compactionThreshold) {
+                    compactMemory();
+                    continue;
+                }
+                outputMinEntry();
+            }
+            newEntry.nmk = getPNK(inAccessor, i);
+            newEntry.run = hasLastOutput && compareToLastOutput(inAccessor, i, newEntry.nmk) < 0 ? currentRun + 1
+                    : currentRun;
+            heap.insert(newEntry);
+        }
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        if (runWriter == null) {
+            // everything fits into memory, the merger flushes the heap directly
+            return;
+        }
+        while (!heap.isEmpty()) {
+            outputMinEntry();
+        }
+        finishRun();
+        inMemorySorter.close();
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        if (flushWriter != null) {
+            flushWriter.fail();
+        }
+    }
+
+    @Override
+    public ISorter getSorter() {
+        return inMemorySorter;
+    }
+
+    @Override
+    protected RunFileWriter getRunFileWriter() throws HyracksDataException {
+        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                ReplacementSelectionRunGenerator.class.getSimpleName());
+        return new RunFileWriter(file, ctx.getIOManager(), ctx);
+    }
+
+    @Override
+    protected IFrameWriter getFlushableFrameWriter(RunFileWriter writer) throws HyracksDataException {
+        return writer;
+    }
+
+    private void outputMinEntry() throws HyracksDataException {
+        heap.getMin(minEntry);
+        if (runWriter == null || minEntry.run != currentRun) {
+            finishRun();
+            startRun();
+            currentRun = minEntry.run;
+        }
+        maxFlushedFrameSize = Math.max(maxFlushedFrameSize, appendMinEntry(flushWriter));
+
+        bufferAccessor1.reset(minEntry.tuplePointer);
+        int length = bufferAccessor1.getTupleLength();
+        if (lastOutput.length < length) {
+            lastOutput = new byte[Math.max(length, lastOutput.length * 2)];
+        }
+        System.arraycopy(bufferAccessor1.getTupleBuffer().array(), bufferAccessor1.getTupleStartOffset(), lastOutput,
+                0, length);
+        lastOutputNmk = minEntry.nmk;
+        hasLastOutput = true;
+        bufferManager.deleteTuple(minEntry.tuplePointer);
+        deletedBytes += length;
+    }
+
+    /**
+     * Moves the remaining tuples together within their frames and points the heap entries to their new positions.
+     * The order of the heap does not change, so the heap itself is left as it is.
+     */
+    @SuppressWarnings("deprecation")
+    private void compactMemory() {
+        bufferManager.compact();
+        IResetableComparable[] entries = heap.getEntries();
+        for (int i = 0; i < heap.getNumEntries(); i++) {
+            bufferManager.relocate(((HeapEntry) entries[i]).tuplePointer);
+        }
+        deletedBytes = 0;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Compacted the replacement selection memory holding " + heap.getNumEntries() + " tuples");
+        }
+    }
+
+    private int appendMinEntry(IFrameWriter writer) throws HyracksDataException {
+        bufferAccessor1.reset(minEntry.tuplePointer);
+        return FrameUtils.appendToWriter(writer, outputAppender, bufferAccessor1.getTupleBuffer().array(),
+                bufferAccessor1.getTupleStartOffset(), bufferAccessor1.getTupleLength());
+    }
+
+    private void startRun() throws HyracksDataException {
+        runWriter = getRunFileWriter();
+        flushWriter = getFlushableFrameWriter(runWriter);
+        flushWriter.open();
+        outputAppender.reset(outputFrame, true);
+        maxFlushedFrameSize = outputFrame.getFrameSize();
+    }
+
+    private void finishRun() throws HyracksDataException {
+        if (flushWriter == null) {
+            return;
+        }
+        try {
+            maxFlushedFrameSize = Math.max(maxFlushedFrameSize, outputFrame.getFrameSize());
+            outputAppender.flush(flushWriter, true);
+        } finally {
+            flushWriter.close();
+            flushWriter = null;
+        }
+        runAndMaxSizes.add(new RunAndMaxFrameSizePair(runWriter.createReader(), maxFlushedFrameSize));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Generated run " + currentRun);
+        }
+    }
+
+    private int getPNK(IFrameTupleAccessor fta, int tIx) {
+        if (nkc == null) {
+            return 0;
+        }
+        int sfIdx = sortFields[0];
+        return nkc.normalize(fta.getBuffer().array(), fta.getAbsoluteFieldStartOffset(tIx, sfIdx),
+                fta.getFieldLength(tIx, sfIdx));
+    }
+
+    private int compareToLastOutput(IFrameTupleAccessor fta, int tIx, int nmk) throws HyracksDataException {
+        if (nmk != lastOutputNmk) {
+            return ((((long) nmk) & 0xffffffffL) < (((long) lastOutputNmk) & 0xffffffffL)) ? -1 : 1;
+        }
+        byte[] b1 = fta.getBuffer().array();
+        int fieldSlotsLength = recordDescriptor.getFieldCount() * 4;
+        for (int f = 0; f < comparators.length; ++f) {
+            int fIdx = sortFields[f];
+            int s1 = fta.getAbsoluteFieldStartOffset(tIx, fIdx);
+            int l1 = fta.getFieldLength(tIx, fIdx);
+            int f2Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(lastOutput, (fIdx - 1) * 4);
+            int f2End = IntSerDeUtils.getInt(lastOutput, fIdx * 4);
+            int c = comparators[f].compare(b1, s1, l1, lastOutput, fieldSlotsLength + f2Start, f2End - f2Start);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private class HeapEntryFactory implements IResetableComparableFactory<HeapEntry> {
+        @Override
+        public IResetableComparable<HeapEntry> createResetableComparable() {
+            return new HeapEntry();
+        }
+    }
+
+    private class HeapEntry implements IResetableComparable<HeapEntry> {
+        int run;
+        int nmk;
+        final TuplePointer tuplePointer = new TuplePointer();
+
+        @Override
+        public int compareTo(HeapEntry o) {
+            if (run != o.run) {
+                return run < o.run ? -1 : 1;
+            }
+            if (nmk != o.nmk) {
+                return ((((long) nmk) & 0xffffffffL) < (((long) o.nmk) & 0xffffffffL)) ? -1 : 1;
+            }
+            bufferAccessor1.reset(tuplePointer);
+            bufferAccessor2.reset(o.tuplePointer);
+            byte[] b1 = bufferAccessor1.getTupleBuffer().array();
+            byte[] b2 = bufferAccessor2.getTupleBuffer().array();
+            for (int f = 0; f < comparators.length; ++f) {
+                int fIdx = sortFields[f];
+                int c;
+                try {
+                    c = comparators[f].compare(b1, bufferAccessor1.getAbsFieldStartOffset(fIdx),
+                            bufferAccessor1.getFieldLength(fIdx), b2, bufferAccessor2.getAbsFieldStartOffset(fIdx),
+                            bufferAccessor2.getFieldLength(fIdx));
+                } catch (HyracksDataException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void reset(HeapEntry other) {
+            run = other.run;
+            nmk = other.nmk;
+            tuplePointer.reset(other.tuplePointer);
+        }
+    }
+}
@@ -22,10 +22,12 @@ import org.apache.hyracks.api.comm.IFrameReader;
 import org.apache.hyracks.api.comm.IFrameTupleAccessor;
 import org.apache.hyracks.api.context.IHyracksTaskContext;
 import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IMultiFieldNormalizedKeyComputer;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.data.normalizers.MultiFieldNormalizedKeyComputerFactory;
 import org.apache.hyracks.dataflow.std.sort.util.GroupFrameAccessor;
 import org.apache.hyracks.dataflow.std.util.ReferenceEntry;
 import org.apache.hyracks.dataflow.std.util.ReferencedPriorityQueue;
@@ -36,7 +38,7 @@ public class RunMergingFrameReader implements IFrameReader {
     private final List<? extends IFrame> inFrames;
     private final int[] sortFields;
     private final IBinaryComparator[] comparators;
-    private final INormalizedKeyComputer nmkComputer;
+    private final IMultiFieldNormalizedKeyComputer nmkComputer;
     private final RecordDescriptor recordDesc;
     private final int topK;
     private int tupleCount;
@@ -59,7 +61,7 @@ public class RunMergingFrameReader implements IFrameReader {
         this.inFrames = inFrames;
         this.sortFields = sortFields;
         this.comparators = comparators;
-        this.nmkComputer = nmkComputer;
+        this.nmkComputer = MultiFieldNormalizedKeyComputerFactory.asMultiFieldComputer(nmkComputer);
         this.recordDesc = recordDesc;
         this.topK = topK;
     }
@@ -159,12 +161,16 @@ public class RunMergingFrameReader implements IFrameReader {
     }
 
     private Comparator<ReferenceEntry> createEntryComparator(final IBinaryComparator[] comparators) {
+        final int decisiveFields = nmkComputer == null ? 0
+                : Math.min(nmkComputer.getDecisiveFieldCount(), nmkComputer.getNormalizedKeyLength());
         return new Comparator<ReferenceEntry>() {
             public int compare(ReferenceEntry tp1, ReferenceEntry tp2) {
-                int nmk1 = tp1.getNormalizedKey();
-                int nmk2 = tp2.getNormalizedKey();
-                if (nmk1 != nmk2) {
-                    return ((((long) nmk1) & 0xffffffffL) < (((long) nmk2) & 0xffffffffL)) ? -1 : 1;
+                int[] nmk1 = tp1.getNormalizedKeys();
+                int[] nmk2 = tp2.getNormalizedKeys();
+                for (int k = 0; k < nmk1.length; ++k) {
+                    if (nmk1[k] != nmk2[k]) {
+                        return ((((long) nmk1[k]) & 0xffffffffL) < (((long) nmk2[k]) & 0xffffffffL)) ? -1 : 1;
+                    }
                 }
                 IFrameTupleAccessor fta1 = tp1.getAccessor();
                 IFrameTupleAccessor fta2 = tp2.getAccessor();
@@ -173,7 +179,7 @@ public class RunMergingFrameReader implements IFrameReader {
                 int[] tPointers1 = tp1.getTPointers();
                 int[] tPointers2 = tp2.getTPointers();
 
-                for (int f = 0; f < sortFields.length; ++f) {
+                for (int f = decisiveFields; f < sortFields.length; ++f) {
                     int c;
                     try {
                         c = comparators[f].compare(b1, tPointers1[2 * f + 1], tPointers1[2 * f + 2], b2,
@@ -24,13 +24,15 @@ import java.util.List;
 
 import org.apache.hyracks.api.context.IHyracksFrameMgrContext;
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
 
 public class VariableFramePool implements IFramePool {
     public static final int UNLIMITED_MEMORY = -1;
 
     private final IHyracksFrameMgrContext ctx;
     private final int minFrameSize;
-    private final int memBudget;
+    private final int maxBudget;
+    private int memBudget;
 
     private int allocateMem;
     private ArrayList<ByteBuffer> buffers;  // the unused slots were sorted by size increasingly.
@@ -47,10 +49,12 @@ public class VariableFramePool implements IFramePool {
         this.minFrameSize = ctx.getInitialFrameSize();
         this.allocateMem = 0;
         if (memBudgetInBytes == UNLIMITED_MEMORY) {
+            this.maxBudget = Integer.MAX_VALUE;
             this.memBudget = Integer.MAX_VALUE;
             this.buffers = new ArrayList<>();
             this.used = new BitSet();
         } else {
+            this.maxBudget = memBudgetInBytes;
             this.memBudget = memBudgetInBytes;
             this.buffers = new ArrayList<>(memBudgetInBytes / minFrameSize);
             this.used = new BitSet(memBudgetInBytes / minFrameSize);
@@ -74,7 +78,15 @@ public class VariableFramePool implements IFramePool {
             return reuseFrame(frameId);
         }
         if (haveEnoughFreeSpace(frameSize)) {
-            return createNewFrame(frameSize);
+            try {
+                return createNewFrame(frameSize);
+            } catch (InsufficientMemoryException e) {
+                if (allocateMem == 0) {
+                    throw e;
+                }
+                // the node cannot back the whole budget right now, continue with the frames we already hold.
+                memBudget = allocateMem;
+            }
         }
         return mergeExistingFrames(frameSize);
 
@@ -157,7 +169,7 @@ public class VariableFramePool implements IFramePool {
 
     private int deAllocateFrame(int id) {
         ByteBuffer frame = buffers.get(id);
-        ctx.deallocateFrames(frame.capacity());
+        ctx.deallocateFrame(frame);
         buffers.set(id, null);
         used.set(id);
         allocateMem -= frame.capacity();
@@ -183,9 +195,15 @@ public class VariableFramePool implements IFramePool {
 
     @Override
     public void close() {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                ctx.deallocateFrame(buffer);
+            }
+        }
         buffers.clear();
         used.clear();
         allocateMem = 0;
+        memBudget = maxBudget;
     }
 
     private static Comparator<ByteBuffer> sizeByteBufferComparator = new Comparator<ByteBuffer>() {
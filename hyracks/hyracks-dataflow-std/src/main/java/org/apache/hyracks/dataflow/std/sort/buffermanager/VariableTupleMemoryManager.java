@@ -17,6 +17,7 @@ package org.apache.hyracks.dataflow.std.sort.buffermanager;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,10 +38,22 @@ public class VariableTupleMemoryManager implements ITupleBufferManager {
     private final IAppendDeletableFrameTupleAccessor accessor;
     private final ArrayList<ByteBuffer> frames;
     private final RecordDescriptor recordDescriptor;
+    private final boolean reorganizeOnInsert;
+    private int[][] newTids;
     private int numTuples;
     private int statsReOrg;
 
     public VariableTupleMemoryManager(IFramePool framePool, RecordDescriptor recordDescriptor) {
+        this(framePool, recordDescriptor, true);
+    }
+
+    /**
+     * @param reorganizeOnInsert
+     *            if false, an insertion that finds no contiguous space fails instead of reorganizing every frame. The
+     *            caller then reclaims the deleted space with {@link #compact()} when enough of it has piled up.
+     */
+    public VariableTupleMemoryManager(IFramePool framePool, RecordDescriptor recordDescriptor,
+            boolean reorganizeOnInsert) {
         this.pool = framePool;
         int maxFrames = framePool.getMemoryBudgetBytes() / framePool.getMinFrameSize();
         this.policy = new FrameFreeSlotLastFit(maxFrames);
@@ -48,6 +61,8 @@ public class VariableTupleMemoryManager implements ITupleBufferManager {
         this.frames = new ArrayList<>();
         this.MIN_FREE_SPACE = calculateMinFreeSpace(recordDescriptor);
         this.recordDescriptor = recordDescriptor;
+        this.reorganizeOnInsert = reorganizeOnInsert;
+        this.newTids = new int[0][];
         this.numTuples = 0;
         this.statsReOrg = 0;
     }
@@ -71,7 +86,7 @@ public class VariableTupleMemoryManager implements ITupleBufferManager {
         int requiredFreeSpace = calculatePhysicalSpace(fta, idx);
         int frameId = findAvailableFrame(requiredFreeSpace);
         if (frameId < 0) {
-            if (canBeInsertedAfterCleanUpFragmentation(requiredFreeSpace)) {
+            if (reorganizeOnInsert && canBeInsertedAfterCleanUpFragmentation(requiredFreeSpace)) {
                 reOrganizeFrames();
                 frameId = findAvailableFrame(requiredFreeSpace);
                 statsReOrg++;
@@ -101,6 +116,36 @@ public class VariableTupleMemoryManager implements ITupleBufferManager {
         }
     }
 
+    /**
+     * Removes the deleted tuples and their slots from every frame, so that all the free space of a frame becomes
+     * contiguous. The tuples stay in their frames but get new tuple indexes: the pointers taken before the compaction
+     * have to be translated by {@link #relocate(TuplePointer)}.
+     */
+    public void compact() {
+        if (newTids.length < frames.size()) {
+            newTids = Arrays.copyOf(newTids, frames.size());
+        }
+        policy.reset();
+        for (int i = 0; i < frames.size(); i++) {
+            accessor.reset(frames.get(i));
+            if (newTids[i] == null || newTids[i].length < accessor.getTupleCount()) {
+                newTids[i] = new int[accessor.getTupleCount()];
+            }
+            accessor.compact(newTids[i]);
+            if (accessor.getContiguousFreeSpace() > MIN_FREE_SPACE) {
+                policy.pushNewFrame(i, accessor.getContiguousFreeSpace());
+            }
+        }
+        statsReOrg++;
+    }
+
+    /**
+     * Points the given pointer, taken before the last {@link #compact()}, to the new position of its tuple.
+     */
+    public void relocate(TuplePointer tuplePointer) {
+        tuplePointer.reset(tuplePointer.frameIndex, newTids[tuplePointer.frameIndex][tuplePointer.tupleIndex]);
+    }
+
     private boolean canBeInsertedAfterCleanUpFragmentation(int requiredFreeSpace) {
         for (int i = 0; i < frames.size(); i++) {
             accessor.reset(frames.get(i));
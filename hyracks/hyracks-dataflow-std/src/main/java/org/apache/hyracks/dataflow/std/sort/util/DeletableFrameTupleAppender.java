@@ -155,6 +155,33 @@ public class DeletableFrameTupleAppender implements IAppendDeletableFrameTupleAc
         setDeleteSpace(0);
     }
 
+    @Override
+    public void compact(int[] newTids) {
+        int newTupleCount = 0;
+        int endOffset = 0;
+        freeDataEndOffset = 0;
+        for (int i = 0; i < tupleCount; i++) {
+            int startOffset = Math.abs(endOffset);
+            // the slot of tuple i is read before it can be overwritten by a new slot, which is never beyond i
+            endOffset = getTupleEndOffset(i);
+            if (endOffset >= 0) {
+                int length = endOffset - startOffset;
+                if (freeDataEndOffset != startOffset) {
+                    System.arraycopy(array, startOffset, array, freeDataEndOffset, length);
+                }
+                freeDataEndOffset += length;
+                setTupleEndOffset(newTupleCount, freeDataEndOffset);
+                newTids[i] = newTupleCount++;
+            } else {
+                newTids[i] = -1;
+            }
+        }
+        tupleCount = newTupleCount;
+        setTupleCount(tupleCount);
+        deletedSpace = 0;
+        setDeleteSpace(0);
+    }
+
     private void reclaimDeletedEnding() {
         for (int i = tupleCount - 1; i >= 0; i--) {
             int endOffset = getTupleEndOffset(i);
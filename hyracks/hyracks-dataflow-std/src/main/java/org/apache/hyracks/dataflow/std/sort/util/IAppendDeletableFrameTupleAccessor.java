@@ -60,6 +60,16 @@ public interface IAppendDeletableFrameTupleAccessor extends IFrameTupleAccessor
      */
     void reOrganizeBuffer();
 
+    /**
+     * Remove the deleted tuples together with their slots. Unlike {@link #reOrganizeBuffer()}, the remaining tuples
+     * get new tids, in their current order.
+     *
+     * @param newTids
+     *            receives the new tid of each old tid, or -1 for a deleted tuple. It must hold at least
+     *            {@link #getTupleCount()} entries.
+     */
+    void compact(int[] newTids);
+
     /**
      * @return how many free space in total in the buffer, including the fragmented space
      */
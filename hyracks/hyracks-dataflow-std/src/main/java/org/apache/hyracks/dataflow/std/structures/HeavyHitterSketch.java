@@ -0,0 +1,164 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.structures;
+
+/**
+ * Finds the heavy hitters of a stream of 32-bit keys (usually key hashes) with the algorithm of Misra and Gries: with
+ * k counters, the counter of a key underestimates its number of occurrences by at most n/(k+1), so every key making
+ * up a large enough share of the stream keeps its counter.
+ * A key becomes heavy once its counter reaches both the minimum count and 1/k of the stream seen so far. A heavy key
+ * stays heavy and is not counted anymore, which frees its counter for the other keys. At most maxHeavyKeys keys
+ * become heavy.
+ */
+public class HeavyHitterSketch {
+
+    private final int numCounters;
+    private final int minHeavyCount;
+    private final int maxHeavyKeys;
+
+    private int[] counterKeys;
+    private int[] counts; // 0 marks an empty slot
+    private int counterMask;
+    private int counterCount;
+
+    private final int[] heavyKeys;
+    private final boolean[] heavySlots;
+    private final int heavyMask;
+    private int heavyKeyCount;
+
+    private long streamLength;
+
+    public HeavyHitterSketch(int numCounters, int minHeavyCount, int maxHeavyKeys) {
+        this.numCounters = numCounters;
+        this.minHeavyCount = minHeavyCount;
+        this.maxHeavyKeys = maxHeavyKeys;
+        int counterSlots = tableSizeFor(numCounters);
+        this.counterKeys = new int[counterSlots];
+        this.counts = new int[counterSlots];
+        this.counterMask = counterSlots - 1;
+        int heavySlotCount = tableSizeFor(maxHeavyKeys);
+        this.heavyKeys = new int[heavySlotCount];
+        this.heavySlots = new boolean[heavySlotCount];
+        this.heavyMask = heavySlotCount - 1;
+    }
+
+    /**
+     * Counts one occurrence of the key.
+     *
+     * @return true if the key is heavy
+     */
+    public boolean add(int key) {
+        streamLength++;
+        if (isHeavy(key)) {
+            return true;
+        }
+        int count = increment(key);
+        if (count >= minHeavyCount && (long) count * numCounters >= streamLength && heavyKeyCount < maxHeavyKeys) {
+            markHeavy(key);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isHeavy(int key) {
+        int slot = mix(key) & heavyMask;
+        while (heavySlots[slot]) {
+            if (heavyKeys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & heavyMask;
+        }
+        return false;
+    }
+
+    public int getHeavyKeyCount() {
+        return heavyKeyCount;
+    }
+
+    public long getStreamLength() {
+        return streamLength;
+    }
+
+    /**
+     * @return the counter of the key after counting it, or 0 if there was no counter left for it
+     */
+    private int increment(int key) {
+        int slot = mix(key) & counterMask;
+        while (counts[slot] != 0) {
+            if (counterKeys[slot] == key) {
+                return ++counts[slot];
+            }
+            slot = (slot + 1) & counterMask;
+        }
+        if (counterCount < numCounters) {
+            counterKeys[slot] = key;
+            counts[slot] = 1;
+            counterCount++;
+            return 1;
+        }
+        decrementAll();
+        return 0;
+    }
+
+    /**
+     * Decrements every counter and drops the ones reaching 0. Since the sum of the counters is at most the length
+     * of the stream, this happens at most n/k times.
+     */
+    private void decrementAll() {
+        int[] oldKeys = counterKeys;
+        int[] oldCounts = counts;
+        counterKeys = new int[oldKeys.length];
+        counts = new int[oldCounts.length];
+        counterCount = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] > 1) {
+                int slot = mix(oldKeys[i]) & counterMask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & counterMask;
+                }
+                counterKeys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i] - 1;
+                counterCount++;
+            }
+        }
+    }
+
+    private void markHeavy(int key) {
+        int slot = mix(key) & heavyMask;
+        while (heavySlots[slot]) {
+            slot = (slot + 1) & heavyMask;
+        }
+        heavyKeys[slot] = key;
+        heavySlots[slot] = true;
+        heavyKeyCount++;
+    }
+
+    /**
+     * @return a power of two leaving at least half of the slots empty for the given number of keys
+     */
+    private static int tableSizeFor(int keyCount) {
+        return Integer.highestOneBit(Math.max(1, keyCount) * 2 - 1) << 1;
+    }
+
+    private static int mix(int key) {
+        // the finalizer of MurmurHash3, since the keys might be hashes taken modulo a partition count
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        key ^= key >>> 16;
+        return key;
+    }
+}
@@ -16,17 +16,7 @@ package org.apache.hyracks.dataflow.std.structures;
 
 import org.apache.hyracks.api.exceptions.HyracksDataException;
 
-public interface ISerializableTable {
+public interface ISerializableTable extends ITuplePointerTable {
 
     public void insert(int entry, TuplePointer tuplePointer) throws HyracksDataException;
-
-    public void getTuplePointer(int entry, int offset, TuplePointer tuplePointer);
-
-    public int getFrameCount();
-
-    public int getTupleCount();
-
-    public void reset();
-
-    public void close();
 }
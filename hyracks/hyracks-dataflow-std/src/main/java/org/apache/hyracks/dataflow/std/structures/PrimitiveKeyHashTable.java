@@ -0,0 +1,259 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.dataflow.std.structures;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.ITypeTraits;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * An open-addressing hash table for a single fixed-width key of at most 8 bytes. Every slot stores the key inline
+ * next to the tuple pointer, so a lookup never touches the frames of the stored tuples and needs neither the hash
+ * function nor the comparator of the key type: two keys are equal iff their bytes are equal. Duplicate keys take one
+ * slot each.
+ * The slots live in frames allocated from the task context, like the ones of {@link SerializableHashTable}. Seen as an
+ * {@link ITuplePointerTable}, every slot is an entry that holds at most one tuple.
+ */
+public class PrimitiveKeyHashTable implements ITuplePointerTable {
+
+    public static final int MAX_KEY_LENGTH = 8;
+
+    // key (8 bytes), frame index + 1 (4 bytes, 0 marks an empty slot), tuple index (4 bytes)
+    private static final int SLOT_SIZE = 16;
+    private static final int FRAME_OFFSET = 8;
+    private static final int TUPLE_OFFSET = 12;
+
+    private final IHyracksTaskContext ctx;
+    private final int keyLength;
+    private final int slotsPerFrame;
+    private ByteBuffer[] frames;
+    private int capacity;
+    private int mask;
+    private int tupleCount;
+
+    public PrimitiveKeyHashTable(IHyracksTaskContext ctx, int keyLength, int expectedTupleCount)
+            throws HyracksDataException {
+        if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH) {
+            throw new HyracksDataException("Unsupported key length for a primitive key hash table: " + keyLength);
+        }
+        this.ctx = ctx;
+        this.keyLength = keyLength;
+        this.slotsPerFrame = ctx.getInitialFrameSize() / SLOT_SIZE;
+        allocate(getCapacityFor(expectedTupleCount));
+    }
+
+    /**
+     * @return the length of the only key field if the keys can be stored in a {@link PrimitiveKeyHashTable}, or -1 if
+     *         they cannot. The type traits of the record descriptor decide: the key has to have a fixed length of at
+     *         most {@link #MAX_KEY_LENGTH} bytes. Fixed-length values are taken to be equal iff their bytes are equal,
+     *         as it is the case for the number types, NaN keys aside.
+     */
+    public static int getKeyLength(RecordDescriptor recordDescriptor, int[] keyFields) {
+        ITypeTraits[] typeTraits = recordDescriptor.getTypeTraits();
+        if (keyFields.length != 1 || typeTraits == null) {
+            return -1;
+        }
+        ITypeTraits keyTraits = typeTraits[keyFields[0]];
+        if (keyTraits == null || !keyTraits.isFixedLength() || keyTraits.getFixedLength() <= 0
+                || keyTraits.getFixedLength() > MAX_KEY_LENGTH) {
+            return -1;
+        }
+        return keyTraits.getFixedLength();
+    }
+
+    /**
+     * Reads the key field of the given tuple as a long. The field has to be as long as the keys of this table.
+     */
+    public long getKey(IFrameTupleAccessor accessor, int tIndex, int keyField) {
+        byte[] bytes = accessor.getBuffer().array();
+        int offset = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(tIndex, keyField);
+        long key = 0;
+        for (int i = 0; i < keyLength; i++) {
+            key = (key << 8) | (bytes[offset + i] & 0xff);
+        }
+        return key;
+    }
+
+    public void put(long key, TuplePointer tuplePointer) throws HyracksDataException {
+        if (tupleCount + 1 > capacity - (capacity >>> 2)) {
+            rehash(capacity << 1);
+        }
+        int slot = hash(key) & mask;
+        while (isOccupied(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        write(slot, key, tuplePointer.frameIndex, tuplePointer.tupleIndex);
+        tupleCount++;
+    }
+
+    /**
+     * @return the first slot holding the given key, or -1 if there is none
+     */
+    public int findFirst(long key) {
+        return find(key, hash(key) & mask);
+    }
+
+    /**
+     * @return the next slot after the given one holding the given key, or -1 if there is none
+     */
+    public int findNext(long key, int slot) {
+        return find(key, (slot + 1) & mask);
+    }
+
+    private int find(long key, int slot) {
+        while (isOccupied(slot)) {
+            ByteBuffer frame = frames[slot / slotsPerFrame];
+            if (frame.getLong((slot % slotsPerFrame) * SLOT_SIZE) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of slots, i.e. the number of entries seen through {@link ITuplePointerTable}
+     */
+    public int getTableSize() {
+        return capacity;
+    }
+
+    /**
+     * Entries are slots, so only the offset 0 of an entry can hold a tuple.
+     */
+    @Override
+    public void getTuplePointer(int entry, int offset, TuplePointer tuplePointer) {
+        if (offset != 0 || !isOccupied(entry)) {
+            tuplePointer.frameIndex = -1;
+            tuplePointer.tupleIndex = -1;
+            return;
+        }
+        ByteBuffer frame = frames[entry / slotsPerFrame];
+        int slotOffset = (entry % slotsPerFrame) * SLOT_SIZE;
+        tuplePointer.frameIndex = frame.getInt(slotOffset + FRAME_OFFSET) - 1;
+        tuplePointer.tupleIndex = frame.getInt(slotOffset + TUPLE_OFFSET);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    @Override
+    public int getTupleCount() {
+        return tupleCount;
+    }
+
+    @Override
+    public void reset() {
+        for (ByteBuffer frame : frames) {
+            Arrays.fill(frame.array(), (byte) 0);
+        }
+        tupleCount = 0;
+    }
+
+    @Override
+    public void close() {
+        release(frames);
+        frames = new ByteBuffer[0];
+        capacity = 0;
+        mask = -1;
+        tupleCount = 0;
+    }
+
+    private boolean isOccupied(int slot) {
+        return frames[slot / slotsPerFrame].getInt((slot % slotsPerFrame) * SLOT_SIZE + FRAME_OFFSET) != 0;
+    }
+
+    private void write(int slot, long key, int frameIndex, int tupleIndex) {
+        ByteBuffer frame = frames[slot / slotsPerFrame];
+        int slotOffset = (slot % slotsPerFrame) * SLOT_SIZE;
+        frame.putLong(slotOffset, key);
+        frame.putInt(slotOffset + FRAME_OFFSET, frameIndex + 1);
+        frame.putInt(slotOffset + TUPLE_OFFSET, tupleIndex);
+    }
+
+    private void allocate(int newCapacity) throws HyracksDataException {
+        int nFrames = (newCapacity + slotsPerFrame - 1) / slotsPerFrame;
+        ByteBuffer[] newFrames = new ByteBuffer[nFrames];
+        try {
+            for (int i = 0; i < nFrames; i++) {
+                newFrames[i] = ctx.allocateFrame();
+                Arrays.fill(newFrames[i].array(), (byte) 0);
+            }
+        } catch (HyracksDataException e) {
+            release(newFrames);
+            throw e;
+        }
+        frames = newFrames;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+    }
+
+    private void rehash(int newCapacity) throws HyracksDataException {
+        ByteBuffer[] oldFrames = frames;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer frame = oldFrames[slot / slotsPerFrame];
+            int slotOffset = (slot % slotsPerFrame) * SLOT_SIZE;
+            int frameIndex = frame.getInt(slotOffset + FRAME_OFFSET);
+            if (frameIndex == 0) {
+                continue;
+            }
+            long key = frame.getLong(slotOffset);
+            int newSlot = hash(key) & mask;
+            while (isOccupied(newSlot)) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            write(newSlot, key, frameIndex - 1, frame.getInt(slotOffset + TUPLE_OFFSET));
+        }
+        release(oldFrames);
+    }
+
+    private void release(ByteBuffer[] toRelease) {
+        for (ByteBuffer frame : toRelease) {
+            if (frame != null) {
+                ctx.deallocateFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * Keeps the load factor at most 1/2 for the expected number of tuples; the capacity is a power of two that fills
+     * at least one frame.
+     */
+    private int getCapacityFor(int expectedTupleCount) {
+        int minCapacity = Math.max(slotsPerFrame, expectedTupleCount * 2);
+        int newCapacity = Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1;
+        return Math.max(newCapacity, 2);
+    }
+
+    private static int hash(long key) {
+        // the finalizer of MurmurHash3, so that keys differing only in their high bits still spread over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -136,14 +136,15 @@ public class SerializableHashTable implements ISerializableTable {
 
     @Override
     public void close() {
-        int nFrames = contents.size();
+        int nFrames = contents.size() + headerFrameCount;
     	for (int i = 0; i < headers.length; i++)
             headers[i] = null;
         contents.clear();
         frameCurrentIndex.clear();
         tupleCount = 0;
+        headerFrameCount = 0;
         currentLargestFrameIndex = 0;
-        ctx.deallocateFrames(nFrames);
+        ctx.deallocateFrames(nFrames * ctx.getInitialFrameSize());
     }
 
     private void insertNewEntry(IntSerDeBuffer header, int headerOffset, int entryCapacity, TuplePointer pointer)
@@ -212,8 +213,8 @@ public class SerializableHashTable implements ISerializableTable {
             frame.writeInt(startIndex + 1, pointer.tupleIndex);
         } else {
             int capacity = (entryItems + 1) * 2;
-            header.writeInt(headerOffset, -1);
-            header.writeInt(headerOffset + 1, -1);
+            // the header keeps pointing to the old entry until the new one is allocated, so that a refused frame
+            // leaves the table intact
             int fIndex = frame.getInt(offsetIndex + 2);
             int tIndex = frame.getInt(offsetIndex + 3);
             tempTuplePointer.frameIndex = fIndex;
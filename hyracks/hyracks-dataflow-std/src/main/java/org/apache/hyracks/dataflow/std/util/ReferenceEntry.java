@@ -15,14 +15,17 @@
 package org.apache.hyracks.dataflow.std.util;
 
 import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.dataflow.value.IMultiFieldNormalizedKeyComputer;
 import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.normalizers.MultiFieldNormalizedKeyComputerFactory;
 
 public class ReferenceEntry {
     private final int runid;
     private IFrameTupleAccessor acccessor;
     private int tupleIndex;
     private int[] tPointers;
+    private final int[] normalizedKeys;
 
     public ReferenceEntry(int runid, FrameTupleAccessor fta, int tupleIndex, int[] keyFields,
             INormalizedKeyComputer nmkComputer) {
@@ -30,6 +33,9 @@ public class ReferenceEntry {
         this.runid = runid;
         this.acccessor = fta;
         this.tPointers = new int[1 + 2 * keyFields.length];
+        this.normalizedKeys = new int[nmkComputer instanceof IMultiFieldNormalizedKeyComputer
+                ? MultiFieldNormalizedKeyComputerFactory.getPrefixLength(
+                        (IMultiFieldNormalizedKeyComputer) nmkComputer, keyFields.length) : 0];
         if (fta != null) {
             initTPointer(fta, tupleIndex, keyFields, nmkComputer);
         }
@@ -59,6 +65,14 @@ public class ReferenceEntry {
         return tPointers[0];
     }
 
+    /**
+     * @return the normalized key prefix of the current tuple, empty unless the entry was created with an
+     *         {@link IMultiFieldNormalizedKeyComputer}
+     */
+    public int[] getNormalizedKeys() {
+        return normalizedKeys;
+    }
+
     public void setTupleIndex(int tupleIndex, int[] keyFields, INormalizedKeyComputer nmkComputer) {
         initTPointer(acccessor, tupleIndex, keyFields, nmkComputer);
     }
@@ -71,13 +85,18 @@ public class ReferenceEntry {
             int fIdx = keyFields[f];
             tPointers[2 * f + 1] = fta.getAbsoluteFieldStartOffset(tupleIndex, fIdx);
             tPointers[2 * f + 2] = fta.getFieldLength(tupleIndex, fIdx);
-            if (f == 0) {
-                if (nmkComputer != null) {
-                    tPointers[0] = nmkComputer.normalize(b1, tPointers[1], tPointers[2]);
-                } else {
-                    tPointers[0] = 0;
-                }
+        }
+        if (normalizedKeys.length > 0) {
+            IMultiFieldNormalizedKeyComputer mfNmkComputer = (IMultiFieldNormalizedKeyComputer) nmkComputer;
+            for (int k = 0; k < normalizedKeys.length; ++k) {
+                int f = mfNmkComputer.getKeyField(k);
+                normalizedKeys[k] = mfNmkComputer.normalize(k, b1, tPointers[2 * f + 1], tPointers[2 * f + 2]);
             }
+            tPointers[0] = normalizedKeys[0];
+        } else if (nmkComputer != null && keyFields.length > 0) {
+            tPointers[0] = nmkComputer.normalize(b1, tPointers[1], tPointers[2]);
+        } else {
+            tPointers[0] = 0;
         }
     }
 }
\ No newline at end of file
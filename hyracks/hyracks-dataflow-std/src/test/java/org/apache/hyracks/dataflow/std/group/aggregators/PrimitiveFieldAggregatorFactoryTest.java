@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.dataflow.std.group.aggregators;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.FixedSizeFrame;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.primitive.DoublePointable;
+import org.apache.hyracks.data.std.primitive.LongPointable;
+import org.apache.hyracks.data.std.util.ArrayBackedValueStorage;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.data.marshalling.DoubleSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.Integer64SerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.std.group.AggregateState;
+import org.apache.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
+import org.apache.hyracks.dataflow.std.group.aggregators.PrimitiveFieldAggregatorFactory.FieldType;
+import org.apache.hyracks.dataflow.std.group.aggregators.PrimitiveFieldAggregatorFactory.Function;
+
+public class PrimitiveFieldAggregatorFactoryTest {
+    static final long[] LONGS = new long[] { 7, -3, 12, 0, 5 };
+    static final double[] DOUBLES = new double[] { 1.5, -2.25, 8.0, 0.5 };
+
+    RecordDescriptor int64Desc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, Integer64SerializerDeserializer.INSTANCE });
+    RecordDescriptor doubleDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE });
+
+    FrameTupleAccessor makeFrame(RecordDescriptor recordDescriptor, Object[] values) throws HyracksDataException {
+        FrameTupleAppender appender = new FrameTupleAppender(new FixedSizeFrame(ByteBuffer.allocate(1024)), true);
+        ArrayTupleBuilder builder = new ArrayTupleBuilder(2);
+        for (int i = 0; i < values.length; i++) {
+            builder.reset();
+            builder.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            builder.addField(recordDescriptor.getFields()[1], values[i]);
+            appender.append(builder.getFieldEndOffsets(), builder.getByteArray(), 0, builder.getSize());
+        }
+        FrameTupleAccessor accessor = new FrameTupleAccessor(recordDescriptor);
+        accessor.reset(appender.getBuffer());
+        return accessor;
+    }
+
+    FrameTupleAccessor makeInt64Frame() throws HyracksDataException {
+        Object[] values = new Object[LONGS.length];
+        for (int i = 0; i < LONGS.length; i++) {
+            values[i] = LONGS[i];
+        }
+        return makeFrame(int64Desc, values);
+    }
+
+    FrameTupleAccessor makeDoubleFrame() throws HyracksDataException {
+        Object[] values = new Object[DOUBLES.length];
+        for (int i = 0; i < DOUBLES.length; i++) {
+            values[i] = DOUBLES[i];
+        }
+        return makeFrame(doubleDesc, values);
+    }
+
+    /**
+     * Aggregates all the tuples of the frame into one group and returns its final result.
+     */
+    byte[] aggregate(FieldType type, Function function, FrameTupleAccessor accessor) throws HyracksDataException {
+        IFieldAggregateDescriptor aggregator = new PrimitiveFieldAggregatorFactory(1, type, function)
+                .createAggregator(null, null, null);
+        AggregateState state = aggregator.createState();
+        ArrayBackedValueStorage stateStorage = new ArrayBackedValueStorage();
+        aggregator.init(accessor, 0, stateStorage.getDataOutput(), state);
+        for (int i = 1; i < accessor.getTupleCount(); i++) {
+            aggregator.aggregate(accessor, i, stateStorage.getByteArray(), 0, state);
+        }
+        ArrayBackedValueStorage result = new ArrayBackedValueStorage();
+        aggregator.outputFinalResult(result.getDataOutput(), stateStorage.getByteArray(), 0, state);
+        assertEquals(function == Function.AVG ? 8 : stateStorage.getLength(), result.getLength());
+        return result.getByteArray();
+    }
+
+    @Test
+    public void testInt64() throws Exception {
+        FrameTupleAccessor accessor = makeInt64Frame();
+        assertEquals(21, LongPointable.getLong(aggregate(FieldType.INT64, Function.SUM, accessor), 0));
+        assertEquals(-3, LongPointable.getLong(aggregate(FieldType.INT64, Function.MIN, accessor), 0));
+        assertEquals(12, LongPointable.getLong(aggregate(FieldType.INT64, Function.MAX, accessor), 0));
+        assertEquals(5, LongPointable.getLong(aggregate(FieldType.INT64, Function.COUNT, accessor), 0));
+        assertEquals(4.2, DoublePointable.getDouble(aggregate(FieldType.INT64, Function.AVG, accessor), 0), 0.0);
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        FrameTupleAccessor accessor = makeDoubleFrame();
+        assertEquals(7.75, DoublePointable.getDouble(aggregate(FieldType.DOUBLE, Function.SUM, accessor), 0), 0.0);
+        assertEquals(-2.25, DoublePointable.getDouble(aggregate(FieldType.DOUBLE, Function.MIN, accessor), 0), 0.0);
+        assertEquals(8.0, DoublePointable.getDouble(aggregate(FieldType.DOUBLE, Function.MAX, accessor), 0), 0.0);
+        assertEquals(4, LongPointable.getLong(aggregate(FieldType.DOUBLE, Function.COUNT, accessor), 0));
+        assertEquals(1.9375, DoublePointable.getDouble(aggregate(FieldType.DOUBLE, Function.AVG, accessor), 0),
+                0.0);
+    }
+
+    @Test
+    public void testMergeAvgPartials() throws Exception {
+        FrameTupleAccessor accessor = makeInt64Frame();
+        IFieldAggregateDescriptor aggregator = new PrimitiveFieldAggregatorFactory(1, FieldType.INT64, Function.AVG)
+                .createAggregator(null, null, null);
+        AggregateState state = aggregator.createState();
+
+        // Two partial results: the first two tuples and the last three.
+        FrameTupleAppender appender = new FrameTupleAppender(new FixedSizeFrame(ByteBuffer.allocate(1024)), true);
+        ArrayTupleBuilder builder = new ArrayTupleBuilder(2);
+        ArrayBackedValueStorage stateStorage = new ArrayBackedValueStorage();
+        int[][] ranges = new int[][] { { 0, 2 }, { 2, LONGS.length } };
+        for (int[] range : ranges) {
+            stateStorage.reset();
+            aggregator.init(accessor, range[0], stateStorage.getDataOutput(), state);
+            for (int i = range[0] + 1; i < range[1]; i++) {
+                aggregator.aggregate(accessor, i, stateStorage.getByteArray(), 0, state);
+            }
+            builder.reset();
+            builder.addField(IntegerSerializerDeserializer.INSTANCE, 0);
+            aggregator.outputPartialResult(builder.getDataOutput(), stateStorage.getByteArray(), 0, state);
+            builder.addFieldEndOffset();
+            appender.append(builder.getFieldEndOffsets(), builder.getByteArray(), 0, builder.getSize());
+        }
+        FrameTupleAccessor partialAccessor = new FrameTupleAccessor(int64Desc);
+        partialAccessor.reset(appender.getBuffer());
+        assertEquals(16, partialAccessor.getFieldLength(0, 1));
+
+        IFieldAggregateDescriptor merger = new PrimitiveFieldAggregatorFactory(1, FieldType.INT64, Function.AVG, true)
+                .createAggregator(null, null, null);
+        stateStorage.reset();
+        merger.init(partialAccessor, 0, stateStorage.getDataOutput(), state);
+        merger.aggregate(partialAccessor, 1, stateStorage.getByteArray(), 0, state);
+        assertEquals(21, LongPointable.getLong(stateStorage.getByteArray(), 0));
+        assertEquals(5, LongPointable.getLong(stateStorage.getByteArray(), 8));
+        ArrayBackedValueStorage result = new ArrayBackedValueStorage();
+        merger.outputFinalResult(result.getDataOutput(), stateStorage.getByteArray(), 0, state);
+        assertEquals(4.2, DoublePointable.getDouble(result.getByteArray(), 0), 0.0);
+    }
+}
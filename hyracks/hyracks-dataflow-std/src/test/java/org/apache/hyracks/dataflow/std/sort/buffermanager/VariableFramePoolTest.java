@@ -29,6 +29,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -36,6 +37,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
+import org.apache.hyracks.control.nc.resources.memory.FrameManager;
+import org.apache.hyracks.control.nc.resources.memory.FramePool;
+import org.apache.hyracks.control.nc.resources.memory.MemoryManager;
 
 public class VariableFramePoolTest {
 
@@ -130,6 +135,66 @@ public class VariableFramePoolTest {
         pool.reset();
     }
 
+    @Test
+    public void testShouldShrinkBudgetIfNodeMemoryIsExhausted() throws HyracksDataException {
+        final MemoryManager memoryManager = new MemoryManager(4 * MIN_FRAME_SIZE);
+        FrameManager frameManager = new FrameManager(MIN_FRAME_SIZE) {
+            @Override
+            public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+                if (!memoryManager.allocate(bytes)) {
+                    throw new InsufficientMemoryException("Not enough memory");
+                }
+                return super.allocateFrame(bytes);
+            }
+
+            @Override
+            public void deallocateFrame(ByteBuffer frame) {
+                memoryManager.deallocate(frame.capacity());
+            }
+        };
+        VariableFramePool limitedPool = new VariableFramePool(frameManager, BUDGET);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(limitedPool.allocateFrame(MIN_FRAME_SIZE));
+        }
+        assertNull(limitedPool.allocateFrame(MIN_FRAME_SIZE));
+        assertEquals(4 * MIN_FRAME_SIZE, limitedPool.getMemoryBudgetBytes());
+
+        limitedPool.reset();
+        ByteBuffer buffer = limitedPool.allocateFrame(2 * MIN_FRAME_SIZE);
+        assertNotNull(buffer);
+        assertEquals(2 * MIN_FRAME_SIZE, buffer.capacity());
+        assertEquals(0, memoryManager.getAvailableMemory());
+        limitedPool.close();
+        assertEquals(4 * MIN_FRAME_SIZE, memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testCloseShouldRecycleFramesThroughFramePool() throws HyracksDataException {
+        FrameManager frameManager = new FrameManager(MIN_FRAME_SIZE, new FramePool(BUDGET, true));
+        VariableFramePool recyclingPool = new VariableFramePool(frameManager, BUDGET);
+        // ByteBuffer.hashCode() depends on the content, which changes when a frame is recycled.
+        Set<ByteBuffer> set = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        for (int i = 0; i < NUM_MIN_FRAME; i++) {
+            ByteBuffer buffer = recyclingPool.allocateFrame(MIN_FRAME_SIZE);
+            buffer.put(MIN_FRAME_SIZE - 1, (byte) 1);
+            set.add(buffer);
+        }
+        recyclingPool.close();
+        for (int i = 0; i < NUM_MIN_FRAME; i++) {
+            ByteBuffer buffer = recyclingPool.allocateFrame(MIN_FRAME_SIZE);
+            assertTrue(set.contains(buffer));
+            assertEquals(0, buffer.get(MIN_FRAME_SIZE - 1));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFramePoolShouldRejectDoubleRelease() throws HyracksDataException {
+        FrameManager frameManager = new FrameManager(MIN_FRAME_SIZE, new FramePool(BUDGET, true));
+        ByteBuffer buffer = frameManager.allocateFrame();
+        frameManager.deallocateFrame(buffer);
+        frameManager.deallocateFrame(buffer);
+    }
+
     private void testAllocateShouldFailAfterAllSpaceGetUsed() throws HyracksDataException {
         for (int i = 0; i < NUM_MIN_FRAME; i++) {
             assertNull(pool.allocateFrame(MIN_FRAME_SIZE));
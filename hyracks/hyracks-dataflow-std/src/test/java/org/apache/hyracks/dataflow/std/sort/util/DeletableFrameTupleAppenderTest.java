@@ -230,4 +230,43 @@ public class DeletableFrameTupleAppenderTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCompact() throws Exception {
+        int count = 10;
+        ByteBuffer buffer = makeAFrame(cap, count, 0);
+        appender.reset(buffer);
+        int[] deleteSet = new int[] { 0, 3, 4, 9 };
+        int deleteSpace = 0;
+        for (int i = 0; i < deleteSet.length; i++) {
+            deleteSpace += assertDeleteSucceed(deleteSet[i], appender.getContiguousFreeSpace(), deleteSpace);
+        }
+        int totalFreeSpace = appender.getTotalFreeSpace();
+
+        int[] newTids = new int[count];
+        appender.compact(newTids);
+        assertEquals(count - deleteSet.length, appender.getTupleCount());
+        assertEquals(totalFreeSpace + deleteSet.length * 4, appender.getContiguousFreeSpace());
+        assertEquals(appender.getContiguousFreeSpace(), appender.getTotalFreeSpace());
+
+        int dataOffset = 0;
+        int expectedTid = 0;
+        for (int i = 0; i < count; i++) {
+            if (ArrayUtils.contains(deleteSet, i)) {
+                assertEquals(-1, newTids[i]);
+                continue;
+            }
+            int tid = newTids[i];
+            assertEquals(expectedTid++, tid);
+            assertEquals(dataOffset, appender.getTupleStartOffset(tid));
+            assertEquals(i + 1,
+                    IntSerDeUtils.getInt(appender.getBuffer().array(), appender.getAbsoluteFieldStartOffset(tid, 0)));
+            assertEquals(2 + i + 1, appender.getFieldLength(tid, 1));
+            dataOffset += appender.getTupleLength(tid);
+        }
+
+        appender.reset(buffer);
+        assertEquals(count - deleteSet.length, appender.getTupleCount());
+        assertEquals(totalFreeSpace + deleteSet.length * 4, appender.getTotalFreeSpace());
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.dataflow.std.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HeavyHitterSketchTest {
+
+    @Test
+    public void testUniformKeysAreNotHeavy() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(64, 32, 32);
+        for (int i = 0; i < 100000; i++) {
+            assertFalse(sketch.add(i % 1000));
+        }
+        assertEquals(0, sketch.getHeavyKeyCount());
+    }
+
+    @Test
+    public void testDominatingKeysBecomeHeavy() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(64, 32, 32);
+        Random random = new Random(17);
+        int heavyCount = 0;
+        for (int i = 0; i < 100000; i++) {
+            // a third of the keys are 7, a tenth are -7, the others are spread over a million keys
+            int r = random.nextInt(30);
+            int key = r < 10 ? 7 : (r < 13 ? -7 : random.nextInt(1000000));
+            if (sketch.add(key) && key == 7) {
+                heavyCount++;
+            }
+        }
+        assertTrue(sketch.isHeavy(7));
+        assertTrue(sketch.isHeavy(-7));
+        assertEquals(2, sketch.getHeavyKeyCount());
+        // the key is heavy after a few hundred tuples at most
+        assertTrue(heavyCount > 33000);
+        assertEquals(100000, sketch.getStreamLength());
+    }
+
+    @Test
+    public void testNumberOfHeavyKeysIsBounded() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(8, 1, 2);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(i % 4);
+        }
+        assertEquals(2, sketch.getHeavyKeyCount());
+        assertFalse(sketch.isHeavy(2) && sketch.isHeavy(3) && sketch.isHeavy(0));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.test.support.TestUtils;
+
+/**
+ * Base of the tests that feed operators with frames prepared in memory.
+ */
+public abstract class AbstractFrameTest {
+    static TestUtils testUtils = new TestUtils();
+
+    /**
+     * @return frames holding one (key, valuePrefix + i) tuple for the i-th key
+     */
+    static List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, List<Integer> keys, String valuePrefix)
+            throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, 2);
+        for (int i = 0; i < keys.size(); i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, keys.get(i));
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, valuePrefix + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    /**
+     * Appends tuples to frames of the initial frame size, and keeps a copy of every full frame.
+     */
+    static class FrameListBuilder {
+        private final IHyracksTaskContext ctx;
+        private final ArrayTupleBuilder tb;
+        private final FrameTupleAppender appender;
+        private final List<ByteBuffer> frames = new ArrayList<>();
+
+        FrameListBuilder(IHyracksTaskContext ctx, int fieldCount) throws HyracksDataException {
+            this.ctx = ctx;
+            this.tb = new ArrayTupleBuilder(fieldCount);
+            this.appender = new FrameTupleAppender(new VSizeFrame(ctx));
+        }
+
+        /**
+         * @return the reset tuple builder, whose fields are appended by {@link #appendTuple()}
+         */
+        ArrayTupleBuilder newTuple() {
+            tb.reset();
+            return tb;
+        }
+
+        void appendTuple() throws HyracksDataException {
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                frames.add(copyFrame());
+                appender.reset(new VSizeFrame(ctx), true);
+                assertTrue(appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize()));
+            }
+        }
+
+        List<ByteBuffer> getFrames() throws HyracksDataException {
+            frames.add(copyFrame());
+            return frames;
+        }
+
+        private ByteBuffer copyFrame() throws HyracksDataException {
+            ByteBuffer copy = ctx.allocateFrame(appender.getBuffer().capacity());
+            copy.put(appender.getBuffer().array(), 0, appender.getBuffer().capacity());
+            copy.flip();
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.exceptions.HyracksException;
+import org.apache.hyracks.api.exceptions.InsufficientMemoryException;
+import org.apache.hyracks.api.resources.memory.IMemoryManager;
+import org.apache.hyracks.data.std.accessors.MurmurHash3BinaryHashFunctionFamily;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
+import org.apache.hyracks.dataflow.std.join.InMemoryHashJoin;
+import org.apache.hyracks.dataflow.std.join.OptimizedHybridHashJoin;
+import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+import org.apache.hyracks.test.support.TestJobletContext;
+import org.apache.hyracks.test.support.TestTaskContext;
+
+public class AdaptiveHybridHashJoinTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static int[] KeyFields = new int[] { 0 };
+    static IBinaryHashFunctionFamily[] HashFunctionFamilies = new IBinaryHashFunctionFamily[] {
+            MurmurHash3BinaryHashFunctionFamily.INSTANCE };
+
+    static final int NUM_KEYS = 4000;
+    static final int NUM_PARTITIONS = 32;
+    static final int MEMORY_FRAMES = 64;
+
+    @Test
+    public void testSmallSpilledPartitionsAreMerged() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(ctx, hhj, counter);
+
+        // the partitions are far smaller than the memory, so the spilled ones fit in groups of several partitions
+        BitSet spilled = hhj.getPartitionStatus();
+        assertTrue(hhj.getNumOfMergedPartitions() > 0);
+        assertTrue(spilled.cardinality() > 0);
+        int buildTuples = 0;
+        for (int pid = 0; pid < NUM_PARTITIONS; pid++) {
+            buildTuples += hhj.getBuildPartitionSizeInTup(pid);
+        }
+        assertEquals(NUM_KEYS, buildTuples);
+
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(NUM_KEYS, counter.matches);
+    }
+
+    @Test
+    public void testMemoryGrowsWithSpareNodeMemory() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        FixedMemoryManager memoryManager = new FixedMemoryManager(1 << 30, 1 << 30);
+        hhj.setMemoryGrowth(memoryManager, 4 * MEMORY_FRAMES);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(ctx, hhj, counter);
+        assertTrue(hhj.getMemForJoin() > MEMORY_FRAMES);
+        // the grown frames were reserved from the node and are given back when the probe closes
+        assertEquals(1 << 30, memoryManager.getAvailableMemory());
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(NUM_KEYS, counter.matches);
+    }
+
+    @Test
+    public void testMemoryStaysWithoutSpareNodeMemory() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        hhj.setMemoryGrowth(new FixedMemoryManager(1 << 30, 1 << 28), 4 * MEMORY_FRAMES);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(ctx, hhj, counter);
+        assertEquals(MEMORY_FRAMES, hhj.getMemForJoin());
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(NUM_KEYS, counter.matches);
+    }
+
+    @Test
+    public void testMemoryStaysWhenReservationFails() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        // reports spare memory, but another task has taken it by the time the join reserves
+        hhj.setMemoryGrowth(new FixedMemoryManager(1 << 30, 1 << 30) {
+            @Override
+            public synchronized boolean allocate(long memory) {
+                return false;
+            }
+        }, 4 * MEMORY_FRAMES);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(ctx, hhj, counter);
+        assertEquals(MEMORY_FRAMES, hhj.getMemForJoin());
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(NUM_KEYS, counter.matches);
+    }
+
+    @Test
+    public void testJoinSpillsWhenFramesAreRefused() throws HyracksException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        // the task may hold fewer frames than the join is given
+        BudgetTaskContext joinCtx = new BudgetTaskContext(ctx, (MEMORY_FRAMES - NUM_PARTITIONS / 2) * 256);
+        OptimizedHybridHashJoin hhj = createJoin(joinCtx);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(ctx, hhj, counter);
+        assertTrue(hhj.getMemForJoin() < MEMORY_FRAMES);
+        assertTrue(hhj.getPartitionStatus().cardinality() > 0);
+        // all the frames of the join are returned once the probe is closed
+        assertEquals(0, joinCtx.allocated);
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(NUM_KEYS, counter.matches);
+    }
+
+    private OptimizedHybridHashJoin createJoin(IHyracksTaskContext ctx) {
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(0);
+        return new OptimizedHybridHashJoin(ctx, MEMORY_FRAMES, NUM_PARTITIONS, "RelR", "RelS", KeyFields, KeyFields,
+                comparators, RecordDesc, RecordDesc, hpc, hpc, null);
+    }
+
+    private void joinInMemory(IHyracksTaskContext ctx, OptimizedHybridHashJoin hhj, MatchCounter counter)
+            throws HyracksDataException {
+        hhj.initBuild();
+        for (ByteBuffer buffer : prepareFrames(ctx)) {
+            hhj.build(buffer);
+        }
+        hhj.closeBuild();
+        hhj.initProbe();
+        for (ByteBuffer buffer : prepareFrames(ctx)) {
+            hhj.probe(buffer, counter);
+        }
+        hhj.closeProbe(counter);
+    }
+
+    private void joinSpilledPartitions(IHyracksTaskContext ctx, OptimizedHybridHashJoin hhj, MatchCounter counter)
+            throws HyracksDataException {
+        BitSet spilled = hhj.getPartitionStatus();
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(1);
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        IFrame frame = new VSizeFrame(ctx);
+        for (int pid = spilled.nextSetBit(0); pid >= 0; pid = spilled.nextSetBit(pid + 1)) {
+            IFrameReader buildReader = hhj.getBuildRFReader(pid);
+            IFrameReader probeReader = hhj.getProbeRFReader(pid);
+            if (buildReader == null || probeReader == null) {
+                continue;
+            }
+            int tableSize = 2 * NUM_KEYS;
+            InMemoryHashJoin joiner = new InMemoryHashJoin(ctx, tableSize, new FrameTupleAccessor(RecordDesc), hpc,
+                    new FrameTupleAccessor(RecordDesc), hpc, new FrameTuplePairComparator(KeyFields, KeyFields,
+                            comparators), false, null, new SerializableHashTable(tableSize, ctx), null);
+            buildReader.open();
+            while (buildReader.nextFrame(frame)) {
+                ByteBuffer copy = ctx.allocateFrame(frame.getFrameSize());
+                FrameUtils.copyAndFlip(frame.getBuffer(), copy);
+                joiner.build(copy);
+                frame.reset();
+            }
+            buildReader.close();
+            probeReader.open();
+            while (probeReader.nextFrame(frame)) {
+                joiner.join(frame.getBuffer(), counter);
+                frame.reset();
+            }
+            probeReader.close();
+            joiner.closeJoin(counter);
+        }
+    }
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx) throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < NUM_KEYS; i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "v" + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    private static class FixedMemoryManager implements IMemoryManager {
+        private final long maximumMemory;
+        private long availableMemory;
+
+        FixedMemoryManager(long maximumMemory, long availableMemory) {
+            this.maximumMemory = maximumMemory;
+            this.availableMemory = availableMemory;
+        }
+
+        @Override
+        public long getMaximumMemory() {
+            return maximumMemory;
+        }
+
+        @Override
+        public long getAvailableMemory() {
+            return availableMemory;
+        }
+
+        @Override
+        public synchronized boolean allocate(long memory) {
+            if (memory > availableMemory) {
+                return false;
+            }
+            availableMemory -= memory;
+            return true;
+        }
+
+        @Override
+        public synchronized void deallocate(long memory) {
+            availableMemory += memory;
+        }
+    }
+
+    private static class BudgetTaskContext extends TestTaskContext {
+        private final long budget;
+        private long allocated;
+
+        BudgetTaskContext(IHyracksTaskContext ctx, long budget) throws HyracksException {
+            super((TestJobletContext) ctx.getJobletContext(), ctx.getTaskAttemptId());
+            this.budget = budget;
+        }
+
+        private void reserve(long bytes) throws HyracksDataException {
+            if (allocated + bytes > budget) {
+                throw new InsufficientMemoryException("Unable to allocate frame: Not enough memory");
+            }
+            allocated += bytes;
+        }
+
+        @Override
+        public ByteBuffer allocateFrame() throws HyracksDataException {
+            reserve(getInitialFrameSize());
+            return super.allocateFrame();
+        }
+
+        @Override
+        public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+            reserve(bytes);
+            return super.allocateFrame(bytes);
+        }
+
+        @Override
+        public ByteBuffer reallocateFrame(ByteBuffer usedBuffer, int newSizeInBytes, boolean copyOldData)
+                throws HyracksDataException {
+            reserve(newSizeInBytes - usedBuffer.capacity());
+            return super.reallocateFrame(usedBuffer, newSizeInBytes, copyOldData);
+        }
+
+        @Override
+        public void deallocateFrames(int bytes) {
+            allocated -= bytes;
+            super.deallocateFrames(bytes);
+        }
+
+        @Override
+        public void deallocateFrame(ByteBuffer frame) {
+            allocated -= frame.capacity();
+            super.deallocateFrame(frame);
+        }
+    }
+
+    private static class MatchCounter implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private int matches;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                assertEquals(IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0)),
+                        IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 2)));
+                matches++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePairComparator;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.std.join.BandJoin;
+import org.apache.hyracks.tests.util.NoopNullWriterFactory;
+
+public class BandJoinTest extends AbstractFrameTest {
+    static RecordDescriptor PointDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor IntervalDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            UTF8StringSerializerDeserializer.INSTANCE });
+
+    static final int NUM_INTERVALS = 500;
+    static final int NUM_POINTS = 1500;
+    static final int SHORT_WIDTH = 20;
+    static final int LONG_WIDTH = 300;
+
+    @Test
+    public void testInnerJoinWithSpilledWindow() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        MatchCounter counter = join(ctx, false, null);
+        assertEquals(expectedMatches(false), counter.matches);
+        assertEquals(0, counter.nulls);
+    }
+
+    @Test
+    public void testLeftOuterJoinWithSpilledWindow() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        MatchCounter counter = join(ctx, true, null);
+        assertEquals(expectedMatches(false), counter.matches);
+        assertEquals(expectedNulls(false), counter.nulls);
+    }
+
+    @Test
+    public void testConditionChecksThePairsOfTheSweep() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        // stands for a condition that does not hold for some points although the comparator places them in the band
+        ITuplePairComparator condition = new ITuplePairComparator() {
+            @Override
+            public int compare(IFrameTupleAccessor outerAccessor, int outerIndex, IFrameTupleAccessor innerAccessor,
+                    int innerIndex) throws HyracksDataException {
+                int tStart = outerAccessor.getTupleStartOffset(outerIndex) + outerAccessor.getFieldSlotsLength();
+                int point = IntegerPointable.getInteger(outerAccessor.getBuffer().array(), tStart
+                        + outerAccessor.getFieldStartOffset(outerIndex, 0));
+                return isExcluded(point) ? 1 : 0;
+            }
+        };
+        MatchCounter counter = join(ctx, false, condition);
+        assertEquals(expectedMatches(true), counter.matches);
+        assertEquals(0, counter.nulls);
+
+        counter = join(ctx, true, condition);
+        assertEquals(expectedMatches(true), counter.matches);
+        assertEquals(expectedNulls(true), counter.nulls);
+    }
+
+    /**
+     * The interval i starts at 2 * i and is usually short, but every 7th interval is long enough to outlive many of
+     * the intervals starting after it, so the window is much larger than the memory of the join.
+     */
+    private MatchCounter join(IHyracksTaskContext ctx, boolean isLeftOuter, ITuplePairComparator condition)
+            throws HyracksDataException {
+        INullWriter[] nullWriters = new INullWriter[IntervalDesc.getFieldCount()];
+        for (int i = 0; i < nullWriters.length; i++) {
+            nullWriters[i] = NoopNullWriterFactory.INSTANCE.createNullWriter();
+        }
+        BandJoin joiner = new BandJoin(ctx, PointDesc, IntervalDesc, 0, 0, 1,
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator(), condition, 5,
+                isLeftOuter, nullWriters);
+
+        List<int[]> intervals = new ArrayList<>();
+        for (int i = 0; i < NUM_INTERVALS; i++) {
+            intervals.add(new int[] { low(i), high(i) });
+        }
+        for (ByteBuffer buffer : prepareFrames(ctx, intervals)) {
+            joiner.cacheRight(buffer);
+        }
+        joiner.closeCache();
+
+        List<int[]> points = new ArrayList<>();
+        for (int p = 0; p < NUM_POINTS; p++) {
+            points.add(new int[] { p });
+        }
+        MatchCounter counter = new MatchCounter();
+        for (ByteBuffer buffer : prepareFrames(ctx, points)) {
+            joiner.join(buffer, counter);
+        }
+        joiner.closeJoin(counter);
+        return counter;
+    }
+
+    private static int low(int i) {
+        return 2 * i;
+    }
+
+    private static int high(int i) {
+        return 2 * i + (i % 7 == 0 ? LONG_WIDTH : SHORT_WIDTH);
+    }
+
+    private static boolean isExcluded(int point) {
+        return point % 3 == 0;
+    }
+
+    private int expectedMatches(boolean withCondition) {
+        int matches = 0;
+        for (int p = 0; p < NUM_POINTS; p++) {
+            if (withCondition && isExcluded(p)) {
+                continue;
+            }
+            for (int i = 0; i < NUM_INTERVALS; i++) {
+                if (low(i) <= p && p <= high(i)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private int expectedNulls(boolean withCondition) {
+        int nulls = 0;
+        for (int p = 0; p < NUM_POINTS; p++) {
+            if (withCondition && isExcluded(p)) {
+                nulls++;
+                continue;
+            }
+            boolean matched = false;
+            for (int i = 0; i < NUM_INTERVALS && !matched; i++) {
+                matched = low(i) <= p && p <= high(i);
+            }
+            if (!matched) {
+                nulls++;
+            }
+        }
+        return nulls;
+    }
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, List<int[]> records) throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, records.get(0).length + 1);
+        for (int i = 0; i < records.size(); i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            for (int value : records.get(i)) {
+                tb.addField(IntegerSerializerDeserializer.INSTANCE, value);
+            }
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "v" + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    private static class MatchCounter implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private int matches;
+        private int nulls;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                if (accessor.getFieldLength(i, 2) != 4) {
+                    nulls++;
+                    continue;
+                }
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                int point = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0));
+                int low = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 2));
+                int high = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 3));
+                assertTrue(low <= point && point <= high);
+                matches++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
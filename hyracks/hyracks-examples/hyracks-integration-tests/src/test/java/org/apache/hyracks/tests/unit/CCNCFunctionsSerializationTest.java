@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.hyracks.api.client.NodeControllerInfo;
+import org.apache.hyracks.api.client.NodeStatus;
+import org.apache.hyracks.api.comm.NetworkAddress;
+import org.apache.hyracks.api.dataflow.ActivityId;
+import org.apache.hyracks.api.dataflow.OperatorDescriptorId;
+import org.apache.hyracks.api.dataflow.TaskAttemptId;
+import org.apache.hyracks.api.dataflow.TaskId;
+import org.apache.hyracks.api.dataset.ResultSetId;
+import org.apache.hyracks.api.deployment.DeploymentId;
+import org.apache.hyracks.api.job.JobId;
+import org.apache.hyracks.api.partitions.PartitionId;
+import org.apache.hyracks.control.common.deployment.DeploymentStatus;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.AbortTasksFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.DeployBinaryFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.GetNodeControllersInfoFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.GetNodeControllersInfoResponseFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.NotifyDeployBinaryFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.NotifyShutdownFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.NotifyTaskCompleteFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.NotifyTaskFailureFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.RegisterResultPartitionLocationFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.ReportProfileFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.ReportResultPartitionFailureFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.ReportResultPartitionWriteCompletionFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.RequestShutdownFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.SendApplicationMessageFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.ShutdownRequestFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.ShutdownResponseFunction;
+import org.apache.hyracks.control.common.ipc.CCNCFunctions.StateDumpResponseFunction;
+import org.apache.hyracks.control.common.job.profiling.om.JobProfile;
+import org.apache.hyracks.control.common.job.profiling.om.JobletProfile;
+import org.apache.hyracks.control.common.job.profiling.om.PartitionProfile;
+import org.apache.hyracks.control.common.job.profiling.om.TaskProfile;
+import org.apache.hyracks.ipc.impl.JavaSerializationBasedPayloadSerializerDeserializer;
+
+public class CCNCFunctionsSerializationTest {
+    private final CCNCFunctions.SerializerDeserializer serde = new CCNCFunctions.SerializerDeserializer();
+
+    private final JobId jobId = new JobId(42);
+
+    private final TaskAttemptId taId = new TaskAttemptId(new TaskId(new ActivityId(new OperatorDescriptorId(3), 1), 7),
+            2);
+
+    private Object roundTrip(Object object) throws Exception {
+        byte[] bytes = serde.serializeObject(object);
+        Object result = serde.deserializeObject(ByteBuffer.wrap(bytes), bytes.length);
+        Assert.assertEquals(object.getClass(), result.getClass());
+        return result;
+    }
+
+    private static int getJavaSerializedSize(Object object) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JavaSerializationBasedPayloadSerializerDeserializer.serialize(baos, object);
+        return baos.size();
+    }
+
+    @Test
+    public void testNotifyTaskComplete() throws Exception {
+        TaskProfile profile = new TaskProfile(taId, new HashMap<PartitionId, PartitionProfile>());
+        profile.getCounters().put("tuples", 1000L);
+        NotifyTaskCompleteFunction fn = new NotifyTaskCompleteFunction(jobId, taId,
+                "nc1", profile);
+        NotifyTaskCompleteFunction result = (NotifyTaskCompleteFunction) roundTrip(fn);
+        Assert.assertEquals(jobId, result.getJobId());
+        Assert.assertEquals(taId, result.getTaskId());
+        Assert.assertEquals("nc1", result.getNodeId());
+        Assert.assertEquals(Long.valueOf(1000), result.getStatistics().getCounters().get("tuples"));
+        Assert.assertTrue(serde.serializeObject(fn).length * 4 < getJavaSerializedSize(fn));
+    }
+
+    @Test
+    public void testReportProfile() throws Exception {
+        JobProfile jobProfile = new JobProfile(jobId);
+        JobletProfile jobletProfile = new JobletProfile("nc1");
+        jobletProfile.getCounters().put("cpu", 7L);
+        TaskProfile taskProfile = new TaskProfile(taId, new HashMap<PartitionId, PartitionProfile>());
+        jobletProfile.getTaskProfiles().put(taId, taskProfile);
+        jobProfile.getJobletProfiles().put("nc1", jobletProfile);
+        List<JobProfile> profiles = new ArrayList<JobProfile>();
+        profiles.add(jobProfile);
+
+        ReportProfileFunction fn = new ReportProfileFunction("nc1", profiles);
+        ReportProfileFunction result = (ReportProfileFunction) roundTrip(fn);
+        Assert.assertEquals("nc1", result.getNodeId());
+        Assert.assertEquals(1, result.getProfiles().size());
+        JobletProfile resultJoblet = result.getProfiles().get(0).getJobletProfiles().get("nc1");
+        Assert.assertEquals(Long.valueOf(7), resultJoblet.getCounters().get("cpu"));
+        Assert.assertTrue(resultJoblet.getTaskProfiles().containsKey(taId));
+        Assert.assertTrue(serde.serializeObject(fn).length < getJavaSerializedSize(fn));
+    }
+
+    @Test
+    public void testResultPartitionFunctions() throws Exception {
+        ResultSetId rsId = new ResultSetId(5);
+        RegisterResultPartitionLocationFunction location = (RegisterResultPartitionLocationFunction)
+                roundTrip(new RegisterResultPartitionLocationFunction(jobId, rsId, true, false, 3, 8,
+                        new NetworkAddress("10.0.0.1", 9000)));
+        Assert.assertEquals(rsId, location.getResultSetId());
+        Assert.assertTrue(location.getOrderedResult());
+        Assert.assertFalse(location.getEmptyResult());
+        Assert.assertEquals(3, location.getPartition());
+        Assert.assertEquals(8, location.getNPartitions());
+        Assert.assertEquals(new NetworkAddress("10.0.0.1", 9000), location.getNetworkAddress());
+
+        ReportResultPartitionWriteCompletionFunction completion = (ReportResultPartitionWriteCompletionFunction)
+                roundTrip(new ReportResultPartitionWriteCompletionFunction(jobId, rsId, 4));
+        Assert.assertEquals(jobId, completion.getJobId());
+        Assert.assertEquals(4, completion.getPartition());
+
+        ReportResultPartitionFailureFunction failure = (ReportResultPartitionFailureFunction)
+                roundTrip(new ReportResultPartitionFailureFunction(jobId, rsId, 6));
+        Assert.assertEquals(rsId, failure.getResultSetId());
+        Assert.assertEquals(6, failure.getPartition());
+    }
+
+    @Test
+    public void testTaskFunctions() throws Exception {
+        AbortTasksFunction abort = (AbortTasksFunction) roundTrip(new AbortTasksFunction(
+                jobId, Arrays.asList(taId, taId)));
+        Assert.assertEquals(Arrays.asList(taId, taId), abort.getTasks());
+
+        List<Exception> exceptions = new ArrayList<Exception>();
+        exceptions.add(new IOException("disk full"));
+        NotifyTaskFailureFunction failure = (NotifyTaskFailureFunction) roundTrip(new NotifyTaskFailureFunction(
+                jobId, taId, "nc2", exceptions));
+        Assert.assertEquals(taId, failure.getTaskId());
+        Assert.assertEquals("nc2", failure.getNodeId());
+        Assert.assertEquals("disk full", failure.getExceptions().get(0).getMessage());
+    }
+
+    @Test
+    public void testNodeFunctions() throws Exception {
+        Map<String, NodeControllerInfo> infos = new HashMap<String, NodeControllerInfo>();
+        infos.put("nc1", new NodeControllerInfo("nc1", NodeStatus.ALIVE, new NetworkAddress("10.0.0.1", 1), null));
+        GetNodeControllersInfoResponseFunction response = (GetNodeControllersInfoResponseFunction)
+                roundTrip(new GetNodeControllersInfoResponseFunction(infos));
+        NodeControllerInfo info = response.getNodeControllerInfos().get("nc1");
+        Assert.assertEquals(NodeStatus.ALIVE, info.getStatus());
+        Assert.assertEquals(new NetworkAddress("10.0.0.1", 1), info.getNetworkAddress());
+        Assert.assertNull(info.getDatasetNetworkAddress());
+
+        DeploymentId deploymentId = new DeploymentId("app");
+        DeployBinaryFunction deploy = (DeployBinaryFunction) roundTrip(new DeployBinaryFunction(
+                deploymentId, Arrays.asList(new URL("http://cc:8080/app.jar"))));
+        Assert.assertEquals(deploymentId, deploy.getDeploymentId());
+        Assert.assertEquals("http://cc:8080/app.jar", deploy.getBinaryURLs().get(0).toString());
+
+        NotifyDeployBinaryFunction notify = (NotifyDeployBinaryFunction) roundTrip(new NotifyDeployBinaryFunction(
+                deploymentId, "nc1", DeploymentStatus.FAIL));
+        Assert.assertEquals(DeploymentStatus.FAIL, notify.getDeploymentStatus());
+
+        SendApplicationMessageFunction message = (SendApplicationMessageFunction)
+                roundTrip(new SendApplicationMessageFunction(new byte[] { 1, 2, 3 }, null, null));
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, message.getMessage());
+        Assert.assertNull(message.getDeploymentId());
+        Assert.assertNull(message.getNodeId());
+
+        ShutdownResponseFunction shutdown = (ShutdownResponseFunction) roundTrip(new ShutdownResponseFunction(
+                "nc3"));
+        Assert.assertEquals("nc3", shutdown.getNodeId());
+        roundTrip(new ShutdownRequestFunction());
+        roundTrip(new GetNodeControllersInfoFunction());
+    }
+
+    @Test
+    public void testLongStateDump() throws Exception {
+        StringBuilder state = new StringBuilder();
+        while (state.length() < 100000) {
+            state.append("state \u00e9 ");
+        }
+        StateDumpResponseFunction result = (StateDumpResponseFunction) roundTrip(new StateDumpResponseFunction(
+                "nc1", "dump-1", state.toString()));
+        Assert.assertEquals(state.toString(), result.getState());
+        Assert.assertEquals("dump-1", result.getStateDumpId());
+    }
+
+    @Test
+    public void testFunctionWithSharedIdFallsBack() throws Exception {
+        // shares SHUTDOWN_REQUEST with ShutdownRequestFunction, so it must not be decoded as one
+        roundTrip(new RequestShutdownFunction());
+        NotifyShutdownFunction result = (NotifyShutdownFunction) roundTrip(new NotifyShutdownFunction(
+                "nc1"));
+        Assert.assertEquals("nc1", result.getNodeId());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.comm.channels.FrameCompressor;
+
+public class FrameCompressorTest {
+    private static final int FRAME_SIZE = 32768;
+
+    private final FrameCompressor compressor = new FrameCompressor();
+
+    private final byte[] record = new byte[FrameCompressor.getMaxRecordLength(FRAME_SIZE, 1)];
+
+    private int roundTrip(ByteBuffer frame) throws HyracksDataException {
+        int recordLength = compressor.compress(frame, 0, frame.capacity(), record);
+        assertEquals(recordLength, FrameCompressor.getRecordLength(record, 0));
+        ByteBuffer result = ByteBuffer.allocate(frame.capacity());
+        assertEquals(frame.capacity(), compressor.decompress(record, 0, result));
+        byte[] expected = new byte[frame.capacity()];
+        frame.clear();
+        frame.get(expected);
+        assertArrayEquals(expected, result.array());
+        return recordLength;
+    }
+
+    @Test
+    public void testTextCompresses() throws HyracksDataException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        Random random = new Random(17);
+        String[] words = { "customer", "order", "lineitem", "supplier", "nation", "region", "part" };
+        while (frame.remaining() > 16) {
+            byte[] word = (words[random.nextInt(words.length)] + random.nextInt(100) + "|").getBytes();
+            frame.put(word, 0, Math.min(word.length, frame.remaining()));
+        }
+        int recordLength = roundTrip(frame);
+        assertTrue("record of " + recordLength + " bytes", recordLength < FRAME_SIZE / 2);
+    }
+
+    @Test
+    public void testRandomBytesAreStoredRaw() throws HyracksDataException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        new Random(17).nextBytes(frame.array());
+        assertEquals(FrameCompressor.HEADER_SIZE + FRAME_SIZE, roundTrip(frame));
+    }
+
+    @Test
+    public void testLongRuns() throws HyracksDataException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        for (int i = FRAME_SIZE / 2; i < FRAME_SIZE; ++i) {
+            frame.put(i, (byte) (i % 3));
+        }
+        assertTrue(roundTrip(frame) < 200);
+    }
+
+    @Test
+    public void testDirectFrame() throws HyracksDataException {
+        ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE);
+        for (int i = 0; i < FRAME_SIZE; ++i) {
+            frame.put(i, (byte) (i % 251 < 128 ? i % 7 : i));
+        }
+        int recordLength = compressor.compress(frame, 0, FRAME_SIZE, record);
+        ByteBuffer result = ByteBuffer.allocate(FRAME_SIZE);
+        compressor.decompress(record, 0, result);
+        for (int i = 0; i < FRAME_SIZE; ++i) {
+            assertEquals(frame.get(i), result.get(i));
+        }
+        assertTrue(recordLength < FRAME_SIZE);
+    }
+
+    @Test(expected = HyracksDataException.class)
+    public void testCorruptedRecord() throws HyracksDataException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        compressor.compress(frame, 0, FRAME_SIZE, record);
+        record[FrameCompressor.HEADER_SIZE + 3] = (byte) 0xff;
+        compressor.decompress(record, 0, ByteBuffer.allocate(FRAME_SIZE));
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hyracks.api.channels.IInputChannel;
+import org.apache.hyracks.api.channels.IInputChannelMonitor;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.ConnectorDescriptorId;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.JobId;
+import org.apache.hyracks.api.partitions.IPartition;
+import org.apache.hyracks.api.partitions.PartitionId;
+import org.apache.hyracks.control.common.controllers.NCConfig;
+import org.apache.hyracks.control.common.job.PartitionState;
+import org.apache.hyracks.control.nc.NodeControllerService;
+import org.apache.hyracks.control.nc.partitions.LocalPartitionInputChannel;
+import org.apache.hyracks.control.nc.partitions.PartitionManager;
+import org.apache.hyracks.test.support.TestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class LocalPartitionInputChannelTest {
+    private static final int FRAME_SIZE = 256;
+    private static final int N_BUFFERS = 5;
+    private static final long TIMEOUT_MS = 10000;
+
+    private static PartitionManager partitionManager;
+    private static int nextJobId;
+
+    private final IHyracksTaskContext ctx = new TestUtils().create(FRAME_SIZE);
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // the node controller is not started, it only provides the partition manager
+        NCConfig ncConfig = new NCConfig();
+        ncConfig.clusterNetIPAddress = "127.0.0.1";
+        ncConfig.dataIPAddress = "127.0.0.1";
+        ncConfig.resultIPAddress = "127.0.0.1";
+        ncConfig.nodeId = "nc1";
+        partitionManager = new NodeControllerService(ncConfig).getPartitionManager();
+    }
+
+    @Test
+    public void testFramesAreHandedOffWithinTheBuffers() throws Exception {
+        final PartitionId pid = newPartitionId();
+        TestPartition partition = new TestPartition();
+        partitionManager.registerPartition(pid, null, partition, PartitionState.STARTED, false);
+        LocalPartitionInputChannel channel = new LocalPartitionInputChannel(N_BUFFERS, pid, partitionManager);
+        TestMonitor monitor = new TestMonitor();
+        channel.registerMonitor(monitor);
+        channel.open(ctx);
+        assertNotNull(partition.writer);
+
+        // every other frame is twice the frame size, and arrives as two buffers
+        final List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        int nBuffers = 0;
+        for (int i = 0; i < 20; i++) {
+            int size = (i % 2 + 1) * FRAME_SIZE;
+            frames.add(newFrame(size, i));
+            nBuffers += size / FRAME_SIZE;
+        }
+        Producer producer = new Producer(partition.writer, frames, false);
+        producer.start();
+
+        List<ByteBuffer> received = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < N_BUFFERS; i++) {
+            received.add(takeBuffer(channel, monitor));
+        }
+        // the producer waits for a buffer to be recycled
+        assertFalse(monitor.available.tryAcquire(200, TimeUnit.MILLISECONDS));
+        List<ByteBuffer> held = new ArrayList<ByteBuffer>(received);
+        received.clear();
+        for (ByteBuffer buffer : held) {
+            received.add(copy(buffer));
+            channel.recycleBuffer(buffer);
+        }
+        while (received.size() < nBuffers) {
+            ByteBuffer buffer = takeBuffer(channel, monitor);
+            received.add(copy(buffer));
+            channel.recycleBuffer(buffer);
+        }
+        assertTrue(monitor.endOfStream.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        producer.join(TIMEOUT_MS);
+        assertNull(producer.error);
+        assertFalse(monitor.failed);
+        assertNull(channel.getNextBuffer());
+
+        int next = 0;
+        for (ByteBuffer frame : frames) {
+            for (int offset = 0; offset < frame.capacity(); offset += FRAME_SIZE) {
+                ByteBuffer buffer = received.get(next++);
+                assertEquals(FRAME_SIZE, buffer.remaining());
+                for (int j = 0; j < FRAME_SIZE; j++) {
+                    assertEquals(frame.get(offset + j), buffer.get(j));
+                }
+            }
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testCloseFailsTheWaitingProducer() throws Exception {
+        PartitionId pid = newPartitionId();
+        TestPartition partition = new TestPartition();
+        partitionManager.registerPartition(pid, null, partition, PartitionState.STARTED, false);
+        LocalPartitionInputChannel channel = new LocalPartitionInputChannel(N_BUFFERS, pid, partitionManager);
+        TestMonitor monitor = new TestMonitor();
+        channel.registerMonitor(monitor);
+        channel.open(ctx);
+
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        for (int i = 0; i <= N_BUFFERS; i++) {
+            frames.add(newFrame(FRAME_SIZE, i));
+        }
+        Producer producer = new Producer(partition.writer, frames, false);
+        producer.start();
+        for (int i = 0; i < N_BUFFERS; i++) {
+            assertTrue(monitor.available.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+        channel.close();
+        producer.join(TIMEOUT_MS);
+        assertFalse(producer.isAlive());
+        assertTrue(producer.error instanceof HyracksDataException);
+    }
+
+    @Test
+    public void testFailureIsPropagatedToTheMonitor() throws Exception {
+        // the consumer comes first, and the partition is written to its channel once it is registered
+        PartitionId pid = newPartitionId();
+        LocalPartitionInputChannel channel = new LocalPartitionInputChannel(N_BUFFERS, pid, partitionManager);
+        TestMonitor monitor = new TestMonitor();
+        channel.registerMonitor(monitor);
+        channel.open(ctx);
+        TestPartition partition = new TestPartition();
+        partitionManager.registerPartition(pid, null, partition, PartitionState.STARTED, false);
+        assertNotNull(partition.writer);
+
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        frames.add(newFrame(FRAME_SIZE, 0));
+        Producer producer = new Producer(partition.writer, frames, true);
+        producer.run();
+        assertNull(producer.error);
+        assertTrue(monitor.failed);
+        assertEquals(0, monitor.endOfStream.getCount());
+        assertEquals(newFrame(FRAME_SIZE, 0), takeBuffer(channel, monitor));
+        channel.close();
+    }
+
+    private static synchronized PartitionId newPartitionId() {
+        return new PartitionId(new JobId(nextJobId++), new ConnectorDescriptorId(0), 0, 0);
+    }
+
+    private static ByteBuffer newFrame(int size, int frameIndex) {
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            frame.put(i, (byte) (frameIndex * 31 + i));
+        }
+        return frame;
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    private static ByteBuffer takeBuffer(IInputChannel channel, TestMonitor monitor) throws InterruptedException {
+        assertTrue(monitor.available.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        ByteBuffer buffer = channel.getNextBuffer();
+        assertNotNull(buffer);
+        return buffer;
+    }
+
+    private static class TestPartition implements IPartition {
+        private IFrameWriter writer;
+
+        @Override
+        public IHyracksTaskContext getTaskContext() {
+            return null;
+        }
+
+        @Override
+        public void writeTo(IFrameWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean isReusable() {
+            return false;
+        }
+
+        @Override
+        public void deallocate() {
+        }
+    }
+
+    private static class TestMonitor implements IInputChannelMonitor {
+        private final Semaphore available = new Semaphore(0);
+        private final CountDownLatch endOfStream = new CountDownLatch(1);
+        private volatile boolean failed;
+
+        @Override
+        public void notifyFailure(IInputChannel channel) {
+            failed = true;
+        }
+
+        @Override
+        public void notifyDataAvailability(IInputChannel channel, int nFrames) {
+            available.release(nFrames);
+        }
+
+        @Override
+        public void notifyEndOfStream(IInputChannel channel) {
+            endOfStream.countDown();
+        }
+    }
+
+    private static class Producer extends Thread {
+        private final IFrameWriter writer;
+        private final List<ByteBuffer> frames;
+        private final boolean fail;
+        private volatile Exception error;
+
+        Producer(IFrameWriter writer, List<ByteBuffer> frames, boolean fail) {
+            this.writer = writer;
+            this.frames = frames;
+            this.fail = fail;
+        }
+
+        @Override
+        public void run() {
+            try {
+                writer.open();
+                for (ByteBuffer frame : frames) {
+                    writer.nextFrame(frame.duplicate());
+                }
+                if (fail) {
+                    writer.fail();
+                }
+                writer.close();
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+    }
+}
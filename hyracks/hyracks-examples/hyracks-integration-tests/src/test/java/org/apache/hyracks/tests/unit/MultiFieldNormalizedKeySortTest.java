@@ -0,0 +1,237 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.tests.unit;
+
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.testUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.IMultiFieldNormalizedKeyComputer;
+import org.apache.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.ByteBufferInputStream;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.normalizers.IntegerNormalizedKeyComputerFactory;
+import org.apache.hyracks.dataflow.common.data.normalizers.MultiFieldNormalizedKeyComputerFactory;
+import org.apache.hyracks.dataflow.common.data.normalizers.UTF8StringNormalizedKeyComputerFactory;
+import org.apache.hyracks.dataflow.std.sort.Algorithm;
+import org.apache.hyracks.dataflow.std.sort.ExternalSortRunGenerator;
+import org.apache.hyracks.dataflow.std.sort.RunAndMaxFrameSizePair;
+import org.apache.hyracks.dataflow.std.sort.RunMergingFrameReader;
+import org.apache.hyracks.dataflow.std.sort.util.GroupVSizeFrame;
+
+public class MultiFieldNormalizedKeySortTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            UTF8StringSerializerDeserializer.INSTANCE });
+    static int[] SortFields = new int[] { 0, 1, 2 };
+    static IBinaryComparatorFactory[] ComparatorFactories = new IBinaryComparatorFactory[] {
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY),
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY),
+            PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) };
+    static INormalizedKeyComputerFactory NormalizerFactory = new MultiFieldNormalizedKeyComputerFactory(
+            new INormalizedKeyComputerFactory[] { new IntegerNormalizedKeyComputerFactory(),
+                    new IntegerNormalizedKeyComputerFactory(), new UTF8StringNormalizedKeyComputerFactory() });
+
+    @Test
+    public void testPrefixStopsAfterFirstNonDecisiveField() {
+        IMultiFieldNormalizedKeyComputer nkc = (IMultiFieldNormalizedKeyComputer) NormalizerFactory
+                .createNormalizedKeyComputer();
+        // the string takes the two ints left
+        assertEquals(4, nkc.getNormalizedKeyLength());
+        assertEquals(2, nkc.getDecisiveFieldCount());
+        assertEquals(2, nkc.getKeyField(3));
+
+        nkc = new MultiFieldNormalizedKeyComputerFactory(new INormalizedKeyComputerFactory[] {
+                new UTF8StringNormalizedKeyComputerFactory(), new IntegerNormalizedKeyComputerFactory() })
+                        .createNormalizedKeyComputer();
+        assertEquals(4, nkc.getNormalizedKeyLength());
+        assertEquals(0, nkc.getDecisiveFieldCount());
+        assertEquals(0, nkc.getKeyField(3));
+    }
+
+    @Test
+    public void testStringPrefixSpansSeveralInts() throws HyracksDataException {
+        IMultiFieldNormalizedKeyComputer nkc = new MultiFieldNormalizedKeyComputerFactory(
+                new INormalizedKeyComputerFactory[] { new UTF8StringNormalizedKeyComputerFactory() })
+                        .createNormalizedKeyComputer();
+        String[] keys = new String[] { "", "k", "key", "key0", "key1", "keys\u00e9", "keyz" };
+        int[][] prefixes = new int[keys.length][];
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(1);
+        for (int i = 0; i < keys.length; i++) {
+            tb.reset();
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, keys[i]);
+            prefixes[i] = new int[nkc.getNormalizedKeyLength()];
+            for (int k = 0; k < prefixes[i].length; k++) {
+                prefixes[i][k] = nkc.normalize(k, tb.getByteArray(), 0, tb.getSize());
+            }
+        }
+        // the keys are sorted and differ within 8 characters, so their prefixes are strictly increasing
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(compareUnsigned(prefixes[i - 1], prefixes[i]) < 0);
+        }
+    }
+
+    private static int compareUnsigned(int[] p1, int[] p2) {
+        for (int k = 0; k < p1.length; k++) {
+            if (p1[k] != p2[k]) {
+                return (p1[k] & 0xffffffffL) < (p2[k] & 0xffffffffL) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testMergeSortWithMultiFieldPrefix() throws HyracksDataException {
+        testSortAndMerge(Algorithm.MERGE_SORT);
+    }
+
+    @Test
+    public void testQuickSortWithMultiFieldPrefix() throws HyracksDataException {
+        testSortAndMerge(Algorithm.QUICK_SORT);
+    }
+
+    private void testSortAndMerge(Algorithm alg) throws HyracksDataException {
+        int pageSize = 512;
+        int frameLimit = 4;
+        IHyracksTaskContext ctx = testUtils.create(pageSize);
+        List<IFrame> input = prepareData(ctx, pageSize * frameLimit * 4, new Random(alg.ordinal()));
+
+        ExternalSortRunGenerator runGenerator = new ExternalSortRunGenerator(ctx, SortFields, NormalizerFactory,
+                ComparatorFactories, RecordDesc, alg, frameLimit);
+        runGenerator.open();
+        int count = 0;
+        for (IFrame frame : input) {
+            runGenerator.nextFrame(frame.getBuffer());
+            count += tupleCount(frame);
+        }
+        runGenerator.close();
+        List<RunAndMaxFrameSizePair> runs = runGenerator.getRuns();
+        assertTrue(runs.size() > 1);
+
+        List<IFrameReader> readers = new ArrayList<>();
+        List<IFrame> inFrames = new ArrayList<>();
+        for (RunAndMaxFrameSizePair run : runs) {
+            readers.add(run.run);
+            inFrames.add(new GroupVSizeFrame(ctx, run.maxFrameSize));
+        }
+        IBinaryComparator[] comparators = new IBinaryComparator[ComparatorFactories.length];
+        for (int i = 0; i < comparators.length; i++) {
+            comparators[i] = ComparatorFactories[i].createBinaryComparator();
+        }
+        RunMergingFrameReader merger = new RunMergingFrameReader(ctx, readers, inFrames, SortFields, comparators,
+                NormalizerFactory.createNormalizedKeyComputer(), RecordDesc);
+        assertEquals(count, assertSorted(ctx, merger));
+    }
+
+    private static int tupleCount(IFrame frame) {
+        FrameTupleAccessor fta = new FrameTupleAccessor(RecordDesc);
+        fta.reset(frame.getBuffer());
+        return fta.getTupleCount();
+    }
+
+    private static List<IFrame> prepareData(IHyracksTaskContext ctx, int dataSize, Random random)
+            throws HyracksDataException {
+        List<IFrame> frames = new ArrayList<>();
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(RecordDesc.getFieldCount());
+        FrameTupleAppender appender = new FrameTupleAppender();
+        VSizeFrame frame = new VSizeFrame(ctx);
+        appender.reset(frame, true);
+        int size = 0;
+        while (size < dataSize) {
+            tb.reset();
+            // few distinct leading keys so that most comparisons tie on the first field
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, random.nextInt(4) - 2);
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, random.nextInt(16) - 8);
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "key" + random.nextInt(8));
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                frames.add(frame);
+                size += frame.getFrameSize();
+                frame = new VSizeFrame(ctx);
+                appender.reset(frame, true);
+                assertTrue(appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize()));
+            }
+        }
+        if (appender.getTupleCount() > 0) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static int assertSorted(IHyracksTaskContext ctx, IFrameReader reader) throws HyracksDataException {
+        IFrame frame = new VSizeFrame(ctx);
+        FrameTupleAccessor fta = new FrameTupleAccessor(RecordDesc);
+        ByteBufferInputStream bbis = new ByteBufferInputStream();
+        DataInputStream di = new DataInputStream(bbis);
+        int count = 0;
+        Object[] prev = null;
+        reader.open();
+        try {
+            while (reader.nextFrame(frame)) {
+                fta.reset(frame.getBuffer());
+                for (int i = 0; i < fta.getTupleCount(); i++) {
+                    Object[] current = new Object[SortFields.length];
+                    for (int f = 0; f < current.length; f++) {
+                        bbis.setByteBuffer(fta.getBuffer(), fta.getTupleStartOffset(i) + fta.getFieldSlotsLength()
+                                + fta.getFieldStartOffset(i, f));
+                        current[f] = RecordDesc.getFields()[f].deserialize(di);
+                    }
+                    if (prev != null) {
+                        assertTrue(compare(prev, current) <= 0);
+                    }
+                    prev = current;
+                    count++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object[] t1, Object[] t2) {
+        for (int f = 0; f < t1.length; f++) {
+            int c = ((Comparable<Object>) t1[f]).compareTo(t2[f]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameTupleAccessor;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePairComparator;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoin;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndex;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndex.Condition;
+import org.apache.hyracks.tests.util.NoopNullWriterFactory;
+
+public class NestedLoopJoinBlockIndexTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+
+    static final int NUM_OUTER = 300;
+    static final int NUM_INNER = 200;
+    static final int KEY_RANGE = 500;
+
+    @Test
+    public void testEqualityIndex() throws HyracksDataException {
+        for (boolean isLeftOuter : new boolean[] { false, true }) {
+            MatchCounter counter = join(Condition.EQ, isLeftOuter);
+            assertEquals(expectedMatches(Condition.EQ), counter.matches);
+            assertEquals(isLeftOuter ? expectedUnmatchedOuterTuples(Condition.EQ) : 0, counter.nulls);
+        }
+    }
+
+    @Test
+    public void testInequalityIndexes() throws HyracksDataException {
+        for (Condition condition : new Condition[] { Condition.LT, Condition.LE, Condition.GT, Condition.GE }) {
+            MatchCounter counter = join(condition, true);
+            assertEquals(expectedMatches(condition), counter.matches);
+            assertEquals(expectedUnmatchedOuterTuples(condition), counter.nulls);
+        }
+    }
+
+    /**
+     * Joins on {@code outer.key <condition> inner.key} with an index on the same condition, and checks every result
+     * against the condition.
+     */
+    private MatchCounter join(final Condition condition, boolean isLeftOuter) throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        INullWriter[] nullWriters = new INullWriter[RecordDesc.getFieldCount()];
+        for (int i = 0; i < nullWriters.length; i++) {
+            nullWriters[i] = NoopNullWriterFactory.INSTANCE.createNullWriter();
+        }
+        ITuplePairComparator tpComparator = new ITuplePairComparator() {
+            @Override
+            public int compare(IFrameTupleAccessor outerAccessor, int outerIndex, IFrameTupleAccessor innerAccessor,
+                    int innerIndex) throws HyracksDataException {
+                return satisfies(condition, getKey(outerAccessor, outerIndex), getKey(innerAccessor, innerIndex)) ? 0
+                        : 1;
+            }
+        };
+        NestedLoopJoin joiner = new NestedLoopJoin(ctx, new FrameTupleAccessor(RecordDesc), new FrameTupleAccessor(
+                RecordDesc), tpComparator, 5, null, isLeftOuter, nullWriters);
+        joiner.setBlockIndex(new NestedLoopJoinBlockIndex(0, 0, PointableBinaryComparatorFactory.of(
+                IntegerPointable.FACTORY).createBinaryComparator(), condition));
+
+        for (ByteBuffer buffer : prepareFrames(ctx, innerKeys(), "v")) {
+            joiner.cache(buffer);
+        }
+        joiner.closeCache();
+        MatchCounter counter = new MatchCounter(condition);
+        for (ByteBuffer buffer : prepareFrames(ctx, outerKeys(), "v")) {
+            joiner.join(buffer, counter);
+        }
+        joiner.closeJoin(counter);
+        return counter;
+    }
+
+    private static boolean satisfies(Condition condition, int outerKey, int innerKey) {
+        switch (condition) {
+            case EQ:
+                return outerKey == innerKey;
+            case LT:
+                return outerKey < innerKey;
+            case LE:
+                return outerKey <= innerKey;
+            case GT:
+                return outerKey > innerKey;
+            default:
+                return outerKey >= innerKey;
+        }
+    }
+
+    private static int getKey(IFrameTupleAccessor accessor, int tIndex) {
+        return IntegerPointable.getInteger(accessor.getBuffer().array(), accessor.getTupleStartOffset(tIndex)
+                + accessor.getFieldSlotsLength() + accessor.getFieldStartOffset(tIndex, 0));
+    }
+
+    private List<Integer> outerKeys() {
+        Random random = new Random(3);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < NUM_OUTER; i++) {
+            keys.add(random.nextInt(KEY_RANGE));
+        }
+        return keys;
+    }
+
+    private List<Integer> innerKeys() {
+        Random random = new Random(5);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < NUM_INNER; i++) {
+            keys.add(random.nextInt(KEY_RANGE));
+        }
+        return keys;
+    }
+
+    private int expectedMatches(Condition condition) {
+        int matches = 0;
+        for (int outerKey : outerKeys()) {
+            for (int innerKey : innerKeys()) {
+                if (satisfies(condition, outerKey, innerKey)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private int expectedUnmatchedOuterTuples(Condition condition) {
+        int unmatched = 0;
+        for (int outerKey : outerKeys()) {
+            boolean matched = false;
+            for (int innerKey : innerKeys()) {
+                matched |= satisfies(condition, outerKey, innerKey);
+            }
+            if (!matched) {
+                unmatched++;
+            }
+        }
+        return unmatched;
+    }
+
+    private static class MatchCounter implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private final Condition condition;
+        private int matches;
+        private int nulls;
+
+        private MatchCounter(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                if (accessor.getFieldLength(i, 2) != 4) {
+                    nulls++;
+                    continue;
+                }
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                assertTrue(satisfies(condition,
+                        IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0)),
+                        IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 2))));
+                matches++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.tests.unit;
+
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.ComparatorFactories;
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.RecordDesc;
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.SortFields;
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.matchResult;
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.prepareData;
+import static org.apache.hyracks.tests.unit.ExternalSortRunGeneratorTest.testUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.dataflow.std.sort.Algorithm;
+import org.apache.hyracks.dataflow.std.sort.ExternalSortRunGenerator;
+import org.apache.hyracks.dataflow.std.sort.RunAndMaxFrameSizePair;
+import org.apache.hyracks.dataflow.std.sort.buffermanager.EnumFreeSlotPolicy;
+
+public class ParallelExternalSortRunGeneratorTest {
+
+    private List<RunAndMaxFrameSizePair> testSortRecords(Algorithm alg, int pageSize, int frameLimit, int numRuns,
+            int sortThreads) throws HyracksDataException {
+        return testSortRecords(alg, pageSize, frameLimit, numRuns, sortThreads, false);
+    }
+
+    private List<RunAndMaxFrameSizePair> testSortRecords(Algorithm alg, int pageSize, int frameLimit, int numRuns,
+            int sortThreads, boolean asyncRunWriting) throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(pageSize);
+        HashMap<Integer, String> keyValuePair = new HashMap<>();
+        List<IFrame> frameList = new ArrayList<>();
+        prepareData(ctx, frameList, pageSize * frameLimit * numRuns, pageSize / 8, pageSize / 4, null,
+                keyValuePair);
+        ExternalSortRunGenerator runGenerator = new ExternalSortRunGenerator(ctx, SortFields, null,
+                ComparatorFactories, RecordDesc, alg, EnumFreeSlotPolicy.LAST_FIT, frameLimit, Integer.MAX_VALUE,
+                sortThreads, asyncRunWriting);
+        runGenerator.open();
+        for (IFrame frame : frameList) {
+            runGenerator.nextFrame(frame.getBuffer());
+        }
+        runGenerator.close();
+        matchResult(ctx, runGenerator.getRuns(), keyValuePair);
+        return runGenerator.getRuns();
+    }
+
+    @Test
+    public void testParallelMergeSortProducesSortedSubRuns() throws HyracksDataException {
+        List<RunAndMaxFrameSizePair> runs = testSortRecords(Algorithm.MERGE_SORT, 512, 13, 4, 4);
+        assertTrue(runs.size() >= 4);
+    }
+
+    @Test
+    public void testParallelQuickSortProducesSortedSubRuns() throws HyracksDataException {
+        List<RunAndMaxFrameSizePair> runs = testSortRecords(Algorithm.QUICK_SORT, 512, 13, 4, 3);
+        assertTrue(runs.size() >= 3);
+    }
+
+    @Test
+    public void testAsyncRunWritingProducesSortedRuns() throws HyracksDataException {
+        List<RunAndMaxFrameSizePair> runs = testSortRecords(Algorithm.MERGE_SORT, 512, 13, 4, 1, true);
+        assertTrue(runs.size() >= 4);
+    }
+
+    @Test
+    public void testAsyncRunWritingWithSeveralSortThreads() throws HyracksDataException {
+        testSortRecords(Algorithm.QUICK_SORT, 512, 13, 4, 3, true);
+    }
+
+    @Test
+    public void testInputThatFitsTheFirstSorterStaysInMemory() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(512);
+        HashMap<Integer, String> keyValuePair = new HashMap<>();
+        List<IFrame> frameList = new ArrayList<>();
+        prepareData(ctx, frameList, 512, 64, 64, null, keyValuePair);
+        ExternalSortRunGenerator runGenerator = new ExternalSortRunGenerator(ctx, SortFields, null,
+                ComparatorFactories, RecordDesc, Algorithm.MERGE_SORT, EnumFreeSlotPolicy.LAST_FIT, 9,
+                Integer.MAX_VALUE, 4);
+        runGenerator.open();
+        for (IFrame frame : frameList) {
+            runGenerator.nextFrame(frame.getBuffer());
+        }
+        runGenerator.close();
+        assertEquals(0, runGenerator.getRuns().size());
+        assertTrue(runGenerator.getSorter().hasRemaining());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.tests.unit;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.accessors.PointableBinaryHashFunctionFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
+import org.apache.hyracks.dataflow.std.structures.PrimitiveKeyHashTable;
+import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+import org.apache.hyracks.dataflow.std.structures.TuplePointer;
+
+/**
+ * Compares building and probing a {@link PrimitiveKeyHashTable} with a {@link SerializableHashTable} on an integer
+ * key, the way an in-memory hash join uses them. Run it with the test classpath of this module, e.g. through
+ * {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PrimitiveKeyHashTableBenchmark {
+
+    private static final int FRAME_SIZE = 32768;
+    private static final int[] KEY_FIELDS = new int[] { 0 };
+
+    @Param({ "100000", "1000000" })
+    public int numTuples;
+
+    @Param({ "1", "10" })
+    public int duplicatesPerKey;
+
+    private IHyracksTaskContext ctx;
+    private List<ByteBuffer> buildFrames;
+    private List<ByteBuffer> probeFrames;
+    private FrameTupleAccessor buildAccessor;
+    private FrameTupleAccessor probeAccessor;
+    private ITuplePartitionComputer tpc;
+    private FrameTuplePairComparator comparator;
+    private final TuplePointer tuplePointer = new TuplePointer();
+
+    @Setup
+    public void setUp() throws HyracksDataException {
+        ctx = AbstractFrameTest.testUtils.create(FRAME_SIZE);
+        int numKeys = numTuples / duplicatesPerKey;
+        Random random = new Random(17);
+        List<Integer> buildKeys = new ArrayList<>(numTuples);
+        for (int i = 0; i < numTuples; i++) {
+            buildKeys.add(random.nextInt(numKeys));
+        }
+        // half of the probe tuples find no match
+        List<Integer> probeKeys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            probeKeys.add(random.nextInt(numKeys * 2));
+        }
+        buildFrames = AbstractFrameTest.prepareFrames(ctx, buildKeys, "build");
+        probeFrames = AbstractFrameTest.prepareFrames(ctx, probeKeys, "probe");
+        buildAccessor = new FrameTupleAccessor(PrimitiveKeyHashTableTest.RecordDesc);
+        probeAccessor = new FrameTupleAccessor(PrimitiveKeyHashTableTest.RecordDesc);
+        tpc = new FieldHashPartitionComputerFactory(KEY_FIELDS,
+                new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory.of(IntegerPointable.FACTORY) })
+                .createPartitioner();
+        comparator = new FrameTuplePairComparator(KEY_FIELDS, KEY_FIELDS, new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() });
+    }
+
+    @Benchmark
+    public int primitiveKeyHashTable() throws HyracksDataException {
+        PrimitiveKeyHashTable table = new PrimitiveKeyHashTable(ctx, 4, numTuples);
+        try {
+            for (int f = 0; f < buildFrames.size(); f++) {
+                buildAccessor.reset(buildFrames.get(f));
+                for (int t = 0; t < buildAccessor.getTupleCount(); t++) {
+                    tuplePointer.reset(f, t);
+                    table.put(table.getKey(buildAccessor, t, 0), tuplePointer);
+                }
+            }
+            int matches = 0;
+            for (ByteBuffer probeFrame : probeFrames) {
+                probeAccessor.reset(probeFrame);
+                for (int t = 0; t < probeAccessor.getTupleCount(); t++) {
+                    long key = table.getKey(probeAccessor, t, 0);
+                    for (int slot = table.findFirst(key); slot >= 0; slot = table.findNext(key, slot)) {
+                        matches++;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            table.close();
+        }
+    }
+
+    @Benchmark
+    public int serializableHashTable() throws HyracksDataException {
+        SerializableHashTable table = new SerializableHashTable(numTuples, ctx);
+        try {
+            for (int f = 0; f < buildFrames.size(); f++) {
+                buildAccessor.reset(buildFrames.get(f));
+                for (int t = 0; t < buildAccessor.getTupleCount(); t++) {
+                    tuplePointer.reset(f, t);
+                    table.insert(tpc.partition(buildAccessor, t, numTuples), tuplePointer);
+                }
+            }
+            int matches = 0;
+            for (ByteBuffer probeFrame : probeFrames) {
+                probeAccessor.reset(probeFrame);
+                for (int t = 0; t < probeAccessor.getTupleCount(); t++) {
+                    int entry = tpc.partition(probeAccessor, t, numTuples);
+                    for (int offset = 0;; offset++) {
+                        table.getTuplePointer(entry, offset, tuplePointer);
+                        if (tuplePointer.frameIndex < 0) {
+                            break;
+                        }
+                        buildAccessor.reset(buildFrames.get(tuplePointer.frameIndex));
+                        if (comparator.compare(probeAccessor, t, buildAccessor, tuplePointer.tupleIndex) == 0) {
+                            matches++;
+                        }
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            table.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PrimitiveKeyHashTableBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.ITypeTraits;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.accessors.PointableBinaryHashFunctionFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.data.std.primitive.UTF8StringPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
+import org.apache.hyracks.dataflow.std.join.InMemoryHashJoin;
+import org.apache.hyracks.dataflow.std.structures.ITuplePointerTable;
+import org.apache.hyracks.dataflow.std.structures.PrimitiveKeyHashTable;
+import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+import org.apache.hyracks.dataflow.std.structures.TuplePointer;
+
+public class PrimitiveKeyHashTableTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE }, new ITypeTraits[] {
+            IntegerPointable.TYPE_TRAITS, UTF8StringPointable.TYPE_TRAITS });
+    static int[] KeyFields = new int[] { 0 };
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, int numTuples, int numKeys)
+            throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < numTuples; i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i % numKeys);
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "value" + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    @Test
+    public void testKeyLengthComesFromTheTypeTraits() {
+        assertEquals(4, PrimitiveKeyHashTable.getKeyLength(RecordDesc, KeyFields));
+        assertEquals(-1, PrimitiveKeyHashTable.getKeyLength(RecordDesc, new int[] { 1 }));
+        assertEquals(-1, PrimitiveKeyHashTable.getKeyLength(RecordDesc, new int[] { 0, 1 }));
+        RecordDescriptor withoutTraits = new RecordDescriptor(RecordDesc.getFields());
+        assertEquals(-1, PrimitiveKeyHashTable.getKeyLength(withoutTraits, KeyFields));
+        RecordDescriptor wideKey = new RecordDescriptor(RecordDesc.getFields(), new ITypeTraits[] {
+                UTF8StringPointable.TYPE_TRAITS, IntegerPointable.TYPE_TRAITS });
+        assertEquals(-1, PrimitiveKeyHashTable.getKeyLength(wideKey, KeyFields));
+    }
+
+    @Test
+    public void testFindsAllDuplicatesAfterGrowing() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        int numTuples = 2000;
+        int numKeys = 100;
+        List<ByteBuffer> buffers = prepareFrames(ctx, numTuples, numKeys);
+        PrimitiveKeyHashTable table = new PrimitiveKeyHashTable(ctx, 4, 8);
+        FrameTupleAccessor accessor = new FrameTupleAccessor(RecordDesc);
+        TuplePointer pointer = new TuplePointer();
+        for (int f = 0; f < buffers.size(); f++) {
+            accessor.reset(buffers.get(f));
+            for (int t = 0; t < accessor.getTupleCount(); t++) {
+                pointer.reset(f, t);
+                table.put(table.getKey(accessor, t, 0), pointer);
+            }
+        }
+        assertEquals(numTuples, table.getTupleCount());
+
+        for (int key = 0; key < numKeys + 10; key++) {
+            int count = 0;
+            for (int slot = table.findFirst(key); slot >= 0; slot = table.findNext(key, slot)) {
+                table.getTuplePointer(slot, 0, pointer);
+                accessor.reset(buffers.get(pointer.frameIndex));
+                assertEquals(key, IntegerPointable.getInteger(accessor.getBuffer().array(),
+                        accessor.getTupleStartOffset(pointer.tupleIndex) + accessor.getFieldSlotsLength()));
+                count++;
+            }
+            assertEquals(key < numKeys ? numTuples / numKeys : 0, count);
+        }
+        table.close();
+    }
+
+    @Test
+    public void testJoinMatchesSerializableHashTable() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        List<ByteBuffer> buildFrames = prepareFrames(ctx, 1000, 100);
+        List<ByteBuffer> probeFrames = prepareFrames(ctx, 300, 300);
+
+        ITuplePointerTable primitiveTable = InMemoryHashJoin.createTable(ctx, 1000, RecordDesc, KeyFields,
+                RecordDesc, KeyFields);
+        assertTrue(primitiveTable instanceof PrimitiveKeyHashTable);
+        int primitiveMatches = join(ctx, primitiveTable, buildFrames, probeFrames);
+        int serializableMatches = join(ctx, new SerializableHashTable(1000, ctx), buildFrames, probeFrames);
+        assertEquals(1000, primitiveMatches);
+        assertEquals(serializableMatches, primitiveMatches);
+    }
+
+    private int join(IHyracksTaskContext ctx, ITuplePointerTable table, List<ByteBuffer> buildFrames,
+            List<ByteBuffer> probeFrames) throws HyracksDataException {
+        IBinaryHashFunctionFactory[] hashFunctionFactories = new IBinaryHashFunctionFactory[] {
+                PointableBinaryHashFunctionFactory.of(IntegerPointable.FACTORY) };
+        ITuplePartitionComputer tpc = new FieldHashPartitionComputerFactory(KeyFields, hashFunctionFactories)
+                .createPartitioner();
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        InMemoryHashJoin joiner = new InMemoryHashJoin(ctx, 1000, new FrameTupleAccessor(RecordDesc), tpc,
+                new FrameTupleAccessor(RecordDesc), tpc, new FrameTuplePairComparator(KeyFields, KeyFields,
+                        comparators), false, null, table, null, false, KeyFields, KeyFields);
+        for (ByteBuffer buffer : buildFrames) {
+            ByteBuffer copy = ctx.allocateFrame(buffer.capacity());
+            copy.put(buffer.array(), 0, buffer.capacity());
+            copy.flip();
+            joiner.build(copy);
+        }
+        final FrameTupleAccessor resultAccessor = new FrameTupleAccessor(new RecordDescriptor(
+                new ISerializerDeserializer[] { IntegerSerializerDeserializer.INSTANCE,
+                        UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                        UTF8StringSerializerDeserializer.INSTANCE }));
+        final int[] matches = new int[1];
+        IFrameWriter writer = new IFrameWriter() {
+            @Override
+            public void open() throws HyracksDataException {
+            }
+
+            @Override
+            public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                resultAccessor.reset(buffer);
+                for (int i = 0; i < resultAccessor.getTupleCount(); i++) {
+                    byte[] bytes = buffer.array();
+                    int tStart = resultAccessor.getTupleStartOffset(i) + resultAccessor.getFieldSlotsLength();
+                    assertEquals(IntegerPointable.getInteger(bytes, tStart + resultAccessor.getFieldStartOffset(i, 0)),
+                            IntegerPointable.getInteger(bytes, tStart + resultAccessor.getFieldStartOffset(i, 2)));
+                    matches[0]++;
+                }
+            }
+
+            @Override
+            public void fail() throws HyracksDataException {
+            }
+
+            @Override
+            public void close() throws HyracksDataException {
+            }
+        };
+        for (ByteBuffer buffer : probeFrames) {
+            joiner.join(buffer, writer);
+        }
+        joiner.closeJoin(writer);
+        return matches[0];
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunction;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.MurmurHash3BinaryHashFunctionFamily;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
+import org.apache.hyracks.dataflow.std.join.OptimizedHybridHashJoin;
+import org.apache.hyracks.dataflow.std.join.RuntimeBloomFilter;
+
+public class RuntimeBloomFilterTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static int[] KeyFields = new int[] { 0 };
+    static IBinaryHashFunctionFamily[] HashFunctionFamilies = new IBinaryHashFunctionFamily[] {
+            MurmurHash3BinaryHashFunctionFamily.INSTANCE };
+
+    @Test
+    public void testNoFalseNegativesAfterGrowing() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        RuntimeBloomFilter filter = new RuntimeBloomFilter(ctx, 1);
+        int numKeys = 100000;
+        for (int i = 0; i < numKeys; i++) {
+            if (filter.isFull()) {
+                filter.grow(filter.getGrowthInFrames());
+            }
+            filter.add(i * 2);
+        }
+        assertEquals(numKeys, filter.getKeyCount());
+        assertTrue(filter.getFrameCount() > 1);
+        int falsePositives = 0;
+        for (int i = 0; i < numKeys; i++) {
+            assertTrue(filter.mightContain(i * 2));
+            if (filter.mightContain(i * 2 + 1)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positive rate is too high: " + falsePositives, falsePositives < numKeys / 20);
+        filter.close();
+    }
+
+    @Test
+    public void testNoFalseNegativesWhenFull() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        RuntimeBloomFilter filter = new RuntimeBloomFilter(ctx, 1);
+        int numKeys = 1000;
+        for (int i = 0; i < numKeys; i++) {
+            filter.add(i);
+        }
+        assertTrue(filter.isFull());
+        assertEquals(1, filter.getFrameCount());
+        for (int i = 0; i < numKeys; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+        filter.close();
+    }
+
+    @Test
+    public void testDropsProbeTuplesOfSpilledPartitions() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        int numBuildTuples = 2000;
+        int numProbeTuples = 4000;
+        // the build keys are the even numbers below 1000, so that three quarters of the probe tuples have no match
+        List<ByteBuffer> buildFrames = prepareFrames(ctx, numBuildTuples, 2, 1000);
+        List<ByteBuffer> probeFrames = prepareFrames(ctx, numProbeTuples, 1, 2000);
+
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(0);
+        int numOfPartitions = 4;
+        OptimizedHybridHashJoin hhj = new OptimizedHybridHashJoin(ctx, 16, numOfPartitions, "RelR", "RelS",
+                KeyFields, KeyFields, comparators, RecordDesc, RecordDesc, hpc, hpc, null);
+        IBinaryHashFunction[] hashFunctions = new IBinaryHashFunction[] {
+                HashFunctionFamilies[0].createBinaryHashFunction(1) };
+        hhj.setBloomFilter(hashFunctions, hashFunctions);
+
+        hhj.initBuild();
+        for (ByteBuffer buffer : buildFrames) {
+            hhj.build(buffer);
+        }
+        hhj.closeBuild();
+        assertTrue(hhj.getPartitionStatus().cardinality() > 0);
+
+        hhj.initProbe();
+        IFrameWriter writer = new IFrameWriter() {
+            @Override
+            public void open() throws HyracksDataException {
+            }
+
+            @Override
+            public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            }
+
+            @Override
+            public void fail() throws HyracksDataException {
+            }
+
+            @Override
+            public void close() throws HyracksDataException {
+            }
+        };
+        for (ByteBuffer buffer : probeFrames) {
+            hhj.probe(buffer, writer);
+        }
+        hhj.closeProbe(writer);
+
+        int spilledProbeTuples = 0;
+        int residentProbeTuples = 0;
+        for (int pid = 0; pid < numOfPartitions; pid++) {
+            if (hhj.getPartitionStatus().get(pid)) {
+                spilledProbeTuples += hhj.getProbePartitionSizeInTup(pid);
+            } else {
+                residentProbeTuples += hhj.getProbePartitionSizeInTup(pid);
+            }
+        }
+        long filtered = hhj.getNumOfProbeTupsFiltered();
+        assertEquals(numProbeTuples, spilledProbeTuples + residentProbeTuples + filtered);
+        // only probe tuples without a match may be dropped, and most of those of the spilled partitions are
+        assertTrue(numProbeTuples * 3 / 4 >= filtered);
+        assertTrue("only " + filtered + " of " + spilledProbeTuples + " spilled probe tuples were dropped",
+                filtered > 2 * spilledProbeTuples);
+    }
+
+    @Test
+    public void testOnlySpilledPartitionsHaveFilters() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        int numBuildTuples = 8000;
+        int numOfPartitions = 4;
+        List<ByteBuffer> buildFrames = prepareFrames(ctx, numBuildTuples, 1, numBuildTuples);
+
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(0);
+        int[] partitionSizes = new int[numOfPartitions];
+        FrameTupleAccessor accessor = new FrameTupleAccessor(RecordDesc);
+        for (ByteBuffer buffer : buildFrames) {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                partitionSizes[hpc.partition(accessor, i, numOfPartitions)]++;
+            }
+        }
+
+        OptimizedHybridHashJoin hhj = new OptimizedHybridHashJoin(ctx, 16, numOfPartitions, "RelR", "RelS",
+                KeyFields, KeyFields, comparators, RecordDesc, RecordDesc, hpc, hpc, null);
+        IBinaryHashFunction[] hashFunctions = new IBinaryHashFunction[] {
+                HashFunctionFamilies[0].createBinaryHashFunction(1) };
+        hhj.setBloomFilter(hashFunctions, hashFunctions);
+
+        hhj.initBuild();
+        for (ByteBuffer buffer : buildFrames) {
+            hhj.build(buffer);
+        }
+        hhj.closeBuild();
+        int filterFrames = 0;
+        int numOfFilters = 0;
+        for (int pid = 0; pid < numOfPartitions; pid++) {
+            RuntimeBloomFilter filter = hhj.getBloomFilter(pid);
+            if (filter == null) {
+                continue;
+            }
+            // a partition gets its filter once it spills, filled with the tuples spilled before and after that
+            assertEquals(partitionSizes[pid], filter.getKeyCount());
+            filterFrames += filter.getFrameCount();
+            numOfFilters++;
+        }
+        assertTrue(numOfFilters > 0);
+        // the frames of the filters are taken from the memory of the join
+        assertTrue("the filters take " + filterFrames + " frames", filterFrames <= hhj.getMemForJoin() / 4);
+        for (int pid = hhj.getPartitionStatus().nextClearBit(0); pid < numOfPartitions; pid = hhj
+                .getPartitionStatus().nextClearBit(pid + 1)) {
+            if (hhj.getBuildPartitionSizeInTup(pid) > 0) {
+                assertNull(hhj.getBloomFilter(pid));
+            }
+        }
+        hhj.close();
+    }
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, int numTuples, int keyStep, int numKeys)
+            throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < numTuples; i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, (i % (numKeys / keyStep)) * keyStep);
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "value" + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+}
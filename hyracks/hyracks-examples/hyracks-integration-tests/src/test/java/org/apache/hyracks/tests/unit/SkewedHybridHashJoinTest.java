@@ -0,0 +1,213 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameReader;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.MurmurHash3BinaryHashFunctionFamily;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
+import org.apache.hyracks.dataflow.std.join.InMemoryHashJoin;
+import org.apache.hyracks.dataflow.std.join.OptimizedHybridHashJoin;
+import org.apache.hyracks.dataflow.std.structures.SerializableHashTable;
+
+public class SkewedHybridHashJoinTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static int[] KeyFields = new int[] { 0 };
+    static IBinaryHashFunctionFamily[] HashFunctionFamilies = new IBinaryHashFunctionFamily[] {
+            MurmurHash3BinaryHashFunctionFamily.INSTANCE };
+
+    static final int NUM_KEYS = 2000;
+    static final int NUM_PARTITIONS = 4;
+    static final int MEMORY_FRAMES = 220;
+
+    @Test
+    public void testHeavyHitterStaysResident() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        // half of the build tuples have the key 0, the others have one key each
+        List<ByteBuffer> buildFrames = prepareFrames(ctx, 2 * NUM_KEYS, NUM_KEYS);
+        List<ByteBuffer> probeFrames = prepareFrames(ctx, NUM_KEYS, 0);
+
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        hhj.setHeavyHitterDetection(8);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(hhj, buildFrames, probeFrames, counter);
+
+        int heavyPid = hhj.getHeavyHitterPartition();
+        assertEquals(NUM_PARTITIONS, heavyPid);
+        assertEquals(1, hhj.getNumOfHeavyHitters());
+        BitSet spilled = hhj.getPartitionStatus();
+        assertFalse(spilled.get(heavyPid));
+        assertTrue(spilled.cardinality() > 0);
+        assertTrue(hhj.getBuildPartitionSizeInTup(heavyPid) > NUM_KEYS - 100);
+        // small spilled partitions might be merged, but they only hold the tuples of the light keys
+        int spilledTuples = 0;
+        for (int pid = spilled.nextSetBit(0); pid >= 0; pid = spilled.nextSetBit(pid + 1)) {
+            spilledTuples += hhj.getBuildPartitionSizeInTup(pid);
+        }
+        assertTrue(spilledTuples < NUM_KEYS + 100);
+
+        joinSpilledPartitions(ctx, hhj, counter);
+        // every probe key has one build tuple, except for 0, which has NUM_KEYS + 1 of them
+        assertEquals(2 * NUM_KEYS, counter.matches);
+    }
+
+    @Test
+    public void testSameResultWithoutHeavyHitters() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        List<ByteBuffer> buildFrames = prepareFrames(ctx, 2 * NUM_KEYS, NUM_KEYS);
+        List<ByteBuffer> probeFrames = prepareFrames(ctx, NUM_KEYS, 0);
+
+        OptimizedHybridHashJoin hhj = createJoin(ctx);
+        MatchCounter counter = new MatchCounter();
+        joinInMemory(hhj, buildFrames, probeFrames, counter);
+        assertEquals(-1, hhj.getHeavyHitterPartition());
+        joinSpilledPartitions(ctx, hhj, counter);
+        assertEquals(2 * NUM_KEYS, counter.matches);
+    }
+
+    private OptimizedHybridHashJoin createJoin(IHyracksTaskContext ctx) {
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(0);
+        return new OptimizedHybridHashJoin(ctx, MEMORY_FRAMES, NUM_PARTITIONS, "RelR", "RelS", KeyFields, KeyFields,
+                comparators, RecordDesc, RecordDesc, hpc, hpc, null);
+    }
+
+    private void joinInMemory(OptimizedHybridHashJoin hhj, List<ByteBuffer> buildFrames, List<ByteBuffer> probeFrames,
+            MatchCounter counter) throws HyracksDataException {
+        hhj.initBuild();
+        for (ByteBuffer buffer : buildFrames) {
+            hhj.build(buffer);
+        }
+        hhj.closeBuild();
+        hhj.initProbe();
+        for (ByteBuffer buffer : probeFrames) {
+            hhj.probe(buffer, counter);
+        }
+        hhj.closeProbe(counter);
+    }
+
+    private void joinSpilledPartitions(IHyracksTaskContext ctx, OptimizedHybridHashJoin hhj, MatchCounter counter)
+            throws HyracksDataException {
+        BitSet spilled = hhj.getPartitionStatus();
+        ITuplePartitionComputer hpc = new FieldHashPartitionComputerFamily(KeyFields, HashFunctionFamilies)
+                .createPartitioner(1);
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        IFrame frame = new VSizeFrame(ctx);
+        for (int pid = spilled.nextSetBit(0); pid >= 0; pid = spilled.nextSetBit(pid + 1)) {
+            IFrameReader buildReader = hhj.getBuildRFReader(pid);
+            IFrameReader probeReader = hhj.getProbeRFReader(pid);
+            if (buildReader == null || probeReader == null) {
+                continue;
+            }
+            int tableSize = 4 * NUM_KEYS;
+            InMemoryHashJoin joiner = new InMemoryHashJoin(ctx, tableSize, new FrameTupleAccessor(RecordDesc), hpc,
+                    new FrameTupleAccessor(RecordDesc), hpc, new FrameTuplePairComparator(KeyFields, KeyFields,
+                            comparators), false, null, new SerializableHashTable(tableSize, ctx), null);
+            buildReader.open();
+            while (buildReader.nextFrame(frame)) {
+                ByteBuffer copy = ctx.allocateFrame(frame.getFrameSize());
+                FrameUtils.copyAndFlip(frame.getBuffer(), copy);
+                joiner.build(copy);
+                frame.reset();
+            }
+            buildReader.close();
+            probeReader.open();
+            while (probeReader.nextFrame(frame)) {
+                joiner.join(frame.getBuffer(), counter);
+                frame.reset();
+            }
+            probeReader.close();
+            joiner.closeJoin(counter);
+        }
+    }
+
+    /**
+     * The build tuple i gets the key 0 if i < numHeavyTuples, and the key i - numHeavyTuples otherwise.
+     */
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, int numTuples, int numHeavyTuples)
+            throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < numTuples; i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i < numHeavyTuples ? 0 : i - numHeavyTuples);
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, "v" + i);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    private static class MatchCounter implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private int matches;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                assertEquals(IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0)),
+                        IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 2)));
+                matches++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.INullWriter;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import org.apache.hyracks.dataflow.std.join.SortMergeJoin;
+import org.apache.hyracks.tests.util.NoopNullWriterFactory;
+
+public class SortMergeJoinTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+    static int[] KeyFields = new int[] { 0 };
+
+    static final int NUM_KEYS = 1000;
+    static final int LEFT_DUPLICATES = 2;
+    static final int HEAVY_KEY = 10;
+    static final int HEAVY_KEY_DUPLICATES = 500;
+
+    @Test
+    public void testInnerJoinWithSpilledGroup() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        MatchCounter counter = join(ctx, false);
+        assertEquals(expectedMatches(), counter.matches);
+        assertEquals(0, counter.nulls);
+    }
+
+    @Test
+    public void testLeftOuterJoinWithSpilledGroup() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        MatchCounter counter = join(ctx, true);
+        assertEquals(expectedMatches(), counter.matches);
+        // the odd keys have no right tuple
+        assertEquals(NUM_KEYS / 2 * LEFT_DUPLICATES, counter.nulls);
+    }
+
+    /**
+     * The left input has every key LEFT_DUPLICATES times, the right input has the even keys once, except for
+     * HEAVY_KEY, which fills many more frames than the memory of the join.
+     */
+    private MatchCounter join(IHyracksTaskContext ctx, boolean isLeftOuter) throws HyracksDataException {
+        IBinaryComparator[] comparators = new IBinaryComparator[] {
+                PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY).createBinaryComparator() };
+        INullWriter[] nullWriters = new INullWriter[RecordDesc.getFieldCount()];
+        for (int i = 0; i < nullWriters.length; i++) {
+            nullWriters[i] = NoopNullWriterFactory.INSTANCE.createNullWriter();
+        }
+        SortMergeJoin joiner = new SortMergeJoin(ctx, RecordDesc, RecordDesc, new FrameTuplePairComparator(
+                KeyFields, KeyFields, comparators), 4, null, isLeftOuter, nullWriters);
+
+        List<Integer> rightKeys = new ArrayList<>();
+        for (int key = 0; key < NUM_KEYS; key += 2) {
+            for (int i = 0; i < (key == HEAVY_KEY ? HEAVY_KEY_DUPLICATES : 1); i++) {
+                rightKeys.add(key);
+            }
+        }
+        for (ByteBuffer buffer : prepareFrames(ctx, rightKeys, "v")) {
+            joiner.cacheRight(buffer);
+        }
+        joiner.closeCache();
+
+        List<Integer> leftKeys = new ArrayList<>();
+        for (int key = 0; key < NUM_KEYS; key++) {
+            for (int i = 0; i < LEFT_DUPLICATES; i++) {
+                leftKeys.add(key);
+            }
+        }
+        MatchCounter counter = new MatchCounter();
+        for (ByteBuffer buffer : prepareFrames(ctx, leftKeys, "v")) {
+            joiner.join(buffer, counter);
+        }
+        joiner.closeJoin(counter);
+        return counter;
+    }
+
+    private int expectedMatches() {
+        return (NUM_KEYS / 2 - 1 + HEAVY_KEY_DUPLICATES) * LEFT_DUPLICATES;
+    }
+
+    private static class MatchCounter implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private int matches;
+        private int nulls;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                if (accessor.getFieldLength(i, 2) != 4) {
+                    nulls++;
+                    continue;
+                }
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                assertEquals(IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0)),
+                        IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 2)));
+                matches++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
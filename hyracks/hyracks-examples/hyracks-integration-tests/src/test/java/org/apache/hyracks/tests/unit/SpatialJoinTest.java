@@ -0,0 +1,176 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.marshalling.DoubleSerializerDeserializer;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.storage.am.common.api.IPrimitiveValueProvider;
+import org.apache.hyracks.storage.am.rtree.dataflow.PlaneSweepSpatialJoin;
+import org.apache.hyracks.storage.am.rtree.impls.DoublePrimitiveValueProviderFactory;
+import org.apache.hyracks.storage.am.rtree.impls.Rectangle;
+
+public class SpatialJoinTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE });
+    static RecordDescriptor ResultDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE,
+            DoubleSerializerDeserializer.INSTANCE, DoubleSerializerDeserializer.INSTANCE });
+    static int[] MbrFields = new int[] { 1, 2, 3, 4 };
+
+    static final int NUM_RECTANGLES = 600;
+    static final double SPACE_SIZE = 1000;
+
+    @Test
+    public void testJoinOverManyPartitions() throws HyracksDataException {
+        joinAndCheck(8, 4, 8);
+    }
+
+    @Test
+    public void testJoinWithOnePartition() throws HyracksDataException {
+        joinAndCheck(1, 1, 3);
+    }
+
+    private void joinAndCheck(int tilesPerDimension, int numPartitions, int memSize) throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        Random random = new Random(17);
+        List<double[]> left = randomRectangles(random);
+        List<double[]> right = randomRectangles(random);
+
+        IPrimitiveValueProvider[] valueProviders = new IPrimitiveValueProvider[MbrFields.length];
+        for (int i = 0; i < valueProviders.length; i++) {
+            valueProviders[i] = DoublePrimitiveValueProviderFactory.INSTANCE.createPrimitiveValueProvider();
+        }
+        Rectangle space = new Rectangle(2);
+        space.setLow(0, 0);
+        space.setLow(1, 0);
+        space.setHigh(0, SPACE_SIZE);
+        space.setHigh(1, SPACE_SIZE);
+        PlaneSweepSpatialJoin joiner = new PlaneSweepSpatialJoin(ctx, RecordDesc, RecordDesc, MbrFields, MbrFields,
+                valueProviders, valueProviders, space, tilesPerDimension, numPartitions, memSize);
+        for (ByteBuffer buffer : prepareFrames(ctx, right)) {
+            joiner.partitionRight(buffer);
+        }
+        joiner.closePartitionRight();
+        for (ByteBuffer buffer : prepareFrames(ctx, left)) {
+            joiner.partitionLeft(buffer);
+        }
+        joiner.closePartitionLeft();
+        PairCollector collector = new PairCollector();
+        joiner.join(collector);
+
+        Set<Long> expected = new HashSet<>();
+        for (int l = 0; l < left.size(); l++) {
+            for (int r = 0; r < right.size(); r++) {
+                if (intersect(left.get(l), right.get(r))) {
+                    expected.add(pair(l, r));
+                }
+            }
+        }
+        assertEquals(expected.size(), collector.pairCount);
+        assertEquals(expected, collector.pairs);
+    }
+
+    /**
+     * Most rectangles are small, but some span many tiles, and some only touch the others.
+     */
+    private List<double[]> randomRectangles(Random random) {
+        List<double[]> rectangles = new ArrayList<>();
+        for (int i = 0; i < NUM_RECTANGLES; i++) {
+            double width = i % 50 == 0 ? 400 : 1 + random.nextInt(30);
+            double height = i % 50 == 1 ? 400 : 1 + random.nextInt(30);
+            double x = random.nextInt((int) (SPACE_SIZE - width));
+            double y = random.nextInt((int) (SPACE_SIZE - height));
+            rectangles.add(new double[] { x, y, x + width, y + height });
+        }
+        return rectangles;
+    }
+
+    private static boolean intersect(double[] r1, double[] r2) {
+        return r1[0] <= r2[2] && r2[0] <= r1[2] && r1[1] <= r2[3] && r2[1] <= r1[3];
+    }
+
+    private static long pair(int left, int right) {
+        return ((long) left << 32) | right;
+    }
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx, List<double[]> rectangles)
+            throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < rectangles.size(); i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            for (double value : rectangles.get(i)) {
+                tb.addField(DoubleSerializerDeserializer.INSTANCE, value);
+            }
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    private static class PairCollector implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(ResultDesc);
+        private final Set<Long> pairs = new HashSet<>();
+        private int pairCount;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                int left = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0));
+                int right = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 5));
+                pairs.add(pair(left, right));
+                pairCount++;
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.hyracks.tests.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparator;
+import org.apache.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import org.apache.hyracks.api.dataflow.value.ISerializerDeserializer;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import org.apache.hyracks.data.std.primitive.IntegerPointable;
+import org.apache.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import org.apache.hyracks.dataflow.std.group.TopKGroupWriter;
+
+public class TopKGroupWriterTest extends AbstractFrameTest {
+    static RecordDescriptor RecordDesc = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+    static int[] RankFields = new int[] { 1 };
+
+    static final int NUM_GROUPS = 1000;
+    static final int TOP_K = 10;
+
+    @Test
+    public void testSmallestCounts() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        List<Integer> counts = topK(ctx, PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY), TOP_K, 4);
+        assertEquals(TOP_K, counts.size());
+        for (int i = 0; i < TOP_K; i++) {
+            assertEquals(i, counts.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testLargestCounts() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        final IBinaryComparatorFactory ascFactory = PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY);
+        IBinaryComparatorFactory descFactory = new IBinaryComparatorFactory() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public IBinaryComparator createBinaryComparator() {
+                final IBinaryComparator asc = ascFactory.createBinaryComparator();
+                return new IBinaryComparator() {
+                    @Override
+                    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+                            throws HyracksDataException {
+                        return -asc.compare(b1, s1, l1, b2, s2, l2);
+                    }
+                };
+            }
+        };
+        List<Integer> counts = topK(ctx, descFactory, TOP_K, 4);
+        assertEquals(TOP_K, counts.size());
+        for (int i = 0; i < TOP_K; i++) {
+            assertEquals(NUM_GROUPS - 1 - i, counts.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testFewerGroupsThanTopK() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        List<Integer> counts = topK(ctx, PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY),
+                NUM_GROUPS * 2, NUM_GROUPS);
+        assertEquals(NUM_GROUPS, counts.size());
+        for (int i = 0; i < NUM_GROUPS; i++) {
+            assertEquals(i, counts.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testTopKNotFittingInMemoryIsPassedThrough() throws HyracksDataException {
+        IHyracksTaskContext ctx = testUtils.create(256);
+        List<Integer> counts = topK(ctx, PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY), NUM_GROUPS,
+                1);
+        // nothing could be pruned before the frame was full, so every group is output, in no particular order
+        assertEquals(NUM_GROUPS, counts.size());
+        assertEquals(NUM_GROUPS, new HashSet<>(counts).size());
+    }
+
+    /**
+     * Group i has the count i * 7 % NUM_GROUPS, so the counts are a permutation of 0..NUM_GROUPS - 1.
+     *
+     * @return the counts of the output groups, in output order
+     */
+    private List<Integer> topK(IHyracksTaskContext ctx, IBinaryComparatorFactory rankComparatorFactory, int topK,
+            int framesLimit) throws HyracksDataException {
+        CountCollector collector = new CountCollector();
+        TopKGroupWriter writer = new TopKGroupWriter(ctx, framesLimit, topK, RankFields,
+                new IBinaryComparatorFactory[] { rankComparatorFactory }, RecordDesc, collector);
+        writer.open();
+        for (ByteBuffer buffer : prepareFrames(ctx)) {
+            writer.nextFrame(buffer);
+        }
+        writer.close();
+        assertTrue(collector.isClosed);
+        return collector.counts;
+    }
+
+    private List<ByteBuffer> prepareFrames(IHyracksTaskContext ctx) throws HyracksDataException {
+        FrameListBuilder frames = new FrameListBuilder(ctx, RecordDesc.getFieldCount());
+        for (int i = 0; i < NUM_GROUPS; i++) {
+            ArrayTupleBuilder tb = frames.newTuple();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i * 7 % NUM_GROUPS);
+            frames.appendTuple();
+        }
+        return frames.getFrames();
+    }
+
+    private static class CountCollector implements IFrameWriter {
+        private final FrameTupleAccessor accessor = new FrameTupleAccessor(RecordDesc);
+        private final List<Integer> counts = new ArrayList<>();
+        private boolean isClosed = false;
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            accessor.reset(buffer);
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                byte[] bytes = buffer.array();
+                int tStart = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength();
+                int key = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 0));
+                int count = IntegerPointable.getInteger(bytes, tStart + accessor.getFieldStartOffset(i, 1));
+                assertEquals(key * 7 % NUM_GROUPS, count);
+                counts.add(count);
+            }
+        }
+
+        @Override
+        public void fail() throws HyracksDataException {
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+            isClosed = true;
+        }
+    }
+}
@@ -62,6 +62,8 @@ import org.apache.hyracks.dataflow.std.group.hash.HashGroupOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.join.GraceHashJoinOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.join.HybridHashJoinOperatorDescriptor;
 import org.apache.hyracks.dataflow.std.join.InMemoryHashJoinOperatorDescriptor;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndex.Condition;
+import org.apache.hyracks.dataflow.std.join.NestedLoopJoinBlockIndexFactory;
 import org.apache.hyracks.dataflow.std.join.NestedLoopJoinOperatorDescriptor;
 
 public class Join {
@@ -167,6 +169,12 @@ public class Join {
                     PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY), 0, 1), Common.custOrderJoinDesc,
                     memSize, false, null);
 
+        } else if ("indexednestedloop".equalsIgnoreCase(algo)) {
+            join = new NestedLoopJoinOperatorDescriptor(spec, new JoinComparatorFactory(
+                    PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY), 0, 1), Common.custOrderJoinDesc,
+                    memSize, null, false, null, new NestedLoopJoinBlockIndexFactory(0, 1,
+                            PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY), Condition.EQ));
+
         } else if ("gracehash".equalsIgnoreCase(algo)) {
             join = new GraceHashJoinOperatorDescriptor(
                     spec,
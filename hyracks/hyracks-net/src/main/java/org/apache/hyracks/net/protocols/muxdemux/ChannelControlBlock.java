@@ -94,8 +94,22 @@ public class ChannelControlBlock {
                 int delta = buffer.remaining();
                 synchronized (ChannelControlBlock.this) {
                     if (remoteClose.get()) {
+                        if (adaptive) {
+                            pool.recycle(buffer);
+                        }
                         return;
                     }
+                    if (adaptive) {
+                        --heldBuffers;
+                        if (window > minWindow && pool.isOverBudget()) {
+                            --window;
+                            pool.release(bufferSize);
+                            pool.recycle(buffer);
+                            cSet.getMultiplexedConnection().getPerformanceCounters().addCreditWindowShrinks(1);
+                            return;
+                        }
+                        unusedCredits += delta;
+                    }
                     riEmptyStack.push(buffer);
                 }
                 cSet.addPendingCredits(channelId, delta);
@@ -110,6 +124,26 @@ public class ChannelControlBlock {
 
         private IBufferFactory bufferFactory;
 
+        private boolean adaptive;
+
+        private ReadBufferPool pool;
+
+        private int bufferSize;
+
+        private int minWindow;
+
+        private int maxWindow;
+
+        private int window;
+
+        private int heldBuffers;
+
+        private long unusedCredits;
+
+        private boolean windowExhausted;
+
+        private int grantedCredits;
+
         ReadInterface() {
             riEmptyStack = new ArrayDeque<ByteBuffer>();
             credits = 0;
@@ -121,6 +155,22 @@ public class ChannelControlBlock {
             cSet.addPendingCredits(channelId, limit * frameSize);
         }
 
+        @Override
+        public void setBufferFactory(IBufferFactory bufferFactory, int minLimit, int limit, int frameSize) {
+            synchronized (ChannelControlBlock.this) {
+                this.bufferFactory = bufferFactory;
+                adaptive = true;
+                pool = cSet.getMultiplexedConnection().getReadBufferPool();
+                bufferSize = frameSize;
+                minWindow = Math.max(1, minLimit);
+                maxWindow = Math.max(minWindow, limit);
+                window = minWindow;
+                unusedCredits = (long) window * bufferSize;
+                pool.reserve(unusedCredits);
+            }
+            cSet.addPendingCredits(channelId, minWindow * frameSize);
+        }
+
         @Override
         public void setFullBufferAcceptor(ICloseableBufferAcceptor fullBufferAcceptor) {
             fba = fullBufferAcceptor;
@@ -138,11 +188,18 @@ public class ChannelControlBlock {
                 }
                 if (currentReadBuffer == null) {
                     currentReadBuffer = riEmptyStack.poll();
+                    if (currentReadBuffer == null && adaptive) {
+                        currentReadBuffer = pool.getBuffer(bufferSize);
+                    }
                     //if current buffer == null and limit not reached
                     // factory.createBuffer factory
                     if (currentReadBuffer == null) {
                         currentReadBuffer = bufferFactory.createBuffer();
                     }
+                    if (currentReadBuffer == null && adaptive) {
+                        // the factory has handed out its buffers to a window that shrank since
+                        currentReadBuffer = ByteBuffer.allocate(bufferSize);
+                    }
                     assert currentReadBuffer != null;
                 }
                 int rSize = Math.min(size, currentReadBuffer.remaining());
@@ -158,6 +215,10 @@ public class ChannelControlBlock {
                         currentReadBuffer.limit(currentReadBuffer.capacity());
                     }
                     size -= len;
+                    unusedCredits -= len;
+                    if (unusedCredits <= 0) {
+                        windowExhausted = true;
+                    }
                     if (len < rSize) {
                         return size;
                     }
@@ -165,18 +226,62 @@ public class ChannelControlBlock {
                     return size;
                 }
                 if (currentReadBuffer.remaining() <= 0) {
+                    boolean consumerIdle = heldBuffers == 0;
                     flush();
+                    if (adaptive && consumerIdle && windowExhausted) {
+                        windowExhausted = false;
+                        grow();
+                    }
                 }
             }
         }
 
+        /**
+         * Doubles the window of a consumer that has drained all buffers and waited for the next one after the remote
+         * side had used up the window. The new credits are sent by {@link ChannelControlBlock#read(SocketChannel, int)}
+         * once the channel is unlocked.
+         */
+        private void grow() {
+            int n = pool.reserve(Math.min(window, maxWindow - window), bufferSize);
+            if (n > 0) {
+                window += n;
+                unusedCredits += n * bufferSize;
+                grantedCredits += n * bufferSize;
+                cSet.getMultiplexedConnection().getPerformanceCounters().addCreditWindowGrowths(1);
+            }
+        }
+
+        private int takeGrantedCredits() {
+            int credits = grantedCredits;
+            grantedCredits = 0;
+            return credits;
+        }
+
         void flush() {
             if (currentReadBuffer != null) {
                 currentReadBuffer.flip();
+                if (adaptive) {
+                    ++heldBuffers;
+                }
                 fba.accept(currentReadBuffer);
                 currentReadBuffer = null;
             }
         }
+
+        /**
+         * Gives the window and the buffers that are not held by the consumer back to the pool once the remote side
+         * has closed the channel.
+         */
+        void releaseWindow() {
+            if (!adaptive || window == 0) {
+                return;
+            }
+            pool.release((long) window * bufferSize);
+            window = 0;
+            while (!riEmptyStack.isEmpty()) {
+                pool.recycle(riEmptyStack.poll());
+            }
+        }
     }
 
     private final class WriteInterface implements IChannelWriteInterface {
@@ -278,7 +383,7 @@ public class ChannelControlBlock {
                     writerState.command.setChannelId(channelId);
                     writerState.command.setCommandType(MuxDemuxCommand.CommandType.DATA);
                     writerState.command.setData(size);
-                    writerState.reset(currentWriteBuffer, size, ChannelControlBlock.this);
+                    writerState.append(currentWriteBuffer, size, ChannelControlBlock.this);
                 } else {
                     adjustChannelWritability();
                 }
@@ -286,7 +391,7 @@ public class ChannelControlBlock {
                 writerState.command.setChannelId(channelId);
                 writerState.command.setCommandType(MuxDemuxCommand.CommandType.ERROR);
                 writerState.command.setData(ecode);
-                writerState.reset(null, 0, null);
+                writerState.append(null, 0, null);
                 ecodeSent = true;
                 localClose.set(true);
                 adjustChannelWritability();
@@ -294,7 +399,7 @@ public class ChannelControlBlock {
                 writerState.command.setChannelId(channelId);
                 writerState.command.setCommandType(MuxDemuxCommand.CommandType.CLOSE_CHANNEL);
                 writerState.command.setData(0);
-                writerState.reset(null, 0, null);
+                writerState.append(null, 0, null);
                 eosSent = true;
                 localClose.set(true);
                 adjustChannelWritability();
@@ -347,8 +452,14 @@ public class ChannelControlBlock {
         wi.writeComplete();
     }
 
-    synchronized int read(SocketChannel sc, int size) throws IOException, NetException {
-        return ri.read(sc, size);
+    int read(SocketChannel sc, int size) throws IOException, NetException {
+        int credits;
+        synchronized (this) {
+            size = ri.read(sc, size);
+            credits = ri.takeGrantedCredits();
+        }
+        cSet.addPendingCredits(channelId, credits);
+        return size;
     }
 
     int getReadCredits() {
@@ -368,6 +479,7 @@ public class ChannelControlBlock {
         ri.flush();
         ri.fba.close();
         remoteClose.set(true);
+        ri.releaseWindow();
     }
 
     void reportRemoteEOSAck() {
@@ -386,6 +498,7 @@ public class ChannelControlBlock {
         ri.flush();
         ri.fba.error(ecode);
         remoteClose.set(true);
+        ri.releaseWindow();
     }
 
     boolean completelyClosed() {
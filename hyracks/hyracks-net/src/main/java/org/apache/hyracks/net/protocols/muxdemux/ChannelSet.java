@@ -102,6 +102,10 @@ public class ChannelSet {
         --openChannelCount;
     }
 
+    MultiplexedConnection getMultiplexedConnection() {
+        return mConn;
+    }
+
     ChannelControlBlock getCCB(int channelId) {
         return ccbArray[channelId];
     }
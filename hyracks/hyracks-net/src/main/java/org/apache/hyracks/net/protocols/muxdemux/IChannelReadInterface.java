@@ -52,4 +52,22 @@ public interface IChannelReadInterface {
      *            - the size of each buffer
      */
     public void setBufferFactory(IBufferFactory bufferFactory, int limit, int frameSize);
+
+    /**
+     * Set the buffer factory, and let the credit window of the channel adapt to the consumer. The window starts
+     * with minLimit buffers, doubles whenever the consumer has drained all buffers and the remote side has run out of
+     * credits, and gives back buffers while the windows of the connection exceed its read buffer budget.
+     * The consumer must be able to make progress with minLimit buffers.
+     * 
+     * @param bufferFactory
+     *            - the buffer factory
+     * @param minLimit
+     *            - the smallest number of buffers of the window
+     * @param limit
+     *            - the largest number of buffers of the window, or {@link Integer#MAX_VALUE} to let only the read
+     *            buffer budget of the connection bound it
+     * @param frameSize
+     *            - the size of each buffer
+     */
+    public void setBufferFactory(IBufferFactory bufferFactory, int minLimit, int limit, int frameSize);
 }
\ No newline at end of file
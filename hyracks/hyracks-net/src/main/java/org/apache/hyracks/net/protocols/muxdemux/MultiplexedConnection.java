@@ -37,6 +37,8 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
 
     private static final int MAX_CHUNKS_READ_PER_CYCLE = 4;
 
+    private static final int MAX_GATHERED_COMMANDS = 16;
+
     private final MuxDemux muxDemux;
 
     private final IEventCounter pendingWriteEventsCounter;
@@ -47,6 +49,8 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
 
     private final WriterState writerState;
 
+    private final ReadBufferPool readBufferPool;
+
     private TCPConnection tcpConnection;
 
     private int lastChannelWritten;
@@ -81,6 +85,7 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
                 }
             }
         };
+        readBufferPool = new ReadBufferPool(muxDemux.getReadBufferBudget(), muxDemux.getPerformanceCounters());
         cSet = new ChannelSet(this, pendingWriteEventsCounter);
         readerState = new ReaderState();
         writerState = new WriterState();
@@ -88,6 +93,14 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
         connectionFailure = false;
     }
 
+    ReadBufferPool getReadBufferPool() {
+        return readBufferPool;
+    }
+
+    MuxDemuxPerformanceCounters getPerformanceCounters() {
+        return muxDemux.getPerformanceCounters();
+    }
+
     int getConnectionAttempts() {
         return nConnectionAttempts;
     }
@@ -154,79 +167,153 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
     }
 
     class WriterState {
-        private final ByteBuffer cmdWriteBuffer;
+        private final ByteBuffer[] cmdWriteBuffers;
+
+        private final ByteBuffer[] writeBuffers;
+
+        private final boolean[] payload;
+
+        private final ByteBuffer[] pendingBuffers;
+
+        private final int[] pendingLimits;
+
+        private final ChannelControlBlock[] ccbs;
 
         final MuxDemuxCommand command;
 
-        private ByteBuffer pendingBuffer;
+        private int nCommands;
 
-        private int pendingWriteSize;
+        private int nWriteBuffers;
 
-        private ChannelControlBlock ccb;
+        private int firstWriteBuffer;
 
         public WriterState() {
-            cmdWriteBuffer = ByteBuffer.allocateDirect(MuxDemuxCommand.COMMAND_SIZE);
-            cmdWriteBuffer.flip();
+            ByteBuffer cmdBuffer = ByteBuffer.allocateDirect(MuxDemuxCommand.COMMAND_SIZE * MAX_GATHERED_COMMANDS);
+            cmdWriteBuffers = new ByteBuffer[MAX_GATHERED_COMMANDS];
+            for (int i = 0; i < MAX_GATHERED_COMMANDS; ++i) {
+                cmdBuffer.limit((i + 1) * MuxDemuxCommand.COMMAND_SIZE);
+                cmdBuffer.position(i * MuxDemuxCommand.COMMAND_SIZE);
+                cmdWriteBuffers[i] = cmdBuffer.slice();
+            }
+            writeBuffers = new ByteBuffer[2 * MAX_GATHERED_COMMANDS];
+            payload = new boolean[2 * MAX_GATHERED_COMMANDS];
+            pendingBuffers = new ByteBuffer[MAX_GATHERED_COMMANDS];
+            pendingLimits = new int[MAX_GATHERED_COMMANDS];
+            ccbs = new ChannelControlBlock[MAX_GATHERED_COMMANDS];
             command = new MuxDemuxCommand();
-            ccb = null;
         }
 
         boolean writePending() {
-            return cmdWriteBuffer.remaining() > 0 || (pendingBuffer != null && pendingWriteSize > 0);
+            return nCommands > 0;
         }
 
-        void reset(ByteBuffer pendingBuffer, int pendingWriteSize, ChannelControlBlock ccb) {
+        boolean isFull() {
+            return nCommands >= MAX_GATHERED_COMMANDS;
+        }
+
+        boolean contains(ChannelControlBlock ccb) {
+            for (int i = 0; i < nCommands; ++i) {
+                if (ccbs[i] == ccb) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Adds the current command, followed by the next pendingWriteSize bytes of pendingBuffer, to the commands that
+         * are written together by the next {@link #performPendingWrite(SocketChannel)}.
+         */
+        void append(ByteBuffer pendingBuffer, int pendingWriteSize, ChannelControlBlock ccb) {
+            assert !isFull();
+            if (nCommands == 0) {
+                pendingWriteEventsCounter.increment();
+            }
+            ByteBuffer cmdWriteBuffer = cmdWriteBuffers[nCommands];
             cmdWriteBuffer.clear();
             command.write(cmdWriteBuffer);
             cmdWriteBuffer.flip();
-            this.pendingBuffer = pendingBuffer;
-            this.pendingWriteSize = pendingWriteSize;
-            this.ccb = ccb;
+            addWriteBuffer(cmdWriteBuffer, false);
+            if (pendingBuffer != null && pendingWriteSize > 0) {
+                assert pendingWriteSize <= pendingBuffer.remaining();
+                pendingBuffers[nCommands] = pendingBuffer;
+                pendingLimits[nCommands] = pendingBuffer.limit();
+                pendingBuffer.limit(pendingBuffer.position() + pendingWriteSize);
+                addWriteBuffer(pendingBuffer, true);
+            }
+            ccbs[nCommands] = ccb;
+            ++nCommands;
+        }
+
+        private void addWriteBuffer(ByteBuffer buffer, boolean isPayload) {
+            writeBuffers[nWriteBuffers] = buffer;
+            payload[nWriteBuffers] = isPayload;
+            ++nWriteBuffers;
         }
 
+        /**
+         * Writes the appended commands and their payloads with as few gathering writes as the socket allows.
+         *
+         * @return true if everything was written, false if the socket could not take all of it
+         */
         boolean performPendingWrite(SocketChannel sc) throws IOException {
-            int len = cmdWriteBuffer.remaining();
-            if (len > 0) {
-                int written = sc.write(cmdWriteBuffer);
-                muxDemux.getPerformanceCounters().addSignalingBytesWritten(written);
-                if (written < len) {
+            if (firstWriteBuffer < nWriteBuffers) {
+                long signalingBytes = getRemaining(false);
+                long payloadBytes = getRemaining(true);
+                sc.write(writeBuffers, firstWriteBuffer, nWriteBuffers - firstWriteBuffer);
+                MuxDemuxPerformanceCounters counters = muxDemux.getPerformanceCounters();
+                counters.addWriteCalls(1);
+                counters.addSignalingBytesWritten(signalingBytes - getRemaining(false));
+                counters.addPayloadBytesWritten(payloadBytes - getRemaining(true));
+                while (firstWriteBuffer < nWriteBuffers && !writeBuffers[firstWriteBuffer].hasRemaining()) {
+                    writeBuffers[firstWriteBuffer++] = null;
+                }
+                if (firstWriteBuffer < nWriteBuffers) {
                     return false;
                 }
             }
-            if (pendingBuffer != null) {
-                if (pendingWriteSize > 0) {
-                    assert pendingWriteSize <= pendingBuffer.remaining();
-                    int oldLimit = pendingBuffer.limit();
-                    try {
-                        pendingBuffer.limit(pendingWriteSize + pendingBuffer.position());
-                        int written = sc.write(pendingBuffer);
-                        muxDemux.getPerformanceCounters().addPayloadBytesWritten(written);
-                        pendingWriteSize -= written;
-                    } finally {
-                        pendingBuffer.limit(oldLimit);
-                    }
+            if (nCommands == 0) {
+                return true;
+            }
+            for (int i = 0; i < nCommands; ++i) {
+                if (pendingBuffers[i] != null) {
+                    pendingBuffers[i].limit(pendingLimits[i]);
+                    pendingBuffers[i] = null;
                 }
-                if (pendingWriteSize > 0) {
-                    return false;
+                if (ccbs[i] != null) {
+                    ccbs[i].writeComplete();
+                    ccbs[i] = null;
                 }
-                pendingBuffer = null;
-                pendingWriteSize = 0;
-            }
-            if (ccb != null) {
-                ccb.writeComplete();
-                ccb = null;
             }
+            nCommands = 0;
+            nWriteBuffers = 0;
+            firstWriteBuffer = 0;
+            pendingWriteEventsCounter.decrement();
             return true;
         }
+
+        private long getRemaining(boolean isPayload) {
+            long remaining = 0;
+            for (int i = firstWriteBuffer; i < nWriteBuffers; ++i) {
+                if (payload[i] == isPayload) {
+                    remaining += writeBuffers[i].remaining();
+                }
+            }
+            return remaining;
+        }
+    }
+
+    /**
+     * @return true if another command can be appended to the writer state, which is flushed first when it is full
+     */
+    private boolean ensureWriteSpace(SocketChannel sc) throws IOException {
+        return !writerState.isFull() || writerState.performPendingWrite(sc);
     }
 
     void driveWriterStateMachine() throws IOException, NetException {
         SocketChannel sc = tcpConnection.getSocketChannel();
-        if (writerState.writePending()) {
-            if (!writerState.performPendingWrite(sc)) {
-                return;
-            }
-            pendingWriteEventsCounter.decrement();
+        if (!writerState.performPendingWrite(sc)) {
+            return;
         }
         int numCycles;
 
@@ -239,19 +326,22 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
             synchronized (MultiplexedConnection.this) {
                 BitSet pendingChannelSynBitmap = cSet.getPendingChannelSynBitmap();
                 for (int j = pendingChannelSynBitmap.nextSetBit(0); j >= 0; j = pendingChannelSynBitmap.nextSetBit(j)) {
+                    if (!ensureWriteSpace(sc)) {
+                        return;
+                    }
                     pendingChannelSynBitmap.clear(j);
                     writerState.command.setChannelId(j);
                     writerState.command.setCommandType(MuxDemuxCommand.CommandType.OPEN_CHANNEL);
                     writerState.command.setData(0);
-                    writerState.reset(null, 0, null);
-                    if (!writerState.performPendingWrite(sc)) {
-                        return;
-                    }
+                    writerState.append(null, 0, null);
                     pendingWriteEventsCounter.decrement();
                 }
                 BitSet pendingChannelCreditsBitmap = cSet.getPendingChannelCreditsBitmap();
                 for (int j = pendingChannelCreditsBitmap.nextSetBit(0); j >= 0; j = pendingChannelCreditsBitmap
                         .nextSetBit(j)) {
+                    if (!ensureWriteSpace(sc)) {
+                        return;
+                    }
                     writerState.command.setChannelId(j);
                     writerState.command.setCommandType(MuxDemuxCommand.CommandType.ADD_CREDITS);
                     ChannelControlBlock ccb = cSet.getCCB(j);
@@ -266,26 +356,23 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
                         ccb.setReadCredits(credits - effectiveCredits);
                     }
                     writerState.command.setData(effectiveCredits);
-                    writerState.reset(null, 0, null);
-                    if (!writerState.performPendingWrite(sc)) {
-                        return;
-                    }
+                    writerState.append(null, 0, null);
                     if (credits == effectiveCredits) {
                         pendingWriteEventsCounter.decrement();
                     }
                 }
                 BitSet pendingEOSAckBitmap = cSet.getPendingEOSAckBitmap();
                 for (int j = pendingEOSAckBitmap.nextSetBit(0); j >= 0; j = pendingEOSAckBitmap.nextSetBit(j)) {
+                    if (!ensureWriteSpace(sc)) {
+                        return;
+                    }
                     pendingEOSAckBitmap.clear(j);
                     ChannelControlBlock ccb = cSet.getCCB(j);
                     ccb.reportRemoteEOSAck();
                     writerState.command.setChannelId(j);
                     writerState.command.setCommandType(MuxDemuxCommand.CommandType.CLOSE_CHANNEL_ACK);
                     writerState.command.setData(0);
-                    writerState.reset(null, 0, null);
-                    if (!writerState.performPendingWrite(sc)) {
-                        return;
-                    }
+                    writerState.append(null, 0, null);
                     pendingWriteEventsCounter.decrement();
                 }
                 BitSet pendingChannelWriteBitmap = cSet.getPendingChannelWriteBitmap();
@@ -293,20 +380,23 @@ public class MultiplexedConnection implements ITCPConnectionEventListener {
                 if (lastChannelWritten == -1) {
                     lastChannelWritten = pendingChannelWriteBitmap.nextSetBit(0);
                     if (lastChannelWritten == -1) {
-                        return;
+                        break;
                     }
                 }
                 writeCCB = cSet.getCCB(lastChannelWritten);
             }
-            writeCCB.write(writerState);
-            if (writerState.writePending()) {
-                pendingWriteEventsCounter.increment();
+            /*
+             * The payload of a channel is only consumed once it has been written, so a channel that already has a
+             * command in the writer state has to wait for the next batch.
+             */
+            if (writerState.contains(writeCCB) || writerState.isFull()) {
                 if (!writerState.performPendingWrite(sc)) {
                     return;
                 }
-                pendingWriteEventsCounter.decrement();
             }
+            writeCCB.write(writerState);
         }
+        writerState.performPendingWrite(sc);
     }
 
     class ReaderState {
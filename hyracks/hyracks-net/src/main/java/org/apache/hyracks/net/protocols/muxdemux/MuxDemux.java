@@ -32,6 +32,8 @@ import org.apache.hyracks.net.protocols.tcp.TCPEndpoint;
  * @author vinayakb
  */
 public class MuxDemux {
+    public static final long DEFAULT_READ_BUFFER_BUDGET = 16L * 1024 * 1024;
+
     private final InetSocketAddress localAddress;
 
     private final IChannelOpenListener channelOpenListener;
@@ -44,6 +46,8 @@ public class MuxDemux {
 
     private final MuxDemuxPerformanceCounters perfCounters;
 
+    private final long readBufferBudget;
+
     /**
      * Constructor.
      * 
@@ -58,6 +62,20 @@ public class MuxDemux {
      */
     public MuxDemux(InetSocketAddress localAddress, IChannelOpenListener listener, int nThreads,
             int maxConnectionAttempts) {
+        this(localAddress, listener, nThreads, maxConnectionAttempts, DEFAULT_READ_BUFFER_BUDGET);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param readBufferBudget
+     *            - Bytes of read buffers that the adaptive credit windows of the channels of one connection may grow
+     *            to together
+     * @see #MuxDemux(InetSocketAddress, IChannelOpenListener, int, int)
+     */
+    public MuxDemux(InetSocketAddress localAddress, IChannelOpenListener listener, int nThreads,
+            int maxConnectionAttempts, long readBufferBudget) {
+        this.readBufferBudget = readBufferBudget;
         this.localAddress = localAddress;
         this.channelOpenListener = listener;
         this.maxConnectionAttempts = maxConnectionAttempts;
@@ -138,6 +156,10 @@ public class MuxDemux {
         return mConn;
     }
 
+    long getReadBufferBudget() {
+        return readBufferBudget;
+    }
+
     IChannelOpenListener getChannelOpenListener() {
         return channelOpenListener;
     }
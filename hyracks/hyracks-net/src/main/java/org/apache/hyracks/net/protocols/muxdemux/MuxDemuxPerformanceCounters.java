@@ -25,11 +25,29 @@ public class MuxDemuxPerformanceCounters {
 
     private final AtomicLong signalingBytesWritten;
 
+    private final AtomicLong writeCalls;
+
+    private final AtomicLong readBufferBytesReserved;
+
+    private final AtomicLong readBufferBytesPooled;
+
+    private final AtomicLong readBuffersReused;
+
+    private final AtomicLong creditWindowGrowths;
+
+    private final AtomicLong creditWindowShrinks;
+
     public MuxDemuxPerformanceCounters() {
         payloadBytesRead = new AtomicLong();
         payloadBytesWritten = new AtomicLong();
         signalingBytesRead = new AtomicLong();
         signalingBytesWritten = new AtomicLong();
+        writeCalls = new AtomicLong();
+        readBufferBytesReserved = new AtomicLong();
+        readBufferBytesPooled = new AtomicLong();
+        readBuffersReused = new AtomicLong();
+        creditWindowGrowths = new AtomicLong();
+        creditWindowShrinks = new AtomicLong();
     }
 
     public void addPayloadBytesRead(long delta) {
@@ -63,4 +81,61 @@ public class MuxDemuxPerformanceCounters {
     public long getSignalingBytesWritten() {
         return signalingBytesWritten.get();
     }
+
+    public void addWriteCalls(long delta) {
+        writeCalls.addAndGet(delta);
+    }
+
+    /**
+     * @return the number of writes issued on the sockets, each of which may gather several commands and payloads
+     */
+    public long getWriteCalls() {
+        return writeCalls.get();
+    }
+
+    public void addReadBufferBytesReserved(long delta) {
+        readBufferBytesReserved.addAndGet(delta);
+    }
+
+    /**
+     * @return the bytes of the credit windows that the channels with adaptive windows currently hold
+     */
+    public long getReadBufferBytesReserved() {
+        return readBufferBytesReserved.get();
+    }
+
+    public void addReadBufferBytesPooled(long delta) {
+        readBufferBytesPooled.addAndGet(delta);
+    }
+
+    /**
+     * @return the bytes of the read buffers kept by the connections for their next channels
+     */
+    public long getReadBufferBytesPooled() {
+        return readBufferBytesPooled.get();
+    }
+
+    public void addReadBuffersReused(long delta) {
+        readBuffersReused.addAndGet(delta);
+    }
+
+    public long getReadBuffersReused() {
+        return readBuffersReused.get();
+    }
+
+    public void addCreditWindowGrowths(long delta) {
+        creditWindowGrowths.addAndGet(delta);
+    }
+
+    public long getCreditWindowGrowths() {
+        return creditWindowGrowths.get();
+    }
+
+    public void addCreditWindowShrinks(long delta) {
+        creditWindowShrinks.addAndGet(delta);
+    }
+
+    public long getCreditWindowShrinks() {
+        return creditWindowShrinks.get();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.net.protocols.muxdemux;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The read buffers shared by the channels of a {@link MultiplexedConnection}. Every channel with an adaptive credit
+ * window reserves the bytes of its window here, and a window only grows while the reserved bytes of all channels stay
+ * within the budget of the connection. Buffers given up by a shrinking or closed channel are kept, up to a quarter of
+ * the budget, for the next channel that needs a buffer of the same size.
+ */
+class ReadBufferPool {
+    private final long budget;
+
+    private final MuxDemuxPerformanceCounters perfCounters;
+
+    private final Map<Integer, Deque<ByteBuffer>> freeBuffers;
+
+    private long reservedBytes;
+
+    private long pooledBytes;
+
+    ReadBufferPool(long budget, MuxDemuxPerformanceCounters perfCounters) {
+        this.budget = budget;
+        this.perfCounters = perfCounters;
+        freeBuffers = new HashMap<Integer, Deque<ByteBuffer>>();
+    }
+
+    /**
+     * Reserves the minimum window of a channel, even if that exceeds the budget.
+     */
+    synchronized void reserve(long bytes) {
+        reservedBytes += bytes;
+        perfCounters.addReadBufferBytesReserved(bytes);
+    }
+
+    /**
+     * @return the number of buffers, up to nBuffers, that fit into the budget and have been reserved
+     */
+    synchronized int reserve(int nBuffers, int bufferSize) {
+        int n = (int) Math.max(0, Math.min(nBuffers, (budget - reservedBytes) / bufferSize));
+        reserve((long) n * bufferSize);
+        return n;
+    }
+
+    synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+        perfCounters.addReadBufferBytesReserved(-bytes);
+    }
+
+    synchronized boolean isOverBudget() {
+        return reservedBytes > budget;
+    }
+
+    /**
+     * @return a pooled buffer of the given capacity, or null if there is none
+     */
+    synchronized ByteBuffer getBuffer(int capacity) {
+        Deque<ByteBuffer> buffers = freeBuffers.get(capacity);
+        ByteBuffer buffer = buffers == null ? null : buffers.poll();
+        if (buffer != null) {
+            pooledBytes -= capacity;
+            perfCounters.addReadBufferBytesPooled(-capacity);
+            perfCounters.addReadBuffersReused(1);
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    synchronized void recycle(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (pooledBytes + capacity > budget / 4) {
+            return;
+        }
+        Deque<ByteBuffer> buffers = freeBuffers.get(capacity);
+        if (buffers == null) {
+            buffers = new ArrayDeque<ByteBuffer>();
+            freeBuffers.put(capacity, buffers);
+        }
+        buffers.push(buffer);
+        pooledBytes += capacity;
+        perfCounters.addReadBufferBytesPooled(capacity);
+    }
+}
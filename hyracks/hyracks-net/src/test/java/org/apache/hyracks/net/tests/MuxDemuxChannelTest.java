@@ -0,0 +1,329 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.net.tests;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import org.apache.hyracks.net.buffers.IBufferAcceptor;
+import org.apache.hyracks.net.buffers.ICloseableBufferAcceptor;
+import org.apache.hyracks.net.protocols.muxdemux.ChannelControlBlock;
+import org.apache.hyracks.net.protocols.muxdemux.IBufferFactory;
+import org.apache.hyracks.net.protocols.muxdemux.IChannelOpenListener;
+import org.apache.hyracks.net.protocols.muxdemux.MultiplexedConnection;
+import org.apache.hyracks.net.protocols.muxdemux.MuxDemux;
+import org.apache.hyracks.net.protocols.muxdemux.MuxDemuxPerformanceCounters;
+
+/**
+ * Streams a few MB of direct frames over 1 to 16 channels of one connection, and checks that every channel receives
+ * its ints in order while the commands and payloads of the channels are gathered into the same socket writes. The
+ * receiving channels either grant a fixed number of buffers or adapt their credit windows within the read buffer
+ * budget of the connection, growing while they are alone and shrinking once another channel needs its share.
+ */
+public class MuxDemuxChannelTest {
+    static final int FRAME_SIZE = 32768;
+
+    static final int BUFFERS_PER_CHANNEL = 8;
+
+    private static final long BYTES_PER_RUN = 4L * 1024 * 1024;
+
+    private static final long TIMEOUT_MS = 10000;
+
+    @Test
+    public void testGatheredWritesKeepChannelOrder() throws Exception {
+        AtomicBoolean failFlag = new AtomicBoolean();
+        MuxDemux receiver = new MuxDemux(new InetSocketAddress("127.0.0.1", 0),
+                createOpenListener(failFlag, false), 1, 5);
+        runChannels(receiver, failFlag);
+    }
+
+    @Test
+    public void testAdaptiveCreditWindows() throws Exception {
+        AtomicBoolean failFlag = new AtomicBoolean();
+        // less than the 16 * BUFFERS_PER_CHANNEL buffers that fixed windows would take
+        long budget = 32L * FRAME_SIZE;
+        MuxDemux receiver = new MuxDemux(new InetSocketAddress("127.0.0.1", 0), createOpenListener(failFlag, true), 1,
+                5, budget);
+        runChannels(receiver, failFlag);
+
+        MuxDemuxPerformanceCounters counters = receiver.getPerformanceCounters();
+        Assert.assertTrue(counters.getCreditWindowGrowths() > 0);
+        Assert.assertEquals(0, counters.getReadBufferBytesReserved());
+        Assert.assertTrue(counters.getReadBufferBytesPooled() <= budget / 4);
+    }
+
+    @Test
+    public void testCreditWindowsShrinkBackIntoTheBudget() throws Exception {
+        AtomicBoolean failFlag = new AtomicBoolean();
+        long budget = 16L * FRAME_SIZE;
+        // the windows are bounded by the budget only
+        MuxDemux receiver = new MuxDemux(new InetSocketAddress("127.0.0.1", 0), createOpenListener(failFlag, true,
+                Integer.MAX_VALUE), 1, 5, budget);
+        MultiplexedConnection connection = connect(new MuxDemux(null, null, 1, 5), receiver);
+        MuxDemuxPerformanceCounters counters = receiver.getPerformanceCounters();
+
+        // the first channel is alone and grows its window to the whole budget
+        int nFrames = 512;
+        Semaphore permits0 = new Semaphore(0);
+        Thread sender0 = createSender(connection.openChannel(), nFrames, permits0, failFlag);
+        sender0.start();
+        int released = 0;
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (counters.getReadBufferBytesReserved() < budget) {
+            Assert.assertTrue(released < nFrames / 2 && System.currentTimeMillis() < deadline);
+            permits0.release(BUFFERS_PER_CHANNEL);
+            released += BUFFERS_PER_CHANNEL;
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, counters.getCreditWindowShrinks());
+
+        // the smallest window of the second channel is reserved beyond the budget, unless frames of the first
+        // channel that are still on their way have already been given back for it
+        Semaphore permits1 = new Semaphore(0);
+        Thread sender1 = createSender(connection.openChannel(), 1, permits1, failFlag);
+        sender1.start();
+        while (counters.getReadBufferBytesReserved() <= budget && counters.getCreditWindowShrinks() == 0) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        // the first channel gives buffers back as its consumer recycles them, while the second one is still open
+        permits0.release(nFrames - released);
+        sender0.join();
+        permits1.release(1);
+        sender1.join();
+        Assert.assertFalse("Failure flag was set to true", failFlag.get());
+        Assert.assertTrue(counters.getCreditWindowShrinks() > 0);
+        Assert.assertEquals(0, counters.getReadBufferBytesReserved());
+    }
+
+    private void runChannels(MuxDemux receiver, AtomicBoolean failFlag) throws Exception {
+        MultiplexedConnection connection = connect(new MuxDemux(null, null, 1, 5), receiver);
+        for (int nChannels = 1; nChannels <= 16; nChannels *= 4) {
+            streamChannels(connection, nChannels, (int) (BYTES_PER_RUN / FRAME_SIZE / nChannels), failFlag);
+            Assert.assertFalse("Failure flag was set to true", failFlag.get());
+        }
+    }
+
+    /**
+     * Starts the sender and the receiver, and connects the sender to the receiver.
+     */
+    static MultiplexedConnection connect(MuxDemux sender, MuxDemux receiver) throws Exception {
+        sender.start();
+        receiver.start();
+        return sender.connect(receiver.getLocalAddress());
+    }
+
+    /**
+     * Sends framesPerChannel frames of consecutive ints over each of nChannels new channels of the connection, and
+     * waits until every channel is closed by the receiver.
+     */
+    static void streamChannels(MultiplexedConnection connection, int nChannels, int framesPerChannel,
+            AtomicBoolean failFlag) throws Exception {
+        Thread[] threads = new Thread[nChannels];
+        for (int i = 0; i < nChannels; ++i) {
+            threads[i] = createSender(connection.openChannel(), framesPerChannel, failFlag);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static Thread createSender(ChannelControlBlock ccb, int nFrames, AtomicBoolean failFlag) {
+        return createSender(ccb, nFrames, null, failFlag);
+    }
+
+    /**
+     * @param permits
+     *            if not null, a frame is only sent once a permit is acquired
+     */
+    private static Thread createSender(final ChannelControlBlock ccb, final int nFrames, final Semaphore permits,
+            final AtomicBoolean failFlag) {
+        return new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Deque<ByteBuffer> emptyBuffers = new ArrayDeque<ByteBuffer>();
+                    for (int i = 0; i < BUFFERS_PER_CHANNEL; ++i) {
+                        emptyBuffers.push(ByteBuffer.allocateDirect(FRAME_SIZE));
+                    }
+                    final Object closed = new Object();
+                    final boolean[] eos = new boolean[1];
+                    ccb.getWriteInterface().setEmptyBufferAcceptor(new IBufferAcceptor() {
+                        @Override
+                        public void accept(ByteBuffer buffer) {
+                            synchronized (emptyBuffers) {
+                                emptyBuffers.push(buffer);
+                                emptyBuffers.notifyAll();
+                            }
+                        }
+                    });
+                    ccb.getReadInterface().setFullBufferAcceptor(new ICloseableBufferAcceptor() {
+                        @Override
+                        public void accept(ByteBuffer buffer) {
+                        }
+
+                        @Override
+                        public void error(int ecode) {
+                            failFlag.set(true);
+                            close();
+                        }
+
+                        @Override
+                        public void close() {
+                            synchronized (closed) {
+                                eos[0] = true;
+                                closed.notifyAll();
+                            }
+                        }
+                    });
+
+                    ICloseableBufferAcceptor fba = ccb.getWriteInterface().getFullBufferAcceptor();
+                    int value = 0;
+                    for (int i = 0; i < nFrames; ++i) {
+                        if (permits != null) {
+                            permits.acquire();
+                        }
+                        ByteBuffer buffer;
+                        synchronized (emptyBuffers) {
+                            while (emptyBuffers.isEmpty()) {
+                                emptyBuffers.wait();
+                            }
+                            buffer = emptyBuffers.pop();
+                        }
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            buffer.putInt(value++);
+                        }
+                        buffer.flip();
+                        fba.accept(buffer);
+                    }
+                    fba.close();
+                    synchronized (closed) {
+                        while (!eos[0]) {
+                            closed.wait();
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failFlag.set(true);
+                }
+            }
+        };
+    }
+
+    static IChannelOpenListener createOpenListener(AtomicBoolean failFlag, boolean adaptive) {
+        return createOpenListener(failFlag, adaptive, BUFFERS_PER_CHANNEL);
+    }
+
+    /**
+     * @param maxBuffers
+     *            the largest window of an adaptive channel
+     */
+    static IChannelOpenListener createOpenListener(final AtomicBoolean failFlag, final boolean adaptive,
+            final int maxBuffers) {
+        return new IChannelOpenListener() {
+            @Override
+            public void channelOpened(final ChannelControlBlock channel) {
+                final Deque<ByteBuffer> fullBuffers = new ArrayDeque<ByteBuffer>();
+                final boolean[] eos = new boolean[1];
+                channel.getReadInterface().setFullBufferAcceptor(new ICloseableBufferAcceptor() {
+                    @Override
+                    public void accept(ByteBuffer buffer) {
+                        synchronized (fullBuffers) {
+                            fullBuffers.add(buffer);
+                            fullBuffers.notifyAll();
+                        }
+                    }
+
+                    @Override
+                    public void error(int ecode) {
+                        failFlag.set(true);
+                        close();
+                    }
+
+                    @Override
+                    public void close() {
+                        synchronized (fullBuffers) {
+                            eos[0] = true;
+                            fullBuffers.notifyAll();
+                        }
+                    }
+                });
+                channel.getWriteInterface().setEmptyBufferAcceptor(new IBufferAcceptor() {
+                    @Override
+                    public void accept(ByteBuffer buffer) {
+                    }
+                });
+                final IBufferAcceptor emptyBufferAcceptor = channel.getReadInterface().getEmptyBufferAcceptor();
+                if (adaptive) {
+                    channel.getReadInterface().setBufferFactory(new IBufferFactory() {
+                        @Override
+                        public ByteBuffer createBuffer() {
+                            return ByteBuffer.allocateDirect(FRAME_SIZE);
+                        }
+                    }, 1, maxBuffers, FRAME_SIZE);
+                } else {
+                    for (int i = 0; i < BUFFERS_PER_CHANNEL; ++i) {
+                        emptyBufferAcceptor.accept(ByteBuffer.allocateDirect(FRAME_SIZE));
+                    }
+                }
+                new Thread() {
+                    @Override
+                    public void run() {
+                        int expected = 0;
+                        while (true) {
+                            ByteBuffer buffer;
+                            synchronized (fullBuffers) {
+                                while (!eos[0] && fullBuffers.isEmpty()) {
+                                    try {
+                                        fullBuffers.wait();
+                                    } catch (InterruptedException e) {
+                                        failFlag.set(true);
+                                        return;
+                                    }
+                                }
+                                if (fullBuffers.isEmpty()) {
+                                    channel.getWriteInterface().getFullBufferAcceptor().close();
+                                    return;
+                                }
+                                buffer = fullBuffers.poll();
+                            }
+                            if (buffer.remaining() % 4 != 0) {
+                                failFlag.set(true);
+                            }
+                            while (buffer.remaining() >= 4) {
+                                if (buffer.getInt() != expected++) {
+                                    failFlag.set(true);
+                                }
+                            }
+                            buffer.clear();
+                            emptyBufferAcceptor.accept(buffer);
+                        }
+                    }
+                }.start();
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.net.tests;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import junit.framework.Assert;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.apache.hyracks.net.protocols.muxdemux.MultiplexedConnection;
+import org.apache.hyracks.net.protocols.muxdemux.MuxDemux;
+import org.apache.hyracks.net.protocols.muxdemux.MuxDemuxPerformanceCounters;
+
+/**
+ * Benchmarks one connection by streaming 256 MB of direct frames over 1 to 16 of its channels, and logs the throughput
+ * and the bytes per socket write of the sender. The frames are checked like in {@link MuxDemuxChannelTest}, which
+ * streams a few MB the same way in the normal build.
+ * <p>
+ * The benchmark streams 768 MB and its numbers only mean something on a quiet machine, so it is ignored by the build.
+ * To run it, remove its {@link Ignore} annotation and run <code>mvn test -Dtest=MuxDemuxThroughputTest</code> in
+ * hyracks-net.
+ */
+public class MuxDemuxThroughputTest {
+    private static final Logger LOGGER = Logger.getLogger(MuxDemuxThroughputTest.class.getName());
+
+    private static final int FRAME_SIZE = MuxDemuxChannelTest.FRAME_SIZE;
+
+    private static final long BYTES_PER_RUN = 256L * 1024 * 1024;
+
+    @Ignore("Benchmark, see the class comment to run it")
+    @Test
+    public void testThroughput() throws Exception {
+        AtomicBoolean failFlag = new AtomicBoolean();
+        MuxDemux receiver = new MuxDemux(new InetSocketAddress("127.0.0.1", 0),
+                MuxDemuxChannelTest.createOpenListener(failFlag, false), 1, 5);
+        runChannels(receiver, failFlag);
+    }
+
+    private void runChannels(MuxDemux receiver, AtomicBoolean failFlag) throws Exception {
+        MuxDemux sender = new MuxDemux(null, null, 1, 5);
+        MultiplexedConnection connection = MuxDemuxChannelTest.connect(sender, receiver);
+
+        for (int nChannels = 1; nChannels <= 16; nChannels *= 4) {
+            MuxDemuxPerformanceCounters counters = sender.getPerformanceCounters();
+            long writeCalls = counters.getWriteCalls();
+            long bytesWritten = counters.getPayloadBytesWritten() + counters.getSignalingBytesWritten();
+            int framesPerChannel = (int) (BYTES_PER_RUN / FRAME_SIZE / nChannels);
+
+            long start = System.nanoTime();
+            MuxDemuxChannelTest.streamChannels(connection, nChannels, framesPerChannel, failFlag);
+            long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+            writeCalls = counters.getWriteCalls() - writeCalls;
+            bytesWritten = counters.getPayloadBytesWritten() + counters.getSignalingBytesWritten() - bytesWritten;
+            if (LOGGER.isLoggable(Level.INFO)) {
+                LOGGER.info(nChannels + " channels: " + (BYTES_PER_RUN / 1024 / 1024 * 1000 / elapsed) + " MB/s, "
+                        + writeCalls + " writes, " + (bytesWritten / Math.max(1, writeCalls)) + " bytes/write");
+            }
+            Assert.assertFalse("Failure flag was set to true", failFlag.get());
+        }
+    }
+}
@@ -147,6 +147,19 @@ public class BloomCalculations {
         return new BloomFilterSpecification(K, bucketsPerElement);
     }
 
+    /**
+     * Same as {@link #computeBloomSpec(int, double)}, for a filter with the given layout.
+     * 
+     * @param blocked
+     *            if true, the specification is for a blocked filter, which places all the bits of a key inside a
+     *            single block
+     */
+    public static BloomFilterSpecification computeBloomSpec(int maxBucketsPerElement, double maxFalsePosProb,
+            boolean blocked) {
+        BloomFilterSpecification spec = computeBloomSpec(maxBucketsPerElement, maxFalsePosProb);
+        return new BloomFilterSpecification(spec.getNumHashes(), spec.getNumBucketsPerElements(), blocked);
+    }
+
     /**
      * Calculates the maximum number of buckets per element that this implementation
      * can support. Crucially, it will lower the bucket count if necessary to meet
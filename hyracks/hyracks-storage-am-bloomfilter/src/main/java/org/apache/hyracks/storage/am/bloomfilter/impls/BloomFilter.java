@@ -34,11 +34,19 @@ public class BloomFilter {
     private final static int NUM_HASHES_USED_OFFSET = NUM_PAGES_OFFSET + 4; // 4
     private final static int NUM_ELEMENTS_OFFSET = NUM_HASHES_USED_OFFSET + 4; // 8
     private final static int NUM_BITS_OFFSET = NUM_ELEMENTS_OFFSET + 8; // 12
+    private final static int LAYOUT_OFFSET = NUM_BITS_OFFSET + 8; // 20
+
+    // Marks a filter whose bits for a key all live in a single block. Filters written before the blocked layout
+    // existed do not carry this marker and are read with the classic layout.
+    private final static int BLOCKED_LAYOUT_MAGIC = 0x424C4B31;
+    private final static int BLOCK_SIZE_BYTES = 64; // one cache line
+    private final static int BLOCK_SIZE_BITS = BLOCK_SIZE_BYTES * Byte.SIZE;
 
     private final IBufferCache bufferCache;
     private final IFileMapProvider fileMapProvider;
     private final FileReference file;
     private final int[] keyFields;
+    private final boolean useBlockedLayout;
     private int fileId = -1;
     private boolean isActivated = false;
 
@@ -46,17 +54,37 @@ public class BloomFilter {
     private int numHashes;
     private long numElements;
     private long numBits;
+    private boolean isBlocked;
+    private long numBlocks;
     private final int numBitsPerPage;
+    private final int numBlocksPerPage;
     private final static byte[] ZERO_BUFFER = new byte[131072]; // 128kb
     private final static long SEED = 0L;
 
     public BloomFilter(IBufferCache bufferCache, IFileMapProvider fileMapProvider, FileReference file, int[] keyFields)
             throws HyracksDataException {
+        this(bufferCache, fileMapProvider, file, keyFields, false);
+    }
+
+    /**
+     * @param useBlockedLayout
+     *            if true, builders created by this filter place all the bits of a key inside a single
+     *            {@value #BLOCK_SIZE_BYTES}-byte block, so that a probe pins exactly one page. The layout of an
+     *            existing filter is always read from its metadata page.
+     */
+    public BloomFilter(IBufferCache bufferCache, IFileMapProvider fileMapProvider, FileReference file,
+            int[] keyFields, boolean useBlockedLayout) throws HyracksDataException {
         this.bufferCache = bufferCache;
         this.fileMapProvider = fileMapProvider;
         this.file = file;
         this.keyFields = keyFields;
+        this.useBlockedLayout = useBlockedLayout;
         this.numBitsPerPage = bufferCache.getPageSize() * Byte.SIZE;
+        this.numBlocksPerPage = bufferCache.getPageSize() / BLOCK_SIZE_BYTES;
+        if (useBlockedLayout && numBlocksPerPage == 0) {
+            throw new HyracksDataException("Cannot create a blocked bloom filter with a page size smaller than "
+                    + BLOCK_SIZE_BYTES + " bytes.");
+        }
     }
 
     public int getFileId() {
@@ -81,11 +109,28 @@ public class BloomFilter {
         return numElements;
     }
 
+    /**
+     * @return the layout of the builders created by {@link #createBuilder(long, int, int)}
+     */
+    public boolean useBlockedLayout() {
+        return useBlockedLayout;
+    }
+
+    public boolean isBlocked() throws HyracksDataException {
+        if (!isActivated) {
+            throw new HyracksDataException("The bloom filter is not activated.");
+        }
+        return isBlocked;
+    }
+
     public boolean contains(ITupleReference tuple, long[] hashes) throws HyracksDataException {
         if (numPages == 0) {
             return false;
         }
         MurmurHash128Bit.hash3_x64_128(tuple, keyFields, SEED, hashes);
+        if (isBlocked) {
+            return containsBlocked(hashes);
+        }
         for (int i = 0; i < numHashes; ++i) {
             long hash = Math.abs((hashes[0] + i * hashes[1]) % numBits);
 
@@ -111,6 +156,48 @@ public class BloomFilter {
         return true;
     }
 
+    private boolean containsBlocked(long[] hashes) throws HyracksDataException {
+        long blockIndex = getBlockIndex(hashes);
+        ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, getBlockPageId(blockIndex)),
+                false);
+        page.acquireReadLatch();
+        try {
+            ByteBuffer buffer = page.getBuffer();
+            int blockOffset = getBlockOffset(blockIndex);
+            for (int i = 0; i < numHashes; ++i) {
+                int bit = getBitInBlock(hashes, i);
+                byte b = buffer.get(blockOffset + (bit >> 3));
+                if ((b & (1 << (bit & 0x07))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            page.releaseReadLatch();
+            bufferCache.unpin(page);
+        }
+    }
+
+    private long getBlockIndex(long[] hashes) {
+        return (hashes[0] & Long.MAX_VALUE) % numBlocks;
+    }
+
+    private int getBlockPageId(long blockIndex) {
+        // we increment the page id by one, since the metadata page id of the filter is 0.
+        return (int) (blockIndex / numBlocksPerPage) + 1;
+    }
+
+    private int getBlockOffset(long blockIndex) {
+        return (int) (blockIndex % numBlocksPerPage) * BLOCK_SIZE_BYTES;
+    }
+
+    private static int getBitInBlock(long[] hashes, int i) {
+        // the second hash is forced to be odd, so the first BLOCK_SIZE_BITS probes of a key are all distinct.
+        int h1 = (int) hashes[1];
+        int h2 = (int) (hashes[1] >>> 32) | 1;
+        return (h1 + i * h2) & (BLOCK_SIZE_BITS - 1);
+    }
+
     private void prepareFile() throws HyracksDataException {
         boolean fileIsMapped = false;
         synchronized (fileMapProvider) {
@@ -144,6 +231,7 @@ public class BloomFilter {
             metaPage.getBuffer().putInt(NUM_HASHES_USED_OFFSET, 0);
             metaPage.getBuffer().putLong(NUM_ELEMENTS_OFFSET, 0L);
             metaPage.getBuffer().putLong(NUM_BITS_OFFSET, 0L);
+            metaPage.getBuffer().putInt(LAYOUT_OFFSET, 0);
         } finally {
             metaPage.releaseWriteLatch(true);
             bufferCache.unpin(metaPage);
@@ -169,6 +257,8 @@ public class BloomFilter {
             numHashes = metaPage.getBuffer().getInt(NUM_HASHES_USED_OFFSET);
             numElements = metaPage.getBuffer().getLong(NUM_ELEMENTS_OFFSET);
             numBits = metaPage.getBuffer().getLong(NUM_BITS_OFFSET);
+            isBlocked = metaPage.getBuffer().getInt(LAYOUT_OFFSET) == BLOCKED_LAYOUT_MAGIC;
+            numBlocks = isBlocked ? numBits / BLOCK_SIZE_BITS : 0;
         } finally {
             metaPage.releaseReadLatch();
             bufferCache.unpin(metaPage);
@@ -201,22 +291,49 @@ public class BloomFilter {
         return new BloomFilterBuilder(numElements, numHashes, numBitsPerElement);
     }
 
+    /**
+     * Creates a builder with the number of hashes, bits per element and layout of the given specification.
+     */
+    public IIndexBulkLoader createBuilder(long numElements, BloomFilterSpecification spec) throws HyracksDataException {
+        return new BloomFilterBuilder(numElements, spec.getNumHashes(), spec.getNumBucketsPerElements(),
+                spec.isBlocked());
+    }
+
     public class BloomFilterBuilder implements IIndexBulkLoader {
         private final long[] hashes = new long[2];
         private final long numElements;
         private final int numHashes;
         private final long numBits;
         private final int numPages;
+        private final boolean blocked;
 
         public BloomFilterBuilder(long numElements, int numHashes, int numBitsPerElement) throws HyracksDataException {
+            this(numElements, numHashes, numBitsPerElement, useBlockedLayout);
+        }
+
+        public BloomFilterBuilder(long numElements, int numHashes, int numBitsPerElement, boolean blocked)
+                throws HyracksDataException {
             if (!isActivated) {
                 throw new HyracksDataException("Failed to create the bloom filter builder since it is not activated.");
             }
+            if (blocked && numBlocksPerPage == 0) {
+                throw new HyracksDataException("Cannot create a blocked bloom filter with a page size smaller than "
+                        + BLOCK_SIZE_BYTES + " bytes.");
+            }
 
             this.numElements = numElements;
             this.numHashes = numHashes;
-            numBits = this.numElements * numBitsPerElement;
-            long tmp = (long) Math.ceil(numBits / (double) numBitsPerPage);
+            this.blocked = blocked;
+            long tmp;
+            if (blocked) {
+                // round up to whole blocks, so that every block is fully contained in one page.
+                long blocks = (long) Math.ceil(this.numElements * numBitsPerElement / (double) BLOCK_SIZE_BITS);
+                numBits = blocks * BLOCK_SIZE_BITS;
+                tmp = (long) Math.ceil(blocks / (double) numBlocksPerPage);
+            } else {
+                numBits = this.numElements * numBitsPerElement;
+                tmp = (long) Math.ceil(numBits / (double) numBitsPerPage);
+            }
             if (tmp > Integer.MAX_VALUE) {
                 throw new HyracksDataException("Cannot create a bloom filter with his huge number of pages.");
             }
@@ -258,6 +375,7 @@ public class BloomFilter {
                 metaPage.getBuffer().putInt(NUM_HASHES_USED_OFFSET, numHashes);
                 metaPage.getBuffer().putLong(NUM_ELEMENTS_OFFSET, numElements);
                 metaPage.getBuffer().putLong(NUM_BITS_OFFSET, numBits);
+                metaPage.getBuffer().putInt(LAYOUT_OFFSET, blocked ? BLOCKED_LAYOUT_MAGIC : 0);
             } finally {
                 metaPage.releaseWriteLatch(true);
                 bufferCache.unpin(metaPage);
@@ -271,6 +389,10 @@ public class BloomFilter {
                         "Cannot add elements to this filter since it is supposed to be empty (number of elements hint passed to the filter during construction was 0).");
             }
             MurmurHash128Bit.hash3_x64_128(tuple, keyFields, SEED, hashes);
+            if (blocked) {
+                addBlocked();
+                return;
+            }
             for (int i = 0; i < numHashes; ++i) {
                 long hash = Math.abs((hashes[0] + i * hashes[1]) % numBits);
 
@@ -292,6 +414,25 @@ public class BloomFilter {
             }
         }
 
+        private void addBlocked() throws HyracksDataException {
+            long blockIndex = getBlockIndex(hashes);
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, getBlockPageId(blockIndex)),
+                    false);
+            page.acquireWriteLatch();
+            try {
+                byte[] array = page.getBuffer().array();
+                int blockOffset = getBlockOffset(blockIndex);
+                for (int i = 0; i < numHashes; ++i) {
+                    int bit = getBitInBlock(hashes, i);
+                    int byteIndex = blockOffset + (bit >> 3);
+                    array[byteIndex] = (byte) (array[byteIndex] | (1 << (bit & 0x07)));
+                }
+            } finally {
+                page.releaseWriteLatch(true);
+                bufferCache.unpin(page);
+            }
+        }
+
         @Override
         public void end() throws HyracksDataException, IndexException {
         }
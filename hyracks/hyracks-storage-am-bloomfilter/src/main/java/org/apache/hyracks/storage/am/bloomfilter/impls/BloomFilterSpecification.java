@@ -18,10 +18,20 @@ package org.apache.hyracks.storage.am.bloomfilter.impls;
 public final class BloomFilterSpecification {
     private final int numHashes;
     private final int numBucketsPerElement;
+    private final boolean blocked;
 
     public BloomFilterSpecification(int numHashes, int numBucketsPerElement) {
+        this(numHashes, numBucketsPerElement, false);
+    }
+
+    /**
+     * @param blocked
+     *            if true, the filter places all the bits of a key inside a single block (see {@link BloomFilter})
+     */
+    public BloomFilterSpecification(int numHashes, int numBucketsPerElement, boolean blocked) {
         this.numHashes = numHashes;
         this.numBucketsPerElement = numBucketsPerElement;
+        this.blocked = blocked;
     }
 
     public int getNumBucketsPerElements() {
@@ -31,4 +41,8 @@ public final class BloomFilterSpecification {
     public int getNumHashes() {
         return numHashes;
     }
+
+    public boolean isBlocked() {
+        return blocked;
+    }
 }
\ No newline at end of file
@@ -576,6 +576,11 @@ public class OnDiskInvertedIndex implements IInvertedIndex {
             // TODO Auto-generated method stub
 
         }
+
+        @Override
+        public void deallocateFrame(ByteBuffer frame) {
+            // frames are not reused by this context.
+        }
     }
 
     @Override
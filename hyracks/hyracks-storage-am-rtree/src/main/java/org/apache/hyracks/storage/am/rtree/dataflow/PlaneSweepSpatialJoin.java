@@ -0,0 +1,373 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.am.rtree.dataflow;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hyracks.api.comm.IFrame;
+import org.apache.hyracks.api.comm.IFrameWriter;
+import org.apache.hyracks.api.comm.VSizeFrame;
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import org.apache.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import org.apache.hyracks.dataflow.common.comm.util.FrameUtils;
+import org.apache.hyracks.dataflow.common.io.RunFileReader;
+import org.apache.hyracks.dataflow.common.io.RunFileWriter;
+import org.apache.hyracks.storage.am.common.api.IPrimitiveValueProvider;
+import org.apache.hyracks.storage.am.rtree.impls.Rectangle;
+
+/**
+ * Joins the tuples of two inputs whose minimum bounding rectangles intersect, with the partition based spatial merge
+ * join of Patel and DeWitt. The space is cut into a grid of tiles, and the tiles are assigned to the partitions in
+ * round robin order. A tuple is written to the run file of every partition owning a tile its rectangle intersects,
+ * once per partition. The partitions are then joined one at a time: the right tuples of a partition are read in
+ * chunks of memSize - 2 frames, and each left frame is joined with a chunk by a plane sweep along the first
+ * dimension. A pair of tuples meeting in several partitions is only output by the partition owning the lowest corner
+ * of the intersection of their rectangles.
+ * The rectangle of a tuple is given by 2 * dim fields, the low coordinates of the dimensions first, then the high
+ * ones, like the keys of an R-tree.
+ */
+public class PlaneSweepSpatialJoin {
+    private static final Comparator<Entry> LOW_X_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return Double.compare(e1.mbr.getLow(0), e2.mbr.getLow(0));
+        }
+    };
+
+    private final IHyracksTaskContext ctx;
+    private final RecordDescriptor rdLeft;
+    private final RecordDescriptor rdRight;
+    private final FrameTupleAccessor accessorLeft;
+    private final FrameTupleAccessor accessorRight;
+    private final int[] mbrFieldsLeft;
+    private final int[] mbrFieldsRight;
+    private final IPrimitiveValueProvider[] valueProvidersLeft;
+    private final IPrimitiveValueProvider[] valueProvidersRight;
+    private final int dim;
+    private final Rectangle space;
+    private final int tilesPerDimension;
+    private final int numPartitions;
+    private final int memSize;
+
+    private final RunFileWriter[] leftWriters;
+    private final RunFileWriter[] rightWriters;
+    private final FrameTupleAppender[] partitionAppenders;
+    private final BitSet partitionsOfTuple;
+    private final Rectangle mbr;
+    private final int[] lowTiles;
+    private final int[] highTiles;
+    private final int[] tiles;
+
+    private final List<IFrame> chunkFrames = new ArrayList<IFrame>();
+    private final List<FrameTupleAccessor> chunkAccessors = new ArrayList<FrameTupleAccessor>();
+    private final List<Entry> entryPool = new ArrayList<Entry>();
+    private final List<Entry> rightEntries = new ArrayList<Entry>();
+    private final List<Entry> leftEntries = new ArrayList<Entry>();
+    private int usedEntries;
+
+    public PlaneSweepSpatialJoin(IHyracksTaskContext ctx, RecordDescriptor rdLeft, RecordDescriptor rdRight,
+            int[] mbrFieldsLeft, int[] mbrFieldsRight, IPrimitiveValueProvider[] valueProvidersLeft,
+            IPrimitiveValueProvider[] valueProvidersRight, Rectangle space, int tilesPerDimension, int numPartitions,
+            int memSize) throws HyracksDataException {
+        if (memSize < 3 || numPartitions >= memSize) {
+            throw new HyracksDataException("Not enough memory is available for Spatial Join");
+        }
+        this.ctx = ctx;
+        this.rdLeft = rdLeft;
+        this.rdRight = rdRight;
+        this.accessorLeft = new FrameTupleAccessor(rdLeft);
+        this.accessorRight = new FrameTupleAccessor(rdRight);
+        this.mbrFieldsLeft = mbrFieldsLeft;
+        this.mbrFieldsRight = mbrFieldsRight;
+        this.valueProvidersLeft = valueProvidersLeft;
+        this.valueProvidersRight = valueProvidersRight;
+        this.dim = space.getDim();
+        this.space = space;
+        this.tilesPerDimension = tilesPerDimension;
+        this.numPartitions = numPartitions;
+        this.memSize = memSize;
+
+        this.leftWriters = new RunFileWriter[numPartitions];
+        this.rightWriters = new RunFileWriter[numPartitions];
+        this.partitionAppenders = new FrameTupleAppender[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            partitionAppenders[i] = new FrameTupleAppender(new VSizeFrame(ctx));
+        }
+        this.partitionsOfTuple = new BitSet(numPartitions);
+        this.mbr = new Rectangle(dim);
+        this.lowTiles = new int[dim];
+        this.highTiles = new int[dim];
+        this.tiles = new int[dim];
+    }
+
+    public void partitionRight(ByteBuffer buffer) throws HyracksDataException {
+        partition(buffer, accessorRight, mbrFieldsRight, valueProvidersRight, rightWriters, "Right");
+    }
+
+    public void closePartitionRight() throws HyracksDataException {
+        closePartitions(rightWriters);
+    }
+
+    public void partitionLeft(ByteBuffer buffer) throws HyracksDataException {
+        partition(buffer, accessorLeft, mbrFieldsLeft, valueProvidersLeft, leftWriters, "Left");
+    }
+
+    public void closePartitionLeft() throws HyracksDataException {
+        closePartitions(leftWriters);
+    }
+
+    /**
+     * Joins the partitions of both inputs one after the other, and deletes their run files.
+     */
+    public void join(IFrameWriter writer) throws HyracksDataException {
+        FrameTupleAppender appender = new FrameTupleAppender(new VSizeFrame(ctx));
+        IFrame leftFrame = new VSizeFrame(ctx);
+        FrameTupleAccessor leftFrameAccessor = new FrameTupleAccessor(rdLeft);
+        try {
+            for (int pid = 0; pid < numPartitions; pid++) {
+                if (leftWriters[pid] == null || rightWriters[pid] == null) {
+                    continue;
+                }
+                RunFileReader rightReader = rightWriters[pid].createReader();
+                rightReader.open();
+                try {
+                    while (loadRightChunk(rightReader)) {
+                        RunFileReader leftReader = leftWriters[pid].createReader();
+                        leftReader.open();
+                        try {
+                            while (leftReader.nextFrame(leftFrame)) {
+                                leftFrameAccessor.reset(leftFrame.getBuffer());
+                                joinLeftFrame(pid, leftFrameAccessor, appender, writer);
+                            }
+                        } finally {
+                            leftReader.close();
+                        }
+                    }
+                } finally {
+                    rightReader.close();
+                }
+            }
+            appender.flush(writer, true);
+        } finally {
+            deletePartitions(leftWriters);
+            deletePartitions(rightWriters);
+        }
+    }
+
+    private void partition(ByteBuffer buffer, FrameTupleAccessor accessor, int[] mbrFields,
+            IPrimitiveValueProvider[] valueProviders, RunFileWriter[] writers, String side)
+            throws HyracksDataException {
+        accessor.reset(buffer);
+        int tupleCount = accessor.getTupleCount();
+        for (int i = 0; i < tupleCount; i++) {
+            readMbr(accessor, i, mbrFields, valueProviders, mbr);
+            partitionsOfTuple.clear();
+            for (int d = 0; d < dim; d++) {
+                lowTiles[d] = tileOf(d, mbr.getLow(d));
+                highTiles[d] = tileOf(d, mbr.getHigh(d));
+                tiles[d] = lowTiles[d];
+            }
+            // visits the tiles intersecting the rectangle until every partition got the tuple
+            do {
+                int pid = partitionOfTile(tiles);
+                if (!partitionsOfTuple.get(pid)) {
+                    partitionsOfTuple.set(pid);
+                    if (writers[pid] == null) {
+                        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                                this.getClass().getSimpleName() + side);
+                        writers[pid] = new RunFileWriter(file, ctx.getIOManager(), ctx);
+                        writers[pid].open();
+                    }
+                    FrameUtils.appendToWriter(writers[pid], partitionAppenders[pid], accessor, i);
+                }
+            } while (partitionsOfTuple.cardinality() < numPartitions && nextTile());
+        }
+    }
+
+    private boolean nextTile() {
+        for (int d = 0; d < dim; d++) {
+            if (tiles[d] < highTiles[d]) {
+                tiles[d]++;
+                return true;
+            }
+            tiles[d] = lowTiles[d];
+        }
+        return false;
+    }
+
+    private void closePartitions(RunFileWriter[] writers) throws HyracksDataException {
+        for (int pid = 0; pid < numPartitions; pid++) {
+            if (writers[pid] != null) {
+                partitionAppenders[pid].flush(writers[pid], true);
+                writers[pid].close();
+            }
+        }
+    }
+
+    private void deletePartitions(RunFileWriter[] writers) {
+        for (int pid = 0; pid < numPartitions; pid++) {
+            if (writers[pid] != null) {
+                writers[pid].getFileReference().delete();
+                writers[pid] = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the next memSize - 2 frames of the right partition and sorts their tuples along the first dimension.
+     *
+     * @return false if the partition has been read completely
+     */
+    private boolean loadRightChunk(RunFileReader rightReader) throws HyracksDataException {
+        usedEntries = 0;
+        rightEntries.clear();
+        int frameCount = 0;
+        while (frameCount < memSize - 2) {
+            if (frameCount == chunkFrames.size()) {
+                chunkFrames.add(new VSizeFrame(ctx));
+                chunkAccessors.add(new FrameTupleAccessor(rdRight));
+            }
+            IFrame frame = chunkFrames.get(frameCount);
+            if (!rightReader.nextFrame(frame)) {
+                break;
+            }
+            FrameTupleAccessor accessor = chunkAccessors.get(frameCount);
+            accessor.reset(frame.getBuffer());
+            for (int i = 0; i < accessor.getTupleCount(); i++) {
+                Entry entry = nextEntry();
+                entry.accessor = accessor;
+                entry.tIndex = i;
+                readMbr(accessor, i, mbrFieldsRight, valueProvidersRight, entry.mbr);
+                rightEntries.add(entry);
+            }
+            frameCount++;
+        }
+        Collections.sort(rightEntries, LOW_X_COMPARATOR);
+        return frameCount > 0;
+    }
+
+    /**
+     * Sweeps a line along the first dimension over the left tuples of the frame and the right tuples of the chunk,
+     * both sorted by their low coordinate in that dimension. Whenever the line meets the rectangle of a tuple, the
+     * tuple is checked against the tuples of the other input whose rectangle starts before its rectangle ends.
+     */
+    private void joinLeftFrame(int pid, FrameTupleAccessor accessor, FrameTupleAppender appender,
+            IFrameWriter writer) throws HyracksDataException {
+        int rightEntryCount = usedEntries;
+        leftEntries.clear();
+        for (int i = 0; i < accessor.getTupleCount(); i++) {
+            Entry entry = nextEntry();
+            entry.accessor = accessor;
+            entry.tIndex = i;
+            readMbr(accessor, i, mbrFieldsLeft, valueProvidersLeft, entry.mbr);
+            leftEntries.add(entry);
+        }
+        Collections.sort(leftEntries, LOW_X_COMPARATOR);
+
+        int l = 0;
+        int r = 0;
+        while (l < leftEntries.size() && r < rightEntries.size()) {
+            Entry left = leftEntries.get(l);
+            Entry right = rightEntries.get(r);
+            if (left.mbr.getLow(0) <= right.mbr.getLow(0)) {
+                for (int k = r; k < rightEntries.size(); k++) {
+                    Entry other = rightEntries.get(k);
+                    if (other.mbr.getLow(0) > left.mbr.getHigh(0)) {
+                        break;
+                    }
+                    emitIfOwned(pid, left, other, appender, writer);
+                }
+                l++;
+            } else {
+                for (int k = l; k < leftEntries.size(); k++) {
+                    Entry other = leftEntries.get(k);
+                    if (other.mbr.getLow(0) > right.mbr.getHigh(0)) {
+                        break;
+                    }
+                    emitIfOwned(pid, other, right, appender, writer);
+                }
+                r++;
+            }
+        }
+        usedEntries = rightEntryCount;
+    }
+
+    private void emitIfOwned(int pid, Entry left, Entry right, FrameTupleAppender appender, IFrameWriter writer)
+            throws HyracksDataException {
+        if (!left.mbr.intersects(right.mbr)) {
+            return;
+        }
+        for (int d = 0; d < dim; d++) {
+            tiles[d] = tileOf(d, Math.max(left.mbr.getLow(d), right.mbr.getLow(d)));
+        }
+        if (partitionOfTile(tiles) == pid) {
+            FrameUtils.appendConcatToWriter(writer, appender, left.accessor, left.tIndex, right.accessor,
+                    right.tIndex);
+        }
+    }
+
+    private Entry nextEntry() {
+        if (usedEntries == entryPool.size()) {
+            entryPool.add(new Entry(dim));
+        }
+        return entryPool.get(usedEntries++);
+    }
+
+    private int tileOf(int d, double value) {
+        double extent = space.getHigh(d) - space.getLow(d);
+        int tile = (int) Math.floor((value - space.getLow(d)) / extent * tilesPerDimension);
+        return Math.min(Math.max(tile, 0), tilesPerDimension - 1);
+    }
+
+    private int partitionOfTile(int[] tileCoordinates) {
+        long tileId = 0;
+        for (int d = dim - 1; d >= 0; d--) {
+            tileId = tileId * tilesPerDimension + tileCoordinates[d];
+        }
+        return (int) (tileId % numPartitions);
+    }
+
+    private void readMbr(FrameTupleAccessor accessor, int tIndex, int[] mbrFields,
+            IPrimitiveValueProvider[] valueProviders, Rectangle rec) {
+        byte[] bytes = accessor.getBuffer().array();
+        int tStart = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength();
+        for (int d = 0; d < dim; d++) {
+            int h = d + dim;
+            rec.setLow(d, valueProviders[d].getValue(bytes, tStart + accessor.getFieldStartOffset(tIndex,
+                    mbrFields[d])));
+            rec.setHigh(d, valueProviders[h].getValue(bytes, tStart + accessor.getFieldStartOffset(tIndex,
+                    mbrFields[h])));
+        }
+    }
+
+    private static class Entry {
+        private final Rectangle mbr;
+        private FrameTupleAccessor accessor;
+        private int tIndex;
+
+        private Entry(int dim) {
+            this.mbr = new Rectangle(dim);
+        }
+    }
+}
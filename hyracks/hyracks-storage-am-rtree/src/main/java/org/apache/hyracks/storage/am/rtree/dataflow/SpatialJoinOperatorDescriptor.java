@@ -0,0 +1,225 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.am.rtree.dataflow;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.dataflow.ActivityId;
+import org.apache.hyracks.api.dataflow.IActivityGraphBuilder;
+import org.apache.hyracks.api.dataflow.IOperatorNodePushable;
+import org.apache.hyracks.api.dataflow.TaskId;
+import org.apache.hyracks.api.dataflow.value.IRecordDescriptorProvider;
+import org.apache.hyracks.api.dataflow.value.RecordDescriptor;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.job.IOperatorDescriptorRegistry;
+import org.apache.hyracks.api.job.JobId;
+import org.apache.hyracks.dataflow.std.base.AbstractActivityNode;
+import org.apache.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
+import org.apache.hyracks.dataflow.std.base.AbstractStateObject;
+import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
+import org.apache.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
+import org.apache.hyracks.storage.am.common.api.IPrimitiveValueProvider;
+import org.apache.hyracks.storage.am.common.api.IPrimitiveValueProviderFactory;
+import org.apache.hyracks.storage.am.rtree.impls.Rectangle;
+
+/**
+ * Joins the tuples of the input 0 and of the input 1 whose rectangles intersect, with {@link PlaneSweepSpatialJoin}.
+ * The rectangle of a tuple is given by 2 * dim fields, the low coordinates first, and the space given by spaceLow and
+ * spaceHigh is cut into tilesPerDimension tiles in each dimension, which are spread over numPartitions partitions.
+ * Both inputs are partitioned to run files, the input 1 first, and the partitions are joined once the input 0 is
+ * closed. memSize is the number of frames of the join, which has to be larger than numPartitions.
+ * Like for the nested loop join, a tuple of an instance only meets the tuples of the other input sent to the same
+ * instance, so one of the inputs is usually broadcast.
+ */
+public class SpatialJoinOperatorDescriptor extends AbstractOperatorDescriptor {
+    private static final int PARTITION_ACTIVITY_ID = 0;
+    private static final int JOIN_ACTIVITY_ID = 1;
+
+    private static final long serialVersionUID = 1L;
+    private final int[] mbrFields0;
+    private final int[] mbrFields1;
+    private final IPrimitiveValueProviderFactory[] valueProviderFactories0;
+    private final IPrimitiveValueProviderFactory[] valueProviderFactories1;
+    private final double[] spaceLow;
+    private final double[] spaceHigh;
+    private final int tilesPerDimension;
+    private final int numPartitions;
+    private final int memSize;
+
+    public SpatialJoinOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] mbrFields0, int[] mbrFields1,
+            IPrimitiveValueProviderFactory[] valueProviderFactories0,
+            IPrimitiveValueProviderFactory[] valueProviderFactories1, double[] spaceLow, double[] spaceHigh,
+            int tilesPerDimension, int numPartitions, RecordDescriptor recordDescriptor, int memSize) {
+        super(spec, 2, 1);
+        this.mbrFields0 = mbrFields0;
+        this.mbrFields1 = mbrFields1;
+        this.valueProviderFactories0 = valueProviderFactories0;
+        this.valueProviderFactories1 = valueProviderFactories1;
+        this.spaceLow = spaceLow;
+        this.spaceHigh = spaceHigh;
+        this.tilesPerDimension = tilesPerDimension;
+        this.numPartitions = numPartitions;
+        this.recordDescriptors[0] = recordDescriptor;
+        this.memSize = memSize;
+    }
+
+    @Override
+    public void contributeActivities(IActivityGraphBuilder builder) {
+        ActivityId partitionAid = new ActivityId(getOperatorId(), PARTITION_ACTIVITY_ID);
+        ActivityId joinAid = new ActivityId(getOperatorId(), JOIN_ACTIVITY_ID);
+        PartitionActivityNode partition = new PartitionActivityNode(partitionAid, joinAid);
+        JoinActivityNode join = new JoinActivityNode(joinAid);
+
+        builder.addActivity(this, partition);
+        builder.addSourceEdge(1, partition, 0);
+
+        builder.addActivity(this, join);
+        builder.addSourceEdge(0, join, 0);
+
+        builder.addTargetEdge(0, join, 0);
+        builder.addBlockingEdge(partition, join);
+    }
+
+    private static IPrimitiveValueProvider[] createValueProviders(IPrimitiveValueProviderFactory[] factories) {
+        IPrimitiveValueProvider[] valueProviders = new IPrimitiveValueProvider[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            valueProviders[i] = factories[i].createPrimitiveValueProvider();
+        }
+        return valueProviders;
+    }
+
+    public static class SpatialJoinTaskState extends AbstractStateObject {
+        private PlaneSweepSpatialJoin joiner;
+
+        public SpatialJoinTaskState() {
+        }
+
+        private SpatialJoinTaskState(JobId jobId, TaskId taskId) {
+            super(jobId, taskId);
+        }
+
+        @Override
+        public void toBytes(DataOutput out) throws IOException {
+
+        }
+
+        @Override
+        public void fromBytes(DataInput in) throws IOException {
+
+        }
+    }
+
+    private class PartitionActivityNode extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        private final ActivityId joinAid;
+
+        public PartitionActivityNode(ActivityId id, ActivityId joinAid) {
+            super(id);
+            this.joinAid = joinAid;
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions) {
+            final RecordDescriptor rd0 = recordDescProvider.getInputRecordDescriptor(joinAid, 0);
+            final RecordDescriptor rd1 = recordDescProvider.getInputRecordDescriptor(getActivityId(), 0);
+            final Rectangle space = new Rectangle(spaceLow.length);
+            for (int i = 0; i < spaceLow.length; i++) {
+                space.setLow(i, spaceLow[i]);
+                space.setHigh(i, spaceHigh[i]);
+            }
+
+            IOperatorNodePushable op = new AbstractUnaryInputSinkOperatorNodePushable() {
+                private SpatialJoinTaskState state;
+
+                @Override
+                public void open() throws HyracksDataException {
+                    state = new SpatialJoinTaskState(ctx.getJobletContext().getJobId(), new TaskId(getActivityId(),
+                            partition));
+                    state.joiner = new PlaneSweepSpatialJoin(ctx, rd0, rd1, mbrFields0, mbrFields1,
+                            createValueProviders(valueProviderFactories0),
+                            createValueProviders(valueProviderFactories1), space, tilesPerDimension,
+                            numPartitions, memSize);
+                }
+
+                @Override
+                public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                    state.joiner.partitionRight(buffer);
+                }
+
+                @Override
+                public void close() throws HyracksDataException {
+                    state.joiner.closePartitionRight();
+                    ctx.setStateObject(state);
+                }
+
+                @Override
+                public void fail() throws HyracksDataException {
+                }
+            };
+            return op;
+        }
+    }
+
+    private class JoinActivityNode extends AbstractActivityNode {
+        private static final long serialVersionUID = 1L;
+
+        public JoinActivityNode(ActivityId id) {
+            super(id);
+        }
+
+        @Override
+        public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+                IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions) {
+
+            IOperatorNodePushable op = new AbstractUnaryInputUnaryOutputOperatorNodePushable() {
+                private SpatialJoinTaskState state;
+
+                @Override
+                public void open() throws HyracksDataException {
+                    state = (SpatialJoinTaskState) ctx.getStateObject(new TaskId(new ActivityId(getOperatorId(),
+                            PARTITION_ACTIVITY_ID), partition));
+                    writer.open();
+                }
+
+                @Override
+                public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                    state.joiner.partitionLeft(buffer);
+                }
+
+                @Override
+                public void close() throws HyracksDataException {
+                    try {
+                        state.joiner.closePartitionLeft();
+                        state.joiner.join(writer);
+                    } finally {
+                        writer.close();
+                    }
+                }
+
+                @Override
+                public void fail() throws HyracksDataException {
+                    writer.fail();
+                }
+            };
+            return op;
+        }
+    }
+}
@@ -128,6 +128,19 @@ public class Rectangle {
         return area;
     }
 
+    /**
+     * @return true if the rectangles have at least one point in common, which includes rectangles only touching each
+     *         other, whose overlapped area is 0
+     */
+    public boolean intersects(Rectangle rec) {
+        for (int i = 0; i < getDim(); i++) {
+            if (getLow(i) > rec.getHigh(i) || getHigh(i) < rec.getLow(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public double area() {
         double area = 1.0;
         for (int i = 0; i < getDim(); i++) {
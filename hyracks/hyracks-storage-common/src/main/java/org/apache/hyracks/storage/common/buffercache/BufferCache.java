@@ -17,11 +17,11 @@ package org.apache.hyracks.storage.common.buffercache;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -45,6 +45,9 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
 
     private static final int MIN_CLEANED_COUNT_DIFF = 3;
     private static final int PIN_MAX_WAIT_TIME = 50;
+    // Upper bound on the bucket chain length walked without the bucket lock. Pages can move between chains while
+    // an optimistic lookup is walking them, so the walk is bounded and falls back to the locked path on a miss.
+    private static final int MAX_OPTIMISTIC_CHAIN_LENGTH = 64;
 
     private final int pageSize;
     private final int maxOpenFiles;
@@ -56,6 +59,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     private final CleanerThread cleanerThread;
     private final Map<Integer, BufferedFileHandle> fileInfoMap;
     private final Set<Integer> virtualFiles;
+    private final boolean optimisticLookup;
     private IIOReplicationManager ioReplicationManager;
     private List<ICachedPageInternal> cachedPages = new ArrayList<ICachedPageInternal>();
     private boolean closed;
@@ -63,6 +67,18 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     public BufferCache(IIOManager ioManager, IPageReplacementStrategy pageReplacementStrategy,
             IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
             ThreadFactory threadFactory) {
+        this(ioManager, pageReplacementStrategy, pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory,
+                false);
+    }
+
+    /**
+     * @param optimisticLookup
+     *            if true, pins of cached pages walk the bucket chain without taking the bucket lock and pin the page
+     *            with a CAS on its pin count. Only misses and page replacement take the bucket locks.
+     */
+    public BufferCache(IIOManager ioManager, IPageReplacementStrategy pageReplacementStrategy,
+            IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
+            ThreadFactory threadFactory, boolean optimisticLookup) {
         this.ioManager = ioManager;
         this.pageSize = pageReplacementStrategy.getPageSize();
         this.maxOpenFiles = maxOpenFiles;
@@ -74,9 +90,11 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         this.pageReplacementStrategy = pageReplacementStrategy;
         this.pageCleanerPolicy = pageCleanerPolicy;
         this.fileMapManager = fileMapManager;
+        this.optimisticLookup = optimisticLookup;
 
         Executor executor = Executors.newCachedThreadPool(threadFactory);
-        fileInfoMap = new HashMap<Integer, BufferedFileHandle>();
+        // Updates to the map are still serialized by synchronizing on it, lookups on the I/O path are not.
+        fileInfoMap = new ConcurrentHashMap<Integer, BufferedFileHandle>();
         virtualFiles = new HashSet<Integer>();
         cleanerThread = new CleanerThread();
         executor.execute(cleanerThread);
@@ -88,7 +106,8 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
             IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
             ThreadFactory threadFactory, IIOReplicationManager ioReplicationManager) {
 
-        this(ioManager, pageReplacementStrategy, pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory);
+        this(ioManager, pageReplacementStrategy, pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory,
+                false);
         this.ioReplicationManager = ioReplicationManager;
     }
 
@@ -109,10 +128,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
 
         // check whether file has been created and opened
         int fileId = BufferedFileHandle.getFileId(dpid);
-        BufferedFileHandle fInfo = null;
-        synchronized (fileInfoMap) {
-            fInfo = fileInfoMap.get(fileId);
-        }
+        BufferedFileHandle fInfo = fileInfoMap.get(fileId);
         if (fInfo == null && !virtualFiles.contains(fileId)) {
             throw new HyracksDataException("pin called on a fileId " + fileId + " that has not been created.");
         } else if (fInfo != null && fInfo.getReferenceCount() <= 0) {
@@ -127,6 +143,13 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         CachedPage cPage = null;
         int hash = hash(dpid);
         CacheBucket bucket = pageMap[hash];
+        if (optimisticLookup) {
+            cPage = findPageOptimistic(bucket, dpid);
+            if (cPage != null) {
+                pageReplacementStrategy.notifyCachePageAccess(cPage);
+                return cPage;
+            }
+        }
         bucket.bucketLock.lock();
         try {
             cPage = bucket.cachedPage;
@@ -209,6 +232,12 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
              */
             int hash = hash(dpid);
             CacheBucket bucket = pageMap[hash];
+            if (optimisticLookup) {
+                cPage = findPageOptimistic(bucket, dpid);
+                if (cPage != null) {
+                    return cPage;
+                }
+            }
             bucket.bucketLock.lock();
             try {
                 cPage = bucket.cachedPage;
@@ -255,6 +284,10 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                  * use of the victim (pinCount != 1). If everything looks good,
                  * remove the CachedPage from the old bucket, and add it to the
                  * new bucket and update its header with the new dpid.
+                 * In all cases the victim's pin count is moved from 1 to
+                 * PIN_COUNT_REPLACING while its dpid is changed, so that
+                 * optimistic lookups, which pin without the bucket lock, can
+                 * never pin a page that is in the middle of a reset.
                  */
                 if (victim.dpid < 0) {
                     /*
@@ -271,7 +304,13 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                             }
                             cPage = cPage.next;
                         }
+                        if (!victim.pinCount.compareAndSet(1, CachedPage.PIN_COUNT_REPLACING)) {
+                            // a stale optimistic lookup holds a transient pin on the victim.
+                            victim.pinCount.decrementAndGet();
+                            continue;
+                        }
                         victim.reset(dpid);
+                        victim.pinCount.set(1);
                         victim.next = bucket.cachedPage;
                         bucket.cachedPage = victim;
                     } finally {
@@ -286,7 +325,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                      */
                     bucket.bucketLock.lock();
                     try {
-                        if (victim.pinCount.get() != 1) {
+                        if (!victim.pinCount.compareAndSet(1, CachedPage.PIN_COUNT_REPLACING)) {
                             victim.pinCount.decrementAndGet();
                             continue;
                         }
@@ -294,12 +333,13 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         while (cPage != null) {
                             if (cPage.dpid == dpid) {
                                 cPage.pinCount.incrementAndGet();
-                                victim.pinCount.decrementAndGet();
+                                victim.pinCount.set(0);
                                 return cPage;
                             }
                             cPage = cPage.next;
                         }
                         victim.reset(dpid);
+                        victim.pinCount.set(1);
                     } finally {
                         bucket.bucketLock.unlock();
                     }
@@ -317,7 +357,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         victimBucket.bucketLock.lock();
                     }
                     try {
-                        if (victim.pinCount.get() != 1) {
+                        if (!victim.pinCount.compareAndSet(1, CachedPage.PIN_COUNT_REPLACING)) {
                             victim.pinCount.decrementAndGet();
                             continue;
                         }
@@ -325,7 +365,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         while (cPage != null) {
                             if (cPage.dpid == dpid) {
                                 cPage.pinCount.incrementAndGet();
-                                victim.pinCount.decrementAndGet();
+                                victim.pinCount.set(0);
                                 return cPage;
                             }
                             cPage = cPage.next;
@@ -341,6 +381,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                             victimPrev.next = victim.next;
                         }
                         victim.reset(dpid);
+                        victim.pinCount.set(1);
                         victim.next = bucket.cachedPage;
                         bucket.cachedPage = victim;
                     } finally {
@@ -370,6 +411,28 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         }
     }
 
+    /**
+     * Looks up and pins a page without taking the bucket lock. A null result is not authoritative: the caller must
+     * retry under the bucket lock.
+     */
+    private CachedPage findPageOptimistic(CacheBucket bucket, long dpid) {
+        CachedPage cPage = bucket.cachedPage;
+        for (int i = 0; cPage != null && i < MAX_OPTIMISTIC_CHAIN_LENGTH; ++i) {
+            if (cPage.dpid == dpid) {
+                if (cPage.pinIfNotReplacing()) {
+                    // the page may have been replaced between the check above and the pin.
+                    if (cPage.dpid == dpid) {
+                        return cPage;
+                    }
+                    cPage.pinCount.decrementAndGet();
+                }
+                return null;
+            }
+            cPage = cPage.next;
+        }
+        return null;
+    }
+
     private String dumpState() {
         StringBuilder buffer = new StringBuilder();
         buffer.append("Buffer cache state\n");
@@ -412,13 +475,11 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     }
 
     private BufferedFileHandle getFileInfo(CachedPage cPage) throws HyracksDataException {
-        synchronized (fileInfoMap) {
-            BufferedFileHandle fInfo = fileInfoMap.get(BufferedFileHandle.getFileId(cPage.dpid));
-            if (fInfo == null) {
-                throw new HyracksDataException("No such file mapped");
-            }
-            return fInfo;
+        BufferedFileHandle fInfo = fileInfoMap.get(BufferedFileHandle.getFileId(cPage.dpid));
+        if (fInfo == null) {
+            throw new HyracksDataException("No such file mapped");
         }
+        return fInfo;
     }
 
     private void write(CachedPage cPage) throws HyracksDataException {
@@ -447,7 +508,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
 
     private static class CacheBucket {
         private final Lock bucketLock;
-        private CachedPage cachedPage;
+        private volatile CachedPage cachedPage;
 
         public CacheBucket() {
             bucketLock = new ReentrantLock();
@@ -731,10 +792,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
 
     @Override
     public void force(int fileId, boolean metadata) throws HyracksDataException {
-        BufferedFileHandle fInfo = null;
-        synchronized (fileInfoMap) {
-            fInfo = fileInfoMap.get(fileId);
-        }
+        BufferedFileHandle fInfo = fileInfoMap.get(fileId);
         ioManager.sync(fInfo.getFileHandle(), metadata);
     }
 
@@ -24,6 +24,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * @author yingyib
  */
 class CachedPage implements ICachedPageInternal {
+    /**
+     * Pin count value of a page whose identity is being changed by the buffer cache. Optimistic lookups never pin a
+     * page in this state.
+     */
+    static final int PIN_COUNT_REPLACING = Integer.MIN_VALUE;
+
     final int cpid;
     final ByteBuffer buffer;
     final AtomicInteger pinCount;
@@ -32,7 +38,7 @@ class CachedPage implements ICachedPageInternal {
     private final Object replacementStrategyObject;
     private final IPageReplacementStrategy pageReplacementStrategy;
     volatile long dpid;
-    CachedPage next;
+    volatile CachedPage next;
     volatile boolean valid;
     volatile boolean virtual;
 
@@ -78,11 +84,32 @@ class CachedPage implements ICachedPageInternal {
             return pinCount.compareAndSet(0, 1);
     }
 
+    /**
+     * Pins the page unless its identity is currently being changed. Used by lookups that do not hold the bucket lock;
+     * the caller must re-validate the dpid after a successful pin.
+     */
+    boolean pinIfNotReplacing() {
+        while (true) {
+            int count = pinCount.get();
+            if (count < 0) {
+                return false;
+            }
+            if (pinCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
     @Override
     public int getCachedPageId() {
         return cpid;
     }
 
+    @Override
+    public long getDiskPageId() {
+        return dpid;
+    }
+
     @Override
     public void acquireReadLatch() {
         latch.readLock().lock();
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.common.buffercache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CLOCK-Pro style page replacement. Pages are either hot or cold, and only cold pages are evicted. A page starts out
+ * cold with a test period; if it is accessed again within that period, it is promoted to hot. A cold page that is
+ * evicted during its test period leaves a ghost entry behind, so that a page that is read again soon after its
+ * eviction comes back as hot. The number of cold pages adapts: reaccesses within a test period grow it, test periods
+ * that expire without a reaccess shrink it. Pages touched once by a scan or a merge stay cold and are evicted before
+ * the hot working set.
+ */
+public class ClockProPageReplacementStrategy implements IPageReplacementStrategy {
+    private static final int MAX_UNSUCCESSFUL_CYCLE_COUNT = 3;
+    private static final int MIN_COLD_TARGET = 1;
+
+    private IBufferCacheInternal bufferCache;
+    private final ICacheMemoryAllocator allocator;
+    private final AtomicInteger numPages = new AtomicInteger(0);
+    private final int pageSize;
+    private final int maxAllowedNumPages;
+    private final int maxColdTarget;
+    // dpids of cold pages that were evicted during their test period, oldest first.
+    private final LinkedHashSet<Long> nonResidentColdPages = new LinkedHashSet<Long>();
+    private int coldTarget;
+    private int numHotPages;
+    private int coldHand;
+    private int hotHand;
+
+    public ClockProPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize, int maxAllowedNumPages) {
+        this.allocator = allocator;
+        this.pageSize = pageSize;
+        this.maxAllowedNumPages = maxAllowedNumPages;
+        this.maxColdTarget = Math.max(MIN_COLD_TARGET, maxAllowedNumPages - 1);
+        this.coldTarget = Math.max(MIN_COLD_TARGET, maxAllowedNumPages / 10);
+    }
+
+    @Override
+    public Object createPerPageStrategyObject(int cpid) {
+        return new PageState();
+    }
+
+    @Override
+    public void setBufferCache(IBufferCacheInternal bufferCache) {
+        this.bufferCache = bufferCache;
+    }
+
+    @Override
+    public synchronized void notifyCachePageReset(ICachedPageInternal cPage) {
+        PageState state = getPerPageObject(cPage);
+        long dpid = cPage.getDiskPageId();
+        if (state.dpid >= 0 && dpid >= 0 && !state.hot && state.inTest) {
+            // a cold page is evicted during its test period.
+            addNonResidentColdPage(state.dpid);
+        }
+        if (state.hot) {
+            state.hot = false;
+            --numHotPages;
+        }
+        state.referenced = false;
+        state.loading = true;
+        state.inTest = false;
+        state.dpid = dpid;
+        if (dpid < 0) {
+            return;
+        }
+        if (nonResidentColdPages.remove(dpid)) {
+            // reaccessed within its test period: the cold set is too small to catch this page.
+            coldTarget = Math.min(coldTarget + 1, maxColdTarget);
+            state.hot = true;
+            ++numHotPages;
+            while (numHotPages > maxAllowedNumPages - coldTarget) {
+                runHotHand();
+            }
+        } else {
+            state.inTest = true;
+        }
+    }
+
+    @Override
+    public void notifyCachePageAccess(ICachedPageInternal cPage) {
+        PageState state = getPerPageObject(cPage);
+        if (state.loading) {
+            // the pin that brought the page in is not a reaccess.
+            state.loading = false;
+        } else {
+            state.referenced = true;
+        }
+    }
+
+    @Override
+    public ICachedPageInternal findVictim() {
+        ICachedPageInternal cachedPage = null;
+        int pageCount = getNumPages();
+        // pageCount is a lower-bound of numPages.
+        if (pageCount >= maxAllowedNumPages) {
+            cachedPage = findVictimByEviction();
+        } else {
+            cachedPage = allocatePage();
+        }
+        return cachedPage;
+    }
+
+    private synchronized ICachedPageInternal findVictimByEviction() {
+        ICachedPageInternal victim = runColdHand();
+        if (victim == null && numHotPages > 0) {
+            // every cold page is pinned or was just referenced, turn a hot page cold and try once more.
+            runHotHand();
+            victim = runColdHand();
+        }
+        return victim;
+    }
+
+    private ICachedPageInternal runColdHand() {
+        int pageCount = getNumPages();
+        for (int i = 0; i < pageCount * MAX_UNSUCCESSFUL_CYCLE_COUNT; ++i) {
+            ICachedPageInternal cPage = bufferCache.getPage(coldHand);
+            coldHand = (coldHand + 1) % pageCount;
+            PageState state = getPerPageObject(cPage);
+            if (state.hot) {
+                continue;
+            }
+            if (state.referenced) {
+                state.referenced = false;
+                if (state.inTest) {
+                    state.inTest = false;
+                    state.hot = true;
+                    ++numHotPages;
+                    while (numHotPages > maxAllowedNumPages - coldTarget) {
+                        runHotHand();
+                    }
+                } else {
+                    state.inTest = true;
+                }
+                continue;
+            }
+            if (cPage.pinIfGoodVictim()) {
+                return cPage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the hot hand until one hot page has been turned cold. Cold pages passed on the way lose their test
+     * period.
+     */
+    private void runHotHand() {
+        int pageCount = getNumPages();
+        for (int i = 0; i < pageCount * MAX_UNSUCCESSFUL_CYCLE_COUNT; ++i) {
+            PageState state = getPerPageObject(bufferCache.getPage(hotHand));
+            hotHand = (hotHand + 1) % pageCount;
+            if (!state.hot) {
+                if (!state.referenced) {
+                    state.inTest = false;
+                }
+                continue;
+            }
+            // after a full cycle every hot page has lost its reference bit, so this terminates.
+            if (state.referenced) {
+                state.referenced = false;
+                continue;
+            }
+            state.hot = false;
+            --numHotPages;
+            return;
+        }
+    }
+
+    private void addNonResidentColdPage(long dpid) {
+        nonResidentColdPages.add(dpid);
+        if (nonResidentColdPages.size() > maxAllowedNumPages) {
+            // the test period of the oldest non-resident page expired without a reaccess.
+            Iterator<Long> oldest = nonResidentColdPages.iterator();
+            oldest.next();
+            oldest.remove();
+            coldTarget = Math.max(coldTarget - 1, MIN_COLD_TARGET);
+        }
+    }
+
+    /**
+     * The number returned here could only be smaller or equal to the actual number
+     * of pages, because numPages is monotonically incremented.
+     */
+    @Override
+    public int getNumPages() {
+        return numPages.get();
+    }
+
+    private ICachedPageInternal allocatePage() {
+        CachedPage cPage = null;
+        synchronized (this) {
+            cPage = new CachedPage(numPages.get(), allocator.allocate(pageSize, 1)[0], this);
+            bufferCache.addPage(cPage);
+            numPages.incrementAndGet();
+        }
+        if (cPage.pinIfGoodVictim()) {
+            return cPage;
+        }
+        return null;
+    }
+
+    private PageState getPerPageObject(ICachedPageInternal cPage) {
+        return (PageState) cPage.getReplacementStrategyObject();
+    }
+
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int getMaxAllowedNumPages() {
+        return maxAllowedNumPages;
+    }
+
+    private static class PageState {
+        private volatile boolean referenced;
+        private volatile boolean loading;
+        // the remaining fields are guarded by the strategy.
+        private long dpid = -1;
+        private boolean hot;
+        private boolean inTest;
+    }
+}
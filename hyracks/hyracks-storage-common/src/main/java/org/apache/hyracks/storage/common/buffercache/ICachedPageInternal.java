@@ -17,6 +17,8 @@ package org.apache.hyracks.storage.common.buffercache;
 public interface ICachedPageInternal extends ICachedPage {
     public int getCachedPageId();
 
+    public long getDiskPageId();
+
     public Object getReplacementStrategyObject();
 
     public boolean pinIfGoodVictim();
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.common.buffercache;
+
+/**
+ * Creates an {@link IPageReplacementStrategy} from its configured name, e.g. the value of the Node Controller's
+ * -buffer-cache-page-replacement-strategy option.
+ */
+public class PageReplacementStrategyFactory {
+    public static final String CLOCK = "clock";
+    public static final String TWO_Q = "2q";
+    public static final String CLOCK_PRO = "clock-pro";
+
+    private PageReplacementStrategyFactory() {
+    }
+
+    public static IPageReplacementStrategy create(String name, ICacheMemoryAllocator allocator, int pageSize,
+            int maxAllowedNumPages) {
+        if (name == null || CLOCK.equalsIgnoreCase(name)) {
+            return new ClockPageReplacementStrategy(allocator, pageSize, maxAllowedNumPages);
+        }
+        if (TWO_Q.equalsIgnoreCase(name)) {
+            return new TwoQPageReplacementStrategy(allocator, pageSize, maxAllowedNumPages);
+        }
+        if (CLOCK_PRO.equalsIgnoreCase(name)) {
+            return new ClockProPageReplacementStrategy(allocator, pageSize, maxAllowedNumPages);
+        }
+        throw new IllegalArgumentException("Unknown page replacement strategy: " + name + " (expected " + CLOCK
+                + ", " + TWO_Q + " or " + CLOCK_PRO + ")");
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.common.buffercache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 2Q page replacement. A page read for the first time enters the FIFO queue A1in and is evicted from there
+ * regardless of how often it was accessed, leaving its dpid behind in the ghost queue A1out. A page that is read
+ * again while its dpid is still in A1out enters the main queue Am, which is managed by CLOCK. Sequential scans and
+ * merges therefore only cycle through A1in and do not push the point-lookup working set out of Am.
+ */
+public class TwoQPageReplacementStrategy implements IPageReplacementStrategy {
+    private static final int MAX_UNSUCCESSFUL_CYCLE_COUNT = 3;
+    private static final double DEFAULT_A1IN_FRACTION = 0.25;
+    private static final double DEFAULT_A1OUT_FRACTION = 0.5;
+
+    private static final int QUEUE_NONE = 0;
+    private static final int QUEUE_A1IN = 1;
+    private static final int QUEUE_AM = 2;
+
+    private IBufferCacheInternal bufferCache;
+    private final ICacheMemoryAllocator allocator;
+    private final AtomicInteger numPages = new AtomicInteger(0);
+    private final int pageSize;
+    private final int maxAllowedNumPages;
+    private final int a1inTargetSize;
+    private final int a1outMaxSize;
+    private final LinkedHashSet<Long> a1out = new LinkedHashSet<Long>();
+    // a1inHead is the oldest page in A1in.
+    private PageState a1inHead;
+    private PageState a1inTail;
+    private int a1inSize;
+    private int clockPtr;
+
+    public TwoQPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize, int maxAllowedNumPages) {
+        this(allocator, pageSize, maxAllowedNumPages, DEFAULT_A1IN_FRACTION, DEFAULT_A1OUT_FRACTION);
+    }
+
+    /**
+     * @param a1inFraction
+     *            fraction of the cache that A1in may occupy before its pages are preferred as victims.
+     * @param a1outFraction
+     *            number of ghost entries kept in A1out, as a fraction of the number of pages in the cache.
+     */
+    public TwoQPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize, int maxAllowedNumPages,
+            double a1inFraction, double a1outFraction) {
+        this.allocator = allocator;
+        this.pageSize = pageSize;
+        this.maxAllowedNumPages = maxAllowedNumPages;
+        this.a1inTargetSize = Math.max(1, (int) (maxAllowedNumPages * a1inFraction));
+        this.a1outMaxSize = Math.max(1, (int) (maxAllowedNumPages * a1outFraction));
+        clockPtr = 0;
+    }
+
+    @Override
+    public Object createPerPageStrategyObject(int cpid) {
+        return new PageState(cpid);
+    }
+
+    @Override
+    public void setBufferCache(IBufferCacheInternal bufferCache) {
+        this.bufferCache = bufferCache;
+    }
+
+    @Override
+    public synchronized void notifyCachePageReset(ICachedPageInternal cPage) {
+        PageState state = getPerPageObject(cPage);
+        long dpid = cPage.getDiskPageId();
+        if (state.queue == QUEUE_A1IN) {
+            unlinkFromA1in(state);
+            if (state.dpid >= 0 && dpid >= 0) {
+                // the page is evicted from A1in to make room for another page.
+                addToA1out(state.dpid);
+            }
+        }
+        state.accessed = false;
+        state.dpid = dpid;
+        if (dpid < 0) {
+            state.queue = QUEUE_NONE;
+        } else if (a1out.remove(dpid)) {
+            state.queue = QUEUE_AM;
+        } else {
+            state.queue = QUEUE_A1IN;
+            appendToA1in(state);
+        }
+    }
+
+    @Override
+    public void notifyCachePageAccess(ICachedPageInternal cPage) {
+        getPerPageObject(cPage).accessed = true;
+    }
+
+    @Override
+    public ICachedPageInternal findVictim() {
+        ICachedPageInternal cachedPage = null;
+        int pageCount = getNumPages();
+        // pageCount is a lower-bound of numPages.
+        if (pageCount >= maxAllowedNumPages) {
+            cachedPage = findVictimByEviction();
+        } else {
+            cachedPage = allocatePage();
+        }
+        return cachedPage;
+    }
+
+    private synchronized ICachedPageInternal findVictimByEviction() {
+        ICachedPageInternal victim = null;
+        if (a1inSize > a1inTargetSize) {
+            victim = findVictimInA1in();
+        }
+        if (victim == null) {
+            victim = findVictimInAm();
+        }
+        if (victim == null) {
+            // Am has nothing to give, fall back to A1in even if it is below its target size.
+            victim = findVictimInA1in();
+        }
+        return victim;
+    }
+
+    private ICachedPageInternal findVictimInA1in() {
+        for (PageState state = a1inHead; state != null; state = state.next) {
+            ICachedPageInternal cPage = bufferCache.getPage(state.cpid);
+            if (cPage.pinIfGoodVictim()) {
+                return cPage;
+            }
+        }
+        return null;
+    }
+
+    private ICachedPageInternal findVictimInAm() {
+        int startClockPtr = clockPtr;
+        int cycleCount = 0;
+        do {
+            ICachedPageInternal cPage = bufferCache.getPage(clockPtr);
+            PageState state = getPerPageObject(cPage);
+            // pages that are not in A1in are either in Am or free.
+            if (state.queue != QUEUE_A1IN) {
+                if (state.accessed) {
+                    state.accessed = false;
+                } else if (cPage.pinIfGoodVictim()) {
+                    return cPage;
+                }
+            }
+            clockPtr = (clockPtr + 1) % getNumPages();
+            if (clockPtr == startClockPtr) {
+                ++cycleCount;
+            }
+        } while (cycleCount < MAX_UNSUCCESSFUL_CYCLE_COUNT);
+        return null;
+    }
+
+    private void appendToA1in(PageState state) {
+        state.prev = a1inTail;
+        state.next = null;
+        if (a1inTail == null) {
+            a1inHead = state;
+        } else {
+            a1inTail.next = state;
+        }
+        a1inTail = state;
+        ++a1inSize;
+    }
+
+    private void unlinkFromA1in(PageState state) {
+        if (state.prev == null) {
+            a1inHead = state.next;
+        } else {
+            state.prev.next = state.next;
+        }
+        if (state.next == null) {
+            a1inTail = state.prev;
+        } else {
+            state.next.prev = state.prev;
+        }
+        state.prev = null;
+        state.next = null;
+        --a1inSize;
+    }
+
+    private void addToA1out(long dpid) {
+        a1out.add(dpid);
+        if (a1out.size() > a1outMaxSize) {
+            Iterator<Long> oldest = a1out.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * The number returned here could only be smaller or equal to the actual number
+     * of pages, because numPages is monotonically incremented.
+     */
+    @Override
+    public int getNumPages() {
+        return numPages.get();
+    }
+
+    private ICachedPageInternal allocatePage() {
+        CachedPage cPage = null;
+        synchronized (this) {
+            cPage = new CachedPage(numPages.get(), allocator.allocate(pageSize, 1)[0], this);
+            bufferCache.addPage(cPage);
+            numPages.incrementAndGet();
+        }
+        if (cPage.pinIfGoodVictim()) {
+            return cPage;
+        }
+        return null;
+    }
+
+    private PageState getPerPageObject(ICachedPageInternal cPage) {
+        return (PageState) cPage.getReplacementStrategyObject();
+    }
+
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int getMaxAllowedNumPages() {
+        return maxAllowedNumPages;
+    }
+
+    private static class PageState {
+        private final int cpid;
+        private volatile boolean accessed;
+        // the remaining fields are guarded by the strategy.
+        private long dpid = -1;
+        private int queue = QUEUE_NONE;
+        private PageState prev;
+        private PageState next;
+
+        public PageState(int cpid) {
+            this.cpid = cpid;
+        }
+    }
+}
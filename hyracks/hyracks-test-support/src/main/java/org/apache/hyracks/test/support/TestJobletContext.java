@@ -60,6 +60,10 @@ public class TestJobletContext implements IHyracksJobletContext {
         frameManger.deallocateFrames(bytes);
     }
 
+    void deallocateFrame(ByteBuffer frame) {
+        frameManger.deallocateFrame(frame);
+    }
+
     public int getFrameSize() {
         return frameSize;
     }
@@ -15,6 +15,9 @@
 package org.apache.hyracks.test.support;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
 import org.apache.hyracks.api.application.INCApplicationContext;
@@ -25,8 +28,18 @@ import org.apache.hyracks.api.lifecycle.ILifeCycleComponentManager;
 import org.apache.hyracks.api.lifecycle.LifeCycleComponentManager;
 import org.apache.hyracks.api.messages.IMessageBroker;
 import org.apache.hyracks.api.resources.memory.IMemoryManager;
+import org.apache.hyracks.storage.common.buffercache.PageReplacementStrategyFactory;
 
 public class TestNCApplicationContext implements INCApplicationContext {
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final ILifeCycleComponentManager lccm;
     private final IHyracksRootContext rootCtx;
     private final String nodeId;
@@ -107,6 +120,21 @@ public class TestNCApplicationContext implements INCApplicationContext {
         return mm;
     }
 
+    @Override
+    public Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    @Override
+    public String getBufferCachePageReplacementStrategy() {
+        return PageReplacementStrategyFactory.CLOCK;
+    }
+
+    @Override
+    public boolean isBufferCacheOptimisticLookup() {
+        return false;
+    }
+
     @Override
     public ThreadFactory getThreadFactory() {
         return null;
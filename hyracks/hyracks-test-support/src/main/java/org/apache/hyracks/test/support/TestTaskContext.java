@@ -64,6 +64,11 @@ public class TestTaskContext implements IHyracksTaskContext {
         jobletContext.deallocateFrames(bytes);
     }
 
+    @Override
+    public void deallocateFrame(ByteBuffer frame) {
+        jobletContext.deallocateFrame(frame);
+    }
+
     @Override
     public int getInitialFrameSize() {
         return jobletContext.getFrameSize();
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.common;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.storage.common.buffercache.BufferCache;
+import org.apache.hyracks.storage.common.buffercache.ClockPageReplacementStrategy;
+import org.apache.hyracks.storage.common.buffercache.DelayPageCleanerPolicy;
+import org.apache.hyracks.storage.common.buffercache.HeapBufferAllocator;
+import org.apache.hyracks.storage.common.buffercache.ICachedPage;
+import org.apache.hyracks.storage.common.file.BufferedFileHandle;
+import org.apache.hyracks.storage.common.file.TransientFileMapManager;
+import org.apache.hyracks.test.support.TestUtils;
+
+/**
+ * Measures pin/unpin throughput of the locked and the optimistic page lookup for an increasing number of threads,
+ * and checks that every pinned page carries the content of the page that was asked for.
+ */
+public class BufferCacheContentionTest {
+    private static final Logger LOGGER = Logger.getLogger(BufferCacheContentionTest.class.getName());
+
+    private static final int PAGE_SIZE = 256;
+    private static final int NUM_PAGES = 64;
+    private static final int MAX_OPEN_FILES = 4;
+    private static final int[] NUM_THREADS = { 1, 2, 4, 8 };
+    private static final long DURATION_MS = 250;
+
+    private final IHyracksTaskContext ctx = TestUtils.create(PAGE_SIZE);
+    private final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r);
+        }
+    };
+
+    @Test
+    public void cachedWorkingSetTest() throws Exception {
+        // the whole file fits in the cache: measures the hit path only.
+        runScenario(NUM_PAGES / 2);
+    }
+
+    @Test
+    public void evictingWorkingSetTest() throws Exception {
+        // the file is twice the cache: lookups race with page replacement.
+        runScenario(NUM_PAGES * 2);
+    }
+
+    private void runScenario(int numFilePages) throws Exception {
+        for (boolean optimistic : new boolean[] { false, true }) {
+            for (int numThreads : NUM_THREADS) {
+                long pins = run(optimistic, numThreads, numFilePages);
+                if (LOGGER.isLoggable(Level.INFO)) {
+                    LOGGER.info((optimistic ? "optimistic" : "locked") + " lookup, " + numThreads + " threads, "
+                            + numFilePages + " file pages: " + (pins * 1000 / DURATION_MS) + " pins/s");
+                }
+            }
+        }
+    }
+
+    private long run(boolean optimistic, int numThreads, final int numFilePages) throws Exception {
+        TransientFileMapManager fileMapManager = new TransientFileMapManager();
+        final BufferCache bufferCache = new BufferCache(ctx.getIOManager(), new ClockPageReplacementStrategy(
+                new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES), new DelayPageCleanerPolicy(10), fileMapManager,
+                MAX_OPEN_FILES, threadFactory, optimistic);
+        File f = File.createTempFile("bufferCacheContention", ".dat");
+        f.deleteOnExit();
+        FileReference file = new FileReference(f);
+        bufferCache.createFile(file);
+        final int fileId = fileMapManager.lookupFileId(file);
+        bufferCache.openFile(fileId);
+        try {
+            for (int i = 0; i < numFilePages; ++i) {
+                ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), true);
+                page.acquireWriteLatch();
+                try {
+                    page.getBuffer().putInt(0, i);
+                } finally {
+                    page.releaseWriteLatch(true);
+                    bufferCache.unpin(page);
+                }
+            }
+
+            final AtomicLong totalPins = new AtomicLong();
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final long endTime = System.currentTimeMillis() + DURATION_MS;
+            Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; ++t) {
+                final Random rnd = new Random(t);
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        long pins = 0;
+                        try {
+                            while (System.currentTimeMillis() < endTime) {
+                                for (int i = 0; i < 1000; ++i) {
+                                    int pageId = rnd.nextInt(numFilePages);
+                                    ICachedPage page = bufferCache.pin(
+                                            BufferedFileHandle.getDiskPageId(fileId, pageId), false);
+                                    page.acquireReadLatch();
+                                    try {
+                                        if (page.getBuffer().getInt(0) != pageId) {
+                                            throw new IllegalStateException("Pinned page " + pageId
+                                                    + " but found the content of page "
+                                                    + page.getBuffer().getInt(0));
+                                        }
+                                    } finally {
+                                        page.releaseReadLatch();
+                                        bufferCache.unpin(page);
+                                    }
+                                    ++pins;
+                                }
+                            }
+                        } catch (Throwable th) {
+                            failure.compareAndSet(null, th);
+                        }
+                        totalPins.addAndGet(pins);
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            Assert.assertTrue(totalPins.get() > 0);
+            return totalPins.get();
+        } finally {
+            bufferCache.closeFile(fileId);
+            bufferCache.close();
+        }
+    }
+}
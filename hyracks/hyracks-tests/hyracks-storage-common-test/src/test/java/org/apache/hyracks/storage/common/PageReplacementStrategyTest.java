@@ -0,0 +1,134 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hyracks.storage.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.hyracks.api.context.IHyracksTaskContext;
+import org.apache.hyracks.api.exceptions.HyracksDataException;
+import org.apache.hyracks.api.io.FileReference;
+import org.apache.hyracks.storage.common.buffercache.BufferCache;
+import org.apache.hyracks.storage.common.buffercache.DelayPageCleanerPolicy;
+import org.apache.hyracks.storage.common.buffercache.HeapBufferAllocator;
+import org.apache.hyracks.storage.common.buffercache.IBufferCache;
+import org.apache.hyracks.storage.common.buffercache.ICachedPage;
+import org.apache.hyracks.storage.common.buffercache.PageReplacementStrategyFactory;
+import org.apache.hyracks.storage.common.file.BufferedFileHandle;
+import org.apache.hyracks.storage.common.file.TransientFileMapManager;
+import org.apache.hyracks.test.support.TestUtils;
+
+public class PageReplacementStrategyTest {
+    private static final int PAGE_SIZE = 256;
+    private static final int NUM_PAGES = 32;
+    private static final int MAX_OPEN_FILES = 4;
+    private static final int NUM_HOT_PAGES = 8;
+    private static final int NUM_SCAN_PAGES = NUM_PAGES * 8;
+    // the hot pages are looked up once every SCAN_STRIDE scanned pages.
+    private static final int SCAN_STRIDE = 4;
+
+    private final IHyracksTaskContext ctx = TestUtils.create(PAGE_SIZE);
+    private final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r);
+        }
+    };
+
+    @Test
+    public void twoQScanResistanceTest() throws HyracksDataException {
+        Assert.assertTrue(hotPagesSurviveScan(PageReplacementStrategyFactory.TWO_Q));
+    }
+
+    @Test
+    public void clockProScanResistanceTest() throws HyracksDataException {
+        Assert.assertTrue(hotPagesSurviveScan(PageReplacementStrategyFactory.CLOCK_PRO));
+    }
+
+    @Test
+    public void clockTest() throws HyracksDataException {
+        // CLOCK gives no guarantee here, this only checks that the workload runs.
+        hotPagesSurviveScan(PageReplacementStrategyFactory.CLOCK);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStrategyTest() {
+        PageReplacementStrategyFactory.create("lru-k", new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES);
+    }
+
+    /**
+     * Interleaves lookups of a small hot set with two scans of a file that is much larger than the cache and
+     * returns whether all hot pages are still cached after the second scan.
+     */
+    private boolean hotPagesSurviveScan(String strategy) throws HyracksDataException {
+        TransientFileMapManager fileMapManager = new TransientFileMapManager();
+        IBufferCache bufferCache = new BufferCache(ctx.getIOManager(), PageReplacementStrategyFactory.create(strategy,
+                new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES), new DelayPageCleanerPolicy(1000), fileMapManager,
+                MAX_OPEN_FILES, threadFactory);
+        FileReference hotFile = createFile(bufferCache, fileMapManager, "hot");
+        FileReference scanFile = createFile(bufferCache, fileMapManager, "scan");
+        int hotFileId = fileMapManager.lookupFileId(hotFile);
+        int scanFileId = fileMapManager.lookupFileId(scanFile);
+        bufferCache.openFile(hotFileId);
+        bufferCache.openFile(scanFileId);
+        try {
+            for (int round = 0; round < 2; ++round) {
+                for (int i = 0; i < NUM_SCAN_PAGES; ++i) {
+                    if (i % SCAN_STRIDE == 0) {
+                        for (int j = 0; j < NUM_HOT_PAGES; ++j) {
+                            bufferCache.unpin(bufferCache.pin(BufferedFileHandle.getDiskPageId(hotFileId, j), true));
+                        }
+                    }
+                    bufferCache.unpin(bufferCache.pin(BufferedFileHandle.getDiskPageId(scanFileId, i), true));
+                }
+            }
+            // the tail of the scan must not have pushed out the hot set.
+            for (int i = 0; i < NUM_PAGES * 2; ++i) {
+                bufferCache.unpin(bufferCache.pin(BufferedFileHandle.getDiskPageId(scanFileId, i), true));
+            }
+            boolean allCached = true;
+            for (int j = 0; j < NUM_HOT_PAGES; ++j) {
+                ICachedPage page = bufferCache.tryPin(BufferedFileHandle.getDiskPageId(hotFileId, j));
+                if (page == null) {
+                    allCached = false;
+                } else {
+                    bufferCache.unpin(page);
+                }
+            }
+            return allCached;
+        } finally {
+            bufferCache.closeFile(hotFileId);
+            bufferCache.closeFile(scanFileId);
+            bufferCache.close();
+        }
+    }
+
+    private FileReference createFile(IBufferCache bufferCache, TransientFileMapManager fileMapManager, String prefix)
+            throws HyracksDataException {
+        try {
+            File f = File.createTempFile(prefix, ".dat");
+            f.deleteOnExit();
+            FileReference file = new FileReference(f);
+            bufferCache.createFile(file);
+            return file;
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
+    }
+}